@@ -22,14 +22,14 @@ import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static edu.utdallas.seers.file.Files.getTempFilePath;
 
 public class PatternDetectionEvaluator {
+    private static final String DETECTION_POOL = "pattern-detection";
+
     final Logger logger = LoggerFactory.getLogger(PatternDetectionEvaluator.class);
     private final Path sourcesPath;
 
@@ -81,23 +81,10 @@ public class PatternDetectionEvaluator {
     }
 
     public void startExperiment(Path constraintsPath, Path targetsPath, Path destPath, Path tempDir, int threads) {
-        try {
-            Parallel.tryRunWithThreads(
-                    () -> runExperiment(constraintsPath, targetsPath, destPath, tempDir),
-                    threads
-            );
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private void runExperiment(Path constraintsPath, Path targetsPath, Path destPath, Path tempDir) {
         Path allResultsPath = destPath.resolve("all-results.csv");
         Path byConstraintPath = destPath.resolve("evaluation-by-constraint.csv");
 
-        try (Stream<List<PatternOutputFormat>> results = runDetectors(constraintsPath, targetsPath, tempDir);
-
-             CSVWriter<PatternOutputFormat.DetectorResult> allResultsWriter =
+        try (CSVWriter<PatternOutputFormat.DetectorResult> allResultsWriter =
                      CSVWriter.tryCreate(allResultsPath);
 
              CSVWriter<PatternOutputFormat.ResultEvaluation> evaluationWriter =
@@ -105,7 +92,7 @@ public class PatternDetectionEvaluator {
         ) {
             Files.createDirectories(tempDir);
 
-            results.forEach(rl -> {
+            runDetectors(constraintsPath, targetsPath, tempDir, threads, rl -> {
                 evaluateResultList(rl, evaluationWriter);
                 outputResultList(rl, allResultsWriter);
             });
@@ -130,16 +117,18 @@ public class PatternDetectionEvaluator {
     }
 
     /**
-     * Uses multiple threads for execution. Run with a custom thread pool to control the amount
-     * of memory required.
+     * Evaluates one system per thread of a pool with the given number of threads, to control the
+     * amount of memory required.
      *
      * @param constraintsPath File with constraints.
      * @param targetsPath     Path of the target systems.
      * @param tempDir         Directory to output debug info.
-     * @return A stream of all results for all systems.
+     * @param threads         Number of threads.
+     * @param consumer        Called by the pool threads with the results of each system.
      * @throws IOException if there are errors reading.
      */
-    private Stream<List<PatternOutputFormat>> runDetectors(Path constraintsPath, Path targetsPath, Path tempDir) throws IOException {
+    private void runDetectors(Path constraintsPath, Path targetsPath, Path tempDir, int threads,
+                              Consumer<List<PatternOutputFormat>> consumer) throws IOException {
         Map<String, SystemInfo> infoMap = SystemInfo.buildInfo();
 
         // Load data
@@ -160,22 +149,20 @@ public class PatternDetectionEvaluator {
                 .filter(path -> Files.isDirectory(path) && !path.equals(targetsPath))
                 .collect(Collectors.toList());
 
-        return systemPaths.parallelStream()
-                .map(p -> {
-                    String systemName = p.getFileName().toString();
+        Parallel.mapInOrder(DETECTION_POOL, systemPaths, p -> {
+            String systemName = p.getFileName().toString();
 
-                    List<PatternEntry> inputs = constraints.getOrDefault(systemName, Collections.emptyList());
+            List<PatternEntry> inputs = constraints.getOrDefault(systemName, Collections.emptyList());
 
-                    if (inputs.isEmpty()) {
-                        return null;
-                    }
+            if (!inputs.isEmpty()) {
+                PatternEntry[] patternInputs = inputs.toArray(new PatternEntry[0]);
 
-                    PatternEntry[] patternInputs = inputs.toArray(new PatternEntry[0]);
+                consumer.accept(PatternDetector.create(systemName, infoMap.get(systemName), true,
+                        tempDir, sourcesPath)
+                        .detectPatterns(patternInputs));
+            }
 
-                    return PatternDetector.create(systemName, infoMap.get(systemName), true,
-                            tempDir, sourcesPath)
-                            .detectPatterns(patternInputs);
-                })
-                .filter(Objects::nonNull);
+            return null;
+        }, threads);
     }
 }
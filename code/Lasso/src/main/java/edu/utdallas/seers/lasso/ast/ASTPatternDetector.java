@@ -9,42 +9,72 @@ import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.opencsv.bean.CsvBindByName;
 import edu.utdallas.seers.file.JavaFileWalker;
 import edu.utdallas.seers.lasso.ast.matcher.PatternInstance;
 import edu.utdallas.seers.lasso.ast.matcher.PatternMatcher;
 import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.PatternType;
+import edu.utdallas.seers.parameter.Options;
 import edu.utdallas.seers.stream.PairSeq;
 import org.jooq.lambda.Unchecked;
+import org.jooq.lambda.tuple.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
 public class ASTPatternDetector {
 
+    /**
+     * Must be increased when a change to the detector or its matchers changes the patterns that
+     * are found, so that cached detections are discarded.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Skipped files by project and file, so that a file restored from a {@link DetectionArtifact}
+     * is not listed twice.
+     */
+    private static final Map<Tuple2<String, String>, SkippedFile> skippedFiles = new ConcurrentHashMap<>();
+
     private static final Set<String> SOURCE_ROOT_NAMES = new HashSet<>(Arrays.asList(
             "src", "main", "java", "java-deprecated", "sources", "toolsrc"
     ));
 
-    final JavaParser parser;
     final ASTPatternDetector.AggregatedPatternMatcher matcher = new ASTPatternDetector.AggregatedPatternMatcher();
     private final Logger logger = LoggerFactory.getLogger(ASTPatternDetector.class);
+    private final String projectName;
     private final Path projectPath;
+    private final ParserConfiguration parserConfiguration;
     private final Set<Path> excludedPaths;
+    /**
+     * Replaced along with the parse thread when a parse is abandoned, since the abandoned thread
+     * may still be using it.
+     */
+    private JavaParser parser;
+    private ExecutorService parseExecutor;
     private int counter = 0;
 
-    private ASTPatternDetector(Path projectPath, JavaParser parser, Set<Path> excludedPaths) {
+    private ASTPatternDetector(String projectName, Path projectPath, ParserConfiguration parserConfiguration,
+                               Set<Path> excludedPaths) {
+        this.projectName = projectName;
         this.projectPath = projectPath;
-        this.parser = parser;
+        this.parserConfiguration = parserConfiguration;
         this.excludedPaths = excludedPaths;
+        parser = new JavaParser(parserConfiguration);
+        parseExecutor = createParseExecutor();
     }
 
     public static PairSeq<Path, Stream<PatternInstance>> detect(Path sourcesDir, String projectName, Predicate<Path> pathFilter) {
@@ -83,11 +113,11 @@ public class ASTPatternDetector {
 
         // TODO missing type resolution from libraries. Could replace src resolution with the project jar + dependency jars
         CombinedTypeSolver solver = new CombinedTypeSolver(typeSolvers.toArray(new TypeSolver[0]));
-        JavaParser parser = new JavaParser(new ParserConfiguration()
-                .setSymbolResolver(new JavaSymbolSolver(solver))
-        );
+        var parserConfiguration = new ParserConfiguration()
+                .setSymbolResolver(new JavaSymbolSolver(solver));
 
-        ASTPatternDetector astPatternDetector = new ASTPatternDetector(projectDir, parser, excludedPaths);
+        ASTPatternDetector astPatternDetector =
+                new ASTPatternDetector(projectName, projectDir, parserConfiguration, excludedPaths);
         var walk =
                 JavaFileWalker.walk(astPatternDetector.projectPath, astPatternDetector.excludedPaths)
                         .filter(pathFilter);
@@ -99,6 +129,62 @@ public class ASTPatternDetector {
         );
     }
 
+    /**
+     * @return Identifies the patterns that the detector finds: its version and the class of the
+     * matcher of each pattern type.
+     */
+    public static String getDetectorKey() {
+        return VERSION + ";" + Arrays.stream(PatternType.values())
+                .map(t -> t + "=" + t.getMatcher().getClass().getName())
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * @return Files that were skipped during detection because they exceeded their parse deadline
+     * or {@link ParseBudget}, or overflowed the stack. Includes the files skipped in previous runs
+     * whose detections were restored from a {@link DetectionArtifact} in this run.
+     */
+    public static List<SkippedFile> getSkippedFiles() {
+        return skippedFiles.values().stream()
+                .sorted(Comparator.comparing((SkippedFile f) -> f.project).thenComparing(f -> f.file))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param project Project name.
+     * @param file    Path of the file relative to the sources of the project.
+     * @return Why the file was skipped, if it was.
+     */
+    static Optional<String> findSkipReason(String project, String file) {
+        return Optional.ofNullable(skippedFiles.get(tuple(project, file)))
+                .map(f -> f.reason);
+    }
+
+    /**
+     * Records a file that was skipped when the detections of a {@link DetectionArtifact} were
+     * created.
+     */
+    static void recordSkippedFile(String project, String file, String reason) {
+        skippedFiles.put(tuple(project, file), new SkippedFile(project, file, reason));
+    }
+
+    /**
+     * Forgets all skipped files, so that tests can check which ones are recorded again.
+     */
+    static void clearSkippedFiles() {
+        skippedFiles.clear();
+    }
+
+    private static ExecutorService createParseExecutor() {
+        var executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            var thread = new Thread(r, "pattern-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private ClassLocation extractClassLocation(CompilationUnit compilationUnit) {
         var storage = compilationUnit.getStorage().orElseThrow();
         String fileName = storage.getFileName();
@@ -110,27 +196,115 @@ public class ASTPatternDetector {
         return new ClassLocation(storage.getPath(), packagePath);
     }
 
+    /**
+     * Matches all patterns in the file. Files are skipped and recorded in
+     * {@link #getSkippedFiles()} if parsing does not finish before the deadline (see
+     * {@link #parse(Path)}), if traversing and matching exceed their {@link ParseBudget}, or if
+     * any of them overflows the stack.
+     *
+     * @param file Java file.
+     * @return All pattern instances in the file.
+     * @throws IOException If the file cannot be read.
+     */
     public Stream<PatternInstance> extractPatterns(Path file) throws IOException {
-        ParseResult<CompilationUnit> result = parser.parse(file);
+        skippedFiles.remove(tuple(projectName, projectPath.relativize(file).toString()));
+        ParseBudget budget = null;
+        List<PatternInstance> instances;
 
-        if (result.getResult().isEmpty()) {
-            logger.warn("Invalid Java file: {}", file);
-            return Stream.empty();
-        }
+        try {
+            ParseResult<CompilationUnit> result = parse(file);
+            // The parse ran on another thread, so the budget only covers what follows
+            budget = ParseBudget.start();
 
-        CompilationUnit compilationUnit = result.getResult().get();
-        if (++counter % 200 == 0) {
-            logger.info("Processed {} Java files...", counter);
+            if (result.getResult().isEmpty()) {
+                logger.warn("Invalid Java file: {}", file);
+                return Stream.empty();
+            }
+
+            CompilationUnit compilationUnit = result.getResult().get();
+            if (++counter % 200 == 0) {
+                logger.info("Processed {} Java files...", counter);
+            }
+
+            ClassLocation location = extractClassLocation(compilationUnit);
+            // Collected here so that the budget covers the matching
+            instances = matcher.match(compilationUnit, location, budget)
+                    .collect(Collectors.toList());
+        } catch (ParseBudget.ExceededException e) {
+            return skip(file, "Budget exceeded: " + e.getMessage(), budget);
+        } catch (StackOverflowError e) {
+            return skip(file, "Stack overflow", budget);
         }
 
-        ClassLocation location = extractClassLocation(compilationUnit);
-        if (location.packagePath.endsWith("log4j/core/tools/picocli/CommandLine.java") ||
-                location.packagePath.endsWith("org/apache/ibatis/io/JBoss6VFS.java")) {
-            // FIXME find why it causes stackoverflow
-            return Stream.empty();
+        return instances.stream();
+    }
+
+    /**
+     * Parses the file on the parse thread and waits for it at most for the time budget in
+     * {@link Options}, in wall-clock time. JavaParser does not check for interrupts, so a parse
+     * that misses the deadline cannot be stopped. It is abandoned instead: its thread is a daemon
+     * that keeps running until the parse returns, and the detector continues with a new thread
+     * and parser.
+     *
+     * @param file Java file.
+     * @return Parse result.
+     * @throws IOException                  If the file cannot be read.
+     * @throws ParseBudget.ExceededException If the deadline is missed.
+     */
+    private ParseResult<CompilationUnit> parse(Path file) throws IOException {
+        int timeBudget = Options.getInstance().getParseTimeBudget();
+        var currentParser = parser;
+        var task = parseExecutor.submit(() -> currentParser.parse(file));
+
+        try {
+            return timeBudget > 0 ?
+                    task.get(timeBudget, TimeUnit.MILLISECONDS) :
+                    task.get();
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            parseExecutor.shutdownNow();
+            parseExecutor = createParseExecutor();
+            parser = new JavaParser(parserConfiguration);
+            throw new ParseBudget.ExceededException(String.format("parsing took more than %d ms", timeBudget));
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + file);
         }
+    }
 
-        return matcher.match(compilationUnit, location);
+    /**
+     * @param budget Budget of the traversal, {@code null} if the file was skipped while parsing.
+     */
+    private Stream<PatternInstance> skip(Path file, String reason, ParseBudget budget) {
+        logger.warn("Skipping {} after {} nodes. {}", file, budget == null ? 0 : budget.getNodes(), reason);
+        recordSkippedFile(projectName, projectPath.relativize(file).toString(), reason);
+        return Stream.empty();
+    }
+
+    public static class SkippedFile {
+        @CsvBindByName(column = "Project")
+        public final String project;
+        @CsvBindByName(column = "File")
+        public final String file;
+        @CsvBindByName(column = "Reason")
+        public final String reason;
+
+        private SkippedFile(String project, String file, String reason) {
+            this.project = project;
+            this.file = file;
+            this.reason = reason;
+        }
     }
 
     /**
@@ -151,9 +325,9 @@ public class ASTPatternDetector {
                         PatternType::getMatcher
                 ));
 
-        public Stream<PatternInstance> match(CompilationUnit unit, ClassLocation fileName) {
+        public Stream<PatternInstance> match(CompilationUnit unit, ClassLocation fileName, ParseBudget budget) {
             // TODO must make sure only one pattern matches each node
-            return unit.stream()
+            return NodeTraversal.preOrder(unit, budget)
                     .flatMap(n -> matchers.values().stream()
                             .flatMap(m -> n.accept(m, fileName).stream())
                     );
@@ -0,0 +1,38 @@
+package edu.utdallas.seers.lasso.ast;
+
+import edu.utdallas.seers.lasso.data.entity.ASTPattern;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A pattern found by the detector with the text around it, which is extracted from the AST at
+ * detection time so that the AST does not need to be kept or parsed again.
+ */
+public class DetectedPattern {
+
+    public final ASTPattern match;
+    private final TextSpan.Location location;
+    private final List<TextSpan> blockSpans;
+
+    DetectedPattern(ASTPattern match, TextSpan.Location location, List<TextSpan> blockSpans) {
+        this.match = match;
+        this.location = location;
+        this.blockSpans = blockSpans;
+    }
+
+    /**
+     * @return Location of the first text span in the lines of the pattern, or empty if there is no
+     * text in those lines.
+     */
+    public Optional<TextSpan.Location> getLocation() {
+        return Optional.ofNullable(location);
+    }
+
+    /**
+     * @return Text in the block that the pattern controls, if it is a condition.
+     */
+    public List<TextSpan> getBlockSpans() {
+        return blockSpans;
+    }
+}
@@ -0,0 +1,584 @@
+package edu.utdallas.seers.lasso.ast;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithCondition;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import com.github.javaparser.ast.visitor.GenericVisitorWithDefaults;
+import com.google.gson.Gson;
+import edu.utdallas.seers.file.JavaFileWalker;
+import edu.utdallas.seers.json.JSON;
+import edu.utdallas.seers.lasso.ast.matcher.PatternInstance;
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.data.entity.ASTPattern;
+import edu.utdallas.seers.lasso.data.entity.NameValueASTPattern;
+import edu.utdallas.seers.lasso.data.entity.ValueASTPattern;
+import edu.utdallas.seers.parameter.Options;
+import edu.utdallas.seers.stream.PairSeq;
+import org.jooq.lambda.Unchecked;
+import org.jooq.lambda.tuple.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Patterns found by the {@link ASTPatternDetector} in a project, stored so that the detector only
+ * runs once for all of their consumers. The file has the following sections, in order:
+ * <ol>
+ *     <li>Header: magic number, version and {@link ASTPatternDetector#getDetectorKey() detector
+ *     key}.</li>
+ *     <li>One section for each Java file, with its path, modification time, the reason why the
+ *     detector skipped it if it did, the length of the rest of the section, and its
+ *     {@link DetectedPattern}s.</li>
+ *     <li>End marker.</li>
+ * </ol>
+ * When the artifact is opened it is rebuilt if it was created with a different detector key.
+ * Otherwise, only the files that were added or modified since it was written are detected again.
+ * Skipped files are recorded in {@link ASTPatternDetector#getSkippedFiles()} whenever the artifact
+ * is opened, also when it is reused.
+ */
+public class DetectionArtifact {
+
+    static final String EXTENSION = ".detection";
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionArtifact.class);
+
+    private static final int MAGIC = 0x4c444554;
+    private static final int VERSION = 2;
+
+    /**
+     * Written as the index of the class of each pattern.
+     */
+    private static final List<Class<? extends ASTPattern>> PATTERN_CLASSES =
+            Arrays.asList(ASTPattern.class, ValueASTPattern.class, NameValueASTPattern.class);
+
+    private static final Gson gson = JSON.createGson(new PatternStore.Supplier());
+
+    private final Path path;
+    private final Path projectDir;
+    private final String detectorKey;
+
+    private DetectionArtifact(Path path, Path projectDir, String detectorKey) {
+        this.path = path;
+        this.projectDir = projectDir;
+        this.detectorKey = detectorKey;
+    }
+
+    /**
+     * Opens the artifact of the system, creating or updating it if needed.
+     *
+     * @param sourcesDir  Path with sources for all systems.
+     * @param projectName Name of the system.
+     * @param cachePath   Path where artifacts are stored.
+     * @return The artifact.
+     */
+    public static DetectionArtifact open(Path sourcesDir, String projectName, Path cachePath) {
+        return open(sourcesDir, projectName, cachePath, ASTPatternDetector.getDetectorKey());
+    }
+
+    static DetectionArtifact open(Path sourcesDir, String projectName, Path cachePath, String detectorKey) {
+        var projectDir = sourcesDir.resolve(projectName).resolve("sources");
+        var artifact = new DetectionArtifact(cachePath.resolve(projectName + EXTENSION), projectDir, detectorKey);
+        var fileTimes = artifact.findFileTimes();
+
+        Map<String, Long> storedTimes = null;
+        if (Files.exists(artifact.path) && !Options.getInstance().isIgnoreCache()) {
+            storedTimes = artifact.readFileTimes();
+        }
+
+        if (fileTimes.equals(storedTimes)) {
+            logger.info("Using detection artifact at {}", artifact.path);
+        } else {
+            var kept = storedTimes == null ? Collections.<String, Long>emptyMap() : storedTimes;
+            var outdated = fileTimes.entrySet().stream()
+                    .filter(e -> !e.getValue().equals(kept.get(e.getKey())))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            logger.info("Detecting patterns in {} of {} files for {}", outdated.size(), fileTimes.size(), artifact.path);
+            artifact.update(fileTimes, outdated, !kept.isEmpty(), sourcesDir, projectName);
+        }
+
+        artifact.recordSkippedFiles(projectName);
+
+        return artifact;
+    }
+
+    /**
+     * Reads the patterns of the files that pass the filter, in the order they were written. The
+     * returned stream must be closed.
+     *
+     * @param fileFilter Selects files. The patterns of other files are not decoded.
+     * @return Each file with its patterns.
+     */
+    public PairSeq<Path, List<DetectedPattern>> read(Predicate<Path> fileFilter) {
+        DataInputStream input = null;
+        try {
+            input = openInput();
+            if (!readHeader(input)) {
+                throw new IllegalStateException("Invalid detection artifact or version: " + path);
+            }
+        } catch (IOException e) {
+            closeQuietly(input);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(input);
+            throw e;
+        }
+
+        var sections = new SectionReader(input, fileFilter);
+        return PairSeq.seq(StreamSupport.stream(sections, false)
+                .onClose(Unchecked.runnable(input::close)));
+    }
+
+    /**
+     * Reads only the file names of the sections.
+     *
+     * @return Position of each file of the artifact, relative to the project, in the order that
+     * {@link #read(Predicate)} returns the files.
+     */
+    public Map<String, Integer> getFileRanks() {
+        var ranks = new HashMap<String, Integer>();
+
+        try (var input = openInput()) {
+            if (!readHeader(input)) {
+                throw new IllegalStateException("Invalid detection artifact or version: " + path);
+            }
+
+            forEachSection(input, s -> ranks.put(s.file, ranks.size()), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return ranks;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    private Map<String, Long> findFileTimes() {
+        try (var files = JavaFileWalker.walk(projectDir, ConstraintLoader.loadExclusions(projectDir))) {
+            return files.collect(Collectors.toMap(
+                    this::toKey,
+                    Unchecked.function(f -> Files.getLastModifiedTime(f).toMillis()),
+                    (t1, t2) -> t1,
+                    LinkedHashMap::new
+            ));
+        }
+    }
+
+    /**
+     * @return Modification time of each file in the artifact, or {@code null} if it was written
+     * by a different version or detector.
+     */
+    private Map<String, Long> readFileTimes() {
+        var times = new HashMap<String, Long>();
+
+        try (var input = openInput()) {
+            if (!readHeader(input)) {
+                logger.info("Detection artifact at {} is outdated", path);
+                return null;
+            }
+
+            forEachSection(input, s -> times.put(s.file, s.time), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return times;
+    }
+
+    /**
+     * Records the files that were skipped when the existing artifact of the system was created,
+     * without detecting any patterns. Used when the consumers of the artifact are cached and do
+     * not open it.
+     *
+     * @param projectName Name of the system.
+     * @param cachePath   Path where artifacts are stored.
+     */
+    public static void recordSkippedFiles(String projectName, Path cachePath) {
+        var artifact = new DetectionArtifact(cachePath.resolve(projectName + EXTENSION), null,
+                ASTPatternDetector.getDetectorKey());
+        if (Files.exists(artifact.path)) {
+            artifact.recordSkippedFiles(projectName);
+        }
+    }
+
+    private void recordSkippedFiles(String projectName) {
+        try (var input = openInput()) {
+            if (!readHeader(input)) {
+                return;
+            }
+            forEachSection(input, s -> {
+                if (s.skipReason != null) {
+                    ASTPatternDetector.recordSkippedFile(projectName, s.file, s.skipReason);
+                }
+            }, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a new artifact that keeps the sections of the files that did not change and detects
+     * the patterns of the outdated files.
+     *
+     * @param existing Whether the current artifact is valid, so that its sections can be kept.
+     */
+    private void update(Map<String, Long> fileTimes, Set<String> outdated, boolean existing,
+                        Path sourcesDir, String projectName) {
+        var textExtractor = new JavaTextExtractor();
+
+        Path tempPath = null;
+        try {
+            var parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // Unique, so that concurrent updates of the same artifact do not share it
+            tempPath = Files.createTempFile(parent, "." + path.getFileName(), ".tmp");
+
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeUTF(detectorKey);
+
+                // Sections are copied without decoding them
+                if (existing) {
+                    try (var input = openInput()) {
+                        readHeader(input);
+                        forEachSection(input, Unchecked.consumer(s -> {
+                            if (fileTimes.containsKey(s.file) && !outdated.contains(s.file)) {
+                                writeSection(output, s.file, s.time, s.skipReason, s.data);
+                            }
+                        }), false);
+                    }
+                }
+
+                ASTPatternDetector.detect(sourcesDir, projectName, f -> outdated.contains(toKey(f)))
+                        .forEachOrdered(Unchecked.biConsumer((f, ps) -> {
+                            var file = toKey(f);
+                            var data = encode(ps.collect(Collectors.toList()), textExtractor);
+                            writeSection(output, file, fileTimes.get(file),
+                                    ASTPatternDetector.findSkipReason(projectName, file).orElse(null), data);
+                        }));
+
+                output.writeBoolean(false);
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(tempPath);
+        }
+    }
+
+    private String toKey(Path file) {
+        return projectDir.relativize(file).toString();
+    }
+
+    private DataInputStream openInput() throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    private boolean readHeader(DataInputStream input) throws IOException {
+        return input.readInt() == MAGIC &&
+                input.readInt() == VERSION &&
+                input.readUTF().equals(detectorKey);
+    }
+
+    /**
+     * @param skipData If {@code true}, only the file and time of the sections are read.
+     */
+    private static void forEachSection(DataInputStream input, Consumer<Section> action, boolean skipData)
+            throws IOException {
+        Section section;
+        while ((section = readSection(input, f -> !skipData)) != null) {
+            action.accept(section);
+        }
+    }
+
+    /**
+     * @param dataFilter Selects the files whose data is read. Other sections are skipped.
+     * @return The next section or {@code null} if there are no more sections.
+     */
+    private static Section readSection(DataInputStream input, Predicate<String> dataFilter) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+
+        var file = input.readUTF();
+        var time = input.readLong();
+        var skipReason = input.readBoolean() ? input.readUTF() : null;
+        var data = new byte[input.readInt()];
+        if (dataFilter.test(file)) {
+            input.readFully(data);
+            return new Section(file, time, skipReason, data);
+        }
+
+        int skipped = 0;
+        while (skipped < data.length) {
+            int bytes = input.skipBytes(data.length - skipped);
+            if (bytes <= 0) {
+                throw new EOFException();
+            }
+            skipped += bytes;
+        }
+
+        return new Section(file, time, skipReason, null);
+    }
+
+    private static void writeSection(DataOutputStream output, String file, long time, String skipReason, byte[] data)
+            throws IOException {
+        output.writeBoolean(true);
+        output.writeUTF(file);
+        output.writeLong(time);
+        output.writeBoolean(skipReason != null);
+        if (skipReason != null) {
+            output.writeUTF(skipReason);
+        }
+        output.writeInt(data.length);
+        output.write(data);
+    }
+
+    /**
+     * Extracts the text of all patterns of a file while its AST is still available.
+     */
+    private static byte[] encode(List<PatternInstance> instances, JavaTextExtractor textExtractor) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var output = new DataOutputStream(bytes);
+        output.writeInt(instances.size());
+
+        if (instances.isEmpty()) {
+            return bytes.toByteArray();
+        }
+
+        var compilationUnit = instances.get(0).matchedNode.findCompilationUnit().orElseThrow();
+        var lineSpans = textExtractor.extractText(compilationUnit)
+                .collect(Collectors.groupingBy(TextSpan::getLine));
+
+        for (PatternInstance instance : instances) {
+            var match = instance.match;
+            output.writeByte(PATTERN_CLASSES.indexOf(match.getClass()));
+            writeString(output, gson.toJson(match, match.getClass()));
+
+            var location = match.getLines().stream()
+                    .flatMap(l -> lineSpans.getOrDefault(l, Collections.emptyList()).stream())
+                    .findFirst()
+                    .map(TextSpan::getLocation)
+                    .orElse(null);
+            writeLocation(output, location);
+
+            var blockSpans = findBlockForPattern(instance.matchedNode, null).stream()
+                    .flatMap(textExtractor::extractFromNode)
+                    .collect(Collectors.toList());
+            output.writeInt(blockSpans.size());
+            for (TextSpan span : blockSpans) {
+                output.writeByte(span.getType().ordinal());
+                output.writeBoolean(span.docComment);
+                output.writeInt(span.getLine());
+                writeLocation(output, span.getLocation());
+                writeString(output, span.getText());
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static List<DetectedPattern> decode(byte[] data) throws IOException {
+        var input = new DataInputStream(new ByteArrayInputStream(data));
+        int size = input.readInt();
+        var patterns = new ArrayList<DetectedPattern>(size);
+
+        for (int i = 0; i < size; i++) {
+            var patternClass = PATTERN_CLASSES.get(input.readByte());
+            var match = gson.fromJson(readString(input), patternClass);
+            var location = readLocation(input);
+
+            int spanCount = input.readInt();
+            var blockSpans = new ArrayList<TextSpan>(spanCount);
+            for (int j = 0; j < spanCount; j++) {
+                var type = TextSpan.Type.values()[input.readByte()];
+                var docComment = input.readBoolean();
+                var line = input.readInt();
+                var spanLocation = readLocation(input);
+                var text = readString(input);
+
+                blockSpans.add(type == TextSpan.Type.COMMENT ?
+                        TextSpan.createCommentSpan(spanLocation, line, text, docComment) :
+                        new TextSpan(type, spanLocation, line, text));
+            }
+
+            patterns.add(new DetectedPattern(match, location, blockSpans));
+        }
+
+        return patterns;
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        var bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLocation(DataOutputStream output, TextSpan.Location location) throws IOException {
+        output.writeBoolean(location != null);
+        if (location != null) {
+            writeString(output, location.toString());
+        }
+    }
+
+    private static TextSpan.Location readLocation(DataInputStream input) throws IOException {
+        return input.readBoolean() ? TextSpan.Location.fromString(readString(input)) : null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.warn("Could not close " + closeable, e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete " + path, e);
+        }
+    }
+
+    /**
+     * Finds the statements whose execution depends on the condition that contains the node.
+     *
+     * @param currentNode  Node to start from.
+     * @param previousNode Child of the current node that was visited before, if any.
+     * @return The statements or an empty list if the node is not part of a condition.
+     */
+    static List<Statement> findBlockForPattern(Node currentNode, Node previousNode) {
+        if (currentNode instanceof BodyDeclaration) return Collections.emptyList();
+
+        if (currentNode instanceof Statement) {
+            // TODO switch?
+            if (!(currentNode instanceof NodeWithCondition)) {
+                return Collections.emptyList();
+            }
+
+            if (previousNode == null) {
+                if (!(currentNode instanceof IfStmt)) throw new IllegalArgumentException();
+                return currentNode.accept(new BodyExtractor(), null);
+            } else {
+                // TODO none of the ones in the data are in FOR but it's possible
+                if (((NodeWithCondition<?>) currentNode).getCondition() == previousNode) {
+                    return currentNode.accept(new BodyExtractor(), null);
+                } else {
+                    return Collections.emptyList();
+                }
+            }
+        }
+
+        return findBlockForPattern(currentNode.getParentNode().orElseThrow(), currentNode);
+    }
+
+    private static class Section {
+        private final String file;
+        private final long time;
+        /**
+         * {@code null} if the detector did not skip the file.
+         */
+        private final String skipReason;
+        /**
+         * {@code null} if the section was skipped.
+         */
+        private final byte[] data;
+
+        private Section(String file, long time, String skipReason, byte[] data) {
+            this.file = file;
+            this.time = time;
+            this.skipReason = skipReason;
+            this.data = data;
+        }
+    }
+
+    private class SectionReader extends Spliterators.AbstractSpliterator<Tuple2<Path, List<DetectedPattern>>> {
+        private final DataInputStream input;
+        private final Predicate<Path> fileFilter;
+
+        private SectionReader(DataInputStream input, Predicate<Path> fileFilter) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.input = input;
+            this.fileFilter = fileFilter;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Tuple2<Path, List<DetectedPattern>>> action) {
+            try {
+                Section section;
+                do {
+                    section = readSection(input, f -> fileFilter.test(projectDir.resolve(f)));
+                    if (section == null) {
+                        return false;
+                    }
+                } while (section.data == null);
+
+                action.accept(tuple(projectDir.resolve(section.file), decode(section.data)));
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class BodyExtractor extends GenericVisitorWithDefaults<List<Statement>, Void> {
+        @Override
+        public List<Statement> visit(DoStmt n, Void arg) {
+            return Collections.singletonList(n.getBody());
+        }
+
+        @Override
+        public List<Statement> visit(IfStmt n, Void arg) {
+            return Stream.of(n.getThenStmt(), n.getElseStmt().orElse(null))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<Statement> visit(WhileStmt n, Void arg) {
+            return Collections.singletonList(n.getBody());
+        }
+
+        @Override
+        public List<Statement> defaultAction(Node n, Void arg) {
+            throw new IllegalStateException("Invalid node: " + n.getClass());
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package edu.utdallas.seers.lasso.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits Java source into tokens and comments. Only what is needed to find declarations and
+ * statements is distinguished, e.g. all operators are {@link Kind#OPERATOR}. Lines and columns
+ * are 1-based and counted the same way as in JavaParser, with tabs taking one column.
+ */
+class JavaLexer {
+    static final Set<String> KEYWORDS = Set.of(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+            "const", "continue", "default", "do", "double", "else", "enum", "extends", "final",
+            "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+            "interface", "long", "native", "new", "package", "private", "protected", "public",
+            "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null"
+    );
+
+    /**
+     * Longest first, so that the first match is the right one.
+     */
+    private static final String[] OPERATORS = {
+            ">>>=", "<<=", ">>=", ">>>", "...", "->", "::", "++", "--", "&&", "||", "==", "!=", "<=",
+            ">=", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<", ">>"
+    };
+
+    private final String source;
+    private final List<Token> tokens = new ArrayList<>();
+    private final List<Token> comments = new ArrayList<>();
+    private int position = 0;
+    private int line = 1;
+    private int column = 1;
+
+    private JavaLexer(String source) {
+        this.source = source;
+    }
+
+    static JavaLexer tokenize(String source) {
+        var lexer = new JavaLexer(source);
+        lexer.run();
+        return lexer;
+    }
+
+    List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return Comments in order of appearance.
+     */
+    List<Token> getComments() {
+        return comments;
+    }
+
+    private void run() {
+        int length = source.length();
+
+        while (position < length) {
+            char c = source.charAt(position);
+
+            if (c == '\n' || c == '\r' || c == ' ' || c == '\t' || c == '\f') {
+                advance();
+            } else if (c == '/' && peek(1) == '/') {
+                lineComment();
+            } else if (c == '/' && peek(1) == '*') {
+                blockComment();
+            } else if (Character.isJavaIdentifierStart(c)) {
+                word();
+            } else if (Character.isDigit(c) || c == '.' && Character.isDigit(peek(1))) {
+                number();
+            } else if (c == '"') {
+                if (peek(1) == '"' && peek(2) == '"') {
+                    textBlock();
+                } else {
+                    quoted(Kind.STRING, '"');
+                }
+            } else if (c == '\'') {
+                quoted(Kind.CHAR, '\'');
+            } else {
+                operator();
+            }
+        }
+    }
+
+    private char peek(int offset) {
+        int index = position + offset;
+        return index < source.length() ? source.charAt(index) : '\0';
+    }
+
+    /**
+     * Moves one character forward, keeping track of lines. {@code \r\n} counts as one line break.
+     */
+    private void advance() {
+        char c = source.charAt(position++);
+
+        if (c == '\n' || c == '\r' && peek(0) != '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+    }
+
+    private void advance(int count) {
+        for (int i = 0; i < count; i++) {
+            advance();
+        }
+    }
+
+    private Token startToken(Kind kind) {
+        return new Token(kind, line, column, position);
+    }
+
+    /**
+     * The end position is the last character of the token, like in JavaParser.
+     */
+    private Token endToken(Token token, List<Token> list) {
+        token.endLine = line;
+        token.endColumn = column - 1;
+        token.text = source.substring(token.offset, position);
+        list.add(token);
+        return token;
+    }
+
+    private void lineComment() {
+        var token = startToken(Kind.LINE_COMMENT);
+        while (position < source.length() && source.charAt(position) != '\n' && source.charAt(position) != '\r') {
+            advance();
+        }
+        endToken(token, comments).content = token.text.substring(2);
+    }
+
+    private void blockComment() {
+        // "/**/" is an empty block comment, not Javadoc
+        var kind = peek(2) == '*' && peek(3) != '/' ? Kind.JAVADOC_COMMENT : Kind.BLOCK_COMMENT;
+        var token = startToken(kind);
+        advance(2);
+
+        while (position < source.length() && !(source.charAt(position) == '*' && peek(1) == '/')) {
+            advance();
+        }
+        if (position < source.length()) {
+            advance(2);
+        }
+
+        int contentStart = kind == Kind.JAVADOC_COMMENT ? 3 : 2;
+        endToken(token, comments);
+        int contentEnd = Math.max(contentStart, token.text.length() - (token.text.endsWith("*/") ? 2 : 0));
+        token.content = token.text.substring(contentStart, contentEnd);
+    }
+
+    private void word() {
+        var token = startToken(Kind.IDENTIFIER);
+        while (position < source.length() && Character.isJavaIdentifierPart(source.charAt(position))) {
+            advance();
+        }
+        endToken(token, tokens);
+
+        if (KEYWORDS.contains(token.text)) {
+            token.kind = Kind.KEYWORD;
+        }
+    }
+
+    private void number() {
+        var token = startToken(Kind.NUMBER);
+        char c = source.charAt(position);
+
+        if (c == '0' && (peek(1) == 'x' || peek(1) == 'X')) {
+            advance(2);
+            while (isHexDigit(peek(0)) || peek(0) == '_' || peek(0) == '.') {
+                advance();
+            }
+            if (peek(0) == 'p' || peek(0) == 'P') {
+                exponent();
+            }
+        } else if (c == '0' && (peek(1) == 'b' || peek(1) == 'B')) {
+            advance(2);
+            while (peek(0) == '0' || peek(0) == '1' || peek(0) == '_') {
+                advance();
+            }
+        } else {
+            digits();
+            // Allows "1.f" and "1.e5", but not a range of dots
+            char next = peek(1);
+            if (peek(0) == '.' && next != '.' &&
+                    (!Character.isJavaIdentifierStart(next) || "eEfFdD".indexOf(next) >= 0)) {
+                advance();
+                digits();
+            }
+            if (peek(0) == 'e' || peek(0) == 'E') {
+                exponent();
+            }
+        }
+
+        if ("lLfFdD".indexOf(peek(0)) >= 0 && peek(0) != '\0') {
+            advance();
+        }
+
+        endToken(token, tokens);
+    }
+
+    private void digits() {
+        while (Character.isDigit(peek(0)) || peek(0) == '_') {
+            advance();
+        }
+    }
+
+    private void exponent() {
+        advance();
+        if (peek(0) == '+' || peek(0) == '-') {
+            advance();
+        }
+        digits();
+    }
+
+    private boolean isHexDigit(char c) {
+        return Character.isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private void quoted(Kind kind, char quote) {
+        var token = startToken(kind);
+        advance();
+
+        while (position < source.length()) {
+            char c = source.charAt(position);
+            if (c == '\\') {
+                advance(Math.min(2, source.length() - position));
+            } else if (c == quote) {
+                advance();
+                break;
+            } else if (c == '\n' || c == '\r') {
+                // Unterminated literal, do not go past the line
+                break;
+            } else {
+                advance();
+            }
+        }
+
+        endToken(token, tokens);
+    }
+
+    private void textBlock() {
+        var token = startToken(Kind.TEXT_BLOCK);
+        advance(3);
+
+        while (position < source.length() && !(source.startsWith("\"\"\"", position))) {
+            advance(source.charAt(position) == '\\' ? Math.min(2, source.length() - position) : 1);
+        }
+        advance(Math.min(3, source.length() - position));
+
+        endToken(token, tokens);
+    }
+
+    private void operator() {
+        var token = startToken(Kind.OPERATOR);
+
+        int length = 1;
+        for (String operator : OPERATORS) {
+            if (source.startsWith(operator, position)) {
+                length = operator.length();
+                break;
+            }
+        }
+
+        advance(length);
+        endToken(token, tokens);
+    }
+
+    enum Kind {
+        IDENTIFIER,
+        KEYWORD,
+        NUMBER,
+        STRING,
+        CHAR,
+        TEXT_BLOCK,
+        OPERATOR,
+        LINE_COMMENT,
+        BLOCK_COMMENT,
+        JAVADOC_COMMENT
+    }
+
+    static class Token {
+        final int line;
+        final int column;
+        final int offset;
+        Kind kind;
+        String text;
+        int endLine;
+        int endColumn;
+        /**
+         * Only for comments, the text without the delimiters.
+         */
+        String content;
+
+        private Token(Kind kind, int line, int column, int offset) {
+            this.kind = kind;
+            this.line = line;
+            this.column = column;
+            this.offset = offset;
+        }
+
+        boolean is(String text) {
+            return this.text.equals(text);
+        }
+
+        boolean isComment() {
+            return kind == Kind.LINE_COMMENT || kind == Kind.BLOCK_COMMENT || kind == Kind.JAVADOC_COMMENT;
+        }
+
+        @Override
+        public String toString() {
+            return text + "@" + line + ":" + column;
+        }
+    }
+}
@@ -44,10 +44,10 @@ public class JavaTextExtractor {
         Predicate<Node> isComment = n -> n instanceof Comment;
 
         return Stream.concat(
-                node.stream()
+                NodeTraversal.preOrder(node, ParseBudget.unlimited())
                         .filter(isComment.negate())
                         .flatMap(n -> n.accept(nonCommentVisitor, javaPath).stream()),
-                node.stream()
+                NodeTraversal.preOrder(node, ParseBudget.unlimited())
                         .filter(isComment)
                         // TODO see that it is actually traversing comments
                         .distinct()
@@ -61,9 +61,9 @@ public class JavaTextExtractor {
         return Stream.concat(
                 // Skip package and import declarations
                 compilationUnit.getTypes().stream()
-                        .flatMap(Node::stream)
+                        .flatMap(t -> NodeTraversal.preOrder(t, ParseBudget.unlimited()))
                         .flatMap(n -> n.accept(nonCommentVisitor, javaPath).stream()),
-                compilationUnit.getAllComments().stream()
+                NodeTraversal.allComments(compilationUnit).stream()
                         // Comments can appear duplicated sometimes
                         // Shouldn't use distinct on a stream of arbitrary nodes because the comparison is very expensive
                         .distinct()
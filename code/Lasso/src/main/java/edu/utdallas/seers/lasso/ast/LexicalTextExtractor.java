@@ -0,0 +1,1548 @@
+package edu.utdallas.seers.lasso.ast;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import edu.utdallas.seers.lasso.ast.JavaLexer.Kind;
+import edu.utdallas.seers.lasso.ast.JavaLexer.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Extracts the same text spans as {@link JavaTextExtractor} from the tokens of a file, without
+ * building an AST or resolving types. Declarations and statements are found by following
+ * keywords and bracket depth, which is enough to assign the method and statement ranges that
+ * {@link LocationFinder} would assign, including the header ranges of control statements, the
+ * redirection of members of anonymous classes and enum constants, and the attribution of
+ * comments to the nodes that follow them.
+ * <p>
+ * Non-comment spans are in source order instead of JavaParser's child order, otherwise the spans
+ * are the same. Files with classes nested in anonymous classes or enum constants, whose names
+ * would have to be resolved, or with switch expressions, and files that cannot be followed, are
+ * extracted with {@link JavaTextExtractor}.
+ */
+public class LexicalTextExtractor {
+    private static final Set<String> MODIFIERS = Set.of(
+            "public", "protected", "private", "static", "final", "abstract", "native",
+            "synchronized", "transient", "volatile", "strictfp", "default"
+    );
+    private static final Set<String> PRIMITIVES = Set.of(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double", "void"
+    );
+    private static final Set<String> TYPE_KEYWORDS = Set.of("class", "interface", "enum");
+    /**
+     * Keywords that begin an expression node.
+     */
+    private static final Set<String> EXPRESSION_KEYWORDS = Set.of("new", "this", "super", "null", "true", "false");
+
+    private static final int STOP_SEMICOLON = 1;
+    private static final int STOP_COMMA = 2;
+    private static final int STOP_COLON = 4;
+    private static final int STOP_ARROW = 8;
+
+    private final Logger logger = LoggerFactory.getLogger(LexicalTextExtractor.class);
+
+    public Stream<TextSpan> extractText(Path file) throws IOException {
+        // Malformed input is replaced instead of failing, as JavaParser does
+        var source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+        try {
+            return new FileExtractor(source, file.getFileName().toString()).extract().stream();
+        } catch (UnsupportedException e) {
+            logger.debug("{} in {}, extracting from AST", e.getMessage(), file);
+            return new JavaTextExtractor().extractText(file);
+        } catch (RuntimeException e) {
+            logger.warn("Could not follow the structure of " + file + ", extracting from AST", e);
+            return new JavaTextExtractor().extractText(file);
+        }
+    }
+
+    /**
+     * Thrown for constructs that are followed, but that would not be located as the AST extractor
+     * does.
+     */
+    private static class UnsupportedException extends RuntimeException {
+        UnsupportedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private enum BodyKind {
+        NAMED,
+        ENUM,
+        ANNOTATION,
+        ANONYMOUS,
+        ENUM_CONSTANT
+    }
+
+    /**
+     * Declaration that names the location of a span. Callables have a range.
+     */
+    private static final class Owner {
+        final String className;
+        final String methodName;
+        final Scope scope = new Scope(this);
+        int begin = -1;
+        int end;
+
+        Owner(String className, String methodName) {
+            this.className = className;
+            this.methodName = methodName;
+        }
+    }
+
+    /**
+     * Location shared by tokens and comments. The statement range is set when the statement has
+     * been followed to the end.
+     */
+    private static final class Scope {
+        final Owner owner;
+        int begin = -1;
+        int end;
+        TextSpan.Location location;
+
+        Scope(Owner owner) {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Declarations and statements inside a callable or field.
+     */
+    private static final class Context {
+        final Owner owner;
+        /**
+         * Inside methods of anonymous classes and enum constants, everything is located where the
+         * class is declared, as {@link LocationFinder} does.
+         */
+        final Scope redirect;
+
+        Context(Owner owner, Scope redirect) {
+            this.owner = owner;
+            this.redirect = redirect;
+        }
+
+        Scope baseScope() {
+            return redirect != null ? redirect : owner.scope;
+        }
+
+        Scope newStatementScope() {
+            return redirect != null ? redirect : new Scope(owner);
+        }
+    }
+
+    private static final class Body {
+        final String className;
+        final BodyKind kind;
+        /**
+         * For anonymous classes and enum constants, where the body is declared.
+         */
+        final Scope outer;
+        /**
+         * Fields are also redirected when the anonymous class is in a redirected method.
+         */
+        final boolean redirectFields;
+        /**
+         * Methods of types nested in anonymous classes are also redirected.
+         */
+        final Scope anonymousOuter;
+
+        Body(String className, BodyKind kind, Scope outer, boolean redirectFields, Scope anonymousOuter) {
+            this.className = className;
+            this.kind = kind;
+            this.outer = outer;
+            this.redirectFields = redirectFields;
+            this.anonymousOuter = anonymousOuter;
+        }
+
+        Scope methodRedirect() {
+            return kind == BodyKind.ANONYMOUS || kind == BodyKind.ENUM_CONSTANT ? outer : anonymousOuter;
+        }
+    }
+
+    /**
+     * Stands for an AST node when attributing comments. Expressions are not followed, instead
+     * every token that can begin an expression node is a leaf part.
+     */
+    private static final class Part {
+        final int begin;
+        int end;
+        final Scope scope;
+        final List<Part> children = new ArrayList<>();
+        final boolean modifier;
+        /**
+         * Only for method declarations.
+         */
+        String methodName;
+        Comment comment;
+        List<Comment> orphans = Collections.emptyList();
+        /**
+         * Structural children and leaves, only built for parts that contain comments.
+         */
+        List<Part> allChildren;
+
+        Part(int begin, Scope scope) {
+            this(begin, scope, false);
+        }
+
+        Part(int begin, Scope scope, boolean modifier) {
+            this.begin = begin;
+            this.end = begin;
+            this.scope = scope;
+            this.modifier = modifier;
+        }
+
+        Part add(Part child) {
+            children.add(child);
+            return child;
+        }
+    }
+
+    private static final class Comment {
+        final Token token;
+        Part commented;
+
+        Comment(Token token) {
+            this.token = token;
+        }
+    }
+
+    private final class FileExtractor {
+        private final Token[] tokens;
+        private final int count;
+        private final List<Token> commentTokens;
+        private final Scope[] scopes;
+        /**
+         * Variable declarations repeat their type for each declarator.
+         */
+        private final int[] copies;
+        private final Owner fileOwner = new Owner(null, null);
+        private final Part root;
+        private final String primaryTypeName;
+        private final List<Part> types = new ArrayList<>();
+        /**
+         * Number of anonymous class and enum constant bodies being followed.
+         */
+        private int anonymousDepth;
+        private String packageName;
+        private String file;
+
+        FileExtractor(String source, String fileName) {
+            var lexer = JavaLexer.tokenize(source);
+            tokens = lexer.getTokens().toArray(new Token[0]);
+            count = tokens.length;
+            commentTokens = lexer.getComments();
+            scopes = new Scope[count];
+            copies = new int[count];
+            root = new Part(0, fileOwner.scope);
+            root.end = Math.max(count - 1, 0);
+            int dot = fileName.lastIndexOf('.');
+            primaryTypeName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        }
+
+        List<TextSpan> extract() {
+            compilationUnit();
+            file = (packageName != null ? packageName.replace(".", "/") + "/" : "") + primaryTypeName + ".java";
+
+            var spans = new ArrayList<TextSpan>();
+            for (Part type : types) {
+                for (int i = type.begin; i <= type.end; i++) {
+                    for (int copy = 0; copy <= copies[i]; copy++) {
+                        addSpan(i, spans);
+                    }
+                }
+            }
+
+            for (Comment comment : attributeComments()) {
+                addCommentSpans(comment, spans);
+            }
+
+            return spans;
+        }
+
+        // TOKENS
+
+        private boolean is(int i, String text) {
+            return i >= 0 && i < count && tokens[i].text.equals(text);
+        }
+
+        private String text(int i) {
+            return i >= 0 && i < count ? tokens[i].text : "";
+        }
+
+        private boolean isIdentifier(int i) {
+            return i >= 0 && i < count && tokens[i].kind == Kind.IDENTIFIER;
+        }
+
+        private boolean isTypeStart(int i) {
+            return i < count && tokens[i].kind == Kind.KEYWORD && TYPE_KEYWORDS.contains(tokens[i].text) ||
+                    is(i, "@") && is(i + 1, "interface");
+        }
+
+        /**
+         * Gives the scope to the tokens that do not have one yet. Nested constructs are followed
+         * before the ones that contain them, so they keep their own scopes.
+         */
+        private void fill(int begin, int end, Scope scope) {
+            for (int i = Math.max(begin, 0); i <= end && i < count; i++) {
+                if (scopes[i] == null) {
+                    scopes[i] = scope;
+                }
+            }
+        }
+
+        private void setRange(Scope scope, Context context, int begin, int end) {
+            if (scope != context.redirect) {
+                scope.begin = begin;
+                scope.end = Math.max(begin, end);
+            }
+        }
+
+        /**
+         * @return Index of the matching closing parenthesis.
+         */
+        private int matchParenthesis(int open) {
+            int depth = 0;
+            for (int i = open; i < count; i++) {
+                if (is(i, "(")) {
+                    depth++;
+                } else if (is(i, ")") && --depth == 0) {
+                    return i;
+                }
+            }
+
+            return count - 1;
+        }
+
+        private int matchParenthesisBackward(int close) {
+            int depth = 0;
+            for (int i = close; i >= 0; i--) {
+                if (is(i, ")")) {
+                    depth++;
+                } else if (is(i, "(") && --depth == 0) {
+                    return i;
+                }
+            }
+
+            return 0;
+        }
+
+        private int skipAnnotation(int i) {
+            i++;
+            while (isIdentifier(i) && is(i + 1, ".")) {
+                i += 2;
+            }
+            i++;
+
+            return is(i, "(") ? matchParenthesis(i) + 1 : i;
+        }
+
+        private int skipModifiers(int i) {
+            while (i < count) {
+                if (tokens[i].kind == Kind.KEYWORD && MODIFIERS.contains(tokens[i].text)) {
+                    i++;
+                } else if (is(i, "@") && !is(i + 1, "interface")) {
+                    i = skipAnnotation(i);
+                } else {
+                    break;
+                }
+            }
+
+            return i;
+        }
+
+        /**
+         * @return Index after the closing bracket, or -1 if the tokens are not type arguments,
+         * e.g. a less than operator.
+         */
+        private int typeArgumentsEnd(int open) {
+            int depth = 0;
+            for (int i = open; i < count && i < open + 256; i++) {
+                var token = tokens[i];
+                switch (token.text) {
+                    case "<":
+                        depth++;
+                        continue;
+                    case ">":
+                        depth--;
+                        break;
+                    case ">>":
+                        depth -= 2;
+                        break;
+                    case ">>>":
+                        depth -= 3;
+                        break;
+                    case ",":
+                    case ".":
+                    case "?":
+                    case "&":
+                    case "[":
+                    case "]":
+                    case "@":
+                    case "extends":
+                    case "super":
+                        continue;
+                    default:
+                        if (token.kind == Kind.IDENTIFIER || PRIMITIVES.contains(token.text)) {
+                            continue;
+                        }
+                        return -1;
+                }
+
+                if (depth <= 0) {
+                    return depth == 0 ? i + 1 : -1;
+                }
+            }
+
+            return -1;
+        }
+
+        private int skipType(int i) {
+            while (is(i, "@")) {
+                i = skipAnnotation(i);
+            }
+            i++;
+
+            while (i < count) {
+                if (is(i, "<")) {
+                    int end = typeArgumentsEnd(i);
+                    i = end > 0 ? end : i + 1;
+                } else if (is(i, ".")) {
+                    i += 2;
+                } else if (is(i, "[") && is(i + 1, "]")) {
+                    i += 2;
+                } else if (is(i, "@")) {
+                    i = skipAnnotation(i);
+                } else {
+                    break;
+                }
+            }
+
+            return i;
+        }
+
+        // DECLARATIONS
+
+        private void compilationUnit() {
+            int i = 0;
+            while (i < count) {
+                int j = skipModifiers(i);
+
+                if (is(j, "package") || is(j, "import")) {
+                    int end = j;
+                    while (end < count - 1 && !is(end, ";")) {
+                        end++;
+                    }
+
+                    if (is(j, "package")) {
+                        var name = new StringBuilder();
+                        for (int k = j + 1; k < end; k++) {
+                            name.append(tokens[k].text);
+                        }
+                        packageName = name.toString();
+                    }
+
+                    root.add(new Part(i, fileOwner.scope)).end = end;
+                    fill(i, end, fileOwner.scope);
+                    i = end + 1;
+                } else if (isTypeStart(j)) {
+                    int next = typeDeclaration(i, null, null, root);
+                    types.add(root.children.get(root.children.size() - 1));
+                    i = next;
+                } else {
+                    // Stray semicolons or module declarations
+                    fill(i, Math.max(i, j), fileOwner.scope);
+                    i = Math.max(i, j) + 1;
+                }
+            }
+        }
+
+        /**
+         * @return Index after the declaration.
+         */
+        private int typeDeclaration(int begin, String outerName, Scope anonymousOuter, Part parent) {
+            if (anonymousDepth > 0) {
+                throw new UnsupportedException("Class declared in anonymous class at line " + tokens[begin].line);
+            }
+
+            int j = skipModifiers(begin);
+            boolean annotation = is(j, "@");
+            int nameIndex = annotation ? j + 2 : j + 1;
+            String name = text(nameIndex);
+            String className = outerName != null ? outerName + "." + name :
+                    packageName != null ? packageName + "." + name : name;
+
+            var header = new Owner(className, null).scope;
+            var part = parent.add(new Part(begin, header));
+
+            int open = nameIndex + 1;
+            while (open < count && !is(open, "{")) {
+                open++;
+            }
+
+            BodyKind kind = annotation ? BodyKind.ANNOTATION : is(j, "enum") ? BodyKind.ENUM : BodyKind.NAMED;
+            int close = classBody(open, new Body(className, kind, null, false, anonymousOuter), part);
+
+            part.end = close;
+            fill(begin, close, header);
+
+            return close + 1;
+        }
+
+        /**
+         * @return Index of the closing brace.
+         */
+        private int classBody(int open, Body body, Part part) {
+            int i = open + 1;
+            if (body.kind == BodyKind.ENUM) {
+                i = enumConstants(i, body, part);
+            }
+
+            while (i < count && !is(i, "}")) {
+                int next = member(i, body, part);
+                i = Math.max(next, i + 1);
+            }
+
+            return Math.min(i, count - 1);
+        }
+
+        private int enumConstants(int i, Body body, Part part) {
+            var classOwner = new Owner(body.className, null);
+
+            while (i < count) {
+                if (is(i, ";")) {
+                    return i + 1;
+                } else if (is(i, "}")) {
+                    return i;
+                } else if (is(i, ",")) {
+                    i++;
+                    continue;
+                }
+
+                int begin = i;
+                while (is(i, "@")) {
+                    i = skipAnnotation(i);
+                }
+                if (!isIdentifier(i)) {
+                    return begin;
+                }
+                i++;
+
+                var scope = new Scope(classOwner);
+                var constant = part.add(new Part(begin, scope));
+                var context = new Context(classOwner, null);
+
+                if (is(i, "(")) {
+                    i = scan(i + 1, context, scope, constant, 0) + 1;
+                }
+                if (is(i, "{")) {
+                    var constantBody = new Body(body.className, BodyKind.ENUM_CONSTANT, scope, false, body.anonymousOuter);
+                    anonymousDepth++;
+                    i = classBody(i, constantBody, constant) + 1;
+                    anonymousDepth--;
+                }
+
+                setRange(scope, context, begin, i - 1);
+                constant.end = i - 1;
+                fill(begin, i - 1, scope);
+            }
+
+            return i;
+        }
+
+        /**
+         * @return Index after the member.
+         */
+        private int member(int begin, Body body, Part part) {
+            if (is(begin, ";")) {
+                return begin + 1;
+            }
+
+            if (is(begin, "{") || is(begin, "static") && is(begin + 1, "{")) {
+                return initializer(begin, body, part);
+            }
+
+            int i = skipModifiers(begin);
+            if (isTypeStart(i)) {
+                var anonymousOuter = body.kind == BodyKind.ANONYMOUS || body.kind == BodyKind.ENUM_CONSTANT ?
+                        body.outer :
+                        body.anonymousOuter;
+                return typeDeclaration(begin, body.className, anonymousOuter, part);
+            }
+
+            if (is(i, "<")) {
+                int end = typeArgumentsEnd(i);
+                i = end > 0 ? end : i + 1;
+            }
+
+            boolean constructor = isIdentifier(i) && is(i + 1, "(");
+            int nameIndex = constructor ? i : skipType(i);
+
+            if (is(nameIndex + 1, "(")) {
+                return callable(begin, nameIndex, constructor, body, part);
+            }
+
+            return field(begin, body, part);
+        }
+
+        private int initializer(int begin, Body body, Part part) {
+            boolean isStatic = is(begin, "static");
+            var owner = new Owner(body.className,
+                    isStatic ? LocationFinder.STATIC_INITIALIZER_TAG : LocationFinder.INITIALIZER_TAG);
+            var context = new Context(owner, body.methodRedirect());
+            var scope = context.baseScope();
+            var initializer = part.add(new Part(begin, scope));
+
+            int close = block(isStatic ? begin + 1 : begin, context, scope, initializer);
+
+            owner.begin = begin;
+            owner.end = close;
+            initializer.end = close;
+            fill(begin, close, scope);
+
+            return close + 1;
+        }
+
+        private int callable(int begin, int nameIndex, boolean constructor, Body body, Part part) {
+            var classOwner = new Owner(body.className, null);
+
+            if (body.kind == BodyKind.ANNOTATION && !constructor) {
+                // Annotation members are located like fields
+                var scope = new Scope(classOwner);
+                var member = part.add(new Part(begin, scope));
+                var context = new Context(classOwner, null);
+                int end = scan(begin, context, scope, member, STOP_SEMICOLON);
+
+                setRange(scope, context, begin, end);
+                member.end = end;
+                fill(begin, end, scope);
+
+                return end + 1;
+            }
+
+            var owner = new Owner(body.className, constructor ? LocationFinder.CONSTRUCTOR_TAG : text(nameIndex));
+            // Constructors cannot be declared in anonymous classes or enum constants
+            var context = new Context(owner, constructor ? null : body.methodRedirect());
+            var scope = context.baseScope();
+            var callable = part.add(new Part(begin, scope));
+            if (!constructor) {
+                callable.methodName = text(nameIndex);
+            }
+
+            int i = scan(nameIndex + 2, context, scope, callable, 0) + 1;
+            while (i < count && !is(i, "{") && !is(i, ";") && !is(i, "}")) {
+                i++;
+            }
+
+            int end = is(i, "{") ?
+                    block(i, context, scope, callable) :
+                    Math.min(i, count - 1);
+
+            owner.begin = begin;
+            owner.end = end;
+            callable.end = end;
+            fill(begin, end, scope);
+
+            return end + 1;
+        }
+
+        private int field(int begin, Body body, Part part) {
+            boolean inAnonymous = body.kind == BodyKind.ANONYMOUS || body.kind == BodyKind.ENUM_CONSTANT;
+            Scope scope;
+            Context context;
+
+            if (inAnonymous && body.redirectFields) {
+                scope = body.outer;
+                context = new Context(body.outer.owner, body.outer);
+            } else {
+                // Fields of anonymous classes are located in the method where the class is declared
+                var owner = inAnonymous ? body.outer.owner : new Owner(body.className, null);
+                scope = new Scope(owner);
+                context = new Context(owner, null);
+            }
+
+            var field = part.add(new Part(begin, scope));
+            int end = scan(begin, context, scope, field, STOP_SEMICOLON);
+            copyDeclarationType(begin, end);
+            if (!is(end, ";")) {
+                // Not a declaration, leave the closing brace for the body
+                end = Math.max(begin, end - 1);
+            }
+
+            setRange(scope, context, begin, end);
+            field.end = end;
+            fill(begin, end, scope);
+
+            return end + 1;
+        }
+
+        /**
+         * Each declarator of a variable declaration has its own copy of the type in the AST.
+         *
+         * @param end Index of the token after the declaration.
+         */
+        private void copyDeclarationType(int begin, int end) {
+            int type = skipModifiers(begin);
+            if (!isIdentifier(type) && !PRIMITIVES.contains(text(type)) && !is(type, "@")) {
+                return;
+            }
+
+            int name = skipType(type);
+            if (!isIdentifier(name) || name >= end) {
+                return;
+            }
+
+            switch (text(name + 1)) {
+                case "=":
+                case ",":
+                case ";":
+                case "[":
+                case ":":
+                    break;
+                default:
+                    return;
+            }
+
+            int declarators = 1;
+            int depth = 0;
+            for (int i = name + 1; i < end; i++) {
+                switch (tokens[i].text) {
+                    case "(":
+                    case "[":
+                    case "{":
+                        depth++;
+                        break;
+                    case ")":
+                    case "]":
+                    case "}":
+                        depth--;
+                        break;
+                    case ";":
+                        // End of the initialization of a basic for
+                        if (depth == 0) {
+                            i = end;
+                        }
+                        break;
+                    case "<":
+                        int typeEnd = typeArgumentsEnd(i);
+                        if (typeEnd > 0) {
+                            i = typeEnd - 1;
+                        }
+                        break;
+                    case ",":
+                        if (depth == 0) {
+                            declarators++;
+                        }
+                        break;
+                }
+            }
+
+            for (int i = type; i < name; i++) {
+                copies[i] += declarators - 1;
+            }
+        }
+
+        // STATEMENTS
+
+        /**
+         * @param outer Scope of tokens in the block that are not part of a statement.
+         * @return Index of the closing brace.
+         */
+        private int block(int open, Context context, Scope outer, Part parent) {
+            var block = parent.add(new Part(open, outer));
+
+            int i = open + 1;
+            while (i < count && !is(i, "}")) {
+                i = statement(i, context, outer, block);
+            }
+
+            int close = Math.min(i, count - 1);
+            block.end = close;
+            fill(open, close, outer);
+
+            return close;
+        }
+
+        /**
+         * @return Index after the statement.
+         */
+        private int statement(int begin, Context context, Scope outer, Part parent) {
+            if (begin >= count) {
+                return count;
+            }
+
+            var token = tokens[begin];
+            if (token.kind == Kind.KEYWORD || token.kind == Kind.OPERATOR) {
+                switch (token.text) {
+                    case "{":
+                        return block(begin, context, outer, parent) + 1;
+                    case "if":
+                    case "while":
+                        return conditional(begin, context, parent);
+                    case "do":
+                        return doStatement(begin, context, parent);
+                    case "for":
+                        return forStatement(begin, context, parent);
+                    case "try":
+                        return tryStatement(begin, context, parent);
+                    case "switch":
+                        return switchStatement(begin, context, parent);
+                    case "synchronized":
+                        if (is(begin + 1, "(")) {
+                            return synchronizedStatement(begin, context, parent);
+                        }
+                    default:
+                        int i = skipModifiers(begin);
+                        if (isTypeStart(i)) {
+                            // The declaration statement is not a statement for locations
+                            var declaration = parent.add(new Part(begin, outer));
+                            int next = typeDeclaration(begin, context.owner.className, context.redirect, declaration);
+                            declaration.end = next - 1;
+                            return next;
+                        }
+                }
+            } else if (token.kind == Kind.IDENTIFIER && is(begin + 1, ":")) {
+                return labeled(begin, context, parent);
+            }
+
+            return simpleStatement(begin, context, parent);
+        }
+
+        private int simpleStatement(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int stop = scan(begin, context, scope, statement, STOP_SEMICOLON);
+            copyDeclarationType(begin, stop);
+            int end;
+            int next;
+            if (is(stop, ";")) {
+                end = stop;
+                next = stop + 1;
+            } else if (stop == begin) {
+                // Unexpected closing bracket
+                end = begin;
+                next = begin + 1;
+            } else {
+                end = stop - 1;
+                next = stop;
+            }
+
+            setRange(scope, context, begin, end);
+            statement.end = end;
+            fill(begin, end, scope);
+
+            return next;
+        }
+
+        private int conditional(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int close = scan(begin + 2, context, scope, statement, 0);
+            setRange(scope, context, begin + 2, close - 1);
+
+            int next = statement(close + 1, context, scope, statement);
+            if (is(begin, "if") && is(next, "else")) {
+                next = statement(next + 1, context, scope, statement);
+            }
+
+            return finish(begin, next, scope, statement);
+        }
+
+        private int finish(int begin, int next, Scope scope, Part statement) {
+            int end = Math.min(next, count) - 1;
+            statement.end = end;
+            fill(begin, end, scope);
+
+            return next;
+        }
+
+        private int doStatement(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int next = statement(begin + 1, context, scope, statement);
+            if (is(next, "while") && is(next + 1, "(")) {
+                int close = scan(next + 2, context, scope, statement, 0);
+                setRange(scope, context, next + 2, close - 1);
+                next = is(close + 1, ";") ? close + 2 : close + 1;
+            }
+
+            return finish(begin, next, scope, statement);
+        }
+
+        private int forStatement(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int colon = findForEachColon(begin + 2);
+            boolean wholeRange = false;
+            int close;
+
+            if (colon >= 0) {
+                close = scan(colon + 1, context, scope, statement, 0);
+                setRange(scope, context, colon + 1, close - 1);
+            } else {
+                close = scan(begin + 2, context, scope, statement, 0);
+                copyDeclarationType(begin + 2, close);
+                wholeRange = !setRangeSkippingSemicolons(scope, context, begin + 2, close - 1);
+            }
+
+            int next = statement(close + 1, context, scope, statement);
+            if (wholeRange) {
+                setRange(scope, context, begin, next - 1);
+            }
+
+            return finish(begin, next, scope, statement);
+        }
+
+        /**
+         * @return Whether there were tokens other than semicolons.
+         */
+        private boolean setRangeSkippingSemicolons(Scope scope, Context context, int first, int last) {
+            while (first <= last && is(first, ";")) {
+                first++;
+            }
+            while (last >= first && is(last, ";")) {
+                last--;
+            }
+
+            if (first > last) {
+                return false;
+            }
+
+            setRange(scope, context, first, last);
+            return true;
+        }
+
+        /**
+         * @return Index of the colon of an enhanced for, or -1 if it is a basic for.
+         */
+        private int findForEachColon(int i) {
+            int depth = 0;
+            int ternary = 0;
+
+            for (; i < count; i++) {
+                switch (tokens[i].text) {
+                    case "(":
+                    case "[":
+                    case "{":
+                        depth++;
+                        break;
+                    case ")":
+                    case "]":
+                    case "}":
+                        if (depth-- == 0) {
+                            return -1;
+                        }
+                        break;
+                    case ";":
+                        if (depth == 0) {
+                            return -1;
+                        }
+                        break;
+                    case "<":
+                        int end = typeArgumentsEnd(i);
+                        if (end > 0) {
+                            i = end - 1;
+                        }
+                        break;
+                    case "?":
+                        ternary++;
+                        break;
+                    case ":":
+                        if (ternary > 0) {
+                            ternary--;
+                        } else if (depth == 0) {
+                            return i;
+                        }
+                        break;
+                }
+            }
+
+            return -1;
+        }
+
+        private int tryStatement(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int i = begin + 1;
+            boolean resources = false;
+            if (is(i, "(")) {
+                int close = scan(i + 1, context, scope, statement, 0);
+                resources = setRangeSkippingSemicolons(scope, context, i + 1, close - 1);
+                i = close + 1;
+            }
+
+            if (is(i, "{")) {
+                i = block(i, context, scope, statement) + 1;
+            }
+
+            while (is(i, "catch")) {
+                // Catch clauses are not statements, their parameters get the range of the try
+                var clause = statement.add(new Part(i, scope));
+                if (is(i + 1, "(")) {
+                    i = scan(i + 2, context, scope, clause, 0) + 1;
+                }
+                if (is(i, "{")) {
+                    i = block(i, context, scope, clause) + 1;
+                }
+                clause.end = i - 1;
+            }
+
+            if (is(i, "finally") && is(i + 1, "{")) {
+                i = block(i + 1, context, scope, statement) + 1;
+            }
+
+            if (!resources) {
+                setRange(scope, context, begin, i - 1);
+            }
+
+            return finish(begin, i, scope, statement);
+        }
+
+        private int switchStatement(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int i = scan(begin + 2, context, scope, statement, 0) + 1;
+            if (is(i, "{")) {
+                i++;
+            }
+
+            while (i < count && !is(i, "}")) {
+                if (!is(i, "case") && !is(i, "default")) {
+                    i = statement(i, context, scope, statement);
+                    continue;
+                }
+
+                // Entries without labels are located in the whole switch
+                boolean labeled = is(i, "case");
+                var entryScope = labeled ? context.newStatementScope() : scope;
+                var entry = statement.add(new Part(i, entryScope));
+
+                int labelsEnd = i + 1;
+                if (labeled) {
+                    labelsEnd = scan(i + 1, context, entryScope, entry, STOP_COLON | STOP_ARROW);
+                    setRange(entryScope, context, i + 1, labelsEnd - 1);
+                }
+
+                int j = labelsEnd + 1;
+                if (is(labelsEnd, "->")) {
+                    j = statement(j, context, entryScope, entry);
+                } else {
+                    while (j < count && !is(j, "case") && !is(j, "default") && !is(j, "}")) {
+                        j = statement(j, context, entryScope, entry);
+                    }
+                }
+
+                entry.end = j - 1;
+                fill(i, j - 1, entryScope);
+                i = j;
+            }
+
+            int end = Math.min(i, count - 1);
+            setRange(scope, context, begin, end);
+
+            return finish(begin, end + 1, scope, statement);
+        }
+
+        private int synchronizedStatement(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+
+            int close = scan(begin + 2, context, scope, statement, 0);
+            setRange(scope, context, begin + 2, close - 1);
+
+            int i = close + 1;
+            if (is(i, "{")) {
+                i = block(i, context, scope, statement) + 1;
+            }
+
+            return finish(begin, i, scope, statement);
+        }
+
+        private int labeled(int begin, Context context, Part parent) {
+            var scope = context.newStatementScope();
+            var statement = parent.add(new Part(begin, scope));
+            setRange(scope, context, begin, begin);
+
+            int next = statement(begin + 2, context, scope, statement);
+
+            return finish(begin, next, scope, statement);
+        }
+
+        // EXPRESSIONS
+
+        /**
+         * Follows an expression, or several, until a terminator. Brackets are balanced and a closing
+         * bracket that was not opened always terminates.
+         *
+         * @param flags Which tokens terminate at depth 0.
+         * @return Index of the terminator, which is not consumed.
+         */
+        private int scan(int i, Context context, Scope scope, Part part, int flags) {
+            int depth = 0;
+            int ternary = 0;
+
+            while (i < count) {
+                var token = tokens[i];
+
+                if (token.kind == Kind.OPERATOR) {
+                    switch (token.text) {
+                        case "(":
+                        case "[":
+                        case "{":
+                            depth++;
+                            break;
+                        case ")":
+                        case "]":
+                        case "}":
+                            if (depth == 0) {
+                                return i;
+                            }
+                            depth--;
+                            break;
+                        case ";":
+                            if (depth == 0 && (flags & STOP_SEMICOLON) != 0) {
+                                return i;
+                            }
+                            break;
+                        case ",":
+                            if (depth == 0 && (flags & STOP_COMMA) != 0) {
+                                return i;
+                            }
+                            break;
+                        case "?":
+                            ternary++;
+                            break;
+                        case ":":
+                            if (ternary > 0) {
+                                ternary--;
+                            } else if (depth == 0 && (flags & STOP_COLON) != 0) {
+                                return i;
+                            }
+                            break;
+                        case "<":
+                            if ((flags & STOP_COMMA) != 0) {
+                                int end = typeArgumentsEnd(i);
+                                if (end > 0) {
+                                    i = end;
+                                    continue;
+                                }
+                            }
+                            break;
+                        case "->":
+                            if (depth == 0 && (flags & STOP_ARROW) != 0) {
+                                return i;
+                            }
+                            i = lambda(i, context, scope, part);
+                            continue;
+                    }
+                } else if (token.kind == Kind.KEYWORD && token.text.equals("new") && !is(i - 1, "::")) {
+                    i = creation(i, context, scope, part);
+                    continue;
+                } else if (token.kind == Kind.KEYWORD && token.text.equals("switch")) {
+                    // Switch statements are followed by statement, so this is an expression
+                    throw new UnsupportedException("Switch expression at line " + token.line);
+                }
+
+                i++;
+            }
+
+            return count;
+        }
+
+        /**
+         * @return Index after the lambda.
+         */
+        private int lambda(int arrow, Context context, Scope scope, Part part) {
+            int begin = is(arrow - 1, ")") ? matchParenthesisBackward(arrow - 1) : arrow - 1;
+            var lambda = part.add(new Part(begin, scope));
+
+            if (is(arrow + 1, "{")) {
+                int close = block(arrow + 1, context, scope, lambda);
+                lambda.end = close;
+                return close + 1;
+            }
+
+            // Expression bodies are statements
+            var bodyScope = context.newStatementScope();
+            var body = lambda.add(new Part(arrow + 1, bodyScope));
+            int stop = scan(arrow + 1, context, bodyScope, body, STOP_SEMICOLON | STOP_COMMA | STOP_COLON);
+            int end = Math.max(arrow + 1, stop - 1);
+
+            setRange(bodyScope, context, arrow + 1, end);
+            body.end = end;
+            lambda.end = end;
+            fill(arrow + 1, end, bodyScope);
+
+            return Math.max(stop, arrow + 2);
+        }
+
+        /**
+         * Array dimensions and initializers are left for the caller.
+         *
+         * @return Index after the class creation.
+         */
+        private int creation(int begin, Context context, Scope scope, Part part) {
+            int i = begin + 1;
+            while (i < count) {
+                var token = tokens[i];
+                if (is(i, "@")) {
+                    i = skipAnnotation(i);
+                } else if (token.kind == Kind.IDENTIFIER || PRIMITIVES.contains(token.text) || is(i, ".")) {
+                    i++;
+                } else if (is(i, "<")) {
+                    int end = typeArgumentsEnd(i);
+                    i = end > 0 ? end : i + 1;
+                } else {
+                    break;
+                }
+            }
+
+            if (!is(i, "(")) {
+                return i;
+            }
+
+            int close = scan(i + 1, context, scope, part, 0);
+            if (!is(close + 1, "{")) {
+                return close + 1;
+            }
+
+            var creation = part.add(new Part(begin, scope));
+            var body = new Body(context.owner.className, BodyKind.ANONYMOUS, scope, context.redirect != null, scope);
+            anonymousDepth++;
+            int end = classBody(close + 1, body, creation);
+            anonymousDepth--;
+            creation.end = end;
+
+            return end + 1;
+        }
+
+        // SPANS
+
+        private TextSpan.Location toLocation(Scope scope) {
+            if (scope.location == null) {
+                var owner = scope.owner;
+                scope.location = new TextSpan.Location(file, owner.className, owner.methodName,
+                        owner.begin >= 0 ? range(owner.begin, owner.end) : null,
+                        scope.begin >= 0 ? range(scope.begin, scope.end) : null);
+            }
+
+            return scope.location;
+        }
+
+        private Range range(int begin, int end) {
+            var first = tokens[begin];
+            var last = tokens[Math.max(begin, end)];
+            return new Range(new Position(first.line, first.column), new Position(last.endLine, last.endColumn));
+        }
+
+        private void addSpan(int i, List<TextSpan> spans) {
+            var token = tokens[i];
+            var scope = scopes[i];
+            if (scope == null) {
+                return;
+            }
+
+            switch (token.kind) {
+                case IDENTIFIER:
+                    spans.add(new TextSpan(TextSpan.Type.IDENTIFIER, toLocation(scope), spanLine(i), token.text));
+                    break;
+                case NUMBER:
+                    spans.add(new TextSpan(TextSpan.Type.NUMBER, toLocation(scope), token.line, token.text));
+                    break;
+                case STRING:
+                    String value = token.text.length() > 1 && token.text.endsWith("\"") ?
+                            token.text.substring(1, token.text.length() - 1) :
+                            token.text.substring(1);
+                    spans.add(new TextSpan(TextSpan.Type.STRING, toLocation(scope), token.line, value));
+                    break;
+                case KEYWORD:
+                    // Constructor references
+                    if (token.text.equals("new") && is(i - 1, "::")) {
+                        spans.add(new TextSpan(TextSpan.Type.IDENTIFIER, toLocation(scope), spanLine(i), token.text));
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * The identifier of a method reference is on the line where the reference begins.
+         */
+        private int spanLine(int i) {
+            return is(i - 1, "::") && i > 1 ? tokens[i - 2].line : tokens[i].line;
+        }
+
+        private void addCommentSpans(Comment comment, List<TextSpan> spans) {
+            var token = comment.token;
+            var scope = comment.commented != null ? comment.commented.scope : findOrphanScope(comment);
+            var location = toLocation(scope);
+            boolean docComment = comment.commented != null && comment.commented.methodName != null &&
+                    location.getMethodName().map(comment.commented.methodName::equals).orElse(false);
+
+            if (token.kind == Kind.LINE_COMMENT) {
+                spans.add(TextSpan.createCommentSpan(location, token.line, token.content, docComment));
+                return;
+            }
+
+            var lines = token.content.split("\\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                spans.add(TextSpan.createCommentSpan(location, token.line + i, lines[i], docComment));
+            }
+        }
+
+        // COMMENTS
+
+        private final Map<Comment, Part> orphanParents = new HashMap<>();
+
+        private Scope findOrphanScope(Comment comment) {
+            return orphanParents.getOrDefault(comment, root).scope;
+        }
+
+        /**
+         * Attributes comments to parts the same way JavaParser attributes them to nodes.
+         *
+         * @return Distinct comments in the order JavaParser lists them.
+         */
+        private List<Comment> attributeComments() {
+            if (commentTokens.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            var comments = new ArrayList<Comment>();
+            for (Token token : commentTokens) {
+                comments.add(new Comment(token));
+            }
+
+            // With a package declaration, the first comment before it belongs to the file
+            Comment fileComment = null;
+            var packagePart = root.children.isEmpty() ? null : root.children.get(0);
+            if (packageName != null && packagePart != null && isBefore(comments.get(0), packagePart)) {
+                fileComment = comments.remove(0);
+            }
+
+            insertComments(root, comments);
+
+            var all = new ArrayList<Comment>();
+            collectComments(root, all);
+            if (fileComment != null) {
+                all.add(fileComment);
+            }
+
+            // Comments are compared by content, so repeated comments are only extracted once
+            var seen = new HashSet<String>();
+            var distinct = new ArrayList<Comment>();
+            for (Comment comment : all) {
+                if (seen.add(comment.token.kind + comment.token.content)) {
+                    distinct.add(comment);
+                }
+            }
+
+            return distinct;
+        }
+
+        private void collectComments(Part part, List<Comment> comments) {
+            comments.addAll(part.orphans);
+            if (part.allChildren == null) {
+                return;
+            }
+
+            for (Part child : part.allChildren) {
+                if (child.comment != null) {
+                    comments.add(child.comment);
+                }
+                collectComments(child, comments);
+            }
+        }
+
+        private void insertComments(Part parent, List<Comment> comments) {
+            if (comments.isEmpty()) {
+                return;
+            }
+
+            var children = new ArrayList<Part>();
+            for (Part child : childrenOf(parent)) {
+                if (!child.modifier) {
+                    children.add(child);
+                }
+            }
+
+            for (Part child : children) {
+                var inside = new ArrayList<Comment>();
+                comments.removeIf(c -> contains(child, c) && inside.add(c));
+                insertComments(child, inside);
+            }
+
+            attributeLineCommentsOnSameLine(comments, children);
+
+            if (!comments.isEmpty() && comments.get(0).token.endLine + 1 == tokens[parent.begin].line &&
+                    parent != root) {
+                attach(comments.remove(0), parent);
+            }
+
+            // Each comment belongs to the node that follows it, if there are no lines in between
+            var attributed = new HashSet<Comment>();
+            int c = 0;
+            Comment previous = null;
+            for (Part child : children) {
+                while (c < comments.size() && isBefore(comments.get(c), child)) {
+                    previous = comments.get(c++);
+                }
+
+                if (previous != null && child.comment == null &&
+                        tokens[child.begin].line <= previous.token.endLine + 1) {
+                    attach(previous, child);
+                    attributed.add(previous);
+                    previous = null;
+                }
+            }
+
+            comments.removeAll(attributed);
+            if (!comments.isEmpty()) {
+                parent.orphans = new ArrayList<>(comments);
+                for (Comment comment : comments) {
+                    orphanParents.put(comment, parent);
+                }
+            }
+        }
+
+        private void attributeLineCommentsOnSameLine(List<Comment> comments, List<Part> children) {
+            comments.removeIf(comment -> {
+                if (comment.token.kind != Kind.LINE_COMMENT) {
+                    return false;
+                }
+
+                boolean attributed = false;
+                for (Part child : children) {
+                    if (tokens[child.end].endLine == comment.token.line && attributeLineComment(child, comment)) {
+                        attributed = true;
+                    }
+                }
+
+                return attributed;
+            });
+        }
+
+        private boolean attributeLineComment(Part part, Comment comment) {
+            if (tokens[part.begin].line == comment.token.line && part.comment == null) {
+                attach(comment, part);
+                return true;
+            }
+
+            var children = childrenOf(part);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (attributeLineComment(children.get(i), comment)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void attach(Comment comment, Part part) {
+            part.comment = comment;
+            comment.commented = part;
+        }
+
+        private boolean isBefore(Comment comment, Part part) {
+            var first = tokens[part.begin];
+            var token = comment.token;
+            return token.line < first.line || token.line == first.line && token.column < first.column;
+        }
+
+        private boolean contains(Part part, Comment comment) {
+            var first = tokens[part.begin];
+            var last = tokens[part.end];
+            var token = comment.token;
+
+            boolean beginsAfter = token.line > first.line || token.line == first.line && token.column >= first.column;
+            boolean endsBefore = token.endLine < last.endLine ||
+                    token.endLine == last.endLine && token.endColumn <= last.endColumn;
+
+            return beginsAfter && endsBefore;
+        }
+
+        /**
+         * @return Structural children and a leaf for each token between them that can begin an
+         * expression node, sorted by position.
+         */
+        private List<Part> childrenOf(Part part) {
+            if (part.allChildren != null) {
+                return part.allChildren;
+            }
+
+            var structural = new ArrayList<>(part.children);
+            structural.sort(Comparator.comparingInt(p -> p.begin));
+
+            var children = new ArrayList<Part>();
+            int i = part.begin;
+            for (Part child : structural) {
+                addLeaves(i, child.begin - 1, children);
+                children.add(child);
+                i = child.end + 1;
+            }
+            if (part != root) {
+                addLeaves(i, part.end, children);
+            }
+
+            part.allChildren = children;
+            return children;
+        }
+
+        private void addLeaves(int from, int to, List<Part> leaves) {
+            for (int i = from; i <= to; i++) {
+                if (scopes[i] != null && isLeafToken(i)) {
+                    var token = tokens[i];
+                    var leaf = new Part(i, scopes[i], token.kind == Kind.KEYWORD && MODIFIERS.contains(token.text));
+                    leaf.allChildren = Collections.emptyList();
+                    leaves.add(leaf);
+                }
+            }
+        }
+
+        private boolean isLeafToken(int i) {
+            var token = tokens[i];
+            switch (token.kind) {
+                case IDENTIFIER:
+                case NUMBER:
+                case STRING:
+                case CHAR:
+                case TEXT_BLOCK:
+                    return true;
+                case KEYWORD:
+                    return EXPRESSION_KEYWORDS.contains(token.text) && !is(i - 1, "::") ||
+                            PRIMITIVES.contains(token.text) || MODIFIERS.contains(token.text);
+                default:
+                    switch (token.text) {
+                        case "@":
+                        case "!":
+                        case "~":
+                            return true;
+                        case "(":
+                        case "-":
+                        case "+":
+                        case "++":
+                        case "--":
+                            // Only when not following an operand
+                            var previous = i > 0 ? tokens[i - 1] : null;
+                            return previous != null && (previous.kind == Kind.OPERATOR &&
+                                    !previous.text.equals(")") && !previous.text.equals("]") ||
+                                    previous.kind == Kind.KEYWORD && !EXPRESSION_KEYWORDS.contains(previous.text) &&
+                                            !token.text.equals("("));
+                        default:
+                            return false;
+                    }
+            }
+        }
+    }
+}
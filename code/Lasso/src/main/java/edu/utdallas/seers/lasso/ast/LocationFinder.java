@@ -21,45 +21,56 @@ import java.util.*;
 import java.util.function.Supplier;
 
 // TODO: instead of finding location by going up, continuously build up location while descending. Use this for ASTPattern location as well
-public class LocationFinder extends GenericVisitorWithDefaults<TextSpan.Location, LocationFinder.LocationRecord> {
+/**
+ * Finds the location of a node by going up the tree. Each visit returns a {@link Step} instead of
+ * visiting the parent directly, so the call stack does not grow with the depth of the node.
+ */
+public class LocationFinder extends GenericVisitorWithDefaults<LocationFinder.Step, LocationFinder.LocationRecord> {
 
     public static final String INITIALIZER_TAG = "[init]";
     public static final String STATIC_INITIALIZER_TAG = "[static init]";
     public static final String CONSTRUCTOR_TAG = "[ctor]";
 
     public TextSpan.Location findLocation(Node node, String packagePath) {
-        return node.accept(this, LocationRecord.create(packagePath));
+        var step = node.accept(this, LocationRecord.create(packagePath));
+        while (step.location == null) {
+            step = step.next.accept(this, step.record);
+        }
+
+        return step.location;
     }
 
-    private TextSpan.Location visitComment(Comment node, LocationRecord location) {
+    private Step visitComment(Comment node, LocationRecord location) {
         /* Comments don't register the annotated node as their parent,
          * so we must select it with the commented node method */
-        return node.getParentNode().or(node::getCommentedNode).orElseThrow()
-                .accept(this, location);
+        return Step.visit(node.getParentNode().or(node::getCommentedNode).orElseThrow(), location);
     }
 
     // FIXME When resolving a type, the qualified name of classes including an anonymous class contains a UUID which probably isn't useful
-    private TextSpan.Location visitType(TypeDeclaration<?> n, LocationRecord location) {
-        return location.addClassName(n.resolve().getQualifiedName())
-                .toLocation();
+    private Step visitType(TypeDeclaration<?> n, LocationRecord location) {
+        return Step.done(location.addClassName(n.resolve().getQualifiedName())
+                .toLocation());
     }
 
     private Optional<Node> findProblemNode(Node node) {
         // Temporary hack, we look for methods inside of anonymous classes or Enum Constants which
         // cause problems with type resolution
-        if (node instanceof ObjectCreationExpr || node instanceof EnumConstantDeclaration)
-            return Optional.of(node);
+        Optional<Node> current = Optional.of(node);
+        while (current.isPresent() &&
+                !(current.get() instanceof ObjectCreationExpr || current.get() instanceof EnumConstantDeclaration)) {
+            current = current.get().getParentNode();
+        }
 
-        return node.getParentNode().flatMap(this::findProblemNode);
+        return current;
     }
 
-    private TextSpan.Location skipAnonymous(Node node, LocationRecord location, Supplier<TextSpan.Location> elseAction) {
+    private Step skipAnonymous(Node node, LocationRecord location, Supplier<Step> elseAction) {
         /* FIXME resolution of methods in anonymous classes or enum constants does not work
             without resolution for all project classes.
              This method should be completely removed after that is resolved */
         return findProblemNode(node)
                 // Need to remove statement for it to be eventually set to the whole definition
-                .map(pn -> pn.accept(this, location.removeStatement()))
+                .map(pn -> Step.visit(pn, location.removeStatement()))
                 .orElseGet(elseAction);
     }
 
@@ -96,7 +107,7 @@ public class LocationFinder extends GenericVisitorWithDefaults<TextSpan.Location
         return location.addStatement(range.begin, range.end);
     }
 
-    private TextSpan.Location updateLocationStatementList(Node node, LocationRecord location,
+    private Step updateLocationStatementList(Node node, LocationRecord location,
                                                           Supplier<List<Node>> nodesForRange) {
         if (location.statementRange != null) {
             return defaultAction(node, location);
@@ -117,85 +128,85 @@ public class LocationFinder extends GenericVisitorWithDefaults<TextSpan.Location
         ));
     }
 
-    private TextSpan.Location updateLocationStatement(Node node, LocationRecord location,
-                                                      Supplier<Node> nodeForRange) {
+    private Step updateLocationStatement(Node node, LocationRecord location,
+                                         Supplier<Node> nodeForRange) {
         return updateLocationStatementList(node, location, () -> Collections.singletonList(nodeForRange.get()));
     }
 
     // INITIALIZERS AND CALLABLES
 
     @Override
-    public TextSpan.Location visit(MethodDeclaration n, LocationRecord arg) {
+    public Step visit(MethodDeclaration n, LocationRecord arg) {
         return skipAnonymous(n, arg, () -> {
             var method = n.resolve();
-            return arg.addMethod(method.getName(), method.declaringType().getQualifiedName(), n.getRange().orElseThrow())
-                    .toLocation();
+            return Step.done(arg.addMethod(method.getName(), method.declaringType().getQualifiedName(), n.getRange().orElseThrow())
+                    .toLocation());
         });
     }
 
     @Override
-    public TextSpan.Location visit(InitializerDeclaration n, LocationRecord arg) {
+    public Step visit(InitializerDeclaration n, LocationRecord arg) {
         return skipAnonymous(n, arg, () -> {
             var className = n.getParentNode()
                     .map(pn -> ((TypeDeclaration<?>) pn).resolve().getQualifiedName())
                     .orElseThrow();
             var name = n.isStatic() ? STATIC_INITIALIZER_TAG : INITIALIZER_TAG;
-            return arg.addMethod(name, className, n.getRange().orElseThrow())
-                    .toLocation();
+            return Step.done(arg.addMethod(name, className, n.getRange().orElseThrow())
+                    .toLocation());
         });
     }
 
     @Override
-    public TextSpan.Location visit(ConstructorDeclaration n, LocationRecord arg) {
+    public Step visit(ConstructorDeclaration n, LocationRecord arg) {
         // Cannot define constructors in anonymous classes or enum constants, no need to find problem node
         var constructor = n.resolve();
-        return arg.addMethod(CONSTRUCTOR_TAG, constructor.declaringType().getQualifiedName(), n.getRange().orElseThrow())
-                .toLocation();
+        return Step.done(arg.addMethod(CONSTRUCTOR_TAG, constructor.declaringType().getQualifiedName(), n.getRange().orElseThrow())
+                .toLocation());
     }
 
     // TYPES
 
     @Override
-    public TextSpan.Location visit(ClassOrInterfaceDeclaration n, LocationRecord arg) {
+    public Step visit(ClassOrInterfaceDeclaration n, LocationRecord arg) {
         return visitType(n, arg);
     }
 
     @Override
-    public TextSpan.Location visit(EnumDeclaration n, LocationRecord arg) {
+    public Step visit(EnumDeclaration n, LocationRecord arg) {
         return visitType(n, arg);
     }
 
     @Override
-    public TextSpan.Location visit(AnnotationDeclaration n, LocationRecord arg) {
+    public Step visit(AnnotationDeclaration n, LocationRecord arg) {
         return visitType(n, arg);
     }
 
     // COMMENTS
 
     @Override
-    public TextSpan.Location visit(CompilationUnit n, LocationRecord arg) {
-        return arg.toLocation();
+    public Step visit(CompilationUnit n, LocationRecord arg) {
+        return Step.done(arg.toLocation());
     }
 
     @Override
-    public TextSpan.Location visit(JavadocComment n, LocationRecord arg) {
+    public Step visit(JavadocComment n, LocationRecord arg) {
         return visitComment(n, arg);
     }
 
     @Override
-    public TextSpan.Location visit(BlockComment n, LocationRecord arg) {
+    public Step visit(BlockComment n, LocationRecord arg) {
         return visitComment(n, arg);
     }
 
     @Override
-    public TextSpan.Location visit(LineComment n, LocationRecord arg) {
+    public Step visit(LineComment n, LocationRecord arg) {
         return visitComment(n, arg);
     }
 
     // NODES WITH EXPRESSION HEADERS
 
     @Override
-    public TextSpan.Location visit(SwitchEntry n, LocationRecord arg) {
+    public Step visit(SwitchEntry n, LocationRecord arg) {
         return updateLocationStatementList(n, arg,
                 // FIXME we don't know which label the expression came from, but only applies to very new code
                 () -> new ArrayList<>(n.getLabels())
@@ -203,12 +214,12 @@ public class LocationFinder extends GenericVisitorWithDefaults<TextSpan.Location
     }
 
     @Override
-    public TextSpan.Location visit(ForEachStmt n, LocationRecord arg) {
+    public Step visit(ForEachStmt n, LocationRecord arg) {
         return updateLocationStatement(n, arg, n::getIterable);
     }
 
     @Override
-    public TextSpan.Location visit(ForStmt n, LocationRecord arg) {
+    public Step visit(ForStmt n, LocationRecord arg) {
         // FIXME we don't know which expression the text comes from
         return updateLocationStatementList(n, arg,
                 () -> Seq.<Node>concat(
@@ -221,37 +232,61 @@ public class LocationFinder extends GenericVisitorWithDefaults<TextSpan.Location
     }
 
     @Override
-    public TextSpan.Location visit(TryStmt n, LocationRecord arg) {
+    public Step visit(TryStmt n, LocationRecord arg) {
         return updateLocationStatementList(n, arg, () -> new ArrayList<>(n.getResources()));
     }
 
     @Override
-    public TextSpan.Location visit(SynchronizedStmt n, LocationRecord arg) {
+    public Step visit(SynchronizedStmt n, LocationRecord arg) {
         return updateLocationStatement(n, arg, n::getExpression);
     }
 
     @Override
-    public TextSpan.Location visit(SwitchExpr n, LocationRecord arg) {
+    public Step visit(SwitchExpr n, LocationRecord arg) {
         return updateLocationStatement(n, arg, n::getSelector);
     }
 
     @Override
-    public TextSpan.Location visit(LabeledStmt n, LocationRecord arg) {
+    public Step visit(LabeledStmt n, LocationRecord arg) {
         return updateLocationStatement(n, arg, n::getLabel);
     }
 
     // DEFAULTS
 
     @Override
-    public TextSpan.Location defaultAction(Node n, LocationRecord arg) {
+    public Step defaultAction(Node n, LocationRecord arg) {
         var updated = updateLocationStatement(n, arg);
-        return n.getParentNode().orElseThrow().accept(this, updated);
+        return Step.visit(n.getParentNode().orElseThrow(), updated);
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public TextSpan.Location defaultAction(NodeList n, LocationRecord arg) {
-        return ((Optional<Node>) n.getParentNode()).orElseThrow().accept(this, arg);
+    public Step defaultAction(NodeList n, LocationRecord arg) {
+        return Step.visit(((Optional<Node>) n.getParentNode()).orElseThrow(), arg);
+    }
+
+    /**
+     * Either the location that was found or the node that must be visited next.
+     */
+    static class Step {
+
+        private final TextSpan.Location location;
+        private final Node next;
+        private final LocationRecord record;
+
+        private Step(TextSpan.Location location, Node next, LocationRecord record) {
+            this.location = location;
+            this.next = next;
+            this.record = record;
+        }
+
+        static Step done(TextSpan.Location location) {
+            return new Step(location, null, null);
+        }
+
+        static Step visit(Node next, LocationRecord record) {
+            return new Step(null, next, record);
+        }
     }
 
     static class LocationRecord {
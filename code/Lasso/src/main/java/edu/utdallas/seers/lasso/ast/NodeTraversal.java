@@ -0,0 +1,84 @@
+package edu.utdallas.seers.lasso.ast;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * AST traversals that keep pending nodes in an explicit stack, so that the depth of the tree
+ * (e.g. a long chain of binary expressions) does not translate into depth of the call stack.
+ */
+class NodeTraversal {
+
+    private NodeTraversal() {
+    }
+
+    /**
+     * Lazily traverses the tree in the same order as {@link Node#stream()}.
+     *
+     * @param root   Root of the traversal.
+     * @param budget Notified of every node that is visited.
+     * @return All nodes in the tree in pre-order.
+     */
+    static Stream<Node> preOrder(Node root, ParseBudget budget) {
+        var iterator = new Iterator<Node>() {
+            private final Deque<Node> stack = new ArrayDeque<>(Collections.singleton(root));
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Node next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                budget.visitNode();
+                var node = stack.pop();
+                pushChildren(stack, node);
+                return node;
+            }
+        };
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                false
+        );
+    }
+
+    /**
+     * Equivalent to {@link CompilationUnit#getAllComments()}, which recurses once per level of the
+     * tree. The comments are returned in the same order.
+     *
+     * @param unit The compilation unit.
+     * @return Orphan comments and comments of all nodes, with the comment of the unit last.
+     */
+    static List<Comment> allComments(CompilationUnit unit) {
+        List<Comment> comments = new ArrayList<>(unit.getOrphanComments());
+        Deque<Node> stack = new ArrayDeque<>();
+        pushChildren(stack, unit);
+
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+            node.getComment().ifPresent(comments::add);
+            comments.addAll(node.getOrphanComments());
+            pushChildren(stack, node);
+        }
+
+        unit.getComment().ifPresent(comments::add);
+        return comments;
+    }
+
+    private static void pushChildren(Deque<Node> stack, Node node) {
+        var children = node.getChildNodes();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            stack.push(children.get(i));
+        }
+    }
+}
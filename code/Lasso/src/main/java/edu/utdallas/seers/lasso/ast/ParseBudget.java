@@ -0,0 +1,98 @@
+package edu.utdallas.seers.lasso.ast;
+
+import edu.utdallas.seers.parameter.Options;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Limits the CPU time and number of nodes spent on a single source file so that pathological
+ * files, e.g. generated code with huge expression chains, are skipped instead of stalling the
+ * build. Budgets are per thread and must be started on the thread that processes the file. They
+ * are only checked while traversing the AST, parsing is limited by a deadline in
+ * {@link ASTPatternDetector}.
+ */
+public class ParseBudget {
+
+    /**
+     * Checking CPU time is comparatively expensive, so it is only done every this many nodes.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final long maxNodes;
+    private final long timeLimit;
+    private final long start;
+    private long nodes = 0;
+
+    private ParseBudget(long maxNodes, long timeLimit) {
+        this.maxNodes = maxNodes;
+        this.timeLimit = timeLimit;
+        start = currentTime();
+    }
+
+    /**
+     * Starts a budget with the limits set in {@link Options}.
+     *
+     * @return A budget whose time starts counting now.
+     */
+    public static ParseBudget start() {
+        var options = Options.getInstance();
+        return start(options.getParseNodeBudget(), options.getParseTimeBudget());
+    }
+
+    /**
+     * @param maxNodes   Maximum number of nodes, 0 for no limit.
+     * @param timeMillis Maximum CPU time in milliseconds, 0 for no limit.
+     * @return A budget whose time starts counting now.
+     */
+    public static ParseBudget start(int maxNodes, int timeMillis) {
+        return new ParseBudget(maxNodes, timeMillis * 1_000_000L);
+    }
+
+    public static ParseBudget unlimited() {
+        return new ParseBudget(0, 0);
+    }
+
+    private static long currentTime() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ?
+                threadBean.getCurrentThreadCpuTime() :
+                System.nanoTime();
+    }
+
+    /**
+     * Registers a visited node.
+     *
+     * @throws ExceededException If the node or time limits are exceeded.
+     */
+    public void visitNode() {
+        nodes++;
+        if (maxNodes > 0 && nodes > maxNodes) {
+            throw new ExceededException(String.format("more than %d nodes", maxNodes));
+        }
+
+        if (nodes % CHECK_INTERVAL == 0) {
+            checkTime();
+        }
+    }
+
+    /**
+     * @throws ExceededException If the time limit is exceeded.
+     */
+    public void checkTime() {
+        if (timeLimit > 0 && currentTime() - start > timeLimit) {
+            throw new ExceededException(String.format("more than %d ms", timeLimit / 1_000_000));
+        }
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public static class ExceededException extends RuntimeException {
+        ExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package edu.utdallas.seers.lasso.ast;
 
 import edu.utdallas.seers.json.AdapterSupplier;
-import edu.utdallas.seers.json.JSON;
-import edu.utdallas.seers.json.JSONSerializable;
 import edu.utdallas.seers.lasso.data.entity.*;
 import edu.utdallas.seers.lasso.data.entity.constants.Constant;
 import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
@@ -10,68 +8,85 @@ import edu.utdallas.seers.parameter.Options;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
+public class PatternStore {
 
     private static final Logger logger = LoggerFactory.getLogger(PatternStore.class);
-    /**
-     * Used for reference in the JSON file.
-     */
     @SuppressWarnings({"FieldCanBeLocal", "unused", "RedundantSuppression"})
     private final String projectName;
 
-    private final Map<BasicPatternRecord, ASTPattern> records = new HashMap<>();
-    private final Map<ValuePatternRecord, List<ValueASTPattern>> valueASTPatterns = new HashMap<>();
-    private final Map<NameValuePatternRecord, List<NameValueASTPattern>> nameValuePatterns = new HashMap<>();
+    final Map<BasicPatternRecord, ASTPattern> records = new HashMap<>();
+    final Map<ValuePatternRecord, List<ValueASTPattern>> valueASTPatterns = new HashMap<>();
+    final Map<NameValuePatternRecord, List<NameValueASTPattern>> nameValuePatterns = new HashMap<>();
+
+    /**
+     * If present, lookups are served from this file instead of the maps, which remain empty.
+     */
+    private final PatternStoreFile storeFile;
 
     public PatternStore(String projectName) {
+        this(projectName, null);
+    }
+
+    private PatternStore(String projectName, PatternStoreFile storeFile) {
         this.projectName = projectName;
+        this.storeFile = storeFile;
     }
 
     /**
-     * Creates a new store by parsing the system source or by loading a previously cached instance.
+     * Creates a new store from the {@link DetectionArtifact} of the system or by loading a
+     * previously cached instance. Cached stores are memory-mapped, so their patterns are only
+     * decoded when looked up.
      *
      * @param sourcesDir  Path with sources for all systems.
      * @param projectName Name of the system.
-     * @param cachePath   Path where stores will be cached after being constructed.
+     * @param cachePath   Path where stores and detection artifacts will be cached after being
+     *                    constructed.
      * @return A pattern store for the system.
      */
     public static PatternStore create(Path sourcesDir, String projectName, Path cachePath) {
-        Path storePath = cachePath.resolve(projectName + ".json");
+        Path storePath = cachePath.resolve(projectName + PatternStoreFile.EXTENSION);
         var ignoreCache = Options.getInstance().isIgnoreCache();
+        var artifact = DetectionArtifact.open(sourcesDir, projectName, cachePath);
 
-        // Return cached store if it exists
-        if (Files.exists(storePath) && !ignoreCache) {
-            logger.info("Loading cached store from " + storePath);
-            return JSON.readJSON(storePath, PatternStore.class, new Supplier());
-        }
+        // Return cached store if it exists, is valid and was created after the last detection
+        if (Files.exists(storePath) && !ignoreCache && !isOlder(storePath, artifact.getPath())) {
+            var storeFile = PatternStoreFile.open(storePath);
+            if (storeFile.isPresent()) {
+                logger.info("Loading cached store from " + storePath);
+                return new PatternStore(projectName, storeFile.get());
+            }
 
-        logger.info("Running AST detector");
+            logger.info("Invalid cached store at " + storePath);
+        }
 
-        var patterns = ASTPatternDetector.detect(sourcesDir, projectName, p -> true)
-                .flatMap(t -> t.v2)
-                .map(p -> p.match)
-                .collect(Collectors.toList());
+        logger.info("Reading detected patterns");
 
         PatternStore store = new PatternStore(projectName);
 
-        // TODO can take a stream of patterns instead
-        store.addPatterns(patterns);
+        try (var files = artifact.read(p -> true)) {
+            files.flatMap((f, ps) -> ps.stream())
+                    .forEach(p -> p.match.accept(store));
+        }
 
         // Cache the store
         logger.info("Caching pattern store at " + storePath);
-        JSON.writeJSON(store, storePath, false, new Supplier());
+        PatternStoreFile.write(store, storePath);
 
         return store;
     }
 
-    private void addPatterns(Collection<? extends ASTPattern> patterns) {
-        for (ASTPattern pattern : patterns) {
-            pattern.accept(this);
+    private static boolean isOlder(Path file, Path other) {
+        try {
+            return Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(other)) < 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -88,7 +103,7 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
         // TODO we wouldn't need these here if the detectors were of 3 kinds: IR + check, slice + AST, IR + AST
         //  We're only doing this because we are checking ALL pattern types against records.
         //  Slice + AST and IR + AST patterns don't need to check records
-        addPattern(pattern);
+        addPattern((ASTPattern) pattern);
 
         List<ValueASTPattern> list = valueASTPatterns.computeIfAbsent(
                 new ValuePatternRecord(pattern),
@@ -99,7 +114,7 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
     }
 
     public void addPattern(NameValueASTPattern pattern) {
-        addPattern(pattern);
+        addPattern((ValueASTPattern) pattern);
 
         List<NameValueASTPattern> list = nameValuePatterns.computeIfAbsent(
                 new NameValuePatternRecord(pattern),
@@ -117,6 +132,10 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
 //    }
 
     public boolean contains(PatternSingleLineFormat pattern) {
+        if (storeFile != null) {
+            return storeFile.contains(pattern.getpType(), pattern.getFile(), pattern.getLineNum());
+        }
+
         return records.containsKey(new BasicPatternRecord(
                 pattern.getpType(),
                 pattern.getFile(),
@@ -134,32 +153,34 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
 //    }
 
     public List<ValueASTPattern> lookUpInstances(PatternType patternType, Constant<?> value) {
+        if (storeFile != null) {
+            return storeFile.lookUpInstances(patternType, value);
+        }
+
         return valueASTPatterns
                 .getOrDefault(new ValuePatternRecord(patternType, value), Collections.emptyList());
     }
 
     public List<NameValueASTPattern> lookUpInstances(PatternType patternType, Constant<?> value, Attribute name) {
+        if (storeFile != null) {
+            return storeFile.lookUpInstances(patternType, value, name);
+        }
+
         return nameValuePatterns
                 .getOrDefault(new NameValuePatternRecord(patternType, value, name), Collections.emptyList());
     }
 
-    private static class ValuePatternRecord {
+    static class ValuePatternRecord {
         protected static final String SEPARATOR = ";;";
 
-        private final PatternType patternType;
-        private final Constant<?> constant;
+        final PatternType patternType;
+        final Constant<?> constant;
 
         public ValuePatternRecord(ValueASTPattern pattern) {
             patternType = pattern.getPatternType();
             constant = pattern.getConstant();
         }
 
-        public ValuePatternRecord(String string) {
-            String[] split = string.split(SEPARATOR, 2);
-            patternType = PatternType.valueOf(split[0]);
-            constant = Constant.fromString(split[1]);
-        }
-
         public ValuePatternRecord(PatternType patternType, Constant<?> constant) {
             this.patternType = patternType;
             this.constant = constant;
@@ -185,13 +206,13 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
         }
     }
 
-    private static class NameValuePatternRecord {
+    static class NameValuePatternRecord {
 
         protected static final String SEPARATOR = ";;";
 
-        private final PatternType patternType;
-        private final Constant<?> constant;
-        private final Attribute attribute;
+        final PatternType patternType;
+        final Constant<?> constant;
+        final Attribute attribute;
 
         public NameValuePatternRecord(NameValueASTPattern pattern) {
             patternType = pattern.getPatternType();
@@ -199,13 +220,6 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
             attribute = pattern.getVariable();
         }
 
-        public NameValuePatternRecord(String string) {
-            String[] split = string.split(SEPARATOR, 3);
-            patternType = PatternType.valueOf(split[0]);
-            attribute = Attribute.fromString(split[1]);
-            constant = Constant.fromString(split[2]);
-        }
-
         public NameValuePatternRecord(PatternType patternType, Constant<?> constant, Attribute attribute) {
             this.patternType = patternType;
             this.constant = constant;
@@ -236,12 +250,12 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
     }
 
     // TODO merge this class with PatternSingleLineFormat
-    private static class BasicPatternRecord {
+    static class BasicPatternRecord {
 
         private static final String SEPARATOR = ";";
-        private final PatternType patternType;
-        private final String file;
-        private final int line;
+        final PatternType patternType;
+        final String file;
+        final int line;
 
         public BasicPatternRecord(PatternType patternType, String file, int line) {
             this.patternType = patternType;
@@ -249,13 +263,6 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
             this.line = line;
         }
 
-        public BasicPatternRecord(String string) {
-            String[] split = string.split(SEPARATOR);
-            patternType = PatternType.valueOf(split[0]);
-            file = split[1];
-            line = Integer.parseInt(split[2]);
-        }
-
         @Override
         public String toString() {
             return String.join(SEPARATOR, patternType.toString(), file, String.valueOf(line));
@@ -277,13 +284,13 @@ public class PatternStore implements JSONSerializable<PatternStore.Supplier> {
         }
     }
 
+    /**
+     * Adapters for the patterns that are stored in the binary file.
+     */
     public static class Supplier extends AdapterSupplier {
         @Override
         protected Builder build(Builder builder) {
             return builder
-                    .addTypeAdapter(ValuePatternRecord.class, ValuePatternRecord::new)
-                    .addTypeAdapter(NameValuePatternRecord.class, NameValuePatternRecord::new)
-                    .addTypeAdapter(BasicPatternRecord.class, BasicPatternRecord::new)
                     .addPathAdapter()
                     .addHierarchyAdapter(Constant.class, Constant::fromString)
                     .addHierarchyAdapter(Attribute.class, Attribute::fromString);
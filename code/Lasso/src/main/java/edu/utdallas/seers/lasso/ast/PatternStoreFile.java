@@ -0,0 +1,416 @@
+package edu.utdallas.seers.lasso.ast;
+
+import com.google.gson.Gson;
+import edu.utdallas.seers.json.JSON;
+import edu.utdallas.seers.lasso.data.entity.*;
+import edu.utdallas.seers.lasso.data.entity.constants.Constant;
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Binary, memory-mapped representation of a {@link PatternStore}. The file has the following
+ * sections, in order:
+ * <ol>
+ *     <li>Header: magic number and version.</li>
+ *     <li>String tables for files, constants and attributes. Strings are stored as UTF-16 code
+ *     units, which keeps lone surrogates, and each table is sorted like {@link String#compareTo},
+ *     so that string IDs compare in the same order as the strings.</li>
+ *     <li>Payload table with the JSON of each value pattern. Only decoded on lookup.</li>
+ *     <li>Line records {@code (type, file, line)}, sorted.</li>
+ *     <li>Value records {@code (type, constant, kind, payload)}, sorted by type and constant.</li>
+ *     <li>Name-value records {@code (type, attribute, constant, payload)}, sorted by type,
+ *     attribute and constant.</li>
+ *     <li>Footer: length of the previous sections and magic number, so that truncated files are
+ *     detected when opening.</li>
+ * </ol>
+ * Files are written to a temporary file that is then moved to the final path.
+ * All lookups are binary searches over the mapped buffer, which is only read with absolute
+ * methods so that a single instance can be shared between threads.
+ */
+class PatternStoreFile {
+
+    static final String EXTENSION = ".patterns";
+
+    private static final int MAGIC = 0x4c505354;
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int FOOTER_SIZE = 8;
+
+    private static final int LINE_RECORD_WIDTH = 3;
+    private static final int VALUE_RECORD_WIDTH = 4;
+    private static final int NAME_VALUE_RECORD_WIDTH = 4;
+
+    private static final int VALUE_KIND = 0;
+    private static final int NAME_VALUE_KIND = 1;
+
+    private static final Gson gson = JSON.createGson(new PatternStore.Supplier());
+
+    private final ByteBuffer buffer;
+    private final StringTable files;
+    private final StringTable constants;
+    private final StringTable attributes;
+    private final StringTable payloads;
+    private final RecordTable lineRecords;
+    private final RecordTable valueRecords;
+    private final RecordTable nameValueRecords;
+
+    private PatternStoreFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        files = new StringTable(HEADER_SIZE);
+        constants = new StringTable(files.end);
+        attributes = new StringTable(constants.end);
+        payloads = new StringTable(attributes.end);
+        lineRecords = new RecordTable(payloads.end, LINE_RECORD_WIDTH);
+        valueRecords = new RecordTable(lineRecords.end, VALUE_RECORD_WIDTH);
+        nameValueRecords = new RecordTable(valueRecords.end, NAME_VALUE_RECORD_WIDTH);
+    }
+
+    /**
+     * @param path Path of the file.
+     * @return The mapped file, or empty if the file is invalid, truncated or has another version.
+     */
+    static Optional<PatternStoreFile> open(Path path) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+
+            // The mapping stays valid after the channel is closed
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size - FOOTER_SIZE;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION ||
+                    buffer.getInt(end) != end || buffer.getInt(end + 4) != MAGIC) {
+                return Optional.empty();
+            }
+
+            var file = new PatternStoreFile(buffer);
+
+            return file.nameValueRecords.end == end ? Optional.of(file) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void write(PatternStore store, Path path) {
+        var fileIDs = sortedIDs(store.records.keySet().stream()
+                .map(r -> r.file));
+        // Name-value records also reference constants
+        var constantIDs = sortedIDs(Stream.concat(
+                store.valueASTPatterns.keySet().stream().map(r -> r.constant),
+                store.nameValuePatterns.keySet().stream().map(r -> r.constant)
+        )
+                .map(Constant::toString));
+        var attributeIDs = sortedIDs(store.nameValuePatterns.keySet().stream()
+                .map(r -> r.attribute.toString()));
+
+        // Name-value patterns are also value patterns, so they are shared between both record types
+        var payloadIDs = new IdentityHashMap<ValueASTPattern, Integer>();
+        var payloadList = new ArrayList<String>();
+        Function<ValueASTPattern, Integer> addPayload = p -> payloadIDs.computeIfAbsent(p, pp -> {
+            payloadList.add(gson.toJson(pp, pp.getClass()));
+            return payloadList.size() - 1;
+        });
+
+        var lineRecords = store.records.keySet().stream()
+                .map(r -> new int[]{r.patternType.ordinal(), fileIDs.get(r.file), r.line})
+                .sorted(Arrays::compare)
+                .collect(Collectors.toList());
+
+        var valueRecords = store.valueASTPatterns.entrySet().stream()
+                .flatMap(e -> e.getValue().stream()
+                        .map(p -> new int[]{
+                                e.getKey().patternType.ordinal(),
+                                constantIDs.get(e.getKey().constant.toString()),
+                                p instanceof NameValueASTPattern ? NAME_VALUE_KIND : VALUE_KIND,
+                                addPayload.apply(p)
+                        }))
+                .sorted(Arrays::compare)
+                .collect(Collectors.toList());
+
+        var nameValueRecords = store.nameValuePatterns.entrySet().stream()
+                .flatMap(e -> e.getValue().stream()
+                        .map(p -> new int[]{
+                                e.getKey().patternType.ordinal(),
+                                attributeIDs.get(e.getKey().attribute.toString()),
+                                constantIDs.get(e.getKey().constant.toString()),
+                                addPayload.apply(p)
+                        }))
+                .sorted(Arrays::compare)
+                .collect(Collectors.toList());
+
+        Path tempPath = null;
+        try {
+            var parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            tempPath = Files.createTempFile(parent, "." + path.getFileName(), ".tmp");
+
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeStrings(output, fileIDs.keySet());
+                writeStrings(output, constantIDs.keySet());
+                writeStrings(output, attributeIDs.keySet());
+                writeStrings(output, payloadList);
+                writeRecords(output, lineRecords);
+                writeRecords(output, valueRecords);
+                writeRecords(output, nameValueRecords);
+                output.writeInt(output.size());
+                output.writeInt(MAGIC);
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(tempPath);
+        }
+    }
+
+    boolean contains(PatternType patternType, String file, int line) {
+        int fileID = files.find(file);
+
+        return fileID >= 0 && lineRecords.contains(patternType.ordinal(), fileID, line);
+    }
+
+    List<ValueASTPattern> lookUpInstances(PatternType patternType, Constant<?> value) {
+        int constantID = constants.find(value.toString());
+        if (constantID < 0) {
+            return Collections.emptyList();
+        }
+
+        return valueRecords.decodeMatches(
+                r -> gson.fromJson(
+                        payloads.get(valueRecords.get(r, 3)),
+                        valueRecords.get(r, 2) == NAME_VALUE_KIND ? NameValueASTPattern.class : ValueASTPattern.class
+                ),
+                patternType.ordinal(), constantID
+        );
+    }
+
+    List<NameValueASTPattern> lookUpInstances(PatternType patternType, Constant<?> value, Attribute name) {
+        int constantID = constants.find(value.toString());
+        int attributeID = attributes.find(name.toString());
+        if (constantID < 0 || attributeID < 0) {
+            return Collections.emptyList();
+        }
+
+        return nameValueRecords.decodeMatches(
+                r -> gson.fromJson(payloads.get(nameValueRecords.get(r, 3)), NameValueASTPattern.class),
+                patternType.ordinal(), attributeID, constantID
+        );
+    }
+
+    /**
+     * Assigns IDs to strings in their natural order.
+     *
+     * @param strings Strings, possibly with duplicates.
+     * @return Map from string to ID, iterating in ID order.
+     */
+    private static LinkedHashMap<String, Integer> sortedIDs(Stream<String> strings) {
+        var ids = new LinkedHashMap<String, Integer>();
+        strings.distinct()
+                .sorted()
+                .forEachOrdered(s -> ids.put(s, ids.size()));
+
+        return ids;
+    }
+
+    private static void writeStrings(DataOutputStream output, Collection<String> strings) throws IOException {
+        output.writeInt(strings.size());
+
+        int offset = 0;
+        output.writeInt(offset);
+        for (String string : strings) {
+            offset += string.length();
+            output.writeInt(offset);
+        }
+
+        for (String string : strings) {
+            output.writeChars(string);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // The original exception, if any, is more relevant
+        }
+    }
+
+    private static void writeRecords(DataOutputStream output, List<int[]> records) throws IOException {
+        output.writeInt(records.size());
+
+        for (int[] record : records) {
+            for (int value : record) {
+                output.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * Section with a string count, count + 1 offsets in chars and the chars of all strings.
+     */
+    private class StringTable {
+        private final int size;
+        private final int offsetsStart;
+        private final int dataStart;
+        private final int end;
+
+        private StringTable(int start) {
+            size = buffer.getInt(start);
+            offsetsStart = start + 4;
+            dataStart = offsetsStart + (size + 1) * 4;
+            end = dataStart + buffer.getInt(offsetsStart + size * 4) * 2;
+        }
+
+        private String get(int id) {
+            int begin = buffer.getInt(offsetsStart + id * 4);
+            var chars = new char[buffer.getInt(offsetsStart + (id + 1) * 4) - begin];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = buffer.getChar(dataStart + (begin + i) * 2);
+            }
+
+            return new String(chars);
+        }
+
+        /**
+         * Only valid for sorted tables.
+         *
+         * @param string String to look for.
+         * @return ID of the string or -1 if it is not in the table.
+         */
+        private int find(String key) {
+            int low = 0;
+            int high = size - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compareAt(middle, key);
+
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+
+            return -1;
+        }
+
+        private int compareAt(int id, String key) {
+            int begin = buffer.getInt(offsetsStart + id * 4);
+            int length = buffer.getInt(offsetsStart + (id + 1) * 4) - begin;
+
+            for (int i = 0; i < Math.min(length, key.length()); i++) {
+                int comparison = Character.compare(buffer.getChar(dataStart + (begin + i) * 2), key.charAt(i));
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+
+            return Integer.compare(length, key.length());
+        }
+    }
+
+    /**
+     * Section with a record count followed by fixed-width records of ints.
+     */
+    private class RecordTable {
+        private final int size;
+        private final int width;
+        private final int recordsStart;
+        private final int end;
+
+        private RecordTable(int start, int width) {
+            size = buffer.getInt(start);
+            this.width = width;
+            recordsStart = start + 4;
+            end = recordsStart + size * width * 4;
+        }
+
+        private int get(int record, int column) {
+            return buffer.getInt(recordsStart + (record * width + column) * 4);
+        }
+
+        /**
+         * @param key Prefix of the record to look for.
+         * @return Index of the first record that is not less than the key.
+         */
+        private int lowerBound(int... key) {
+            int low = 0;
+            int high = size;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (comparePrefix(middle, key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        private boolean contains(int... key) {
+            int index = lowerBound(key);
+
+            return index < size && comparePrefix(index, key) == 0;
+        }
+
+        private int comparePrefix(int record, int[] key) {
+            for (int i = 0; i < key.length; i++) {
+                int comparison = Integer.compare(get(record, i), key[i]);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+
+            return 0;
+        }
+
+        /**
+         * Decodes all records that start with the key.
+         *
+         * @param decoder Receives the index of each matching record.
+         * @param key     Prefix of the records.
+         * @param <T>     Type of the decoded records.
+         * @return Decoded records.
+         */
+        private <T> List<T> decodeMatches(IntFunction<T> decoder, int... key) {
+            var matches = new ArrayList<T>();
+
+            for (int i = lowerBound(key); i < size && comparePrefix(i, key) == 0; i++) {
+                matches.add(decoder.apply(i));
+            }
+
+            return matches;
+        }
+    }
+}
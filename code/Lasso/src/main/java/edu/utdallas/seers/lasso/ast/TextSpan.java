@@ -31,6 +31,15 @@ public class TextSpan implements Retrievable {
         docComment = false;
     }
 
+    TextSpan(Type type, Location location, int line, String text) {
+        assert !text.contains("\n");
+        this.type = type;
+        this.location = location;
+        this.text = text;
+        this.line = line;
+        docComment = false;
+    }
+
     public TextSpan(Type type, Location location, int line) {
         this.type = type;
         this.location = location;
@@ -1,15 +1,215 @@
 package edu.utdallas.seers.lasso.ast.matcher;
 
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.comments.Comment;
 import com.github.javaparser.ast.expr.Expression;
-import com.github.javaparser.printer.PrettyPrinter;
+import com.github.javaparser.metamodel.JavaParserMetaModel;
+import com.github.javaparser.metamodel.PropertyMetaModel;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
- * Checks that two expressions are the same by pretty printing them and then comparing the strings.
+ * Checks that two expressions are the same, i.e. that they would be printed the same, by
+ * comparing their structure: the type of each node, its attributes, its children and its
+ * comments. The structural hash of every node is cached in the node the first time it is
+ * compared, which assumes that the tree is not modified while its file is being matched.
+ * <p>
+ * Nodes are walked with explicit stacks so that deep expressions do not overflow the call stack.
  */
 class ExpressionComparer {
-    private final PrettyPrinter stringConverter = new PrettyPrinter();
+    private static final DataKey<Integer> HASH_KEY = new DataKey<>() {
+    };
+
+    private static final ClassValue<Property[]> properties = new ClassValue<>() {
+        @Override
+        protected Property[] computeValue(Class<?> type) {
+            return JavaParserMetaModel.getNodeMetaModel(type)
+                    .map(m -> m.getAllPropertyMetaModels().stream()
+                            .map(p -> new Property(p, type))
+                            .toArray(Property[]::new))
+                    .orElseThrow(() -> new IllegalArgumentException("No metamodel for " + type));
+        }
+    };
 
     boolean areSame(Expression first, Expression second) {
-        return stringConverter.print(first).equals(stringConverter.print(second));
+        return hash(first) == hash(second) && structurallyEqual(first, second);
+    }
+
+    /**
+     * @param node Node.
+     * @return Structural hash of the node, which is computed for the node and all of its
+     * descendants the first time.
+     */
+    static int hash(Node node) {
+        if (node.containsData(HASH_KEY)) {
+            return node.getData(HASH_KEY);
+        }
+
+        // Descendants always appear after their ancestors, so hashing in reverse order hashes children first
+        var nodes = new ArrayList<Node>();
+        Deque<Node> stack = new ArrayDeque<>(Collections.singleton(node));
+        while (!stack.isEmpty()) {
+            var current = stack.pop();
+            if (current.containsData(HASH_KEY)) {
+                continue;
+            }
+
+            nodes.add(current);
+            forEachChild(current, stack::push);
+        }
+
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            var current = nodes.get(i);
+            current.setData(HASH_KEY, computeHash(current));
+        }
+
+        return node.getData(HASH_KEY);
+    }
+
+    private static int computeHash(Node node) {
+        int hash = node.getClass().getName().hashCode();
+
+        for (Property property : properties.get(node.getClass())) {
+            var value = property.get(node);
+            if (value == null) {
+                hash = 31 * hash;
+            } else if (property.kind == Kind.NODE) {
+                hash = 31 * hash + hash((Node) value);
+            } else if (property.kind == Kind.LIST) {
+                var list = (NodeList<?>) value;
+                hash = 31 * hash + list.size() + 1;
+                for (Node child : list) {
+                    hash = 31 * hash + hash(child);
+                }
+            } else {
+                hash = 31 * hash + value.hashCode();
+            }
+        }
+
+        for (Comment comment : node.getOrphanComments()) {
+            hash = 31 * hash + hash(comment);
+        }
+
+        return hash;
+    }
+
+    private static boolean structurallyEqual(Node first, Node second) {
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(first);
+        pending.push(second);
+
+        while (!pending.isEmpty()) {
+            var b = pending.pop();
+            var a = pending.pop();
+
+            if (a == b) {
+                continue;
+            }
+
+            if (a == null || b == null || a.getClass() != b.getClass() || hash(a) != hash(b)) {
+                return false;
+            }
+
+            for (Property property : properties.get(a.getClass())) {
+                var valueA = property.get(a);
+                var valueB = property.get(b);
+
+                if (valueA == null || valueB == null) {
+                    if (valueA != valueB) {
+                        return false;
+                    }
+                } else if (property.kind == Kind.NODE) {
+                    pending.push((Node) valueA);
+                    pending.push((Node) valueB);
+                } else if (property.kind == Kind.LIST) {
+                    if (!pushAll(pending, (NodeList<?>) valueA, (NodeList<?>) valueB)) {
+                        return false;
+                    }
+                } else if (!valueA.equals(valueB)) {
+                    return false;
+                }
+            }
+
+            if (!pushAll(pending, a.getOrphanComments(), b.getOrphanComments())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean pushAll(Deque<Node> pending, List<? extends Node> first, List<? extends Node> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < first.size(); i++) {
+            pending.push(first.get(i));
+            pending.push(second.get(i));
+        }
+
+        return true;
+    }
+
+    /**
+     * Calls the consumer on each node that is a property of the node or one of its orphan comments.
+     */
+    private static void forEachChild(Node node, Consumer<Node> consumer) {
+        for (Property property : properties.get(node.getClass())) {
+            var value = property.get(node);
+            if (value == null) {
+                continue;
+            }
+
+            if (property.kind == Kind.NODE) {
+                consumer.accept((Node) value);
+            } else if (property.kind == Kind.LIST) {
+                ((NodeList<?>) value).forEach(consumer);
+            }
+        }
+
+        node.getOrphanComments().forEach(consumer);
+    }
+
+    private enum Kind {
+        NODE, LIST, VALUE
+    }
+
+    /**
+     * A property of the JavaParser metamodel, read directly from its field.
+     */
+    private static class Property {
+        private final Field field;
+        private final Kind kind;
+
+        private Property(PropertyMetaModel metaModel, Class<?> type) {
+            kind = metaModel.isNodeList() ? Kind.LIST : (metaModel.isNode() ? Kind.NODE : Kind.VALUE);
+            field = findField(type, metaModel.getName());
+            field.setAccessible(true);
+        }
+
+        private static Field findField(Class<?> type, String name) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.getName().equals(name)) {
+                        return field;
+                    }
+                }
+            }
+
+            throw new IllegalArgumentException(String.format("No field %s in %s", name, type));
+        }
+
+        private Object get(Node node) {
+            try {
+                return field.get(node);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
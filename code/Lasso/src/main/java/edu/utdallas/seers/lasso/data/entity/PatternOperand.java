@@ -37,7 +37,7 @@ public class PatternOperand {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PatternOperand that = (PatternOperand) o;
-        return text.equals(that.text) && dataDefinition.equals(that.dataDefinition);
+        return text.equals(that.text) && Objects.equals(dataDefinition, that.dataDefinition);
     }
 
     @Override
@@ -103,32 +103,40 @@ public class ConstraintStatsExtractor {
                 .collect(Collectors.toList());
 
         var mapping = PairSeq.seq(sourceFiles, SourceFile::getPackagePath, SourceFile::getPath).toMap();
+        var groupedConstraints = constraints.stream()
+                .collect(Collectors.groupingBy(c -> c.getpTrus()[0].getFile()));
+
+        // Files with constraints are kept as they are extracted for the index, so they are only parsed once
+        var constraintFileSpans = new HashMap<String, List<TextSpan>>();
         var sourceFileIndex = new TextSpanIndexBuilder(cachePath, preprocessor)
                 .buildIndex(
                         project,
                         sourceFiles.stream()
-                                .flatMap(Unchecked.function(s -> extractor.extractText(s.getPath())))
+                                .flatMap(Unchecked.function(s -> {
+                                    if (!groupedConstraints.containsKey(s.getPackagePath())) {
+                                        return extractor.extractText(s.getPath());
+                                    }
+
+                                    var spans = extractor.extractText(s.getPath()).collect(Collectors.toList());
+                                    constraintFileSpans.put(s.getPackagePath(), spans);
+                                    return spans.stream();
+                                }))
                 );
 
-        var groupedConstraints = constraints.stream()
-                .collect(Collectors.groupingBy(c -> c.getpTrus()[0].getFile()));
-
         return streamMap(groupedConstraints)
                 .flatMap(Unchecked.biFunction((f, cs) -> {
-                    var path = mapping.get(f);
-                    var lines = parseFileText(path);
+                    // Not extracted yet if the index already existed
+                    var spans = constraintFileSpans.containsKey(f) ?
+                            constraintFileSpans.get(f) :
+                            extractor.extractText(mapping.get(f)).collect(Collectors.toList());
+                    var fileIndex = new TermPositionIndex(spans, preprocessor);
 
                     return cs.stream()
-                            .map(c -> processConstraint(c, lines, sourceFileIndex));
+                            .map(c -> processConstraint(c, fileIndex, sourceFileIndex));
                 }));
     }
 
-    private Map<Integer, List<TextSpan>> parseFileText(Path path) throws IOException {
-        return extractor.extractText(path)
-                .collect(Collectors.groupingBy(TextSpan::getLine));
-    }
-
-    private Result processConstraint(PatternEntry constraint, Map<Integer, List<TextSpan>> fileLines, Index<TextSpan> sourceFileIndex) {
+    private Result processConstraint(PatternEntry constraint, TermPositionIndex fileIndex, Index<TextSpan> sourceFileIndex) {
         var operands = constraint.getOperands().stream()
                 .map(s -> preprocessor.preprocess(s, true).collect(Collectors.joining(" ")))
                 .collect(Collectors.toList());
@@ -137,12 +145,11 @@ public class ConstraintStatsExtractor {
                 .boxed()
                 .collect(Collectors.toList());
         var groundTruthTerms = gtLines.stream()
-                .flatMap(i -> fileLines.getOrDefault(i, Collections.emptyList()).stream()
-                        .flatMap(s -> preprocessor.preprocess(s.getText(), true)))
+                .flatMap(i -> fileIndex.getTerms(i).stream())
                 .collect(Collectors.toList());
-        var gtLoc = findGTLocation(fileLines, gtLines);
+        var gtLoc = findGTLocation(fileIndex, gtLines);
 
-        var termDistances = calculateTermDistances(operands, gtLines, fileLines);
+        var termDistances = calculateTermDistances(operands, gtLines, fileIndex);
 
         var results = operands.stream()
                 .map(t -> {
@@ -156,9 +163,9 @@ public class ConstraintStatsExtractor {
                 termDistances, gtLoc);
     }
 
-    private TextSpan.Location findGTLocation(Map<Integer, List<TextSpan>> fileLines, List<Integer> gtLines) {
+    private TextSpan.Location findGTLocation(TermPositionIndex fileIndex, List<Integer> gtLines) {
         var locations = gtLines.stream()
-                .flatMap(i -> fileLines.getOrDefault(i, Collections.emptyList()).stream()
+                .flatMap(i -> fileIndex.getSpans(i).stream()
                         .map(TextSpan::getLocation))
                 .collect(Collectors.toSet());
 
@@ -167,18 +174,19 @@ public class ConstraintStatsExtractor {
         return locations.iterator().next();
     }
 
-    private List<Integer> calculateTermDistances(List<String> terms, List<Integer> gtLines, Map<Integer, List<TextSpan>> lines) {
+    /**
+     * @param terms   Terms.
+     * @param gtLines Ground truth lines.
+     * @param index   Index of the ground truth file.
+     * @return For each term that is in the file, the signed distance between its closest
+     * occurrence and the ground truth, sorted by absolute distance.
+     */
+    static List<Integer> calculateTermDistances(List<String> terms, List<Integer> gtLines, TermPositionIndex index) {
+        var sortedGTLines = gtLines.stream().mapToInt(i -> i).sorted().toArray();
         // To compare preserving the sign
         Comparator<Integer> absComparer = Comparator.comparing(Math::abs);
         return terms.stream()
-                .map(t -> streamMap(lines)
-                        .filter((i, ws) -> !t.isEmpty() && ws.stream()
-                                .flatMap(s -> preprocessor.preprocess(s.getText(), true))
-                                .anyMatch(w -> w.equals(t)))
-                        .combine((i, ws) -> gtLines.stream()
-                                .map(j -> i - j)
-                                .min(absComparer).orElseThrow())
-                        .min(absComparer))
+                .map(t -> t.isEmpty() ? Optional.<Integer>empty() : index.findClosestDistance(t, sortedGTLines))
                 .flatMap(Optional::stream)
                 .sorted(absComparer)
                 .collect(Collectors.toList());
@@ -4,12 +4,18 @@ import com.google.common.collect.ImmutableMap;
 import com.opencsv.bean.CsvBindAndJoinByName;
 import com.opencsv.bean.CsvBindByName;
 import edu.utdallas.seers.file.csv.CSVWriter;
+import edu.utdallas.seers.lasso.ast.ASTPatternDetector;
+import edu.utdallas.seers.lasso.ast.DetectionArtifact;
 import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
 import edu.utdallas.seers.lasso.retrieval.*;
 import edu.utdallas.seers.lasso.utils.LineContextExtractor;
+import edu.utdallas.seers.parallel.ExecutorRegistry;
+import edu.utdallas.seers.parallel.Parallel;
 import edu.utdallas.seers.parameter.Options;
 import edu.utdallas.seers.retrieval.AggregatedRetrievalEvaluation;
+import edu.utdallas.seers.retrieval.RetrievalResult;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.impl.action.StoreTrueArgumentAction;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -23,9 +29,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -36,6 +40,9 @@ public class ConstraintTracingEvaluator {
 
     // TODO parameterize this if necessary
     private static final boolean INDIVIDUAL_OUT_ONLY_GT_RESULT = false;
+    private static final int INDIVIDUAL_TOP_N = 20;
+    private static final String EVALUATION_POOL = "evaluation";
+    private static final int EVALUATION_THREADS = Runtime.getRuntime().availableProcessors();
 
     private final Logger logger = LoggerFactory.getLogger(ConstraintTracingEvaluator.class);
     private final IndexCoordinator indexManager = new IndexCoordinator();
@@ -45,12 +52,17 @@ public class ConstraintTracingEvaluator {
     private final Path sourcesDir;
     private final Path outputPath;
     private final boolean writeIndividual;
+    private final LassoConfig.Engine engine;
+    private final LassoConfig.Sharding sharding;
 
-    public ConstraintTracingEvaluator(Path constraintsFile, Path sourcesDir, Path outputPath, boolean writeIndividual) {
+    public ConstraintTracingEvaluator(Path constraintsFile, Path sourcesDir, Path outputPath, boolean writeIndividual,
+                                      LassoConfig.Engine engine, LassoConfig.Sharding sharding) {
         this.constraintsFile = constraintsFile;
         this.sourcesDir = sourcesDir;
         this.outputPath = outputPath;
         this.writeIndividual = writeIndividual;
+        this.engine = engine;
+        this.sharding = sharding;
         lineExtractor = new LineContextExtractor(sourcesDir, 6);
     }
 
@@ -62,8 +74,10 @@ public class ConstraintTracingEvaluator {
         var sourcesDir = Paths.get(namespace.getString("sources_dir"));
         var outputPath = Paths.get(namespace.getString("output_path"));
         var writeIndividual = namespace.<Boolean>get("write_individual");
+        var engine = namespace.<LassoConfig.Engine>get("pattern_engine");
+        var sharding = namespace.<LassoConfig.Sharding>get("pattern_sharding");
 
-        new ConstraintTracingEvaluator(constraintsFile, sourcesDir, outputPath, writeIndividual)
+        new ConstraintTracingEvaluator(constraintsFile, sourcesDir, outputPath, writeIndividual, engine, sharding)
                 .runExperiment();
     }
 
@@ -72,7 +86,11 @@ public class ConstraintTracingEvaluator {
                 // Common arguments
                 .addIgnoreCacheOption()
                 .addCachePathOption()
+                .addInMemoryIndexesOption()
                 .addHitsAtKRanksOption()
+                .addSearchThreadsOption()
+                .addQueryThreadsOption()
+                .addParseBudgetOptions()
                 .build();
 
         parser.addArgument("constraints_file")
@@ -88,6 +106,16 @@ public class ConstraintTracingEvaluator {
                 .action(new StoreTrueArgumentAction())
                 .help("If provided, the result list for each constraint will be printed");
 
+        parser.addArgument("-e", "--pattern-engine")
+                .type(Arguments.enumStringType(LassoConfig.Engine.class))
+                .setDefault(LassoConfig.Engine.LUCENE)
+                .help("How Lasso pattern queries are run, which does not change the results");
+
+        parser.addArgument("-p", "--pattern-sharding")
+                .type(Arguments.enumStringType(LassoConfig.Sharding.class))
+                .setDefault(LassoConfig.Sharding.NONE)
+                .help("How Lasso pattern indexes are split, which does not change the results");
+
         Namespace namespace;
         try {
             namespace = parser.parseArgs(args);
@@ -103,31 +131,43 @@ public class ConstraintTracingEvaluator {
         var byConstraintFile = outputPath.resolve("results-all.csv");
         Path byScenarioPath = outputPath.resolve("results-summary.csv");
         Path samplePath = outputPath.resolve("individual-results.csv");
-//        Path sampleSourcePath = outputPath.resolve("01-sample-source.txt");
+        Set<String> projects;
         try (var byConstraintWriter = CSVWriter.<ConstraintEvaluation>create(byConstraintFile);
              var byScenarioWriter = CSVWriter.<AggregatedEvaluation>create(byScenarioPath);
              var sampleWriter = CSVWriter.<IndividualResult>create(samplePath)) {
-//             var sampleSourceWriter = new PrintWriter(Files.newBufferedWriter(sampleSourcePath))) {
             var scenarios = new ConstraintLoader().loadGrouped(constraintsFile)
                     .sorted()
                     .flatMap(this::generateScenarios)
                     .toList();
-
-            scenarios.parallelStream()
-                    .map(this::evaluateScenario)
-                    .peek(Unchecked.consumer(es -> writeIndividual(sampleWriter, es)))
-                    .peek(es -> byConstraintWriter.writeRows(es.stream()
-                            .map(ConstraintEvaluation::new)))
-                    .map(es -> tuple(
-                            ((LassoScenarioID) es.get(0).getScenarioKey()).removeProject(),
-                            AggregatedRetrievalEvaluation.create(es)
-                    ))
+            projects = scenarios.stream()
+                    .map(s -> s.key.project)
+                    .collect(Collectors.toCollection(TreeSet::new));
+
+            // Results are written by the pool threads as soon as each scenario is evaluated
+            Parallel.mapInOrder(EVALUATION_POOL, scenarios, Unchecked.function(s -> tuple(
+                    s.key.removeProject(),
+                    evaluateScenario(s, byConstraintWriter, sampleWriter)
+            )), EVALUATION_THREADS).stream()
                     .collect(Collectors.groupingBy(Tuple2::v1))
                     .forEach((k, es) -> byScenarioWriter.writeRow(new AggregatedEvaluation(
                             k,
                             AggregatedRetrievalEvaluation.aggregate(es.stream().map(Tuple2::v2).collect(Collectors.toList()))
                     )));
         }
+
+        var cacheStats = indexManager.getBaselineResultStats();
+        logger.info("Baseline result cache hit rate: {} ({} hits, {} misses)",
+                cacheStats.hitRate(), cacheStats.hitCount(), cacheStats.missCount());
+        ExecutorRegistry.getInstance().getStats().forEach(s -> logger.info("Pool {}", s));
+
+        // Indexes that were loaded from the cache did not open their detection artifacts
+        var artifactsPath = Options.getInstance().getCachePath().resolve(LassoIndexBuilder.ARTIFACTS_DIR_NAME);
+        projects.forEach(p -> DetectionArtifact.recordSkippedFiles(p, artifactsPath));
+        var skippedFiles = ASTPatternDetector.getSkippedFiles();
+        logger.info("Files skipped by pattern detection: {}", skippedFiles.size());
+        try (var skippedWriter = CSVWriter.<ASTPatternDetector.SkippedFile>create(outputPath.resolve("skipped-files.csv"))) {
+            skippedWriter.writeRows(skippedFiles.stream());
+        }
     }
 
     private Stream<EvaluationScenario> generateScenarios(String project, List<PatternEntry> constraints) {
@@ -141,9 +181,9 @@ public class ConstraintTracingEvaluator {
 
         return Stream.of(
                 // LASSO
-                new EvaluationScenario(LassoScenarioID.lassoMethod(project, lassoWeights, BaselineIndexBuilder.Type.TFIDF), constraints),
-                new EvaluationScenario(LassoScenarioID.lassoMethod(project, lassoWeights, BaselineIndexBuilder.Type.BM25), constraints),
-                new EvaluationScenario(LassoScenarioID.lassoMethod(project, lassoWeights, BaselineIndexBuilder.Type.LSI), constraints),
+                new EvaluationScenario(LassoScenarioID.lassoMethod(project, lassoWeights, BaselineIndexBuilder.Type.TFIDF, engine, sharding), constraints),
+                new EvaluationScenario(LassoScenarioID.lassoMethod(project, lassoWeights, BaselineIndexBuilder.Type.BM25, engine, sharding), constraints),
+                new EvaluationScenario(LassoScenarioID.lassoMethod(project, lassoWeights, BaselineIndexBuilder.Type.LSI, engine, sharding), constraints),
 
                 // BASELINES
                 new EvaluationScenario(LassoScenarioID.baseline(project, BaselineIndexBuilder.Type.TFIDF, BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1), constraints),
@@ -152,71 +192,150 @@ public class ConstraintTracingEvaluator {
         );
     }
 
+    /**
+     * Lasso indexes are closed after the scenario so that their readers can be released.
+     *
+     * @return The aggregated evaluation of all constraints of the scenario.
+     */
     @SuppressWarnings("unchecked")
-    private List<LassoEvaluation> evaluateScenario(EvaluationScenario scenario) {
+    private AggregatedRetrievalEvaluation evaluateScenario(EvaluationScenario scenario,
+                                                           CSVWriter<ConstraintEvaluation> byConstraintWriter,
+                                                           CSVWriter<IndividualResult> sampleWriter) {
         var key = scenario.key;
         logger.info("Processing scenario: {}", key);
 
-        Function<PatternEntry, LassoEvaluation> action;
-
         if (key.getConfiguration() instanceof BaselineConfig) {
             var index = indexManager.createBaselineIndex(sourcesDir, (LassoScenarioID<BaselineConfig>) key);
-            action = c -> new LassoEvaluation(index.search(c));
-        } else {
-            var index = indexManager.createIndex(sourcesDir, (LassoScenarioID<LassoConfig>) key);
-            action = c -> new LassoEvaluation(index.search(c));
+            return evaluateScenario(scenario, index::search, index.getFingerprint(), byConstraintWriter,
+                    sampleWriter);
+        }
+
+        try (var index = indexManager.createIndex(sourcesDir, (LassoScenarioID<LassoConfig>) key)) {
+            return evaluateScenario(scenario, index::search, index.getFingerprint(), byConstraintWriter,
+                    sampleWriter);
         }
-        return scenario.constraints.stream()
-                .map(action)
-                .collect(Collectors.toList());
     }
 
-    private void writeIndividual(CSVWriter<IndividualResult> writer, List<LassoEvaluation> evaluations) {
+    /**
+     * Only constraints that are not in the {@link EvaluationCache} of the scenario are searched,
+     * unless individual results are written, which need the result lists.
+     * <p>
+     * Each result collection is reduced to its evaluation, and its top results if individual
+     * results are written, as soon as its search finishes. The evaluations are then accumulated,
+     * so the memory used does not depend on the length of the result lists.
+     *
+     * @param search      Searches the index of the scenario.
+     * @param fingerprint Fingerprint of the index of the scenario.
+     * @return The aggregated evaluation of all constraints of the scenario.
+     */
+    private AggregatedRetrievalEvaluation evaluateScenario(EvaluationScenario scenario,
+                                                           Function<PatternEntry, LassoResultCollection> search,
+                                                           String fingerprint,
+                                                           CSVWriter<ConstraintEvaluation> byConstraintWriter,
+                                                           CSVWriter<IndividualResult> sampleWriter) {
+        var key = scenario.key;
+        var cache = EvaluationCache.open(key, fingerprint);
+        var evaluations = new IdentityHashMap<PatternEntry, LassoEvaluation>();
         if (!writeIndividual) {
-            return;
+            for (PatternEntry constraint : scenario.constraints) {
+                cache.get(constraint).ifPresent(e -> evaluations.put(constraint, e));
+            }
         }
 
-        for (LassoEvaluation evaluation : evaluations) {
-            var key = (LassoScenarioID) evaluations.get(0).getScenarioKey();
-            var project = key.project;
-            var gtRank = evaluation.getRank().orElse(-1);
-            var constraintID = evaluation.getQuery().getID();
-
-            var gt = evaluation.getRank().map(r -> evaluation.getResults().getCluster(r)).stream();
+        var missing = scenario.constraints.stream()
+                .filter(c -> !evaluations.containsKey(c))
+                .collect(Collectors.toList());
+        logger.info("[{}] {} cached evaluations, {} constraints to search", key, evaluations.size(), missing.size());
+
+        if (!missing.isEmpty()) {
+            // Results are in the same order as the queries
+            var reduced = Parallel.mapInOrder(Parallel.QUERY_POOL, missing, c -> reduce(search.apply(c)),
+                    Options.getInstance().getQueryThreads());
+            for (int i = 0; i < missing.size(); i++) {
+                var evaluation = reduced.get(i).v1;
+                cache.put(evaluation);
+                evaluations.put(missing.get(i), evaluation);
+            }
+            cache.save();
 
-            Stream<LassoResultCollection.ResultGroup> results;
-            if (INDIVIDUAL_OUT_ONLY_GT_RESULT) {
-                results = gt;
-            } else {
-                var topN = evaluation.getResults().clusteredItems();
-                results = Stream.concat(topN, gt);
+            if (writeIndividual) {
+                sampleWriter.writeRows(reduced.stream().flatMap(t -> t.v2.stream()));
             }
-            writer.writeRows(results
-                            // In case the GT is in top n
-                            .distinct()
-                            .sorted(Comparator.comparing(r -> r.rank))
-//                    .peek(g -> {
-//                                // TODO groups currently contain only a single constraint
-//                                var result = g.results.get(0);
-//                                List<LassoResult> patterns;
-//                                if (!result.getStats().groupedResults.isEmpty()) {
-//                                    patterns = result.getStats().groupedResults;
-//                                } else {
-//                                    patterns = Collections.singletonList(result);
-//                                }
-//                                lineExtractor.extractFor(
-//                                        project,
-//                                        String.format("%s_%sR%d", key.getConfiguration().toString(), constraintID, g.rank),
-//                                        patterns.stream()
-//                                                .map(RetrievalResult::getResult)
-//                                                .collect(Collectors.toList())
-//                                )
-//                                        .forEachOrdered(sampleSourceWriter::println);
-//                            }
-//                    )
-                            .map(r -> new IndividualResult(r, project, gtRank, constraintID, key))
-            );
         }
+
+        var accumulator = new AggregatedRetrievalEvaluation();
+        var rows = new ArrayList<ConstraintEvaluation>(scenario.constraints.size());
+        for (PatternEntry constraint : scenario.constraints) {
+            var evaluation = evaluations.get(constraint);
+            accumulator.accumulate(evaluation);
+            rows.add(new ConstraintEvaluation(evaluation));
+        }
+        byConstraintWriter.writeRows(rows.stream());
+
+        return accumulator;
+    }
+
+    /**
+     * Reduces the results of a constraint to what is written and aggregated, so that they can be
+     * discarded right away.
+     *
+     * @param results Results of a constraint.
+     * @return The evaluation without results and the rows of the top results, which are only
+     * created if individual results are written.
+     */
+    private Tuple2<LassoEvaluation, List<IndividualResult>> reduce(LassoResultCollection results) {
+        var evaluation = new LassoEvaluation(results);
+        var individual = writeIndividual ?
+                createIndividualResults(evaluation) :
+                Collections.<IndividualResult>emptyList();
+
+        return tuple(evaluation.removeResults(), individual);
+    }
+
+    private List<IndividualResult> createIndividualResults(LassoEvaluation evaluation) {
+        var key = (LassoScenarioID) evaluation.getScenarioKey();
+        var project = key.project;
+        var gtRank = evaluation.getRank().orElse(-1);
+        var constraintID = evaluation.getQuery().getID();
+
+        var gt = evaluation.getRank().map(r -> evaluation.getResults().getCluster(r)).stream();
+
+        Stream<LassoResultCollection.ResultGroup> results;
+        if (INDIVIDUAL_OUT_ONLY_GT_RESULT) {
+            results = gt;
+        } else {
+            var topN = evaluation.getResults().clusteredItems().limit(INDIVIDUAL_TOP_N);
+            results = Stream.concat(topN, gt);
+        }
+
+        return results
+                // In case the GT is in top n
+                .distinct()
+                .sorted(Comparator.comparing(r -> r.rank))
+                .map(r -> new IndividualResult(r, project, gtRank, constraintID, key,
+                        extractSourceContext(project, constraintID, r, key)))
+                .collect(Collectors.toList());
+    }
+
+    private String extractSourceContext(String project, String constraintID,
+                                        LassoResultCollection.ResultGroup group, LassoScenarioID key) {
+        // TODO groups currently contain only a single constraint
+        var result = group.results.get(0);
+        List<LassoResult> patterns;
+        if (!result.getStats().groupedResults.isEmpty()) {
+            patterns = result.getStats().groupedResults;
+        } else {
+            patterns = Collections.singletonList(result);
+        }
+
+        return lineExtractor.extractFor(
+                project,
+                String.format("%s_%sR%d", key.getConfiguration().toString(), constraintID, group.rank),
+                patterns.stream()
+                        .map(RetrievalResult::getResult)
+                        .collect(Collectors.toList())
+        )
+                .collect(Collectors.joining("\n"));
     }
 
     private static class AggregatedEvaluation {
@@ -345,8 +464,11 @@ public class ConstraintTracingEvaluator {
         private final String decomposedScore;
 //        @CsvBindByName
 //        private final String groupedResults;
+        @CsvBindByName(column = "Source Context")
+        private final String sourceContext;
 
-        public IndividualResult(LassoResultCollection.ResultGroup cluster, String project, int gtRank, String constraintID, LassoScenarioID key) {
+        public IndividualResult(LassoResultCollection.ResultGroup cluster, String project, int gtRank, String constraintID,
+                                LassoScenarioID key, String sourceContext) {
             technique = key.getConfiguration().toString();
             var result = cluster.results.get(0);
             constraint = constraintID;
@@ -356,6 +478,7 @@ public class ConstraintTracingEvaluator {
             score = result.getScore();
             isGT = result.getRank() == gtRank;
             decomposedScore = result.getDecomposedScore().repr();
+            this.sourceContext = sourceContext;
 //            termLocations = streamMap(result.getStats().qtLocations)
 //                    .filter((t, ls) -> !ls.isEmpty())
 //                    .combine((t, ls) -> t + ":" + ls.stream().map(Object::toString).collect(Collectors.joining(", ")))
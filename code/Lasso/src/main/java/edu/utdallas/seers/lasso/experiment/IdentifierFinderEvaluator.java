@@ -6,6 +6,8 @@ import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.DetectorInput;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
 import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import edu.utdallas.seers.lasso.identifier.BytecodeIdentifierExtractor;
+import edu.utdallas.seers.lasso.identifier.IdentifierDictionary;
 import edu.utdallas.seers.lasso.identifier.IdentifierExtractor;
 import edu.utdallas.seers.lasso.identifier.IdentifierIndex;
 import edu.utdallas.seers.lasso.identifier.IdentifierIndexBuilder;
@@ -32,6 +34,8 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class IdentifierFinderEvaluator {
+    private static final int MAX_SIMILAR_EDITS = 2;
+
     private final Logger logger = LoggerFactory.getLogger(IdentifierFinderEvaluator.class);
     private final Pattern expressionSplitter = Pattern.compile(" +\\W*");
     private final TextPreprocessor textPreprocessor = TextPreprocessor.withStandardStopWords();
@@ -55,6 +59,7 @@ public class IdentifierFinderEvaluator {
         var parser = new Options.ArgumentBuilder(IdentifierFinderEvaluator.class.getName())
                 .addCachePathOption()
                 .addIgnoreCacheOption()
+                .addInMemoryIndexesOption()
                 .build();
 
         parser.addArgument("constraints_file");
@@ -103,20 +108,11 @@ public class IdentifierFinderEvaluator {
 
         logger.info("Evaluating {} constraints", constraints.size());
 
-        Path projectSourcesDirectory = sourcesDirectory.resolve(projectName).resolve("sources");
-        Set<Path> exclusions = ConstraintLoader.loadExclusions(projectSourcesDirectory);
-
-        var extractor = new IdentifierExtractor(filter);
-        var identifiers = JavaFileWalker.walk(projectSourcesDirectory, exclusions)
-                .flatMap(Unchecked.function(extractor::visit))
-                .collect(Collectors.toList());
-
-        var corpusIdentifiers = identifiers.stream()
-                .map(Attribute::getName)
-                .collect(Collectors.toSet());
+        var identifiers = extractIdentifiers(projectName);
 
         IdentifierIndex index = (IdentifierIndex) new IdentifierIndexBuilder(experimentName)
                 .buildIndex(projectName, identifiers.stream());
+        var corpusIdentifiers = index.getDictionary();
 
         logger.info("Extracted {} identifiers", corpusIdentifiers.size());
 
@@ -124,9 +120,35 @@ public class IdentifierFinderEvaluator {
                 .flatMap(c -> evaluateConstraint(projectName, c, corpusIdentifiers, index));
     }
 
+    /**
+     * Reads the identifiers from the project binaries, which is much faster than parsing the
+     * sources. Sources are used if there are no binaries.
+     *
+     * @param projectName Project.
+     * @return Identifiers.
+     */
+    private List<Attribute> extractIdentifiers(String projectName) {
+        Path projectDirectory = sourcesDirectory.resolve(projectName);
+        var jars = BytecodeIdentifierExtractor.findJars(projectDirectory.resolve("binaries"));
+
+        if (jars.isPresent()) {
+            return new BytecodeIdentifierExtractor(filter).extract(jars.get());
+        }
+
+        logger.info("No binaries found, extracting identifiers from sources");
+
+        Path projectSourcesDirectory = projectDirectory.resolve("sources");
+        Set<Path> exclusions = ConstraintLoader.loadExclusions(projectSourcesDirectory);
+
+        var extractor = new IdentifierExtractor(filter);
+        return JavaFileWalker.walk(projectSourcesDirectory, exclusions)
+                .flatMap(Unchecked.function(extractor::visit))
+                .collect(Collectors.toList());
+    }
+
     private Stream<EvaluationResult> evaluateConstraint(String projectName,
                                                         PatternEntry constraint,
-                                                        Set<String> corpusIdentifiers,
+                                                        IdentifierDictionary corpusIdentifiers,
                                                         IdentifierIndex index) {
         List<String> queryTerms = textPreprocessor.preprocess(constraint.getContext(), true)
                 .collect(Collectors.toList());
@@ -154,7 +176,8 @@ public class IdentifierFinderEvaluator {
                 .filter(s -> {
                     boolean valid = corpusIdentifiers.contains(s);
                     if (!valid) {
-                        logger.info("Input not found in extracted identifiers: {}", s);
+                        logger.info("Input not found in extracted identifiers: {}, similar: {}", s,
+                                corpusIdentifiers.findWithinEditDistance(s, MAX_SIMILAR_EDITS));
                     }
                     return valid;
                 })
@@ -6,6 +6,8 @@ import edu.utdallas.seers.file.csv.CSVWriter;
 import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
 import edu.utdallas.seers.lasso.retrieval.*;
+import edu.utdallas.seers.parallel.ExecutorRegistry;
+import edu.utdallas.seers.parallel.Parallel;
 import edu.utdallas.seers.retrieval.AggregatedRetrievalEvaluation;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.jooq.lambda.Seq;
@@ -23,6 +25,10 @@ import static edu.utdallas.seers.lasso.experiment.ConstraintTracingEvaluator.par
 import static org.jooq.lambda.tuple.Tuple.tuple;
 
 public class LassoWeightEvaluator {
+    private static final String EVALUATION_POOL = "evaluation";
+    private static final String PROJECT_POOL = "evaluation-project";
+    private static final int EVALUATION_THREADS = Runtime.getRuntime().availableProcessors();
+
     private final Logger logger = LoggerFactory.getLogger(LassoWeightEvaluator.class);
     private final List<LassoScore.Component> lassoComponents = Arrays.asList(
             LassoScore.Component.CONSTRAINT_OPERAND, LassoScore.Component.ESC_OPERAND,
@@ -40,11 +46,16 @@ public class LassoWeightEvaluator {
     private final Path constraintsFile;
     private final Path sourcesDir;
     private final Path outputPath;
+    private final LassoConfig.Engine engine;
+    private final LassoConfig.Sharding sharding;
 
-    public LassoWeightEvaluator(Path constraintsFile, Path sourcesDir, Path outputPath) {
+    public LassoWeightEvaluator(Path constraintsFile, Path sourcesDir, Path outputPath, LassoConfig.Engine engine,
+                                LassoConfig.Sharding sharding) {
         this.constraintsFile = constraintsFile;
         this.sourcesDir = sourcesDir;
         this.outputPath = outputPath;
+        this.engine = engine;
+        this.sharding = sharding;
     }
 
     public static void main(String[] args) throws IOException {
@@ -54,8 +65,10 @@ public class LassoWeightEvaluator {
         var constraintsFile = Paths.get(namespace.getString("constraints_file"));
         var sourcesDir = Paths.get(namespace.getString("sources_dir"));
         var outputPath = Paths.get(namespace.getString("output_path"));
+        var engine = namespace.<LassoConfig.Engine>get("pattern_engine");
+        var sharding = namespace.<LassoConfig.Sharding>get("pattern_sharding");
 
-        new LassoWeightEvaluator(constraintsFile, sourcesDir, outputPath)
+        new LassoWeightEvaluator(constraintsFile, sourcesDir, outputPath, engine, sharding)
                 .startExperiment();
     }
 
@@ -88,9 +101,11 @@ public class LassoWeightEvaluator {
                     .toList();
 
             int round = i + 1;
-            var bestWeight = scenarios.parallelStream()
-                    .map(s -> evaluateCombination(s, constraints))
-                    .peek(r -> writer.writeRow(new Evaluation(round, r)))
+            var bestWeight = Parallel.mapInOrder(EVALUATION_POOL, scenarios, s -> {
+                var result = evaluateCombination(s, constraints);
+                writer.writeRow(new Evaluation(round, result));
+                return result;
+            }, EVALUATION_THREADS).stream()
                     .max(Comparator.comparing(e -> e.stats.getPercentHitsAtK().get(20)))
                     .get();
 
@@ -100,6 +115,11 @@ public class LassoWeightEvaluator {
         }
 
         logger.info("Best configuration: {}", lockedScenario);
+
+        var cacheStats = coordinator.getBaselineResultStats();
+        logger.info("Baseline result cache hit rate: {} ({} hits, {} misses)",
+                cacheStats.hitRate(), cacheStats.hitCount(), cacheStats.missCount());
+        ExecutorRegistry.getInstance().getStats().forEach(s -> logger.info("Pool {}", s));
     }
 
     private Seq<Scenario> generateWeights(Scenario lockedScenario, LassoScore.Component component) {
@@ -122,23 +142,23 @@ public class LassoWeightEvaluator {
                 .shuffle()
                 .toList();
 
-        var byProject = shuffledData.parallelStream()
-                .map(p -> {
-                    var windowSize = scenario.windowSize != -1 ?
-                            scenario.windowSize :
-                            // Use first value as default if CQ is not being used
-                            windowValues.get(0);
-                    var key = LassoScenarioID.lassoPattern(
-                            p.v1, scenario.getFloatWeights(), BaselineIndexBuilder.Type.BM25);
-                    var index = coordinator.createIndex(sourcesDir, key);
-
-                    var constraintEvaluations = p.v2.stream()
-                            .map(c -> new LassoEvaluation(index.search(c)))
-                            .collect(Collectors.toList());
-
-                    return AggregatedRetrievalEvaluation.create(constraintEvaluations);
-                })
-                .collect(Collectors.toList());
+        // Runs in a different pool than the combinations, which wait for these tasks
+        var byProject = Parallel.mapInOrder(PROJECT_POOL, shuffledData, p -> {
+            var windowSize = scenario.windowSize != -1 ?
+                    scenario.windowSize :
+                    // Use first value as default if CQ is not being used
+                    windowValues.get(0);
+            var key = LassoScenarioID.lassoPattern(
+                    p.v1, scenario.getFloatWeights(), BaselineIndexBuilder.Type.BM25, engine, sharding);
+            List<LassoEvaluation> constraintEvaluations;
+            try (var index = coordinator.createIndex(sourcesDir, key)) {
+                constraintEvaluations = index.search(p.v2).stream()
+                        .map(LassoEvaluation::new)
+                        .collect(Collectors.toList());
+            }
+
+            return AggregatedRetrievalEvaluation.create(constraintEvaluations);
+        }, EVALUATION_THREADS);
 
         return new CombinationResult(scenario, AggregatedRetrievalEvaluation.aggregate(byProject));
     }
@@ -0,0 +1,108 @@
+package edu.utdallas.seers.lasso.experiment;
+
+import edu.utdallas.seers.lasso.ast.TextSpan;
+import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Preprocessed terms of a source file and their positions. Each span is preprocessed once when
+ * the index is built, instead of once for every term that is looked up.
+ */
+class TermPositionIndex {
+
+    private final Map<Integer, List<TextSpan>> lineSpans;
+    private final Map<Integer, List<String>> lineTerms = new HashMap<>();
+    /**
+     * Sorted positions of each term, encoded as the line in the high bits and the offset of the
+     * token within the line in the low bits.
+     */
+    private final Map<String, long[]> positions;
+
+    TermPositionIndex(List<TextSpan> spans, TextPreprocessor preprocessor) {
+        lineSpans = spans.stream()
+                .collect(Collectors.groupingBy(TextSpan::getLine, TreeMap::new, Collectors.toList()));
+
+        var termPositions = new HashMap<String, List<Long>>();
+        lineSpans.forEach((line, ss) -> {
+            var terms = ss.stream()
+                    .flatMap(s -> preprocessor.preprocess(s.getText(), true))
+                    .collect(Collectors.toList());
+            lineTerms.put(line, terms);
+
+            for (int offset = 0; offset < terms.size(); offset++) {
+                termPositions.computeIfAbsent(terms.get(offset), t -> new ArrayList<>())
+                        .add(((long) line << 32) | offset);
+            }
+        });
+
+        // Lines are visited in order, so the positions are already sorted
+        positions = new HashMap<>();
+        termPositions.forEach((t, ps) -> positions.put(t, ps.stream().mapToLong(p -> p).toArray()));
+    }
+
+    private static int line(long position) {
+        return (int) (position >> 32);
+    }
+
+    /**
+     * @param line Line number.
+     * @return Spans that start in the line.
+     */
+    List<TextSpan> getSpans(int line) {
+        return lineSpans.getOrDefault(line, Collections.emptyList());
+    }
+
+    /**
+     * @param line Line number.
+     * @return Preprocessed terms of the spans of the line, in order.
+     */
+    List<String> getTerms(int line) {
+        return lineTerms.getOrDefault(line, Collections.emptyList());
+    }
+
+    /**
+     * Finds the occurrence of the term that is closest to the target lines by merging the sorted
+     * lines of both. Ties between lines are resolved in favor of the first line, and ties between
+     * targets in favor of the first target.
+     *
+     * @param term        Preprocessed term.
+     * @param targetLines Target lines in increasing order.
+     * @return Signed distance from the closest target line to the closest line with the term, if
+     * the term is in the file.
+     */
+    Optional<Integer> findClosestDistance(String term, int[] targetLines) {
+        var termPositions = positions.get(term);
+        if (termPositions == null || targetLines.length == 0) {
+            return Optional.empty();
+        }
+
+        Integer best = null;
+        int target = 0;
+        int previousLine = -1;
+        for (long position : termPositions) {
+            int line = line(position);
+            if (line == previousLine) {
+                continue;
+            }
+            previousLine = line;
+
+            // Advance to the last target that is not after the line
+            while (target + 1 < targetLines.length && targetLines[target + 1] <= line) {
+                target++;
+            }
+
+            int distance = line - targetLines[target];
+            if (target + 1 < targetLines.length && Math.abs(line - targetLines[target + 1]) < Math.abs(distance)) {
+                distance = line - targetLines[target + 1];
+            }
+
+            if (best == null || Math.abs(distance) < Math.abs(best)) {
+                best = distance;
+            }
+        }
+
+        return Optional.of(best);
+    }
+}
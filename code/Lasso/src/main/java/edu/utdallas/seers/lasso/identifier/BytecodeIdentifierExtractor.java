@@ -0,0 +1,269 @@
+package edu.utdallas.seers.lasso.identifier;
+
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import org.apache.bcel.classfile.*;
+import org.apache.bcel.generic.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Extracts the same identifiers as {@link IdentifierExtractor}, but reading the class files of
+ * the project jars instead of parsing the sources. Classes are read in parallel. Parameters and
+ * local variables come from the {@code LocalVariableTable}, so the classes must be compiled with
+ * debug information.
+ * <p>
+ * Known differences with the source extractor: default constructors show up as {@code <init>}
+ * methods, catch parameters show up as locals, and anonymous and local classes are skipped.
+ */
+public class BytecodeIdentifierExtractor {
+    private static final String INIT_NAME = "<init>";
+    private static final String STATIC_INIT_NAME = "<clinit>";
+    private static final String THIS_NAME = "this";
+
+    /**
+     * Lambda bodies are compiled into synthetic methods named after the enclosing method, e.g.
+     * lambda$process$0. Initializers appear as "new" and "static".
+     */
+    private static final Pattern LAMBDA_PATTERN = Pattern.compile("lambda\\$(.+)\\$\\d+");
+
+    private final Logger logger = LoggerFactory.getLogger(BytecodeIdentifierExtractor.class);
+
+    private final boolean filter;
+
+    /**
+     * @param filter Whether to leave out locals and parameters, as in {@link IdentifierExtractor}.
+     */
+    public BytecodeIdentifierExtractor(boolean filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @param binariesDirectory Directory with the jars of a project.
+     * @return The jars, or empty if there are none and sources must be used instead.
+     */
+    public static Optional<List<Path>> findJars(Path binariesDirectory) {
+        if (!Files.isDirectory(binariesDirectory)) {
+            return Optional.empty();
+        }
+
+        try (var files = Files.list(binariesDirectory)) {
+            return Optional.of(files.filter(p -> p.toString().endsWith(".jar"))
+                    .sorted()
+                    .collect(Collectors.toList()))
+                    .filter(l -> !l.isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<Attribute> extract(List<Path> jars) {
+        var missingDebugInfo = new AtomicInteger();
+
+        var attributes = jars.stream()
+                .flatMap(j -> extractFromJar(j, missingDebugInfo).stream())
+                .collect(Collectors.toList());
+
+        if (missingDebugInfo.get() > 0 && !filter) {
+            logger.warn("{} methods have no local variable table, their parameters and locals are missing",
+                    missingDebugInfo.get());
+        }
+
+        return attributes;
+    }
+
+    private List<Attribute> extractFromJar(Path jarPath, AtomicInteger missingDebugInfo) {
+        try (var jar = new JarFile(jarPath.toFile())) {
+            List<JarEntry> entries = jar.stream()
+                    .filter(e -> !e.isDirectory() && e.getName().endsWith(".class"))
+                    .collect(Collectors.toList());
+
+            logger.info("Extracting identifiers from {} classes in {}", entries.size(), jarPath);
+
+            // Keep the order of the jar so that the output is the same across runs
+            return entries.parallelStream()
+                    .map(e -> parse(jar, e))
+                    .flatMap(c -> extractFromClass(c, missingDebugInfo))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JavaClass parse(JarFile jar, JarEntry entry) {
+        try (var stream = jar.getInputStream(entry)) {
+            return new ClassParser(stream, entry.getName()).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Stream<Attribute> extractFromClass(JavaClass javaClass, AtomicInteger missingDebugInfo) {
+        Optional<Identifier> maybeIdentifier = toTypeIdentifier(javaClass);
+        if (javaClass.isSynthetic() || maybeIdentifier.isEmpty()) {
+            return Stream.empty();
+        }
+
+        var typeIdentifier = maybeIdentifier.get();
+
+        // Annotation members are treated as fields, as in the source extractor
+        Stream<Attribute> fields = Stream.concat(
+                Arrays.stream(javaClass.getFields())
+                        .filter(f -> !f.isSynthetic())
+                        .map(FieldOrMethod::getName),
+                javaClass.isAnnotation() ?
+                        Arrays.stream(javaClass.getMethods()).map(FieldOrMethod::getName) :
+                        Stream.empty()
+        )
+                .map(n -> Attribute.newField(typeIdentifier, n));
+
+        Stream<Attribute> methods = javaClass.isAnnotation() ?
+                Stream.empty() :
+                Arrays.stream(javaClass.getMethods())
+                        .filter(m -> !isImplicitEnumMethod(javaClass, m))
+                        .flatMap(m -> extractFromMethod(m, typeIdentifier, missingDebugInfo));
+
+        return Stream.of(Stream.of(Attribute.newType(typeIdentifier)), fields, methods.distinct())
+                .flatMap(s -> s)
+                .filter(v -> (v.getType() != Attribute.Type.LOCAL_VARIABLE && v.getType() != Attribute.Type.METHOD_PARAMETER || !filter));
+    }
+
+    private Stream<Attribute> extractFromMethod(Method method, Identifier qualifier, AtomicInteger missingDebugInfo) {
+        String methodName = method.getName();
+        Stream<Attribute> returnVariable;
+
+        if (method.isSynthetic()) {
+            // Only lambda bodies are kept, their variables belong to the enclosing method. This
+            // leaves out bridge methods and accessors
+            var matcher = LAMBDA_PATTERN.matcher(methodName);
+            // Older compilers name lambdas nested in lambdas lambda$null$n, losing the method
+            if (!matcher.matches() || matcher.group(1).equals("null")) {
+                return Stream.empty();
+            }
+
+            methodName = toEnclosingMethodName(matcher.group(1));
+            returnVariable = Stream.empty();
+        } else if (methodName.equals(STATIC_INIT_NAME)) {
+            // Static initializers only qualify variables
+            returnVariable = Stream.empty();
+        } else {
+            returnVariable = Stream.of(Attribute.newMethod(qualifier, methodName));
+        }
+
+        if (method.getCode() == null) {
+            // Abstract and native methods have no local variable table, only parameter names if
+            // compiled with -parameters
+            String finalName = methodName;
+            return Stream.concat(returnVariable, findDeclaredParameterNames(method)
+                    .map(n -> Attribute.newMethodParameter(qualifier, finalName, n)));
+        }
+
+        var table = method.getLocalVariableTable();
+        if (table == null) {
+            // The table is only left out when there are no variables at all
+            if (!method.isStatic() || method.getArgumentTypes().length > 0) {
+                missingDebugInfo.incrementAndGet();
+            }
+            return returnVariable;
+        }
+
+        // Parameters occupy the first slots and are live from the start of the method
+        int parameterSlots = method.isStatic() ? 0 : 1;
+        for (Type argumentType : method.getArgumentTypes()) {
+            parameterSlots += argumentType.getSize();
+        }
+
+        // Lambda parameters are not locals in the source extractor, but captured variables are
+        // passed as parameters before them and are already found in the enclosing method
+        boolean isLambda = method.isSynthetic();
+        int finalParameterSlots = parameterSlots;
+        String finalMethodName = methodName;
+
+        Stream<Attribute> variables = Arrays.stream(table.getLocalVariableTable())
+                .filter(v -> !v.getName().equals(THIS_NAME) && !isCompilerGenerated(v.getName()))
+                .filter(v -> !isLambda || v.getIndex() >= finalParameterSlots)
+                .map(v -> v.getIndex() < finalParameterSlots && v.getStartPC() == 0 ?
+                        Attribute.newMethodParameter(qualifier, finalMethodName, v.getName()) :
+                        Attribute.newLocal(qualifier, finalMethodName, v.getName()));
+
+        return Stream.concat(returnVariable, variables);
+    }
+
+    private Stream<String> findDeclaredParameterNames(Method method) {
+        return Arrays.stream(method.getAttributes())
+                .filter(a -> a instanceof MethodParameters)
+                .flatMap(a -> Arrays.stream(((MethodParameters) a).getParameters()))
+                .filter(p -> p.getNameIndex() != 0 && !p.isSynthetic() && !p.isMandated())
+                .map(p -> p.getParameterName(method.getConstantPool()));
+    }
+
+    /**
+     * Nested types are qualified by their enclosing types, as in the source.
+     *
+     * @param javaClass Class.
+     * @return Identifier or empty if the class is anonymous, local, or package-info.
+     */
+    private Optional<Identifier> toTypeIdentifier(JavaClass javaClass) {
+        String packageName = javaClass.getPackageName();
+        String className = javaClass.getClassName();
+        String simpleName = packageName.isEmpty() ?
+                className :
+                className.substring(packageName.length() + 1);
+
+        if (simpleName.contains("-")) {
+            return Optional.empty();
+        }
+
+        var identifier = new Identifier(packageName.isEmpty() ? null : packageName);
+
+        for (String component : simpleName.split("\\$")) {
+            if (component.isEmpty() || Character.isDigit(component.charAt(0))) {
+                return Optional.empty();
+            }
+
+            identifier = identifier.addType(component);
+        }
+
+        return Optional.of(identifier);
+    }
+
+    private boolean isImplicitEnumMethod(JavaClass javaClass, Method method) {
+        if (!javaClass.isEnum()) {
+            return false;
+        }
+
+        var arguments = method.getArgumentTypes();
+        return method.getName().equals("values") && arguments.length == 0 ||
+                method.getName().equals("valueOf") && arguments.length == 1 &&
+                        arguments[0].equals(Type.STRING);
+    }
+
+    private String toEnclosingMethodName(String lambdaName) {
+        switch (lambdaName) {
+            case "new":
+                return INIT_NAME;
+            case "static":
+                return STATIC_INIT_NAME;
+            default:
+                return lambdaName;
+        }
+    }
+
+    /**
+     * E.g. this$0 in inner class constructors or val$x for captured variables.
+     */
+    private boolean isCompilerGenerated(String name) {
+        return name.contains("$");
+    }
+}
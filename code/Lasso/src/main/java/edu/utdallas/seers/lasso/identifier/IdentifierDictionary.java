@@ -0,0 +1,453 @@
+package edu.utdallas.seers.lasso.identifier;
+
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.*;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Dictionary of the identifiers of a corpus. Qualified identifier names are stored in an FST that
+ * maps each name to an ordinal, which indexes tables with the attributes that have that name and
+ * the preprocessed text of the name. Each attribute also has an ordinal, which is used as its
+ * ID in the index.
+ * <p>
+ * The whole dictionary is a single file that is memory-mapped when opened, so it does not need
+ * to be loaded into the heap. File layout:
+ * <pre>
+ * header
+ * vint nameCount, vint attributeCount
+ * attributeCount x (int nameOrdinal, byte type)
+ * (nameCount + 1) x int firstAttributeOrdinal
+ * (nameCount + 1) x long textOffset
+ * UTF-8 texts, components separated by spaces
+ * FST name -&gt; name ordinal
+ * </pre>
+ */
+public class IdentifierDictionary implements Closeable {
+
+    private static final String CODEC_NAME = "IdentifierDictionary";
+    private static final int VERSION = 1;
+    private static final int ATTRIBUTE_RECORD_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final String TEXT_SEPARATOR = " ";
+
+    private static final Attribute.Type[] TYPES = Attribute.Type.values();
+    private static final PositiveIntOutputs OUTPUTS = PositiveIntOutputs.getSingleton();
+
+    private final IndexInput input;
+    private final int nameCount;
+    private final int attributeCount;
+    private final RandomAccessInput attributes;
+    private final RandomAccessInput firstAttributes;
+    private final RandomAccessInput textOffsets;
+    private final RandomAccessInput texts;
+    private final FST<Long> fst;
+
+    private IdentifierDictionary(IndexInput input) throws IOException {
+        this.input = input;
+        CodecUtil.checkHeader(input, CODEC_NAME, VERSION, VERSION);
+
+        nameCount = input.readVInt();
+        attributeCount = input.readVInt();
+
+        attributes = nextSlice((long) attributeCount * ATTRIBUTE_RECORD_SIZE);
+        firstAttributes = nextSlice((long) (nameCount + 1) * Integer.BYTES);
+        textOffsets = nextSlice((long) (nameCount + 1) * Long.BYTES);
+        texts = nextSlice(textOffsets.readLong((long) nameCount * Long.BYTES));
+
+        // The FST arcs stay in the mapped file, no FST is written if there are no names
+        fst = nameCount > 0 ?
+                new FST<>(input, input, OUTPUTS, new OffHeapFSTStore()) :
+                null;
+    }
+
+    /**
+     * Memory-maps a dictionary file.
+     *
+     * @param file Written with {@link #write(Path, Collection, Map)}.
+     * @return The dictionary.
+     */
+    public static IdentifierDictionary open(Path file) {
+        try (var directory = new MMapDirectory(file.getParent())) {
+            var input = directory.openInput(file.getFileName().toString(), IOContext.READ);
+            try {
+                return new IdentifierDictionary(input);
+            } catch (IOException | RuntimeException e) {
+                input.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a dictionary file, replacing any existing one.
+     *
+     * @param file              Destination.
+     * @param attributes        Distinct attributes.
+     * @param preprocessedTexts Preprocessed text of each attribute name.
+     */
+    public static void write(Path file, Collection<Attribute> attributes, Map<String, List<String>> preprocessedTexts) {
+        // FST inputs must be added in order, code point order is the order of the UTF-32 inputs
+        var sorted = attributes.stream()
+                .map(a -> new Entry(a, Util.toUTF32(a.getName(), new IntsRefBuilder())))
+                .sorted(Comparator.comparing((Entry e) -> e.input).thenComparing(e -> e.attribute.getType()))
+                .collect(Collectors.toList());
+
+        try (var directory = FSDirectory.open(file.getParent())) {
+            String tempName;
+
+            try (var output = directory.createTempOutput(file.getFileName().toString(), "", IOContext.DEFAULT)) {
+                tempName = output.getName();
+                writeEntries(output, sorted, preprocessedTexts);
+            }
+
+            directory.sync(Collections.singleton(tempName));
+            directory.rename(tempName, file.getFileName().toString());
+            directory.syncMetaData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeEntries(IndexOutput output, List<Entry> entries, Map<String, List<String>> preprocessedTexts)
+            throws IOException {
+        CodecUtil.writeHeader(output, CODEC_NAME, VERSION);
+
+        // Group attributes by name
+        var firstAttributes = new ArrayList<Integer>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i == 0 || !entries.get(i).input.equals(entries.get(i - 1).input)) {
+                firstAttributes.add(i);
+            }
+        }
+        int nameCount = firstAttributes.size();
+        firstAttributes.add(entries.size());
+
+        output.writeVInt(nameCount);
+        output.writeVInt(entries.size());
+
+        int nameOrdinal = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            if (nameOrdinal + 1 < nameCount && firstAttributes.get(nameOrdinal + 1) == i) {
+                nameOrdinal++;
+            }
+            output.writeInt(nameOrdinal);
+            output.writeByte((byte) entries.get(i).attribute.getType().ordinal());
+        }
+
+        for (int first : firstAttributes) {
+            output.writeInt(first);
+        }
+
+        var textBytes = new ArrayList<byte[]>(nameCount);
+        long offset = 0;
+        output.writeLong(offset);
+        for (int i = 0; i < nameCount; i++) {
+            var name = entries.get(firstAttributes.get(i)).attribute.getName();
+            var text = String.join(TEXT_SEPARATOR, preprocessedTexts.getOrDefault(name, Collections.emptyList()));
+            var bytes = text.getBytes(StandardCharsets.UTF_8);
+            textBytes.add(bytes);
+            offset += bytes.length;
+            output.writeLong(offset);
+        }
+
+        for (byte[] bytes : textBytes) {
+            output.writeBytes(bytes, bytes.length);
+        }
+
+        var builder = new Builder<>(FST.INPUT_TYPE.BYTE4, OUTPUTS);
+        for (int i = 0; i < nameCount; i++) {
+            builder.add(entries.get(firstAttributes.get(i)).input, (long) i);
+        }
+
+        var fst = builder.finish();
+        if (fst != null) {
+            fst.save(output, output);
+        }
+    }
+
+    private RandomAccessInput nextSlice(long length) throws IOException {
+        long start = input.getFilePointer();
+        input.seek(start + length);
+
+        return input.randomAccessSlice(start, length);
+    }
+
+    /**
+     * @return Number of distinct qualified names.
+     */
+    public int size() {
+        return nameCount;
+    }
+
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    public boolean contains(String name) {
+        return findNameOrdinal(name).isPresent();
+    }
+
+    /**
+     * Exact lookup.
+     *
+     * @param name Qualified identifier name.
+     * @return All attributes with the name, e.g. a field and a method.
+     */
+    public List<Attribute> lookUp(String name) {
+        return findNameOrdinal(name)
+                .stream()
+                .flatMap(o -> {
+                    int first = readInt(firstAttributes, o);
+                    int last = readInt(firstAttributes, o + 1);
+
+                    return IntStream.range(first, last)
+                            .mapToObj(a -> new Attribute(readType(a), name));
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param ordinal Attribute ordinal, as stored in the index.
+     * @return The attribute.
+     */
+    public Attribute getAttribute(int ordinal) {
+        Objects.checkIndex(ordinal, attributeCount);
+
+        int nameOrdinal;
+        try {
+            nameOrdinal = attributes.readInt((long) ordinal * ATTRIBUTE_RECORD_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Attribute(readType(ordinal), getName(nameOrdinal));
+    }
+
+    /**
+     * @param attribute An attribute in the dictionary.
+     * @return Its ordinal, or -1 if it is not in the dictionary.
+     */
+    public int getOrdinal(Attribute attribute) {
+        var nameOrdinal = findNameOrdinal(attribute.getName());
+        if (nameOrdinal.isEmpty()) {
+            return -1;
+        }
+
+        int last = readInt(firstAttributes, nameOrdinal.get() + 1);
+        for (int a = readInt(firstAttributes, nameOrdinal.get()); a < last; a++) {
+            if (readType(a) == attribute.getType()) {
+                return a;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param name Qualified identifier name.
+     * @return Preprocessed text of the name, or null if the name is not in the dictionary.
+     */
+    public List<String> findPreprocessedText(String name) {
+        return findNameOrdinal(name)
+                .map(this::readText)
+                .orElse(null);
+    }
+
+    /**
+     * Prefix lookup.
+     *
+     * @param prefix Start of the qualified names.
+     * @return All names starting with the prefix, in code point order.
+     */
+    public List<String> findByPrefix(String prefix) {
+        var results = new ArrayList<String>();
+        if (fst == null) {
+            return results;
+        }
+
+        var prefixInput = Util.toUTF32(prefix, new IntsRefBuilder());
+
+        try {
+            var fstEnum = new IntsRefFSTEnum<>(fst);
+            for (var current = fstEnum.seekCeil(prefixInput);
+                 current != null && startsWith(current.input, prefixInput);
+                 current = fstEnum.next()) {
+                results.add(toString(current.input));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return results;
+    }
+
+    /**
+     * Lookup of names within an edit distance (insertions, deletions and substitutions of code
+     * points). The FST is traversed keeping a row of the edit distance matrix per depth, and
+     * branches that cannot get within the distance are not explored.
+     *
+     * @param name     Qualified identifier name.
+     * @param maxEdits Maximum edit distance.
+     * @return Names within the distance, in code point order.
+     */
+    public List<String> findWithinEditDistance(String name, int maxEdits) {
+        var results = new ArrayList<String>();
+        if (fst == null) {
+            return results;
+        }
+
+        int[] target = name.codePoints().toArray();
+        int[] firstRow = new int[target.length + 1];
+        Arrays.setAll(firstRow, i -> i);
+
+        try {
+            var root = fst.getFirstArc(new FST.Arc<>());
+            collectWithinDistance(root, target, firstRow, maxEdits, new IntsRefBuilder(), fst.getBytesReader(), results);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return results;
+    }
+
+    private void collectWithinDistance(FST.Arc<Long> node, int[] target, int[] row, int maxEdits,
+                                       IntsRefBuilder path, FST.BytesReader reader, List<String> results)
+            throws IOException {
+        if (!FST.targetHasArcs(node)) {
+            return;
+        }
+
+        var arc = fst.readFirstTargetArc(node, new FST.Arc<>(), reader);
+
+        while (true) {
+            // The end label marks that the node is final, which was checked on the way in
+            if (arc.label() != FST.END_LABEL) {
+                int[] nextRow = new int[row.length];
+                nextRow[0] = row[0] + 1;
+                int min = nextRow[0];
+
+                for (int i = 1; i < row.length; i++) {
+                    int substitution = row[i - 1] + (target[i - 1] == arc.label() ? 0 : 1);
+                    nextRow[i] = Math.min(substitution, Math.min(row[i] + 1, nextRow[i - 1] + 1));
+                    min = Math.min(min, nextRow[i]);
+                }
+
+                if (min <= maxEdits) {
+                    path.append(arc.label());
+
+                    if (arc.isFinal() && nextRow[target.length] <= maxEdits) {
+                        results.add(toString(path.get()));
+                    }
+
+                    collectWithinDistance(new FST.Arc<Long>().copyFrom(arc), target, nextRow, maxEdits, path, reader, results);
+                    path.setLength(path.length() - 1);
+                }
+            }
+
+            if (arc.isLast()) {
+                break;
+            }
+
+            fst.readNextArc(arc, reader);
+        }
+    }
+
+    private Optional<Integer> findNameOrdinal(String name) {
+        if (fst == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.ofNullable(Util.get(fst, Util.toUTF32(name, new IntsRefBuilder())))
+                    .map(Long::intValue);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String getName(int nameOrdinal) {
+        try {
+            // Outputs are ascending in input order, so the input can be found by output
+            return toString(Util.getByOutput(fst, nameOrdinal));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Attribute.Type readType(int attributeOrdinal) {
+        try {
+            return TYPES[attributes.readByte((long) attributeOrdinal * ATTRIBUTE_RECORD_SIZE + Integer.BYTES)];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<String> readText(int nameOrdinal) {
+        try {
+            long start = textOffsets.readLong((long) nameOrdinal * Long.BYTES);
+            long end = textOffsets.readLong((long) (nameOrdinal + 1) * Long.BYTES);
+
+            var bytes = new byte[Math.toIntExact(end - start)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = texts.readByte(start + i);
+            }
+
+            if (bytes.length == 0) {
+                return Collections.emptyList();
+            }
+
+            return Arrays.asList(new String(bytes, StandardCharsets.UTF_8).split(TEXT_SEPARATOR));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int readInt(RandomAccessInput input, int index) {
+        try {
+            return input.readInt((long) index * Integer.BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean startsWith(IntsRef input, IntsRef prefix) {
+        if (input.length < prefix.length) {
+            return false;
+        }
+
+        return Arrays.equals(input.ints, input.offset, input.offset + prefix.length,
+                prefix.ints, prefix.offset, prefix.offset + prefix.length);
+    }
+
+    private static String toString(IntsRef input) {
+        return new String(input.ints, input.offset, input.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private static class Entry {
+        private final Attribute attribute;
+        private final IntsRef input;
+
+        private Entry(Attribute attribute, IntsRef input) {
+            this.attribute = attribute;
+            this.input = input;
+        }
+    }
+}
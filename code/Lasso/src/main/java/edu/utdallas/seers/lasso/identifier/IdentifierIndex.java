@@ -6,35 +6,36 @@ import org.apache.lucene.search.similarities.Similarity;
 
 import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 public class IdentifierIndex extends Index<Attribute> {
 
-    private final Map<String, Attribute> identifiers;
+    private final IdentifierDictionary dictionary;
 
     /**
      * TODO this dependency could be removed by merging Index builder and Index or by adding the fields
      * to the entity being indexed
      */
     private final String idFieldName;
-    private final Map<String, List<String>> preprocessedTexts;
 
-    public IdentifierIndex(Path path, Map<String, Attribute> identifiers, String idFieldName,
-                           Map<String, List<String>> preprocessedTexts) {
+    public IdentifierIndex(Path path, IdentifierDictionary dictionary, String idFieldName) {
         super(path);
-        this.identifiers = identifiers;
+        this.dictionary = dictionary;
         this.idFieldName = idFieldName;
-        this.preprocessedTexts = preprocessedTexts;
     }
 
     public List<String> findPreprocessedText(String identifier) {
-        return preprocessedTexts.get(identifier);
+        return dictionary.findPreprocessedText(identifier);
+    }
+
+    public IdentifierDictionary getDictionary() {
+        return dictionary;
     }
 
     @Override
     protected Attribute loadEntity(ScoredDocID sd) {
-        return identifiers.get(sd.getId());
+        // IDs are dictionary ordinals
+        return dictionary.getAttribute(Integer.parseInt(sd.getId()));
     }
 
     @Override
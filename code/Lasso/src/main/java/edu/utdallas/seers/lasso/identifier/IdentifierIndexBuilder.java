@@ -1,8 +1,5 @@
 package edu.utdallas.seers.lasso.identifier;
 
-import edu.utdallas.seers.json.AdapterSupplier;
-import edu.utdallas.seers.json.JSON;
-import edu.utdallas.seers.json.JSONSerializable;
 import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
 import edu.utdallas.seers.parameter.Options;
 import edu.utdallas.seers.retrieval.Index;
@@ -16,10 +13,12 @@ import org.apache.lucene.search.similarities.Similarity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -30,72 +29,93 @@ public class IdentifierIndexBuilder extends IndexBuilder<Attribute> {
      */
     public static final String TEXT_FIELD_NAME = "nameText";
     private static final String ID_FIELD_NAME = "id";
+    private static final String DICTIONARY_FILE_NAME = "identifiers.dict";
+    /**
+     * The dictionary is written with this name while the index is built, so that an index that
+     * failed to build is not reused.
+     */
+    private static final String PENDING_DICTIONARY_FILE_NAME = DICTIONARY_FILE_NAME + ".pending";
 
     private final Logger logger = LoggerFactory.getLogger(IdentifierIndexBuilder.class);
 
     private final IdentifierPreprocessor identifierPreprocessor = new IdentifierPreprocessor();
     private final String experimentName;
-    private Map<Attribute, String> identifiers;
-    private AtomicInteger idGenerator;
-    private Map<String, List<String>> preprocessedTexts;
+    private IdentifierDictionary dictionary;
+    private Path pendingDictionaryPath;
+    private Set<Attribute> indexed;
 
     public IdentifierIndexBuilder(String experimentName) {
         this.experimentName = experimentName;
     }
 
+    /**
+     * When the index has just been built, its writer has been committed and closed, so the
+     * pending dictionary is moved to its final name.
+     */
     @Override
     protected Index<Attribute> createIndex(Path indexPath) {
-        Map<String, Attribute> inverted = identifiers.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getValue,
-                        Map.Entry::getKey
-                ));
+        if (pendingDictionaryPath != null) {
+            Path dictionaryPath = indexPath.resolve(DICTIONARY_FILE_NAME);
+
+            try {
+                dictionary.close();
+                Files.move(pendingDictionaryPath, dictionaryPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            pendingDictionaryPath = null;
+            dictionary = IdentifierDictionary.open(dictionaryPath);
+        }
 
-        return new IdentifierIndex(indexPath, inverted, ID_FIELD_NAME, preprocessedTexts);
+        return new IdentifierIndex(indexPath, dictionary, ID_FIELD_NAME);
     }
 
+    /**
+     * Each experiment can extract a different set of identifiers, so each gets its own index.
+     *
+     * @param indexName Name of the project.
+     * @return Path of the index.
+     */
     @Override
     protected Path resolveIndexPathForName(String indexName) {
-        return Options.getInstance().getCachePath().resolve(indexName);
+        return Options.getInstance().getCachePath().resolve(indexName).resolve(experimentName);
     }
 
     @Override
     public Index<Attribute> buildIndex(String indexName, Stream<? extends Attribute> items) {
         Path indexPath = resolveIndexPathForName(indexName);
+        Path dictionaryPath = indexPath.resolve(DICTIONARY_FILE_NAME);
 
-        Path cachesPath = indexPath.resolve(experimentName + "-caches.json");
-
-        if (!Options.getInstance().isIgnoreCache() && Files.exists(cachesPath)) {
-            var maps = JSON.readJSON(cachesPath, Maps.class, Maps.getAdapterSupplier());
-            this.identifiers = maps.identifiers.entrySet().stream()
-                    .collect(Collectors.toMap(
-                            Map.Entry::getValue,
-                            Map.Entry::getKey
-                    ));
-
-            this.preprocessedTexts = maps.preprocessedTexts;
-
+        // The dictionary is only in place once the index is complete, see createIndex
+        if (!Options.getInstance().isIgnoreCache() && Files.exists(dictionaryPath)) {
+            dictionary = IdentifierDictionary.open(dictionaryPath);
             return createIndex(indexPath);
         }
 
-        /* TODO this is a temporary solution, instead all items should be available to the
-         *  index in something like a database where they can be read on demand, maybe adding a
-         *  cache for performance. These 3 fields will be removed */
-        identifiers = new HashMap<>();
-        idGenerator = new AtomicInteger(1);
-        preprocessedTexts = new HashMap<>();
+        // Index IDs are dictionary ordinals, so an index without its dictionary cannot be reused
+        edu.utdallas.seers.file.Files.deleteRecursively(indexPath);
+        edu.utdallas.seers.file.Files.createDirectories(indexPath);
 
-        Index<Attribute> index = super.buildIndex(indexName, items);
+        List<? extends Attribute> attributes = items.collect(Collectors.toList());
 
-        Map<String, Attribute> flip = identifiers.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getValue,
-                        Map.Entry::getKey
-                ));
+        var preprocessedTexts = new HashMap<String, List<String>>();
+        for (Attribute attribute : attributes) {
+            preprocessedTexts.computeIfAbsent(attribute.getName(), n -> identifierPreprocessor
+                    .preprocessFullIdentifier(attribute.getIdentifier(), indexName)
+                    .collect(Collectors.toList()));
+        }
+
+        // Indexing needs the ordinals and texts of the dictionary
+        pendingDictionaryPath = indexPath.resolve(PENDING_DICTIONARY_FILE_NAME);
+        IdentifierDictionary.write(pendingDictionaryPath, new HashSet<>(attributes), preprocessedTexts);
+        dictionary = IdentifierDictionary.open(pendingDictionaryPath);
+        logger.info("Identifier dictionary at {}: {} names, {} attributes",
+                dictionaryPath, dictionary.size(), dictionary.getAttributeCount());
 
-        JSON.writeJSON(new Maps(flip, preprocessedTexts), cachesPath, false, Maps.getAdapterSupplier());
+        indexed = new HashSet<>();
 
-        return index;
+        return super.buildIndex(indexName, attributes.stream());
     }
 
     /* TODO this subclass would not be needed by moving this method to the Variable class
@@ -104,21 +124,15 @@ public class IdentifierIndexBuilder extends IndexBuilder<Attribute> {
     @Override
     protected Optional<Iterable<IndexableField>> generateFields(Attribute item, String indexName) {
 
-        if (identifiers.containsKey(item)) {
+        if (!indexed.add(item)) {
             // FIXME: make all variables unique
             logger.error("Duplicated variable: {}", item);
             return Optional.empty();
         }
 
-        String id = String.valueOf(idGenerator.getAndIncrement());
-        identifiers.put(item, id);
-
-        List<String> components = identifierPreprocessor
-                .preprocessFullIdentifier(item.getIdentifier(), indexName)
-                .collect(Collectors.toList());
-        preprocessedTexts.put(item.getName(), components);
+        String id = String.valueOf(dictionary.getOrdinal(item));
 
-        String fieldText = String.join(" ", components);
+        String fieldText = String.join(" ", dictionary.findPreprocessedText(item.getName()));
 
         // Lucene analyzer must tokenize the string
         return Optional.of(
@@ -195,23 +209,4 @@ public class IdentifierIndexBuilder extends IndexBuilder<Attribute> {
         }
     }
 
-    public static class Maps implements JSONSerializable<AdapterSupplier> {
-        public Map<String, Attribute> identifiers;
-        public Map<String, List<String>> preprocessedTexts;
-
-        public Maps(Map<String, Attribute> identifiers, Map<String, List<String>> preprocessedTexts) {
-            this.identifiers = identifiers;
-            this.preprocessedTexts = preprocessedTexts;
-        }
-
-        private static AdapterSupplier getAdapterSupplier() {
-            return new AdapterSupplier() {
-                @Override
-                protected Builder build(Builder builder) {
-                    return builder.addHierarchyAdapter(Attribute.class, Attribute::fromString);
-                }
-            };
-        }
-    }
-
 }
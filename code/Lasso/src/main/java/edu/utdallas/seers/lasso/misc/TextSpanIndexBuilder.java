@@ -16,6 +16,7 @@ import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class TextSpanIndexBuilder extends IndexBuilder<TextSpan> {
@@ -54,6 +55,8 @@ public class TextSpanIndexBuilder extends IndexBuilder<TextSpan> {
     }
 
     private static class FileIndex extends Index<TextSpan> {
+        private static final Set<String> SPAN_FIELDS = Set.of("type", "location", "line");
+
         public FileIndex(Path indexPath) {
             super(indexPath);
         }
@@ -67,7 +70,7 @@ public class TextSpanIndexBuilder extends IndexBuilder<TextSpan> {
         protected TextSpan loadEntity(ScoredDocID sd) {
             Document doc;
             try {
-                doc = searcher.doc(sd.getIndexID());
+                doc = searcher.doc(sd.getIndexID(), SPAN_FIELDS);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
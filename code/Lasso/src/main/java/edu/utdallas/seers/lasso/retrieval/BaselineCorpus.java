@@ -0,0 +1,258 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import edu.utdallas.seers.file.JavaFileWalker;
+import edu.utdallas.seers.lasso.ast.LexicalTextExtractor;
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.parameter.Options;
+import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.*;
+import org.jooq.lambda.Unchecked;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Text blocks of a project with their text already preprocessed, shared by all baseline index
+ * builders that use the same {@link BaselineIndexBuilder.Output}. Sources are parsed and
+ * preprocessed once per project and output, and the blocks are streamed from the corpus file
+ * afterwards.
+ * <p>
+ * File and term names are written the first time they appear and referenced by number after
+ * that. File layout:
+ * <pre>
+ * header
+ * for each block:
+ *   vint fileRef (0 ends the blocks), [string fileName if new]
+ *   vint lineBegin, vint lineEnd - lineBegin
+ *   vint tokenCount, tokenCount x (vint termRef, [string term if new])
+ * vint 0
+ * footer
+ * </pre>
+ */
+public class BaselineCorpus {
+    private static final String CODEC_NAME = "BaselineCorpus";
+    private static final int VERSION = 1;
+    private static final String TOKEN_SEPARATOR = " ";
+
+    private static final Map<Path, Object> locks = new ConcurrentHashMap<>();
+    /**
+     * Corpora written in this run, which are not rebuilt again when ignoring caches.
+     */
+    private static final Set<Path> written = ConcurrentHashMap.newKeySet();
+
+    private static final Logger logger = LoggerFactory.getLogger(BaselineCorpus.class);
+
+    private BaselineCorpus() {
+    }
+
+    /**
+     * Builds the corpus if it does not exist. The stream should be closed if it is not fully
+     * consumed.
+     *
+     * @param sourcesPath Directory with the sources of all projects.
+     * @param project     Project.
+     * @param output      Block granularity.
+     * @return Blocks in the same order as the sources are walked. Their text is the preprocessed
+     * tokens separated by spaces.
+     */
+    public static Stream<BaselineIndexBuilder.TextBlock> load(Path sourcesPath, String project,
+                                                              BaselineIndexBuilder.Output output) {
+        var file = resolvePath(project, output);
+
+        synchronized (locks.computeIfAbsent(file, k -> new Object())) {
+            boolean exists = java.nio.file.Files.exists(file);
+            if (!exists || Options.getInstance().isIgnoreCache() && !written.contains(file)) {
+                logger.info("Building {} corpus for {}", output, project);
+                write(file, extractBlocks(sourcesPath, project, output));
+                written.add(file);
+            }
+        }
+
+        return read(file);
+    }
+
+    private static Path resolvePath(String project, BaselineIndexBuilder.Output output) {
+        return Options.getInstance().getCachePath()
+                .resolve("baseline-corpus")
+                .resolve(String.format("%s_%s.bin", project, output));
+    }
+
+    private static Stream<BaselineIndexBuilder.TextBlock> extractBlocks(Path sourcesPath, String project,
+                                                                        BaselineIndexBuilder.Output output) {
+        var projectPath = sourcesPath.resolve(project).resolve("sources");
+        var textExtractor = new LexicalTextExtractor();
+        TextPreprocessor preprocessor = LassoIndexBuilder.createPreprocessor();
+
+        return JavaFileWalker.walk(projectPath, ConstraintLoader.loadExclusions(projectPath))
+                .flatMap(Unchecked.function(f -> output.extractor.apply(textExtractor.extractText(f))))
+                .map(b -> new BaselineIndexBuilder.TextBlock(b.fileName, b.lineBegin, b.lineEnd,
+                        preprocessor.preprocess(b.text, true)
+                                .collect(Collectors.joining(TOKEN_SEPARATOR))));
+    }
+
+    static void write(Path file, Stream<BaselineIndexBuilder.TextBlock> blocks) {
+        edu.utdallas.seers.file.Files.createDirectories(file.getParent());
+
+        try (var directory = FSDirectory.open(file.getParent())) {
+            String tempName;
+
+            try (var output = directory.createTempOutput(file.getFileName().toString(), "", IOContext.DEFAULT)) {
+                tempName = output.getName();
+                writeBlocks(output, blocks);
+            }
+
+            directory.sync(Collections.singleton(tempName));
+            directory.rename(tempName, file.getFileName().toString());
+            directory.syncMetaData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeBlocks(IndexOutput output, Stream<BaselineIndexBuilder.TextBlock> blocks)
+            throws IOException {
+        CodecUtil.writeHeader(output, CODEC_NAME, VERSION);
+
+        // References start at 1 because 0 marks the end
+        var fileRefs = new HashMap<String, Integer>();
+        var termRefs = new HashMap<String, Integer>();
+
+        for (var block : (Iterable<BaselineIndexBuilder.TextBlock>) blocks::iterator) {
+            writeRef(output, fileRefs, block.fileName);
+            output.writeVInt(block.lineBegin);
+            output.writeVInt(block.lineEnd - block.lineBegin);
+
+            var tokens = block.text.isEmpty() ?
+                    new String[0] :
+                    block.text.split(TOKEN_SEPARATOR);
+            output.writeVInt(tokens.length);
+            for (String token : tokens) {
+                writeRef(output, termRefs, token);
+            }
+        }
+
+        output.writeVInt(0);
+        CodecUtil.writeFooter(output);
+    }
+
+    private static void writeRef(IndexOutput output, Map<String, Integer> refs, String value) throws IOException {
+        Integer ref = refs.get(value);
+        if (ref != null) {
+            output.writeVInt(ref);
+            return;
+        }
+
+        ref = refs.size() + 1;
+        refs.put(value, ref);
+        output.writeVInt(ref);
+        output.writeString(value);
+    }
+
+    static Stream<BaselineIndexBuilder.TextBlock> read(Path file) {
+        IndexInput input;
+        try (var directory = FSDirectory.open(file.getParent())) {
+            input = directory.openInput(file.getFileName().toString(), IOContext.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            CodecUtil.checksumEntireFile(input);
+            CodecUtil.checkHeader(input, CODEC_NAME, VERSION, VERSION);
+        } catch (IOException e) {
+            closeQuietly(input);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(input);
+            throw e;
+        }
+
+        var spliterator = new BlockSpliterator(input);
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    private static void closeQuietly(IndexInput input) {
+        try {
+            input.close();
+        } catch (IOException e) {
+            logger.warn("Could not close corpus file", e);
+        }
+    }
+
+    /**
+     * Reads one block at a time, closing the input after the last one.
+     */
+    private static class BlockSpliterator extends Spliterators.AbstractSpliterator<BaselineIndexBuilder.TextBlock> {
+        private final IndexInput input;
+        private final List<String> fileNames = new ArrayList<>();
+        private final List<String> terms = new ArrayList<>();
+        private boolean finished = false;
+
+        private BlockSpliterator(IndexInput input) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.input = input;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BaselineIndexBuilder.TextBlock> action) {
+            if (finished) {
+                return false;
+            }
+
+            try {
+                int fileRef = input.readVInt();
+                if (fileRef == 0) {
+                    close();
+                    return false;
+                }
+
+                var fileName = readRef(fileRef, fileNames);
+                int lineBegin = input.readVInt();
+                int lineEnd = lineBegin + input.readVInt();
+
+                int tokenCount = input.readVInt();
+                var text = new StringJoiner(TOKEN_SEPARATOR);
+                for (int i = 0; i < tokenCount; i++) {
+                    text.add(readRef(input.readVInt(), terms));
+                }
+
+                action.accept(new BaselineIndexBuilder.TextBlock(fileName, lineBegin, lineEnd, text.toString()));
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+
+            return true;
+        }
+
+        private String readRef(int ref, List<String> values) throws IOException {
+            if (ref <= values.size()) {
+                return values.get(ref - 1);
+            }
+
+            var value = input.readString();
+            values.add(value);
+
+            return value;
+        }
+
+        private void close() {
+            if (!finished) {
+                finished = true;
+                closeQuietly(input);
+            }
+        }
+    }
+}
@@ -4,8 +4,11 @@ import com.github.javaparser.Position;
 import com.github.javaparser.Range;
 import edu.utdallas.seers.lasso.data.entity.ASTPattern;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parallel.Parallel;
+import edu.utdallas.seers.parameter.Options;
 import edu.utdallas.seers.retrieval.Index;
-import edu.utdallas.seers.stream.PairSeq;
+import edu.utdallas.seers.retrieval.IndexDirectories;
+import edu.utdallas.seers.retrieval.SimpleRetrievalResult;
 import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
 import org.apache.lucene.document.Document;
 
@@ -13,29 +16,97 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public abstract class BaselineIndex extends Index<BaselineIndexBuilder.TextBlock> {
+    /**
+     * Only these are needed to load a block, skipping the content.
+     */
+    private static final Set<String> BLOCK_FIELDS = Set.of(BaselineIndexBuilder.FILE_FIELD_NAME,
+            BaselineIndexBuilder.BEGIN_FIELD_NAME, BaselineIndexBuilder.END_FIELD_NAME);
+
     protected final LassoScenarioID<BaselineConfig> key;
-    protected final TextPreprocessor preprocessor = LassoIndexBuilder.createPreprocessor();
+    // The stemmer keeps state, so each thread running queries needs its own
+    protected final ThreadLocal<TextPreprocessor> preprocessor =
+            ThreadLocal.withInitial(LassoIndexBuilder::createPreprocessor);
+    private final Path indexPath;
+    private BaselineResultCache resultCache;
 
     protected BaselineIndex(Path path, LassoScenarioID<BaselineConfig> key) {
         super(path);
         this.key = key;
+        indexPath = path;
     }
 
     protected BaselineIndex(LassoScenarioID<BaselineConfig> key) {
         super();
         this.key = key;
+        indexPath = null;
+    }
+
+    /**
+     * Subclasses that do not use a Lucene index must override this method.
+     *
+     * @return Fingerprint of the index files, which changes when the index is rebuilt.
+     */
+    public String getFingerprint() {
+        return EvaluationCache.fingerprint(indexPath);
+    }
+
+    /**
+     * Copies the index to the cache path if it is in memory, so that later runs use it.
+     * Subclasses that do not use a Lucene index keep their files on disk and do nothing.
+     */
+    public void snapshot() {
+        if (indexPath != null) {
+            IndexDirectories.snapshot(indexPath);
+        }
+    }
+
+    /**
+     * Runs the queries concurrently with the number of threads in {@link Options#getQueryThreads()}.
+     *
+     * @param constraints Queries.
+     * @return The results of each query, in the same order as the queries.
+     */
+    public List<LassoResultCollection> search(List<PatternEntry> constraints) {
+        return Parallel.mapInOrder(Parallel.QUERY_POOL, constraints, this::search,
+                Options.getInstance().getQueryThreads());
     }
 
     public LassoResultCollection search(PatternEntry constraint) {
-        var rawText = key.getConfiguration().input.extractor.apply(constraint);
-        var text = preprocessor.preprocess(rawText, true)
-                .collect(Collectors.joining(" "));
+        var compiled = CompiledConstraint.of(constraint);
+        var text = String.join(" ", compiled.getInputTerms(key.getConfiguration().input));
 
-        var results = PairSeq.zipWithIndex(search(text, BaselineIndexBuilder.CONTENT_FIELD_NAME))
-                .combine((r, i) -> {
+        if (resultCache == null) {
+            return search(compiled, text);
+        }
+
+        return resultCache.get(key, constraint.getID(), text, () -> search(compiled, text));
+    }
+
+    /**
+     * Searches the content of the blocks. Subclasses that do not use a Lucene index must override
+     * this method.
+     *
+     * @param constraint The compiled constraint.
+     * @param text       Preprocessed query text.
+     * @return All matching blocks in rank order.
+     */
+    protected List<SimpleRetrievalResult<BaselineIndexBuilder.TextBlock>> searchContent(CompiledConstraint constraint,
+                                                                                       String text) {
+        var query = constraint.createQuery(searcher.getIndexReader(), BaselineIndexBuilder.CONTENT_FIELD_NAME,
+                constraint.getInputTerms(key.getConfiguration().input), getOccurClause());
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    private LassoResultCollection search(CompiledConstraint compiled, String text) {
+        var constraint = compiled.getConstraint();
+        // Blocks are loaded from the index as the results are converted
+        var results = searchContent(compiled, text).stream()
+                .map(r -> {
                     var block = r.getResult();
                     // TODO all of this is done to adapt the baseline to work with the Pattern*
                     //  classes. Should be done better in the future.
@@ -46,19 +117,26 @@ public abstract class BaselineIndex extends Index<BaselineIndexBuilder.TextBlock
                     var location = new ASTPattern.Location(Path.of(block.fileName), block.fileName,
                             range, range, null, null);
 
-                    return LassoResult.createDummy(location, r.getScore(), i.intValue() + 1,
+                    return LassoResult.createDummy(location, r.getScore(), r.getRank(),
                             null, key.getConfiguration().output);
                 })
-                .toList();
+                .collect(Collectors.toList());
 
         return new LassoResultCollection(key, constraint, Collections.emptyList(), results, false);
     }
 
+    /**
+     * @param resultCache Cache for the results of {@link #search(PatternEntry)}.
+     */
+    void setResultCache(BaselineResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     @Override
     protected BaselineIndexBuilder.TextBlock loadEntity(ScoredDocID sd) {
         Document doc;
         try {
-            doc = searcher.doc(sd.getIndexID());
+            doc = searcher.doc(sd.getIndexID(), BLOCK_FIELDS);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
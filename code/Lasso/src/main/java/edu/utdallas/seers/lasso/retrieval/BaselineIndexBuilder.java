@@ -2,17 +2,13 @@ package edu.utdallas.seers.lasso.retrieval;
 
 import com.github.javaparser.Position;
 import com.github.javaparser.Range;
-import edu.utdallas.seers.file.JavaFileWalker;
-import edu.utdallas.seers.lasso.ast.JavaTextExtractor;
 import edu.utdallas.seers.lasso.ast.TextSpan;
-import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.ASTPattern;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
 import edu.utdallas.seers.lasso.data.entity.PatternType;
 import edu.utdallas.seers.parameter.Options;
 import edu.utdallas.seers.retrieval.IndexBuilder;
 import edu.utdallas.seers.retrieval.Retrievable;
-import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
@@ -20,15 +16,16 @@ import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexableField;
 import org.jooq.lambda.Collectable;
 import org.jooq.lambda.Seq;
-import org.jooq.lambda.Unchecked;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static edu.utdallas.seers.collection.Collections.streamMap;
 
@@ -41,8 +38,6 @@ public abstract class BaselineIndexBuilder extends IndexBuilder<BaselineIndexBui
     protected final Path sourcesPath;
     protected final String project;
     protected final LassoScenarioID<BaselineConfig> key;
-    private final JavaTextExtractor textExtractor = new JavaTextExtractor();
-    private final TextPreprocessor preprocessor = LassoIndexBuilder.createPreprocessor();
 
     public BaselineIndexBuilder(Path sourcesPath, LassoScenarioID<BaselineConfig> key) {
         this.sourcesPath = sourcesPath;
@@ -56,24 +51,35 @@ public abstract class BaselineIndexBuilder extends IndexBuilder<BaselineIndexBui
     }
 
     public BaselineIndex buildIndex() {
-        var projectPath = sourcesPath.resolve(project).resolve("sources");
-        var extractor = key.getConfiguration().output.extractor;
-        var items = JavaFileWalker.walk(projectPath, ConstraintLoader.loadExclusions(projectPath))
-                .flatMap(Unchecked.function(
-                        f -> extractor.apply(textExtractor.extractText(f))
-                ));
-
-        return (BaselineIndex) buildIndex(key.getConfiguration().type.nameFactory.apply(key), items);
+        try (var corpus = loadCorpus()) {
+            return (BaselineIndex) buildIndex(key.getConfiguration().type.nameFactory.apply(key), corpus);
+        }
     }
 
-    protected String preprocessText(String text) {
-        return preprocessor.preprocess(text, true)
-                .collect(Collectors.joining(" "));
+    /**
+     * The corpus is only loaded, and built if needed, when the stream is consumed, so nothing
+     * is done if the index already exists. Closing the stream closes the corpus file if it was
+     * opened.
+     *
+     * @return Blocks with preprocessed text.
+     */
+    protected Stream<TextBlock> loadCorpus() {
+        var corpus = new AtomicReference<Stream<TextBlock>>();
+
+        return StreamSupport.stream(
+                () -> {
+                    corpus.set(BaselineCorpus.load(sourcesPath, project, key.getConfiguration().output));
+                    return corpus.get().spliterator();
+                },
+                Spliterator.ORDERED | Spliterator.NONNULL,
+                false
+        )
+                .onClose(() -> Optional.ofNullable(corpus.get()).ifPresent(Stream::close));
     }
 
     @Override
     protected Optional<Iterable<IndexableField>> generateFields(TextBlock item, String indexName) {
-        return Optional.of(preprocessText(item.text))
+        return Optional.of(item.text)
                 .filter(s -> !s.isEmpty())
                 .map(s -> Arrays.asList(
                         new StringField("id", item.getID(), Field.Store.YES),
@@ -0,0 +1,65 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jooq.lambda.tuple.Tuple3;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Results of baseline queries, shared by all baseline indexes created by the same
+ * {@link IndexCoordinator}. The same baseline query is run by every Lasso scenario that uses the
+ * baseline, and by the baseline scenario itself. Bounded by the total number of results kept.
+ */
+public class BaselineResultCache {
+    public static final long DEFAULT_MAXIMUM_RESULTS = 2_000_000;
+
+    private final Cache<Tuple3<LassoScenarioID<BaselineConfig>, String, String>, LassoResultCollection> cache;
+
+    public BaselineResultCache() {
+        this(DEFAULT_MAXIMUM_RESULTS);
+    }
+
+    /**
+     * @param maximumResults Maximum number of results of all cached collections together.
+     */
+    public BaselineResultCache(long maximumResults) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumResults)
+                .<Tuple3<LassoScenarioID<BaselineConfig>, String, String>, LassoResultCollection>weigher(
+                        (k, c) -> c.getResultCount() + 1)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * The constraint is part of the key because result collections contain the evaluation of
+     * the results against the ground truth of the constraint.
+     *
+     * @param key          Baseline scenario.
+     * @param constraintID ID of the constraint that is being searched.
+     * @param queryText    Preprocessed query text.
+     * @param search       Runs the query if the results are not cached.
+     * @return The results.
+     */
+    LassoResultCollection get(LassoScenarioID<BaselineConfig> key, String constraintID, String queryText,
+                              Supplier<LassoResultCollection> search) {
+        try {
+            return cache.get(tuple(key, constraintID, queryText), search::get);
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionException e) {
+            // The supplier cannot throw checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+}
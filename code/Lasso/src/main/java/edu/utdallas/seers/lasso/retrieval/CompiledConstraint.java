@@ -0,0 +1,171 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * The query terms of a constraint, preprocessed once and shared by all scenarios that search for
+ * it. Also keeps the {@link TermStates} of the terms for each index reader that the constraint is
+ * searched on, so that repeated searches on the same reader do not seek the terms dictionary.
+ */
+public class CompiledConstraint {
+    private static final Logger logger = LoggerFactory.getLogger(CompiledConstraint.class);
+
+    // The stemmer keeps state, so each thread compiling constraints needs its own
+    private static final ThreadLocal<TextPreprocessor> preprocessor =
+            ThreadLocal.withInitial(LassoIndexBuilder::createPreprocessor);
+
+    // Keys are compared by identity and entries are dropped with the constraints
+    private static final Cache<PatternEntry, CompiledConstraint> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final PatternEntry constraint;
+    private final List<List<String>> operandTerms;
+    private final List<String> consequenceTerms;
+    private final List<String> textTerms;
+    private final Map<BaselineIndexBuilder.Input, List<String>> inputTerms = new ConcurrentHashMap<>();
+    // The reader is not referenced by the term states, so it can be weakly referenced
+    private final Map<IndexReader, Map<Term, TermStates>> termStates =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private CompiledConstraint(PatternEntry constraint) {
+        this.constraint = constraint;
+        operandTerms = extractOperandTerms(constraint);
+        consequenceTerms = preprocess(constraint.consequence);
+        textTerms = preprocess(constraint.getText());
+    }
+
+    /**
+     * @param constraint Constraint.
+     * @return The compiled constraint, which is created the first time the constraint is used.
+     */
+    public static CompiledConstraint of(PatternEntry constraint) {
+        try {
+            return cache.get(constraint, () -> new CompiledConstraint(constraint));
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionException e) {
+            // The loader cannot throw checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> preprocess(String text) {
+        return preprocessor.get().preprocess(text, true)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private static List<List<String>> extractOperandTerms(PatternEntry query) {
+        var initialOperandTerms = query.getOperands().stream()
+                .map(CompiledConstraint::preprocess)
+                .collect(Collectors.toList());
+
+        List<List<String>> finalOperands;
+        switch (query.getcType()) {
+            case DUAL_VALUE_COMPARISON:
+                // TODO we should be using the second operand as well
+                if (initialOperandTerms.size() != 2) {
+                    logger.warn(String.format("%s should have exactly 2 operands, has %d",
+                            query.getID(), initialOperandTerms.size()));
+                    finalOperands = initialOperandTerms;
+                } else {
+                    // Only leave first one
+                    finalOperands = initialOperandTerms.subList(0, 1);
+                }
+                break;
+            case CATEGORICAL_VALUE:
+                // combine all but first operand into a single one
+                // TODO there should be a better way other than combining them
+                finalOperands = new ArrayList<>();
+                finalOperands.add(initialOperandTerms.get(0));
+                finalOperands.add(
+                        initialOperandTerms.stream()
+                                .skip(1)
+                                .flatMap(Collection::stream)
+                                .collect(Collectors.toList())
+                );
+                break;
+            default:
+                finalOperands = initialOperandTerms;
+        }
+
+        return Collections.unmodifiableList(finalOperands);
+    }
+
+    public PatternEntry getConstraint() {
+        return constraint;
+    }
+
+    /**
+     * @return Terms of each operand that is used in Lasso queries.
+     */
+    public List<List<String>> getOperandTerms() {
+        return operandTerms;
+    }
+
+    public List<String> getConsequenceTerms() {
+        return consequenceTerms;
+    }
+
+    public List<String> getTextTerms() {
+        return textTerms;
+    }
+
+    /**
+     * @param input Input of a baseline.
+     * @return Terms of the text that the baseline uses as query.
+     */
+    public List<String> getInputTerms(BaselineIndexBuilder.Input input) {
+        return inputTerms.computeIfAbsent(input, i -> preprocess(i.extractor.apply(constraint)));
+    }
+
+    /**
+     * Builds a disjunction of term queries whose term states are cached for the reader.
+     *
+     * @param reader Reader the query will be run on.
+     * @param field  Field.
+     * @param terms  Terms, one clause is added for each.
+     * @param occur  Occur of the clauses.
+     * @return The query.
+     */
+    public Query createQuery(IndexReader reader, String field, List<String> terms, BooleanClause.Occur occur) {
+        var readerStates = termStates.computeIfAbsent(reader, r -> new ConcurrentHashMap<>());
+
+        var builder = new BooleanQuery.Builder();
+        for (String text : terms) {
+            var term = new Term(field, text);
+            var states = readerStates.computeIfAbsent(term, t -> buildStates(reader, t));
+            builder.add(new TermQuery(term, states), occur);
+        }
+
+        return builder.build();
+    }
+
+    private static TermStates buildStates(IndexReader reader, Term term) {
+        try {
+            return TermStates.build(reader.getContext(), term, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
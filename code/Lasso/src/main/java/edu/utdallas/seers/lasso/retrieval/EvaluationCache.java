@@ -0,0 +1,342 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parameter.Options;
+import edu.utdallas.seers.retrieval.IndexDirectories;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexFormatTooNewException;
+import org.apache.lucene.index.IndexFormatTooOldException;
+import org.apache.lucene.store.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Evaluations of the constraints of one scenario, stored on disk so that reruns only search for
+ * constraints that are new or have changed. Only what is needed to compute the evaluation
+ * measures is stored, i.e. the ranks of the true positives and the result counts, so restored
+ * evaluations do not have result lists.
+ * <p>
+ * Entries are keyed by constraint ID and a hash of the constraint content. The file is discarded
+ * when the fingerprint of the index does not match, which happens whenever the index is rebuilt.
+ * File layout:
+ * <pre>
+ * header
+ * string scenarioKey, string indexFingerprint
+ * vint entryCount
+ * for each entry:
+ *   string constraintID, string contentHash
+ *   vint resultCount, vint falseNegativeCount, vint tpCount, tpCount x vint rank
+ *   int averageResultSize (float bits)
+ *   vint termCount, termCount x string term
+ *   vint fullPatternMatches, vint fullQueryMatches, vint partialQueryMatches
+ *   byte hasGTMethodRank, [zint gtMethodRank], zint gtGroupSize, vint escCount, escCount x vint rank
+ * footer
+ * </pre>
+ */
+public class EvaluationCache {
+    private static final String CODEC_NAME = "EvaluationCache";
+    private static final int VERSION = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(EvaluationCache.class);
+
+    private final Path file;
+    private final LassoScenarioID<?> key;
+    private final String fingerprint;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean modified = false;
+
+    private EvaluationCache(Path file, LassoScenarioID<?> key, String fingerprint) {
+        this.file = file;
+        this.key = key;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the cache of the scenario. It will be empty if it does not exist, if it was created
+     * with a different index or if caches are being ignored.
+     *
+     * @param key         Scenario.
+     * @param fingerprint Fingerprint of the index used by the scenario.
+     * @return The cache.
+     */
+    public static EvaluationCache open(LassoScenarioID<?> key, String fingerprint) {
+        var keyString = key.toString();
+        var fileName = String.format("%s_%s.bin", key.project,
+                Hashing.sha256().hashString(keyString, StandardCharsets.UTF_8).toString().substring(0, 16));
+        var file = Options.getInstance().getCachePath()
+                .resolve("evaluation-results")
+                .resolve(fileName);
+        var cache = new EvaluationCache(file, key, fingerprint);
+
+        if (!Options.getInstance().isIgnoreCache() && Files.exists(file)) {
+            cache.read(keyString);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Fingerprint of the files that make up an index. Changes when any of them is rewritten.
+     *
+     * @param paths Files or directories. Those that do not exist are skipped. Indexes that are
+     *              in memory contribute their {@link IndexDirectories#getMemoryFingerprint(Path)}.
+     * @return A hexadecimal hash of the names, sizes and modification times of all files.
+     */
+    public static String fingerprint(Path... paths) {
+        Hasher hasher = Hashing.sha256().newHasher();
+
+        for (Path path : paths) {
+            if (path == null) {
+                continue;
+            }
+
+            var memoryFingerprint = IndexDirectories.getMemoryFingerprint(path);
+            if (memoryFingerprint.isPresent()) {
+                hasher.putString(memoryFingerprint.get(), StandardCharsets.UTF_8);
+                continue;
+            }
+
+            if (!Files.exists(path)) {
+                continue;
+            }
+
+            try (Stream<Path> walk = Files.walk(path)) {
+                var files = walk.filter(Files::isRegularFile)
+                        .sorted()
+                        .collect(Collectors.toList());
+
+                for (Path file : files) {
+                    hasher.putString(path.relativize(file).toString(), StandardCharsets.UTF_8)
+                            .putLong(Files.size(file))
+                            .putLong(Files.getLastModifiedTime(file).toMillis());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @param constraint Constraint.
+     * @return A hash of all of the fields of the constraint that affect its search or evaluation.
+     */
+    static String hashContent(PatternEntry constraint) {
+        var hasher = Hashing.sha256().newHasher();
+
+        Stream.of(constraint.getID(), constraint.getSystem(), constraint.getcType(), constraint.getpType(),
+                constraint.getContext(), constraint.getText(), constraint.getOperands(), constraint.consequence,
+                constraint.getExtra().orElse(null), constraint.getGroundTruthIDs(), constraint.getInputs())
+                // Separator avoids collisions when text moves between fields
+                .forEach(o -> hasher.putString(String.valueOf(o), StandardCharsets.UTF_8).putChar('\0'));
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @param constraint Constraint.
+     * @return The cached evaluation, if the constraint has not changed since it was stored.
+     */
+    public Optional<LassoEvaluation> get(PatternEntry constraint) {
+        return Optional.ofNullable(entries.get(constraint.getID()))
+                .filter(e -> e.contentHash.equals(hashContent(constraint)))
+                .map(e -> e.restore(key, constraint));
+    }
+
+    public void put(LassoEvaluation evaluation) {
+        var constraint = evaluation.getQuery();
+        entries.put(constraint.getID(), new Entry(hashContent(constraint), evaluation));
+        modified = true;
+    }
+
+    /**
+     * Writes the cache if any entries were added.
+     */
+    public void save() {
+        if (!modified) {
+            return;
+        }
+
+        edu.utdallas.seers.file.Files.createDirectories(file.getParent());
+
+        try (var directory = FSDirectory.open(file.getParent())) {
+            String tempName;
+
+            try (var output = directory.createTempOutput(file.getFileName().toString(), "", IOContext.DEFAULT)) {
+                tempName = output.getName();
+                write(output);
+            }
+
+            directory.sync(Collections.singleton(tempName));
+            directory.rename(tempName, file.getFileName().toString());
+            directory.syncMetaData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        modified = false;
+    }
+
+    private void write(IndexOutput output) throws IOException {
+        CodecUtil.writeHeader(output, CODEC_NAME, VERSION);
+        output.writeString(key.toString());
+        output.writeString(fingerprint);
+        output.writeVInt(entries.size());
+
+        for (var e : entries.entrySet()) {
+            output.writeString(e.getKey());
+            e.getValue().write(output);
+        }
+
+        CodecUtil.writeFooter(output);
+    }
+
+    private void read(String keyString) {
+        try (var directory = FSDirectory.open(file.getParent());
+             var input = directory.openChecksumInput(file.getFileName().toString(), IOContext.READONCE)) {
+            CodecUtil.checkHeader(input, CODEC_NAME, VERSION, VERSION);
+
+            if (!input.readString().equals(keyString) || !input.readString().equals(fingerprint)) {
+                logger.info("Discarding evaluation cache for {}, the index has changed", key);
+                return;
+            }
+
+            int count = input.readVInt();
+            for (int i = 0; i < count; i++) {
+                var constraintID = input.readString();
+                entries.put(constraintID, Entry.read(input));
+            }
+
+            CodecUtil.checkFooter(input);
+        } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException e) {
+            logger.warn("Discarding invalid evaluation cache at " + file, e);
+            entries.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Entry {
+        private final String contentHash;
+        private final int resultCount;
+        private final int falseNegativeCount;
+        private final List<Integer> truePositiveRanks;
+        private final float averageResultSize;
+        private final List<String> queryTerms;
+        private final int fullPatternMatches;
+        private final int fullQueryMatches;
+        private final int partialQueryMatches;
+        private final Integer gtMethodRank;
+        private final int gtGroupSize;
+        private final List<Integer> gtMethodESCRanks;
+
+        private Entry(String contentHash, int resultCount, int falseNegativeCount, List<Integer> truePositiveRanks,
+                      float averageResultSize, List<String> queryTerms, int fullPatternMatches,
+                      int fullQueryMatches, int partialQueryMatches, Integer gtMethodRank, int gtGroupSize,
+                      List<Integer> gtMethodESCRanks) {
+            this.contentHash = contentHash;
+            this.resultCount = resultCount;
+            this.falseNegativeCount = falseNegativeCount;
+            this.truePositiveRanks = truePositiveRanks;
+            this.averageResultSize = averageResultSize;
+            this.queryTerms = queryTerms;
+            this.fullPatternMatches = fullPatternMatches;
+            this.fullQueryMatches = fullQueryMatches;
+            this.partialQueryMatches = partialQueryMatches;
+            this.gtMethodRank = gtMethodRank;
+            this.gtGroupSize = gtGroupSize;
+            this.gtMethodESCRanks = gtMethodESCRanks;
+        }
+
+        private Entry(String contentHash, LassoEvaluation evaluation) {
+            this(contentHash, evaluation.getTotalResults(), evaluation.getResults().getFalseNegativeCount(),
+                    evaluation.getResults().getTruePositiveRanks(), evaluation.getAverageResultSize(),
+                    evaluation.getResults().getQueryTerms(), evaluation.fullPatternMatches,
+                    evaluation.fullQueryMatches, evaluation.partialQueryMatches, evaluation.gtMethodRank,
+                    evaluation.gtGroupSize, evaluation.gtMethodESCRanks);
+        }
+
+        private static Entry read(DataInput input) throws IOException {
+            return new Entry(
+                    input.readString(),
+                    input.readVInt(),
+                    input.readVInt(),
+                    readInts(input),
+                    Float.intBitsToFloat(input.readInt()),
+                    readStrings(input),
+                    input.readVInt(),
+                    input.readVInt(),
+                    input.readVInt(),
+                    input.readByte() == 1 ? input.readZInt() : null,
+                    input.readZInt(),
+                    readInts(input)
+            );
+        }
+
+        private static List<Integer> readInts(DataInput input) throws IOException {
+            int count = input.readVInt();
+            var ints = new ArrayList<Integer>(count);
+            for (int i = 0; i < count; i++) {
+                ints.add(input.readVInt());
+            }
+            return ints;
+        }
+
+        private static List<String> readStrings(DataInput input) throws IOException {
+            int count = input.readVInt();
+            var strings = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                strings.add(input.readString());
+            }
+            return strings;
+        }
+
+        private void write(DataOutput output) throws IOException {
+            output.writeString(contentHash);
+            output.writeVInt(resultCount);
+            output.writeVInt(falseNegativeCount);
+            writeInts(output, truePositiveRanks);
+            output.writeInt(Float.floatToIntBits(averageResultSize));
+            output.writeVInt(queryTerms.size());
+            for (String term : queryTerms) {
+                output.writeString(term);
+            }
+            output.writeVInt(fullPatternMatches);
+            output.writeVInt(fullQueryMatches);
+            output.writeVInt(partialQueryMatches);
+            output.writeByte((byte) (gtMethodRank == null ? 0 : 1));
+            if (gtMethodRank != null) {
+                output.writeZInt(gtMethodRank);
+            }
+            output.writeZInt(gtGroupSize);
+            writeInts(output, gtMethodESCRanks);
+        }
+
+        private static void writeInts(DataOutput output, List<Integer> ints) throws IOException {
+            output.writeVInt(ints.size());
+            for (int i : ints) {
+                output.writeVInt(i);
+            }
+        }
+
+        private LassoEvaluation restore(LassoScenarioID<?> key, PatternEntry constraint) {
+            var collection = new LassoResultCollection(key, constraint, queryTerms, resultCount,
+                    falseNegativeCount, truePositiveRanks, averageResultSize);
+            return new LassoEvaluation(collection, fullPatternMatches, fullQueryMatches, partialQueryMatches,
+                    gtMethodRank, gtGroupSize, gtMethodESCRanks);
+        }
+    }
+}
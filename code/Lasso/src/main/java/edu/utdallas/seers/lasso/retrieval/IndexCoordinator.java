@@ -1,6 +1,10 @@
 package edu.utdallas.seers.lasso.retrieval;
 
+import com.google.common.cache.CacheStats;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -12,6 +16,12 @@ import java.util.concurrent.ConcurrentMap;
 public class IndexCoordinator {
     private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Object> baselineLocks = new ConcurrentHashMap<>();
+    private final BaselineResultCache baselineResultCache = new BaselineResultCache();
+    private final ConcurrentMap<Path, DirectoryReader> readers = new ConcurrentHashMap<>();
+    /**
+     * Shards of indexes in memory by path, since their patterns and stats are not cached on disk.
+     */
+    private final ConcurrentMap<Path, PatternShard> memoryShards = new ConcurrentHashMap<>();
 
     public LassoIndex createIndex(Path sourcesDir, LassoScenarioID<LassoConfig> scenario) {
         var indexName = LassoIndexBuilder.createIndexName(scenario);
@@ -27,8 +37,70 @@ public class IndexCoordinator {
     public BaselineIndex createBaselineIndex(Path sourcesDir, LassoScenarioID<BaselineConfig> key) {
         var name = key.getConfiguration().type.nameFactory.apply(key);
 
+        BaselineIndex index;
         synchronized (baselineLocks.computeIfAbsent(name, k -> new Object())) {
-            return key.getConfiguration().type.indexFactory.apply(sourcesDir, key);
+            index = key.getConfiguration().type.indexFactory.apply(sourcesDir, key);
         }
+
+        index.setResultCache(baselineResultCache);
+
+        return index;
+    }
+
+    /**
+     * Readers of pattern indexes are shared by all scenarios that use the same index, so that
+     * caches that are kept per reader, e.g. the term states of {@link CompiledConstraint}, are
+     * reused. Must be called while holding the lock of the index.
+     * <p>
+     * The coordinator holds one reference to the latest reader of each index. Callers that keep
+     * the reader must call {@link DirectoryReader#incRef()} before releasing the lock, and
+     * {@link DirectoryReader#decRef()} when they are done, as {@link LassoIndex} does. A reader
+     * that is replaced is closed once it is no longer referenced.
+     *
+     * @param path      Path of the index.
+     * @param directory Directory of the index.
+     * @return The shared reader, reopened if the index has changed since it was opened.
+     * @throws IOException If the index cannot be opened.
+     */
+    DirectoryReader openReader(Path path, Directory directory) throws IOException {
+        var current = readers.get(path);
+        if (current == null) {
+            var reader = DirectoryReader.open(directory);
+            readers.put(path, reader);
+            return reader;
+        }
+
+        var reader = DirectoryReader.openIfChanged(current);
+        if (reader == null) {
+            return current;
+        }
+
+        readers.put(path, reader);
+        current.decRef();
+
+        return reader;
+    }
+
+    /**
+     * @param path Path of the index of the shard.
+     * @return The shard if it was built in memory by this coordinator, otherwise {@code null}.
+     */
+    PatternShard getMemoryShard(Path path) {
+        return memoryShards.get(path);
+    }
+
+    /**
+     * Must be called while holding the lock of the index.
+     */
+    void putMemoryShard(Path path, PatternShard shard) {
+        memoryShards.put(path, shard);
+    }
+
+    /**
+     * @return Statistics of the baseline results cache shared by all baseline indexes created
+     * by this coordinator.
+     */
+    public CacheStats getBaselineResultStats() {
+        return baselineResultCache.getStats();
     }
 }
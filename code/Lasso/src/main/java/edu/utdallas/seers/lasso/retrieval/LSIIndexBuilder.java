@@ -66,7 +66,7 @@ public class LSIIndexBuilder extends BaselineIndexBuilder {
         try (var writer = new IndexWriter(FSDirectory.open(indexPath), config)) {
             items.forEach(Unchecked.consumer(b -> writer.addDocument(Arrays.asList(
                     new StringField("id", b.getID(), Field.Store.YES),
-                    new TextField(TEXT_FIELD_NAME, preprocessText(b.text), Field.Store.NO)
+                    new TextField(TEXT_FIELD_NAME, b.text, Field.Store.NO)
             ))));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -148,8 +148,22 @@ public class LSIIndexBuilder extends BaselineIndexBuilder {
         }
 
         @Override
-        public List<SimpleRetrievalResult<TextBlock>> search(String text, String field) {
-            var queryTerms = preprocessor.preprocess(text, true).collect(Collectors.toList());
+        public String getFingerprint() {
+            return EvaluationCache.fingerprint(svIndexPath);
+        }
+
+        @Override
+        protected List<SimpleRetrievalResult<TextBlock>> searchContent(CompiledConstraint constraint, String text) {
+            return search(text, CONTENT_FIELD_NAME);
+        }
+
+        /**
+         * Synchronized because Semantic Vectors is not meant for concurrent searches, which
+         * happen with batches of queries.
+         */
+        @Override
+        public synchronized List<SimpleRetrievalResult<TextBlock>> search(String text, String field) {
+            var queryTerms = preprocessor.get().preprocess(text, true).collect(Collectors.toList());
             if (queryTerms.isEmpty()) {
                 return Collections.emptyList();
             }
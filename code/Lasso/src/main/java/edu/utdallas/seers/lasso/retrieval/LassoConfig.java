@@ -14,10 +14,13 @@ public class LassoConfig implements RetrievalConfiguration {
     public final float rankPenaltyPercent;
     public final float callGraphPenaltyFactor;
     public final BaselineIndexBuilder.Type underlyingType;
+    public final Engine engine;
+    public final Sharding sharding;
 
     LassoConfig(int windowSize, boolean methodGranularity, boolean allMethods, boolean baselineCombination,
                 boolean baselineBoost, Map<LassoScore.Component, Float> scoreWeights,
-                float rankPenaltyPercent, float callGraphPenaltyFactor, BaselineIndexBuilder.Type underlyingType) {
+                float rankPenaltyPercent, float callGraphPenaltyFactor, BaselineIndexBuilder.Type underlyingType,
+                Engine engine, Sharding sharding) {
         this.windowSize = windowSize;
         this.methodGranularity = methodGranularity;
         this.allMethods = allMethods;
@@ -27,6 +30,17 @@ public class LassoConfig implements RetrievalConfiguration {
         this.rankPenaltyPercent = rankPenaltyPercent;
         this.callGraphPenaltyFactor = callGraphPenaltyFactor;
         this.underlyingType = underlyingType;
+        this.engine = engine;
+        this.sharding = sharding;
+    }
+
+    /**
+     * @param engine Engine.
+     * @return A copy of this configuration that searches patterns with the given engine.
+     */
+    public LassoConfig withEngine(Engine engine) {
+        return new LassoConfig(windowSize, methodGranularity, allMethods, baselineCombination, baselineBoost,
+                scoreWeights, rankPenaltyPercent, callGraphPenaltyFactor, underlyingType, engine, sharding);
     }
 
     @Override
@@ -48,12 +62,45 @@ public class LassoConfig implements RetrievalConfiguration {
                 allMethods == that.allMethods && baselineCombination == that.baselineCombination &&
                 baselineBoost == that.baselineBoost && Float.compare(that.rankPenaltyPercent, rankPenaltyPercent) == 0 &&
                 Float.compare(that.callGraphPenaltyFactor, callGraphPenaltyFactor) == 0 &&
-                Objects.equals(scoreWeights, that.scoreWeights) && underlyingType == that.underlyingType;
+                Objects.equals(scoreWeights, that.scoreWeights) && underlyingType == that.underlyingType &&
+                engine == that.engine && sharding == that.sharding;
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(windowSize, methodGranularity, allMethods, baselineCombination,
-                baselineBoost, scoreWeights, rankPenaltyPercent, callGraphPenaltyFactor, underlyingType);
+                baselineBoost, scoreWeights, rankPenaltyPercent, callGraphPenaltyFactor, underlyingType, engine, sharding);
+    }
+
+    /**
+     * How pattern queries are run. Both produce the same scores, so the engine is not part of the
+     * name of the configuration.
+     */
+    public enum Engine {
+        /**
+         * Lucene search with {@link SimpleCountSimilarity}.
+         */
+        LUCENE,
+        /**
+         * {@link PatternPostings} kept in memory.
+         */
+        POSTINGS
+    }
+
+    /**
+     * How the patterns of a project are split into indexes. Scores do not depend on the other
+     * patterns in the index, so all shardings produce the same scores and the sharding is not
+     * part of the name of the configuration.
+     */
+    public enum Sharding {
+        /**
+         * One index for the whole project.
+         */
+        NONE,
+        /**
+         * One index for each source root of the project, e.g. the main and test sources of each
+         * module. Only the indexes of source roots whose files changed are rebuilt.
+         */
+        SOURCE_ROOT
     }
 }
@@ -67,13 +67,36 @@ public class LassoEvaluation extends RetrievalEvaluation<PatternEntry, LassoResu
                 .orElse(Collections.emptyList());
     }
 
+    /**
+     * Restores an evaluation whose collection has no results, e.g. from an {@link EvaluationCache}.
+     * Score and operand clusters are empty because they need the results.
+     */
+    LassoEvaluation(LassoResultCollection collection, int fullPatternMatches, int fullQueryMatches,
+                    int partialQueryMatches, Integer gtMethodRank, int gtGroupSize, List<Integer> gtMethodESCRanks) {
+        super(collection);
+        this.fullPatternMatches = fullPatternMatches;
+        this.fullQueryMatches = fullQueryMatches;
+        this.partialQueryMatches = partialQueryMatches;
+        scoreClusters = Collections.emptyList();
+        operandClusters = Collections.emptyMap();
+        this.gtMethodRank = gtMethodRank;
+        this.gtGroupSize = gtGroupSize;
+        this.gtMethodESCRanks = gtMethodESCRanks;
+    }
+
+    /**
+     * Copies everything but the results. Operand clusters are dropped because they hold results.
+     */
     private LassoEvaluation(LassoEvaluation other) {
         super(other.collection.removeResults());
         fullPatternMatches = other.fullPatternMatches;
         fullQueryMatches = other.fullQueryMatches;
         partialQueryMatches = other.partialQueryMatches;
         scoreClusters = other.scoreClusters;
-        operandClusters = other.operandClusters;
+        operandClusters = Collections.emptyMap();
+        gtMethodRank = other.gtMethodRank;
+        gtGroupSize = other.gtGroupSize;
+        gtMethodESCRanks = other.gtMethodESCRanks;
     }
 
     @Override
@@ -1,15 +1,17 @@
 package edu.utdallas.seers.lasso.retrieval;
 
 import com.github.javaparser.Range;
+import com.google.common.base.Suppliers;
 import com.google.common.graph.ImmutableGraph;
 import edu.utdallas.seers.lasso.data.entity.ASTPattern;
 import edu.utdallas.seers.lasso.data.entity.ConstraintType;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parallel.Parallel;
+import edu.utdallas.seers.parameter.Options;
 import edu.utdallas.seers.retrieval.RetrievalResult;
+import edu.utdallas.seers.stream.IntFloatSeq;
+import edu.utdallas.seers.stream.ObjFloatSeq;
 import edu.utdallas.seers.stream.PairSeq;
-import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.jooq.lambda.Seq;
 import org.jooq.lambda.Unchecked;
@@ -17,55 +19,125 @@ import org.jooq.lambda.tuple.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static edu.utdallas.seers.collection.Collections.streamMap;
 import static org.jooq.lambda.tuple.Tuple.tuple;
 
 // TODO combine this implementation with IndexSearcher and IndexBuilder in seers.base
-public class LassoIndex {
+public class LassoIndex implements Closeable {
     // TODO these config parameters should be properly parameterized
     public static final boolean BASELINE_ORDER = false;
     public static final boolean AVG_RANKS = false;
+    /**
+     * Pool for searching the shards of an index in parallel, with the number of threads in
+     * {@link Options#getSearchThreads()}. It is not the pool that searches index segments because
+     * the shard searches wait for those.
+     */
+    private static final String SHARD_POOL = "shard-search";
 
     private final Logger logger = LoggerFactory.getLogger(LassoIndex.class);
-    private final TextPreprocessor preprocessor = LassoIndexBuilder.createPreprocessor();
     private final QueryRunner runner = new QueryRunner();
     private final Comparator<LassoResult> scoreSorter =
             Comparator.<LassoResult, Float>comparing(RetrievalResult::getScore).reversed();
-
-    private final IndexSearcher indexSearcher;
-    private final IndexReader indexReader;
-    private final Map<String, ASTPattern> patterns;
-    private final Map<String, LassoStats> stats;
+    /**
+     * Ties are broken by {@link PatternShard#getOrdinal(int) ordinal}, which is the document
+     * order of an index with all patterns.
+     */
+    private final Comparator<Tuple2<LassoResult, Long>> shardResultSorter =
+            Comparator.<Tuple2<LassoResult, Long>, LassoResult>comparing(Tuple2::v1, scoreSorter)
+                    .thenComparing(Tuple2::v2);
+
+    private final List<PatternShard> shards;
     private final Map<LassoScore.Component, Float> scoreWeights;
     private final BaselineIndex baselineIndex;
     private final LassoScenarioID<LassoConfig> key;
     private final ImmutableGraph<String> callGraph;
-
-    public LassoIndex(IndexReader reader, Map<String, ASTPattern> patterns,
-                      Map<String, LassoStats> stats,
-                      BaselineIndex baselineIndex, LassoScenarioID<LassoConfig> scenarioKey, ImmutableGraph<String> callGraph) {
-        this.patterns = patterns;
-        indexReader = reader;
-        this.stats = stats;
-        indexSearcher = new IndexSearcher(indexReader);
-        indexSearcher.setSimilarity(new SimpleCountSimilarity());
+    private final String fingerprint;
+    private boolean closed = false;
+
+    /**
+     * The readers of the shards are kept open until the index is closed. Must be called while
+     * holding the lock of the index, see {@link IndexCoordinator#openReader}.
+     *
+     * @param shards Shards with the patterns of the project. Each file must be in a single shard.
+     */
+    LassoIndex(List<PatternShard> shards,
+               BaselineIndex baselineIndex, LassoScenarioID<LassoConfig> scenarioKey, ImmutableGraph<String> callGraph,
+               String fingerprint) {
+        this.shards = shards;
         this.scoreWeights = scenarioKey.getConfiguration().scoreWeights;
         this.baselineIndex = baselineIndex;
         key = scenarioKey;
         this.callGraph = callGraph;
+        this.fingerprint = fingerprint;
+        shards.forEach(PatternShard::incRef);
+    }
+
+    /**
+     * Releases the readers of the shards. Readers that have been replaced by the coordinator are
+     * closed once no other index uses them.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            for (PatternShard shard : shards) {
+                shard.decRef();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Fingerprint of the index files and of the baseline index, if any. Changes when
+     * either is rebuilt.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Copies the shards and the baseline index to the cache path if they are in memory (see
+     * {@link Options#isInMemoryIndexes()}), so that later runs use them instead of building them.
+     */
+    public void snapshot() {
+        shards.forEach(PatternShard::snapshot);
+
+        if (baselineIndex != null) {
+            baselineIndex.snapshot();
+        }
+    }
+
+    /**
+     * Runs the queries concurrently with the number of threads in {@link Options#getQueryThreads()}.
+     * All queries share the index reader.
+     *
+     * @param queries Queries.
+     * @return The results of each query, in the same order as the queries.
+     */
+    public List<LassoResultCollection> search(List<PatternEntry> queries) {
+        return Parallel.mapInOrder(Parallel.QUERY_POOL, queries, this::search,
+                Options.getInstance().getQueryThreads());
     }
 
     public LassoResultCollection search(PatternEntry query) {
         logger.info("[{}] Searching {}", key, query.getID());
 
-        List<List<String>> operandTerms = extractOperandTerms(query);
+        var compiled = CompiledConstraint.of(query);
+        List<List<String>> operandTerms = compiled.getOperandTerms();
         var allTerms = operandTerms.stream().flatMap(Collection::stream).collect(Collectors.toList());
 
         LassoResultCollection baselineResults;
@@ -74,12 +146,16 @@ public class LassoIndex {
         } else {
             baselineResults = null;
         }
+        // Other uses of the baseline run its query at most once
+        Supplier<LassoResultCollection> lazyBaselineResults = baselineResults != null ?
+                () -> baselineResults :
+                Suppliers.memoize(() -> baselineIndex.search(query));
 
-        var patternResults = buildResultList(query, operandTerms, baselineResults);
+        var patternResults = buildResultList(compiled, operandTerms, baselineResults, lazyBaselineResults);
 
         List<LassoResult> finalResults;
         if (BASELINE_ORDER) {
-            finalResults = baselineResults(patternResults, query);
+            finalResults = baselineResults(patternResults, lazyBaselineResults.get());
         } else if (key.getConfiguration().methodGranularity || key.getConfiguration().allMethods) {
             finalResults = toMethodLevel(patternResults, baselineResults);
         } else {
@@ -89,15 +165,14 @@ public class LassoIndex {
         return new LassoResultCollection(key, query, allTerms, finalResults, false);
     }
 
-    private List<LassoResult> buildResultList(PatternEntry query, List<List<String>> queryTerms, LassoResultCollection baselineResults) {
+    private List<LassoResult> buildResultList(CompiledConstraint compiled, List<List<String>> queryTerms, LassoResultCollection baselineResults,
+                                              Supplier<LassoResultCollection> lazyBaselineResults) {
+        var query = compiled.getConstraint();
         int querySize = (int) queryTerms.stream().flatMap(Collection::stream).distinct().count();
-        var consequenceTerms = preprocessor.preprocess(query.consequence, true)
-                .collect(Collectors.toList());
-        var textTerms = preprocessor.preprocess(query.getText(), true).collect(Collectors.toList());
+        var consequenceTerms = compiled.getConsequenceTerms();
+        var textTerms = compiled.getTextTerms();
         var ttUnique = new HashSet<String>(textTerms);
 
-        var queryResults =
-                runner.runQueries(queryTerms, consequenceTerms, textTerms, key.getConfiguration().scoreWeights);
         var qOpSizes = Seq.zipWithIndex(queryTerms)
                 .map(t -> t.map((ts, i) -> tuple(i.intValue() + 1, ts.size())))
                 .toMap(Tuple2::v1, Tuple2::v2);
@@ -106,30 +181,10 @@ public class LassoIndex {
         // Map: (file, line) --> boost amount
         var baselineBoost = calculateBaselineBoosts(query, baselineResults);
 
-        var sortedResults = queryResults.items()
-                .combine(Unchecked.biFunction((i, ss) -> {
-                    String indexID = indexReader.document(i, Collections.singleton("id"))
-                            .getField("id")
-                            .stringValue();
-
-                    var astPattern = patterns.get(indexID);
-                    var patternStats = this.stats.get(indexID);
-
-                    var baseScore = score(astPattern, ss, querySize, patternStats,
-                            query.getcType(),
-                            qOpSizes, consequenceTermsUnique.size(),
-                            AVG_RANKS ? Collections.emptyMap() : baselineBoost, ttUnique.size());
-                    var summary = new LassoSummary(astPattern, patternStats, consequenceTermsUnique);
-                    return new LassoResult(
-                            astPattern,
-                            0,
-                            baseScore,
-                            summary);
-                }))
-                .filter(r -> r.getDecomposedScore().hasCore())
-                .sorted(scoreSorter);
-
-        var filteredResults = filterOverlaps(sortedResults);
+        var shardResults = Parallel.mapInOrder(SHARD_POOL, shards, s -> searchShard(s, compiled, queryTerms,
+                consequenceTerms, textTerms, querySize, qOpSizes, consequenceTermsUnique, baselineBoost, ttUnique),
+                Options.getInstance().getSearchThreads());
+        var filteredResults = mergeByScore(shardResults);
         var methodLevelProcessedResults = penalizeMethodLevel(filteredResults);
         var scoredResults = penalizeWithCallGraph(methodLevelProcessedResults);
 
@@ -158,7 +213,7 @@ public class LassoIndex {
         // FIXME convert this to strategy along with other props in scenario key
         Seq<LassoResult> finalResults;
         if (key.getConfiguration().baselineCombination) {
-            finalResults = filterWithBaseline(query, combined);
+            finalResults = filterWithBaseline(lazyBaselineResults.get(), combined);
         } else {
             finalResults = combined;
         }
@@ -171,7 +226,83 @@ public class LassoIndex {
                 .collect(Collectors.toList());
     }
 
-    private LassoScore score(ASTPattern pattern, Map<String, Float> queryScores, int operandTermCount, LassoStats patternStats,
+    /**
+     * Runs the queries on the shard and scores its patterns. Overlaps can be filtered in each
+     * shard because each file is in a single shard.
+     *
+     * @return Results of the shard with their ordinals, sorted by score and ordinal, without
+     * overlaps.
+     */
+    private List<Tuple2<LassoResult, Long>> searchShard(PatternShard shard, CompiledConstraint compiled, List<List<String>> queryTerms,
+                                                        List<String> consequenceTerms, List<String> textTerms, int querySize,
+                                                        Map<Integer, Integer> qOpSizes, Set<String> consequenceTermsUnique,
+                                                        Map<Tuple2<String, Integer>, Float> baselineBoost, Set<String> ttUnique) {
+        var query = compiled.getConstraint();
+        var queryResults =
+                runner.runQueries(shard, compiled, queryTerms, consequenceTerms, textTerms, key.getConfiguration().scoreWeights);
+
+        var sortedResults = Seq.range(0, queryResults.size())
+                .map(Unchecked.function(row -> {
+                    int doc = queryResults.getDoc(row);
+                    String indexID = shard.getPatternID(doc);
+                    var ss = queryResults.getScores(row);
+
+                    var astPattern = shard.getPattern(indexID);
+                    var patternStats = shard.getStats(indexID);
+
+                    var baseScore = score(astPattern, ss, querySize, patternStats,
+                            query.getcType(),
+                            qOpSizes, consequenceTermsUnique.size(),
+                            AVG_RANKS ? Collections.emptyMap() : baselineBoost, ttUnique.size());
+                    var summary = new LassoSummary(astPattern, patternStats, consequenceTermsUnique);
+                    return tuple(new LassoResult(
+                            astPattern,
+                            0,
+                            baseScore,
+                            summary), shard.getOrdinal(doc));
+                }))
+                .filter(t -> t.v1.getDecomposedScore().hasCore())
+                .sorted(shardResultSorter);
+
+        return filterOverlaps(sortedResults, Tuple2::v1);
+    }
+
+    /**
+     * Merges lists sorted by score and ordinal with a heap, so that the order is the same as if
+     * all patterns were in one index.
+     */
+    private List<LassoResult> mergeByScore(List<List<Tuple2<LassoResult, Long>>> sortedLists) {
+        if (sortedLists.size() == 1) {
+            return Seq.seq(sortedLists.get(0)).map(Tuple2::v1).toList();
+        }
+
+        // Each entry is the index of a list and the position of its next result
+        var heap = new PriorityQueue<int[]>(Math.max(1, sortedLists.size()), (a, b) -> {
+            int comparison = shardResultSorter.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1]));
+            return comparison != 0 ? comparison : Integer.compare(a[0], b[0]);
+        });
+        int total = 0;
+        for (int i = 0; i < sortedLists.size(); i++) {
+            total += sortedLists.get(i).size();
+            if (!sortedLists.get(i).isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+
+        var merged = new ArrayList<LassoResult>(total);
+        while (!heap.isEmpty()) {
+            var next = heap.poll();
+            var list = sortedLists.get(next[0]);
+            merged.add(list.get(next[1]).v1);
+            if (++next[1] < list.size()) {
+                heap.add(next);
+            }
+        }
+
+        return merged;
+    }
+
+    private LassoScore score(ASTPattern pattern, ObjFloatSeq<String> queryScores, int operandTermCount, LassoStats patternStats,
                              ConstraintType constraintType, Map<Integer, Integer> qOpSizes,
                              int consequenceSize, Map<Tuple2<String, Integer>, Float> baselineBoost, int textSize) {
         float kt_mn = queryScores.getOrDefault(QueryType.OT_METHOD_NAME.toString(), 0f) / operandTermCount;
@@ -281,7 +412,7 @@ public class LassoIndex {
                 .sorted(scoreSorter);
     }
 
-    private List<LassoResult> baselineResults(List<LassoResult> patternResults, PatternEntry query) {
+    private List<LassoResult> baselineResults(List<LassoResult> patternResults, LassoResultCollection baselineResults) {
         var grouped = patternResults.stream()
                 .collect(Collectors.groupingBy(r -> {
                     var location = r.getResult().location;
@@ -292,7 +423,7 @@ public class LassoIndex {
                     );
                 }));
 
-        return baselineIndex.search(query).items()
+        return baselineResults.items()
                 .map(r -> {
                     var result = r.getResult();
                     var location = result.location;
@@ -380,50 +511,13 @@ public class LassoIndex {
                 .sorted(Comparator.comparing(p -> p.v2.get(0).getRank()));
     }
 
-    private List<List<String>> extractOperandTerms(PatternEntry query) {
-        var initialOperandTerms = query.getOperands().stream()
-                .map(s -> preprocessor.preprocess(s, true).collect(Collectors.toList()))
-                .collect(Collectors.toList());
-
-        List<List<String>> finalOperands;
-        switch (query.getcType()) {
-            case DUAL_VALUE_COMPARISON:
-                // TODO we should be using the second operand as well
-                if (initialOperandTerms.size() != 2) {
-                    logger.warn(String.format("%s should have exactly 2 operands, has %d",
-                            query.getID(), initialOperandTerms.size()));
-                    finalOperands = initialOperandTerms;
-                } else {
-                    // Only leave first one
-                    finalOperands = initialOperandTerms.subList(0, 1);
-                }
-                break;
-            case CATEGORICAL_VALUE:
-                // combine all but first operand into a single one
-                // TODO there should be a better way other than combining them
-                finalOperands = new ArrayList<>();
-                finalOperands.add(initialOperandTerms.get(0));
-                finalOperands.add(
-                        initialOperandTerms.stream()
-                                .skip(1)
-                                .flatMap(Collection::stream)
-                                .collect(Collectors.toList())
-                );
-                break;
-            default:
-                finalOperands = initialOperandTerms;
-        }
-
-        return finalOperands;
-    }
-
-    private List<LassoResult> filterOverlaps(Seq<LassoResult> sortedResults) {
+    private <R> List<R> filterOverlaps(Seq<R> sortedResults, Function<R, LassoResult> resultGetter) {
         // When there are multiple patterns on the same line, we return only the highest ranked for each line
         var linesCovered = new HashSet<Tuple2<String, Integer>>();
 
         return sortedResults
                 .filter(r -> {
-                    var location = r.getResult().location;
+                    var location = resultGetter.apply(r).getResult().location;
                     var lines = location.getLineNumbers().stream()
                             .map(i -> tuple(location.packagePath, i))
                             .collect(Collectors.toList());
@@ -439,8 +533,8 @@ public class LassoIndex {
                 .toList();
     }
 
-    private Seq<LassoResult> filterWithBaseline(PatternEntry query, Seq<LassoResult> sorted) {
-        var methodLines = baselineIndex.search(query).items()
+    private Seq<LassoResult> filterWithBaseline(LassoResultCollection baselineResults, Seq<LassoResult> sorted) {
+        var methodLines = baselineResults.items()
                 .flatMap(r -> r.getResult().location.getLineNumbers().stream()
                         .map(i -> tuple(r.getResult().getFileName(), i))
                 )
@@ -454,27 +548,40 @@ public class LassoIndex {
                 )));
     }
 
-    private Tuple2<Integer, Float> calculateOperandScore(Map<String, Float> queryScores, int operandIndex, int operandCount, Map<Integer, Integer> operandSizes) {
-        // Map from indexed operand to highest score when retrieved with query operand
-        var codeOpScores = streamMap(queryScores)
+    private Tuple2<Integer, Float> calculateOperandScore(ObjFloatSeq<String> queryScores, int operandIndex, int operandCount, Map<Integer, Integer> operandSizes) {
+        // Query operands are numbered up to their count, indexed operands up to the maximum
+        int maxOperand = operandIndex == 0 ? operandCount : LassoIndexBuilder.MAX_OPERANDS;
+        // Highest score of each operand when retrieved with any query operand, indexed by operand number
+        var best = new float[maxOperand + 1];
+        queryScores
                 // Operand scores where there is some match
                 .filter((n, s) -> Character.isDigit(n.charAt(0)) && s > 0)
-                // Keep scores of indexed fields
-                .collect(Collectors.toMap(
-                        t -> Integer.parseInt(t.v1.split("_")[operandIndex]),
-                        t -> t.v2,
-                        // Keep the highest score of all query operands for each indexed operand
-                        (s1, s2) -> Optional.of(s1).filter(s -> s > s2).orElse(s2)
-                ));
-
-        var finalScore = streamMap(codeOpScores)
+                .forEach((n, s) -> {
+                    int operand = parseOperand(n, operandIndex);
+                    best[operand] = Math.max(best[operand], s);
+                });
+
+        var codeOpScores = IntFloatSeq.zipWithIndex(best)
+                .filter((n, s) -> s > 0);
+        int matchCount = codeOpScores.count();
+        float finalScore = matchCount > 0 ?
                 // The operand must have a non-zero size if there was a match
-                .combine((n, s) -> s / operandSizes.get(n))
-                .sum()
-                .map(s -> s / operandCount)
-                .orElse(0f);
+                codeOpScores.mapValues((n, s) -> s / operandSizes.get(n)).sum() / operandCount :
+                0f;
 
-        return tuple(codeOpScores.size(), finalScore);
+        return tuple(matchCount, finalScore);
+    }
+
+    /**
+     * @param queryName    Name of an operand query, e.g. "1_2".
+     * @param operandIndex 0 for the query operand, 1 for the indexed operand.
+     */
+    private static int parseOperand(String queryName, int operandIndex) {
+        int separator = queryName.indexOf('_');
+
+        return operandIndex == 0 ?
+                Integer.parseInt(queryName, 0, separator, 10) :
+                Integer.parseInt(queryName, separator + 1, queryName.length(), 10);
     }
 
     private Map<Tuple2<String, Integer>, Float> calculateBaselineBoosts(PatternEntry query, LassoResultCollection baselineResults) {
@@ -528,23 +635,67 @@ public class LassoIndex {
         }
     }
 
+    /**
+     * Scores of each document retrieved by any query, stored in a matrix with a row for each
+     * document and a column for each query. A score of 0 means that the query did not retrieve the
+     * document.
+     */
     static class QueryResults {
 
-        private final Map<Integer, Map<String, Float>> scores;
+        private final String[] queryNames;
+        private final int[] docs;
+        private final float[] scores;
+
+        public QueryResults(String[] queryNames, List<IntFloatSeq> queryHits) {
+            this.queryNames = queryNames;
+
+            var allDocs = Seq.seq(queryHits)
+                    .map(IntFloatSeq::keys)
+                    .toList();
+            var docs = new int[allDocs.stream().mapToInt(ds -> ds.length).sum()];
+            int position = 0;
+            for (int[] ds : allDocs) {
+                System.arraycopy(ds, 0, docs, position, ds.length);
+                position += ds.length;
+            }
+            Arrays.sort(docs);
 
-        public QueryResults(Map<Integer, Map<String, Float>> scores, List<QueryType> queryTypes) {
-            this.scores = scores;
+            int unique = 0;
+            for (int i = 0; i < docs.length; i++) {
+                if (i == 0 || docs[i] != docs[i - 1]) {
+                    docs[unique++] = docs[i];
+                }
+            }
+            this.docs = Arrays.copyOf(docs, unique);
+
+            scores = new float[unique * queryNames.length];
+            for (int q = 0; q < queryNames.length; q++) {
+                int column = q;
+                queryHits.get(q).forEach((d, s) ->
+                        scores[Arrays.binarySearch(this.docs, d) * queryNames.length + column] = s);
+            }
+        }
+
+        public int size() {
+            return docs.length;
+        }
+
+        public int getDoc(int row) {
+            return docs[row];
         }
 
-        public PairSeq<Integer, Map<String, Float>> items() {
-            return streamMap(scores);
+        /**
+         * @return Pairs of query name and score. The sequence is a view of the row.
+         */
+        public ObjFloatSeq<String> getScores(int row) {
+            return ObjFloatSeq.of(queryNames, scores, row * queryNames.length);
         }
     }
 
     class QueryRunner {
         List<QueryType> simpleQueryTypes = Arrays.asList(QueryType.values());
 
-        public QueryResults runQueries(List<List<String>> operandText, List<String> consequenceTerms,
+        public QueryResults runQueries(PatternShard shard, CompiledConstraint compiled, List<List<String>> operandText, List<String> consequenceTerms,
                                        List<String> textTerms, Map<LassoScore.Component, Float> scoreWeights) {
             // There is one query for each combination of query operand and index operand
             var operandQueries = Seq.zipWithIndex(operandText)
@@ -574,23 +725,18 @@ public class LassoIndex {
                         );
                     });
 
-            var qs = Seq.concat(operandQueries, simpleQueries);
-            var scores = qs.map(t -> t.map(Unchecked.biFunction((n, ts) ->
-                    tuple(n, runQuery(n, ts))
-            )))
-                    .flatMap(t -> t.map((n, ds) ->
-                            Arrays.stream(ds.scoreDocs).map(d -> tuple(n, d))
-                    ))
-                    .grouped(p -> p.v2.doc)
-                    .collect(Collectors.toMap(
-                            p -> p.v1,
-                            p -> p.v2.toMap(t -> t.v1, t -> t.v2.score)
-                    ));
+            var qs = Seq.concat(operandQueries, simpleQueries).toList();
+            var names = qs.stream().map(Tuple2::v1).toArray(String[]::new);
+            var hits = qs.stream()
+                    .map(Unchecked.function(t -> runQuery(shard, compiled, t.v1, t.v2)))
+                    .map(ds -> IntFloatSeq.seq(ds.scoreDocs, d -> d.doc, d -> d.score))
+                    .collect(Collectors.toList());
 
-            return new QueryResults(scores, simpleQueryTypes);
+            return new QueryResults(names, hits);
         }
 
-        private TopDocs runQuery(String queryName, List<String> queryTerms) throws IOException {
+        private TopDocs runQuery(PatternShard shard, CompiledConstraint compiled, String queryName, List<String> queryTerms)
+                throws IOException {
             String fieldName;
             if (Arrays.stream(QueryType.values()).map(Objects::toString)
                     .anyMatch(n -> n.equals(queryName))) {
@@ -599,12 +745,7 @@ public class LassoIndex {
                 fieldName = LassoIndexBuilder.OPERAND_FIELD_NAME + queryName.split("_")[1];
             }
 
-            var builder = new BooleanQuery.Builder();
-            for (String s : queryTerms) {
-                builder.add(new TermQuery(new Term(fieldName, s)), BooleanClause.Occur.SHOULD);
-            }
-
-            return indexSearcher.search(builder.build(), Integer.MAX_VALUE);
+            return shard.search(compiled, fieldName, queryTerms);
         }
     }
 }
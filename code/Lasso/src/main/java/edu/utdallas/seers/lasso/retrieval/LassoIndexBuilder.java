@@ -1,34 +1,25 @@
 package edu.utdallas.seers.lasso.retrieval;
 
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.BodyDeclaration;
-import com.github.javaparser.ast.nodeTypes.NodeWithCondition;
-import com.github.javaparser.ast.stmt.DoStmt;
-import com.github.javaparser.ast.stmt.IfStmt;
-import com.github.javaparser.ast.stmt.Statement;
-import com.github.javaparser.ast.stmt.WhileStmt;
-import com.github.javaparser.ast.visitor.GenericVisitorWithDefaults;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import edu.utdallas.seers.json.AdapterSupplier;
+import edu.utdallas.seers.file.JavaFileWalker;
 import edu.utdallas.seers.json.JSON;
-import edu.utdallas.seers.json.JSONSerializable;
-import edu.utdallas.seers.lasso.ast.ASTPatternDetector;
-import edu.utdallas.seers.lasso.ast.JavaTextExtractor;
+import edu.utdallas.seers.lasso.ast.DetectedPattern;
+import edu.utdallas.seers.lasso.ast.DetectionArtifact;
 import edu.utdallas.seers.lasso.ast.TextSpan;
-import edu.utdallas.seers.lasso.ast.matcher.PatternInstance;
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.ASTPattern;
 import edu.utdallas.seers.parameter.Options;
+import edu.utdallas.seers.retrieval.IndexDirectories;
 import edu.utdallas.seers.text.preprocessing.Preprocessing;
 import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.store.Directory;
 import org.jooq.lambda.Seq;
 import org.jooq.lambda.Unchecked;
 import org.jooq.lambda.tuple.Tuple2;
@@ -37,11 +28,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static edu.utdallas.seers.collection.Collections.streamMap;
 import static edu.utdallas.seers.file.Files.createDirectories;
 import static org.jooq.lambda.tuple.Tuple.tuple;
 
@@ -51,13 +45,29 @@ public class LassoIndexBuilder {
     static final String OPERAND_FIELD_NAME = "OPERAND_";
     static final int MAX_OPERANDS = 2;
     static final String BLOCK_FIELD_NAME = "window";
+    /**
+     * Directory of the cache path with the detection artifacts that indexes are built from.
+     */
+    public static final String ARTIFACTS_DIR_NAME = "pattern-cache";
+    private static final String PATTERNS_CACHE_FIELD = "patterns";
+    private static final String STATS_CACHE_FIELD = "stats";
+    /**
+     * Modification times of the files of a source root shard when it was built.
+     */
+    private static final String FILES_CACHE_FIELD = "files";
+    /**
+     * Number of documents of each file of a source root shard, in document order.
+     */
+    private static final String FILE_DOCS_CACHE_FIELD = "fileDocuments";
+    /**
+     * Fields with terms that were already preprocessed. Only the documents of each term are
+     * indexed, without frequencies, positions or norms, since {@link SimpleCountSimilarity} only
+     * checks whether a term is in the document.
+     */
+    private static final FieldType TERMS_FIELD_TYPE = createTermsFieldType();
 
     private final Logger logger = LoggerFactory.getLogger(LassoIndexBuilder.class);
     private final TextPreprocessor preprocessor = createPreprocessor();
-    protected final JavaTextExtractor extractor = new JavaTextExtractor();
-    private final LoadingCache<Path, SpanIndex> indexCache = CacheBuilder.newBuilder()
-            .maximumSize(10)
-            .build(new Loader(new JavaTextExtractor()));
 
     private final Path dataDir;
     private final String name;
@@ -66,6 +76,10 @@ public class LassoIndexBuilder {
     private final LassoScenarioID<LassoConfig> scenarioKey;
     private final Map<String, LassoStats> stats = new HashMap<>();
     private final IndexCoordinator coordinator;
+    /**
+     * Only opened when a shard has to be built.
+     */
+    private DetectionArtifact artifact;
 
     public LassoIndexBuilder(Path dataDir, LassoScenarioID<LassoConfig> key, IndexCoordinator coordinator) {
         this.dataDir = dataDir;
@@ -75,6 +89,15 @@ public class LassoIndexBuilder {
         this.coordinator = coordinator;
     }
 
+    private static FieldType createTermsFieldType() {
+        var type = new FieldType();
+        type.setTokenized(true);
+        type.setIndexOptions(IndexOptions.DOCS);
+        type.setOmitNorms(true);
+        type.freeze();
+        return type;
+    }
+
     public static String createIndexName(LassoScenarioID<LassoConfig> key) {
         return String.format("%s", key.project);
     }
@@ -93,178 +116,355 @@ public class LassoIndexBuilder {
 
     public LassoIndex createIndex() {
         var indexesPath = cachePath.resolve("pattern-indexes");
-        var lucenePath = indexesPath.resolve(name);
-        var jsonCachePath = indexesPath.resolve(name + "-stats.json");
-        createDirectories(lucenePath);
+        var baselineIndex = createBaselineIndex();
+        var conf = scenarioKey.getConfiguration();
+
+        List<PatternShard> shards;
+        List<Path> shardFiles = new ArrayList<>();
+        if (conf.sharding.equals(LassoConfig.Sharding.NONE)) {
+            shards = Collections.singletonList(loadShard(indexesPath, name, p -> true, null, shardFiles));
+        } else {
+            var shardsPath = indexesPath.resolve(name + "-shards");
+            var projectDir = dataDir.resolve(scenarioKey.project).resolve("sources");
+            // Sorted so that the order of the shards does not depend on the walk
+            var filesBySourceRoot = JavaFileWalker.walk(projectDir, ConstraintLoader.loadExclusions(projectDir))
+                    .filter(this::pathFilter)
+                    .collect(Collectors.groupingBy(f -> SourceRoots.toName(projectDir, SourceRoots.find(f)),
+                            TreeMap::new, Collectors.toSet()));
+            logger.info("[{}] Indexing {} source roots", name, filesBySourceRoot.size());
+
+            var fileRanks = getArtifact().getFileRanks();
+            shards = streamMap(filesBySourceRoot)
+                    .combine((r, fs) -> loadShard(shardsPath, r, fs::contains, fileTimes(projectDir, fs), shardFiles))
+                    .map(s -> s.withFileRanks(fileRanks))
+                    .toList();
+        }
 
-        BaselineIndex baselineIndex;
+        var fingerprint = EvaluationCache.fingerprint(shardFiles.toArray(new Path[0])) +
+                (baselineIndex == null ? "" : "+" + baselineIndex.getFingerprint());
+
+        return new LassoIndex(shards, baselineIndex, scenarioKey, null, fingerprint);
+    }
+
+    private BaselineIndex createBaselineIndex() {
         var conf = scenarioKey.getConfiguration();
-        if (conf.baselineCombination || conf.baselineBoost ||
-                LassoIndex.BASELINE_ORDER) {
-            if (conf.underlyingType.equals(BaselineIndexBuilder.Type.BM25)) {
-                baselineIndex = coordinator.createBaselineIndex(dataDir, new LassoScenarioID<>(
-                        scenarioKey.project,
-                        new BaselineConfig(BaselineIndexBuilder.Type.BM25,
-                                BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1)
-                ));
+        if (!conf.baselineCombination && !conf.baselineBoost && !LassoIndex.BASELINE_ORDER) {
+            return null;
+        }
 
-            } else if (conf.underlyingType.equals(BaselineIndexBuilder.Type.LSI)) {
-                baselineIndex = coordinator.createBaselineIndex(dataDir, new LassoScenarioID<>(
-                        scenarioKey.project,
-                        new BaselineConfig(BaselineIndexBuilder.Type.LSI,
-                                BaselineIndexBuilder.Input.OPERANDS, BaselineIndexBuilder.Output.METHOD, 300)
-                ));
-            } else {
-                baselineIndex = coordinator.createBaselineIndex(dataDir, new LassoScenarioID<>(
-                        scenarioKey.project,
-                        new BaselineConfig(BaselineIndexBuilder.Type.TFIDF,
-                                BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1)
-                        // TODO parameterize the underlying technique
-                        // For Lasso-LSI
-                        //            new BaselineConfig(BaselineIndexBuilder.Type.LSI,
-                        //                    BaselineIndexBuilder.Input.OPERANDS, BaselineIndexBuilder.Output.METHOD, 300)
-                ));
-            }
+        if (conf.underlyingType.equals(BaselineIndexBuilder.Type.BM25)) {
+            return coordinator.createBaselineIndex(dataDir, new LassoScenarioID<>(
+                    scenarioKey.project,
+                    new BaselineConfig(BaselineIndexBuilder.Type.BM25,
+                            BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1)
+            ));
+        } else if (conf.underlyingType.equals(BaselineIndexBuilder.Type.LSI)) {
+            return coordinator.createBaselineIndex(dataDir, new LassoScenarioID<>(
+                    scenarioKey.project,
+                    new BaselineConfig(BaselineIndexBuilder.Type.LSI,
+                            BaselineIndexBuilder.Input.OPERANDS, BaselineIndexBuilder.Output.METHOD, 300)
+            ));
         } else {
-            baselineIndex = null;
+            return coordinator.createBaselineIndex(dataDir, new LassoScenarioID<>(
+                    scenarioKey.project,
+                    new BaselineConfig(BaselineIndexBuilder.Type.TFIDF,
+                            BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1)
+                    // TODO parameterize the underlying technique
+                    // For Lasso-LSI
+                    //            new BaselineConfig(BaselineIndexBuilder.Type.LSI,
+                    //                    BaselineIndexBuilder.Input.OPERANDS, BaselineIndexBuilder.Output.METHOD, 300)
+            ));
         }
+    }
+
+    static Path getPostingsPath(Path lucenePath) {
+        return lucenePath.resolveSibling(lucenePath.getFileName() + ".postings");
+    }
+
+    private static Path getStatsPath(Path lucenePath) {
+        return lucenePath.resolveSibling(lucenePath.getFileName() + "-stats.json" + JSON.GZIP_EXTENSION);
+    }
+
+    /**
+     * Writes the patterns and stats of a shard, which are read along with its index.
+     *
+     * @param lucenePath    Path of the index of the shard.
+     * @param fileTimes     Modification times of the files of the shard, or {@code null}.
+     * @param fileDocCounts Number of documents of each file of the shard, or {@code null}.
+     */
+    static void writeStats(Path lucenePath, Map<String, ASTPattern> patterns, Map<String, LassoStats> stats,
+                           Map<String, Long> fileTimes, Map<String, Integer> fileDocCounts) {
+        // TODO cache call graph as well
+        var jsonWriter = JSON.objectWriter(getStatsPath(lucenePath))
+                .withMap(PATTERNS_CACHE_FIELD, streamMap(patterns), ASTPattern.class)
+                .withMap(STATS_CACHE_FIELD, streamMap(stats), LassoStats.class);
+        if (fileTimes != null) {
+            jsonWriter.withMap(FILES_CACHE_FIELD, streamMap(fileTimes), Long.class);
+        }
+        if (fileDocCounts != null) {
+            jsonWriter.withMap(FILE_DOCS_CACHE_FIELD, streamMap(fileDocCounts), Integer.class);
+        }
+        jsonWriter.write();
+    }
+
+    /**
+     * Opens the index of a shard, building it if it does not exist or, for source root shards, if
+     * the files of the source root have changed since it was built.
+     *
+     * @param indexesPath Directory with the files of the shard.
+     * @param shardName   Name of the shard, used for its files.
+     * @param shardFilter Selects the files of the shard.
+     * @param fileTimes   Modification time of each file of the shard, or {@code null} if the shard
+     *                    is only rebuilt when it does not exist.
+     * @param indexFiles  Receives the files that are part of the fingerprint of the shard.
+     * @return The shard.
+     */
+    private PatternShard loadShard(Path indexesPath, String shardName, Predicate<Path> shardFilter,
+                                   Map<String, Long> fileTimes, List<Path> indexFiles) {
+        var lucenePath = indexesPath.resolve(shardName);
+        if (Options.getInstance().isInMemoryIndexes()) {
+            return loadMemoryShard(lucenePath, shardName, shardFilter, fileTimes, indexFiles);
+        }
+
+        var jsonCachePath = getStatsPath(lucenePath);
+        var postingsPath = getPostingsPath(lucenePath);
+        createDirectories(lucenePath);
+
+        var shardPatterns = new HashMap<String, ASTPattern>();
+        var shardStats = new HashMap<String, LassoStats>();
+        // In document order
+        var fileDocCounts = fileTimes == null ? null : new LinkedHashMap<String, Integer>();
+        var conf = scenarioKey.getConfiguration();
 
         try {
-            var dir = FSDirectory.open(lucenePath);
+            var dir = IndexDirectories.open(lucenePath);
             // TODO re-add if call graph needed
 //            logger.info("[{}] Reading call graph", name);
 //            var callGraph = new LassoCallGraphBuilder(dataDir.resolve(scenarioKey.project).resolve("binaries"))
 //                    .buildGraph();
 
-            if (DirectoryReader.indexExists(dir) && !Options.getInstance().isIgnoreCache()) {
-                logger.info("[{}] Using existing index at: {}", name, lucenePath);
-                var cache = JSON.readJSON(jsonCachePath, Cache.class);
+            boolean existing = DirectoryReader.indexExists(dir) && !Options.getInstance().isIgnoreCache();
+            if (existing) {
+                var storedTimes = new HashMap<String, Long>();
+                JSON.objectReader(jsonCachePath)
+                        .onMap(PATTERNS_CACHE_FIELD, ASTPattern.class, shardPatterns::put)
+                        .onMap(STATS_CACHE_FIELD, LassoStats.class, shardStats::put)
+                        .onMap(FILES_CACHE_FIELD, Long.class, storedTimes::put)
+                        .onMap(FILE_DOCS_CACHE_FIELD, Integer.class, (String f, Integer c) -> {
+                            if (fileDocCounts != null) {
+                                fileDocCounts.put(f, c);
+                            }
+                        })
+                        .read();
+
+                // Shards written without document counts are also rebuilt
+                if (fileTimes != null && (!fileTimes.equals(storedTimes) ||
+                        !shardPatterns.isEmpty() && fileDocCounts.isEmpty())) {
+                    logger.info("[{}] Files of shard {} changed", name, shardName);
+                    shardPatterns.clear();
+                    shardStats.clear();
+                    fileDocCounts.clear();
+                    existing = false;
+                }
+            }
 
-                patterns.putAll(cache.patterns);
-                stats.putAll(cache.stats);
+            if (existing) {
+                logger.info("[{}] Using existing index at: {}", name, lucenePath);
             } else {
                 logger.info("[{}] Creating new index at: {}", name, lucenePath);
+                writeIndex(dir, shardFilter, shardPatterns, shardStats, fileDocCounts);
+                writeStats(lucenePath, shardPatterns, shardStats, fileTimes, fileDocCounts);
+            }
 
-                var config = new IndexWriterConfig()
-                        .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
-                        .setSimilarity(new SimpleCountSimilarity())
-                        .setCommitOnClose(true);
-                try (var writer = new IndexWriter(dir, config)) {
-                    createDocuments()
-                            .forEach(Unchecked.consumer(writer::addDocument));
-                }
+            indexFiles.add(lucenePath);
+            indexFiles.add(jsonCachePath);
 
-                // Cache stats
-                // TODO cache call graph as well
-                JSON.writeJSON(new Cache(patterns, stats), jsonCachePath, false);
+            var reader = coordinator.openReader(lucenePath, dir);
+            PatternPostings postings = null;
+            if (conf.engine.equals(LassoConfig.Engine.POSTINGS)) {
+                postings = loadPostings(reader, postingsPath, existing);
             }
 
-            return new LassoIndex(DirectoryReader.open(dir), patterns, stats,
-                    baselineIndex, scenarioKey, null);
+            return new PatternShard(shardName, lucenePath, fileTimes, fileDocCounts, reader, postings,
+                    shardPatterns, shardStats);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    protected Stream<List<Field>> createDocuments() {
-        return ASTPatternDetector.detect(dataDir, scenarioKey.project, this::pathFilter)
-                .flatMap(Unchecked.biFunction((ff, ps) -> {
-                    var index = indexCache.get(ff);
-                    return ps.flatMap(pi -> extractText(index, pi)
-                                    .map(ts -> {
-                                        var id = pi.match.getID();
-                                        if (patterns.containsKey(id)) {
-                                            logger.warn("Duplicated pattern: " + id);
-                                            return null;
-                                        }
-
-                                        patterns.put(id, pi.match);
-                                        var operandSizes = Seq.seq(ts)
-                                                .filter(tt -> tt.v2.name().startsWith(OPERAND_FIELD_NAME))
-                                                .map(tt -> tt.map((s, f) ->
-                                                        tuple(
-                                                                Integer.parseInt(f.name().replace(OPERAND_FIELD_NAME, "")),
-                                                                s
-                                                        )
-                                                ))
-                                                .toMap(Tuple2::v1, Tuple2::v2);
-//                                var methodTextIndex = extractMethodText(pi.match, index);
-                                        stats.put(id, new LassoStats(operandSizes, Collections.emptyMap(), Collections.emptyList()));
-                                        return ts.stream()
-                                                .map(Tuple2::v2)
-                                                .collect(Collectors.toList());
-                                    })
-                                    .stream()
-                    );
-                }));
+    /**
+     * Same as {@link #loadShard} for an index in memory. There are no stats or postings files, so
+     * the coordinator keeps the whole shard for the other indexes of the run.
+     */
+    private PatternShard loadMemoryShard(Path lucenePath, String shardName, Predicate<Path> shardFilter,
+                                         Map<String, Long> fileTimes, List<Path> indexFiles) {
+        var shard = coordinator.getMemoryShard(lucenePath);
+
+        if (shard != null && !Options.getInstance().isIgnoreCache() && Objects.equals(shard.fileTimes, fileTimes)) {
+            logger.info("[{}] Using existing in-memory index at: {}", name, lucenePath);
+        } else {
+            logger.info("[{}] Creating new in-memory index at: {}", name, lucenePath);
+
+            var shardPatterns = new HashMap<String, ASTPattern>();
+            var shardStats = new HashMap<String, LassoStats>();
+            var fileDocCounts = fileTimes == null ? null : new LinkedHashMap<String, Integer>();
+            try {
+                var dir = IndexDirectories.open(lucenePath);
+                writeIndex(dir, shardFilter, shardPatterns, shardStats, fileDocCounts);
+                shard = new PatternShard(shardName, lucenePath, fileTimes, fileDocCounts,
+                        coordinator.openReader(lucenePath, dir), null, shardPatterns, shardStats);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        indexFiles.add(lucenePath);
+
+        if (scenarioKey.getConfiguration().engine.equals(LassoConfig.Engine.POSTINGS)) {
+            // Kept with the shard so that they are only created once
+            shard = shard.withPostings();
+            coordinator.putMemoryShard(lucenePath, shard);
+            return shard;
+        }
+
+        coordinator.putMemoryShard(lucenePath, shard);
+        return shard.withoutPostings();
     }
 
-    protected List<Statement> findBlockForPattern(Node currentNode, Node previousNode) {
-        if (currentNode instanceof BodyDeclaration) return Collections.emptyList();
+    /**
+     * @param fileDocCounts If not {@code null}, receives the number of documents of each file, in
+     *                      document order.
+     */
+    private void writeIndex(Directory dir, Predicate<Path> shardFilter, Map<String, ASTPattern> shardPatterns,
+                            Map<String, LassoStats> shardStats, Map<String, Integer> fileDocCounts)
+            throws IOException {
+        var config = new IndexWriterConfig()
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setSimilarity(new SimpleCountSimilarity())
+                .setCommitOnClose(true);
+        if (fileDocCounts != null) {
+            // Only adjacent segments are merged, so documents keep the order in which they were added
+            config.setMergePolicy(new LogByteSizeMergePolicy());
+        }
+        try (var writer = new IndexWriter(dir, config);
+             var documents = createDocuments(shardFilter, shardPatterns, shardStats, fileDocCounts)) {
+            documents.forEach(Unchecked.consumer(writer::addDocument));
+        }
+    }
 
-        if (currentNode instanceof Statement) {
-            // TODO switch?
-            if (!(currentNode instanceof NodeWithCondition)) {
-                return Collections.emptyList();
-            }
+    private static Map<String, Long> fileTimes(Path projectDir, Collection<Path> files) {
+        return files.stream()
+                .collect(Collectors.toMap(
+                        f -> projectDir.relativize(f).toString(),
+                        Unchecked.function(f -> Files.getLastModifiedTime(f).toMillis())
+                ));
+    }
 
-            if (previousNode == null) {
-                if (!(currentNode instanceof IfStmt)) throw new IllegalArgumentException();
-                return currentNode.accept(new BodyExtractor(), null);
-            } else {
-                // TODO none of the ones in the data are in FOR but it's possible
-                if (((NodeWithCondition<?>) currentNode).getCondition() == previousNode) {
-                    return currentNode.accept(new BodyExtractor(), null);
-                } else {
-                    return Collections.emptyList();
-                }
+    /**
+     * Reads the postings of the index from their file, or creates it if the index was just built.
+     */
+    private PatternPostings loadPostings(DirectoryReader reader, Path postingsPath, boolean existingIndex) {
+        if (existingIndex && Files.exists(postingsPath)) {
+            var postings = PatternPostings.read(postingsPath)
+                    .filter(p -> p.maxDoc() == reader.maxDoc());
+            if (postings.isPresent()) {
+                logger.info("[{}] Using existing postings at: {}", name, postingsPath);
+                return postings.get();
             }
         }
 
-        return findBlockForPattern(currentNode.getParentNode().orElseThrow(), currentNode);
+        logger.info("[{}] Creating postings at: {}", name, postingsPath);
+        var postings = PatternPostings.fromReader(reader);
+        postings.write(postingsPath);
+        return postings;
     }
 
-    protected boolean pathFilter(Path path) {
-        return true;
+    protected Stream<List<Field>> createDocuments() {
+        return createDocuments(p -> true, patterns, stats, null);
+    }
+
+    /**
+     * @param fileDocCounts If not {@code null}, receives the number of documents of each file as
+     *                      they are consumed.
+     * @return Documents of the patterns in the files of the shard. Must be closed.
+     */
+    private Stream<List<Field>> createDocuments(Predicate<Path> shardFilter, Map<String, ASTPattern> patterns,
+                                                Map<String, LassoStats> stats, Map<String, Integer> fileDocCounts) {
+        var projectDir = dataDir.resolve(scenarioKey.project).resolve("sources");
+
+        return getArtifact().read(p -> pathFilter(p) && shardFilter.test(p))
+                .flatMap((ff, ps) -> {
+                    var documents = ps.stream().flatMap(dp -> createDocument(dp, patterns, stats));
+                    if (fileDocCounts == null) {
+                        return documents;
+                    }
+
+                    var file = projectDir.relativize(ff).toString();
+                    return documents.peek(d -> fileDocCounts.merge(file, 1, Integer::sum));
+                });
     }
 
-    private Map<String, List<Integer>> extractMethodText(ASTPattern pattern, SpanIndex index) {
-        return index.findMethodSpans(pattern.getLines()).stream()
-                .flatMap(s -> {
-                    var line = s.docComment ? -1 : s.getLine();
-                    return preprocessor.preprocess(s.getText(), true)
-                            .map(w -> tuple(w, line));
+    private Stream<List<Field>> createDocument(DetectedPattern dp, Map<String, ASTPattern> patterns,
+                                               Map<String, LassoStats> stats) {
+        return extractText(dp)
+                .map(ts -> {
+                    var id = dp.match.getID();
+                    if (patterns.containsKey(id)) {
+                        logger.warn("Duplicated pattern: " + id);
+                        return null;
+                    }
+
+                    patterns.put(id, dp.match);
+                    var operandSizes = Seq.seq(ts)
+                            .filter(tt -> tt.v2.name().startsWith(OPERAND_FIELD_NAME))
+                            .map(tt -> tt.map((s, f) ->
+                                    tuple(
+                                            Integer.parseInt(f.name().replace(OPERAND_FIELD_NAME, "")),
+                                            s
+                                    )
+                            ))
+                            .toMap(Tuple2::v1, Tuple2::v2);
+                    stats.put(id, new LassoStats(operandSizes, Collections.emptyMap(), Collections.emptyList()));
+                    return ts.stream()
+                            .map(Tuple2::v2)
+                            .collect(Collectors.toList());
                 })
-                .collect(Collectors.toMap(
-                        Tuple2::v1,
-                        t -> Collections.singletonList(t.v2),
-                        (l1, l2) -> Stream.of(l1, l2).flatMap(Collection::stream).collect(Collectors.toList())
-                ));
+                .stream();
+    }
+
+    private DetectionArtifact getArtifact() {
+        if (artifact == null) {
+            artifact = DetectionArtifact.open(dataDir, scenarioKey.project, cachePath.resolve(ARTIFACTS_DIR_NAME));
+        }
+
+        return artifact;
+    }
+
+    protected boolean pathFilter(Path path) {
+        return true;
     }
 
-    protected Optional<List<Tuple2<Integer, Field>>> extractText(SpanIndex index, PatternInstance instance) {
-        var pattern = instance.match;
-        // TODO span index now only exits to extract method and class name, this should instead be done by the detector
-        var patternSpans = index.findPatternSpans(pattern.getLines());
+    protected Optional<List<Tuple2<Integer, Field>>> extractText(DetectedPattern detected) {
+        var pattern = detected.match;
+        // TODO pattern should know its location
+        var location = detected.getLocation();
 
-        if (patternSpans.isEmpty()) {
+        if (location.isEmpty()) {
             return Optional.empty();
         }
 
-        // TODO pattern should know its location
-        var patternLocation = patternSpans.get(0).getLocation();
-        var methodNameText = preprocessor.preprocess(patternLocation.getMethodName().orElse(""), true)
-                .collect(Collectors.joining(" "));
-        var classNameText = preprocessor.preprocess(patternLocation.getClassName().orElse(""), true)
-                .collect(Collectors.joining(" "));
+        var patternLocation = location.get();
+        var methodNameTerms = preprocessor.preprocess(patternLocation.getMethodName().orElse(""), true)
+                .collect(Collectors.toList());
+        var classNameTerms = preprocessor.preprocess(patternLocation.getClassName().orElse(""), true)
+                .collect(Collectors.toList());
 
         // Block texts
-        var blockRawText = findBlockForPattern(instance.matchedNode, null).stream()
-                .flatMap(extractor::extractFromNode)
+        var blockRawText = detected.getBlockSpans().stream()
                 .map(TextSpan::getText)
                 .collect(Collectors.joining(" "));
-        var blockText = preprocessor.preprocess(blockRawText, true)
-                .collect(Collectors.joining(" "));
+        var blockTerms = preprocessor.preprocess(blockRawText, true)
+                .collect(Collectors.toList());
 
         var operandFields = Seq.zipWithIndex(pattern.getOperands())
                 .map(t -> t.map((o, i) -> tuple(
@@ -275,7 +475,7 @@ public class LassoIndexBuilder {
                 .filter(t -> !t.v1.isEmpty())
                 .<Tuple2<Integer, Field>>map(t -> tuple(
                         new HashSet<>(t.v1).size(),
-                        new TextField(OPERAND_FIELD_NAME + t.v2, String.join(" ", t.v1), Field.Store.NO)
+                        createTermsField(OPERAND_FIELD_NAME + t.v2, t.v1)
                 ))
                 .toList();
 
@@ -289,9 +489,9 @@ public class LassoIndexBuilder {
 
         var simpleFields = Stream.of(
                 new StringField("id", pattern.getID(), Field.Store.YES),
-                new TextField(METHOD_NAME_FIELD_NAME, methodNameText, Field.Store.NO),
-                new TextField(CLASS_NAME_FIELD_NAME, classNameText, Field.Store.NO),
-                new TextField(BLOCK_FIELD_NAME, blockText, Field.Store.NO)
+                createTermsField(METHOD_NAME_FIELD_NAME, methodNameTerms),
+                createTermsField(CLASS_NAME_FIELD_NAME, classNameTerms),
+                createTermsField(BLOCK_FIELD_NAME, blockTerms)
         )
                 .map(f -> tuple(0, f));
 
@@ -300,87 +500,7 @@ public class LassoIndexBuilder {
         );
     }
 
-    /**
-     * To simplify JSON serialization.
-     */
-    public static class Cache implements JSONSerializable<AdapterSupplier> {
-
-        private final Map<String, ASTPattern> patterns;
-        private final Map<String, LassoStats> stats;
-
-        public Cache(Map<String, ASTPattern> patterns, Map<String, LassoStats> stats) {
-            this.patterns = patterns;
-            this.stats = stats;
-        }
-    }
-
-    protected static class SpanIndex {
-
-        private final Map<Integer, List<TextSpan>> lineIndex;
-        private final Map<TextSpan.Location, List<TextSpan>> locationIndex;
-
-        public SpanIndex(Stream<TextSpan> spans) {
-            lineIndex = spans.collect(Collectors.groupingBy(TextSpan::getLine));
-            locationIndex = lineIndex.values().stream()
-                    .flatMap(Collection::stream)
-                    // FIXME this could be a problem for overloads: they all have same method name
-                    .collect(Collectors.groupingBy(TextSpan::getLocation));
-        }
-
-        public List<TextSpan> findPatternSpans(Set<Integer> lines) {
-            return lines.stream()
-                    .flatMap(n -> lineIndex.getOrDefault(n, Collections.emptyList()).stream())
-                    .collect(Collectors.toList());
-        }
-
-        public List<TextSpan> findMethodSpans(Set<Integer> patternLines) {
-            var locations = findPatternSpans(patternLines).stream()
-                    .map(TextSpan::getLocation)
-                    .distinct()
-                    .collect(Collectors.toList());
-            assert locations.size() == 1;
-            return locationIndex.getOrDefault(locations.get(0), Collections.emptyList()).stream()
-                    // Exclude the ones that are already in the pattern text
-                    .filter(s -> !patternLines.contains(s.getLine()))
-                    .collect(Collectors.toList());
-        }
-    }
-
-    private static class Loader extends CacheLoader<Path, SpanIndex> {
-
-        private final JavaTextExtractor extractor;
-
-        public Loader(JavaTextExtractor extractor) {
-            this.extractor = extractor;
-        }
-
-        @Override
-        public SpanIndex load(Path key) throws IOException {
-            return new SpanIndex(extractor.extractText(key));
-        }
-    }
-
-    private static class BodyExtractor extends GenericVisitorWithDefaults<List<Statement>, Void> {
-        @Override
-        public List<Statement> visit(DoStmt n, Void arg) {
-            return Collections.singletonList(n.getBody());
-        }
-
-        @Override
-        public List<Statement> visit(IfStmt n, Void arg) {
-            return Stream.of(n.getThenStmt(), n.getElseStmt().orElse(null))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-        }
-
-        @Override
-        public List<Statement> visit(WhileStmt n, Void arg) {
-            return Collections.singletonList(n.getBody());
-        }
-
-        @Override
-        public List<Statement> defaultAction(Node n, Void arg) {
-            throw new IllegalStateException("Invalid node: " + n.getClass());
-        }
+    private static Field createTermsField(String name, List<String> terms) {
+        return new Field(name, new TermsTokenStream(terms), TERMS_FIELD_TYPE);
     }
 }
@@ -12,6 +12,10 @@ import java.util.stream.Stream;
 
 import static edu.utdallas.seers.collection.Collections.streamMap;
 
+/**
+ * Immutable, since collections of baseline results are shared through the
+ * {@link BaselineResultCache} by every scenario that searches the same baseline.
+ */
 // TODO maybe generalize as "Clustered result collection"
 public class LassoResultCollection implements ResultCollection<PatternEntry, LassoResult> {
 
@@ -31,10 +35,10 @@ public class LassoResultCollection implements ResultCollection<PatternEntry, Las
             boolean cluster) {
         this.query = query;
         scenarioKey = key;
-        this.queryTerms = queryTerms;
+        this.queryTerms = Collections.unmodifiableList(queryTerms);
         this.results = clusterResults(retrievalResults, cluster);
         resultCount = results.size();
-        truePositiveRanks = findTruePositiveRanks(query, results);
+        truePositiveRanks = Collections.unmodifiableList(findTruePositiveRanks(query, results));
         falseNegativeCount = query.getGroundTruthIDs().size() - truePositiveRanks.size();
         averageResultSize = Seq.seq(retrievalResults)
                 .map(r -> {
@@ -57,6 +61,22 @@ public class LassoResultCollection implements ResultCollection<PatternEntry, Las
         results = null;
     }
 
+    /**
+     * Restores a collection without results, e.g. from an {@link EvaluationCache}.
+     */
+    LassoResultCollection(LassoScenarioID key, PatternEntry query, List<String> queryTerms, int resultCount,
+                          int falseNegativeCount, List<Integer> truePositiveRanks, float averageResultSize) {
+        this.query = query;
+        scenarioKey = key;
+        this.queryTerms = Collections.unmodifiableList(queryTerms);
+        this.resultCount = resultCount;
+        this.falseNegativeCount = falseNegativeCount;
+        this.truePositiveRanks = Collections.unmodifiableList(truePositiveRanks);
+        this.averageResultSize = averageResultSize;
+
+        results = null;
+    }
+
     public ResultGroup getCluster(int rank) {
         return results.get(rank - 1);
     }
@@ -67,7 +87,7 @@ public class LassoResultCollection implements ResultCollection<PatternEntry, Las
         if (!cluster) {
             return PairSeq.zipWithIndex(individualResults)
                     .combine((r, i) -> new ResultGroup(i.intValue() + 1, Collections.singletonList(r)))
-                    .toList();
+                    .toUnmodifiableList();
         }
 
         // All results with same operand texts will be in the same group
@@ -82,7 +102,7 @@ public class LassoResultCollection implements ResultCollection<PatternEntry, Las
 
         return PairSeq.zipWithIndex(sortedGroups)
                 .combine((rs, i) -> new ResultGroup(i.intValue() + 1, rs))
-                .toList();
+                .toUnmodifiableList();
     }
 
     /**
@@ -202,7 +222,7 @@ public class LassoResultCollection implements ResultCollection<PatternEntry, Las
                     .flatMap((f, ls) -> ls.stream()
                             .map(i -> f + ":" + i)
                     )
-                    .toSet();
+                    .toUnmodifiableSet();
         }
     }
 }
@@ -19,6 +19,12 @@ public class LassoScenarioID<C extends RetrievalConfiguration> implements Scenar
 
     public static LassoScenarioID<LassoConfig> lassoPattern(String project, Map<LassoScore.Component, Float> weights,
                                                             BaselineIndexBuilder.Type underlyingType) {
+        return lassoPattern(project, weights, underlyingType, LassoConfig.Engine.LUCENE, LassoConfig.Sharding.NONE);
+    }
+
+    public static LassoScenarioID<LassoConfig> lassoPattern(String project, Map<LassoScore.Component, Float> weights,
+                                                            BaselineIndexBuilder.Type underlyingType,
+                                                            LassoConfig.Engine engine, LassoConfig.Sharding sharding) {
         return new LassoScenarioID<>(project, new LassoConfig(
                 1,
                 false,
@@ -28,11 +34,19 @@ public class LassoScenarioID<C extends RetrievalConfiguration> implements Scenar
                 weights,
                 1.0f,
                 1.0f,
-                underlyingType));
+                underlyingType,
+                engine,
+                sharding));
     }
 
     public static LassoScenarioID<LassoConfig> lassoMethod(String project, Map<LassoScore.Component, Float> weights,
                                                            BaselineIndexBuilder.Type underlyingType) {
+        return lassoMethod(project, weights, underlyingType, LassoConfig.Engine.LUCENE, LassoConfig.Sharding.NONE);
+    }
+
+    public static LassoScenarioID<LassoConfig> lassoMethod(String project, Map<LassoScore.Component, Float> weights,
+                                                           BaselineIndexBuilder.Type underlyingType,
+                                                           LassoConfig.Engine engine, LassoConfig.Sharding sharding) {
         return new LassoScenarioID<>(project, new LassoConfig(
                 1,
                 true,
@@ -42,7 +56,9 @@ public class LassoScenarioID<C extends RetrievalConfiguration> implements Scenar
                 weights,
                 1.0f,
                 1.0f,
-                underlyingType));
+                underlyingType,
+                engine,
+                sharding));
     }
 
     public static LassoScenarioID<BaselineConfig> baseline(String project, BaselineIndexBuilder.Type type, BaselineIndexBuilder.Input input, BaselineIndexBuilder.Output output, int dimension) {
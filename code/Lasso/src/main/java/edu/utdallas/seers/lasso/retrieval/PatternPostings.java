@@ -0,0 +1,390 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.*;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * In-memory alternative to searching the pattern index with Lucene. Since
+ * {@link SimpleCountSimilarity} scores 1 per matching query term, the score of a document is the
+ * number of distinct query terms that appear in the field, which only requires the postings.
+ * <p>
+ * Terms are mapped to int IDs and each field keeps the postings of its terms either as a sorted
+ * array of documents or, for frequent terms, as a bitset. Bitsets are counted 64 documents at a
+ * time with a bit-sliced counter. Postings are read from the Lucene index, so the terms, document
+ * IDs and results are the same as those of the Lucene search. File layout:
+ * <pre>
+ * header
+ * vint maxDoc, maxDoc x string patternID
+ * vint termCount, termCount x string term
+ * vint fieldCount
+ * for each field:
+ *   string name, vint postingsCount
+ *   for each postings list:
+ *     vint termID, vint docFreq
+ *     byte 1, words x long (bitset) | byte 0, docFreq x vint docDelta
+ * footer
+ * </pre>
+ */
+class PatternPostings {
+    private static final String CODEC_NAME = "PatternPostings";
+    private static final int VERSION = 1;
+    private static final String ID_FIELD = "id";
+
+    private final String[] ids;
+    private final Map<String, Integer> termIDs;
+    private final Map<String, Postings[]> fields;
+
+    private PatternPostings(String[] ids, Map<String, Integer> termIDs, Map<String, Postings[]> fields) {
+        this.ids = ids;
+        this.termIDs = termIDs;
+        this.fields = fields;
+    }
+
+    /**
+     * Copies the postings of all indexed fields of a pattern index.
+     *
+     * @param reader Reader of the index.
+     * @return Postings with the same document IDs as the reader.
+     */
+    static PatternPostings fromReader(IndexReader reader) {
+        int maxDoc = reader.maxDoc();
+        var ids = new String[maxDoc];
+        var termIDs = new HashMap<String, Integer>();
+        var builders = new HashMap<String, Map<Integer, IntsRefBuilder>>();
+
+        try {
+            for (LeafReaderContext leaf : reader.leaves()) {
+                var leafReader = leaf.reader();
+                Bits liveDocs = leafReader.getLiveDocs();
+
+                for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        ids[leaf.docBase + doc] = leafReader.document(doc, Collections.singleton(ID_FIELD))
+                                .get(ID_FIELD);
+                    }
+                }
+
+                for (FieldInfo info : leafReader.getFieldInfos()) {
+                    var terms = leafReader.terms(info.name);
+                    if (info.name.equals(ID_FIELD) || terms == null) {
+                        continue;
+                    }
+
+                    var fieldBuilders = builders.computeIfAbsent(info.name, n -> new HashMap<>());
+                    var termsEnum = terms.iterator();
+                    PostingsEnum postings = null;
+                    BytesRef term;
+                    while ((term = termsEnum.next()) != null) {
+                        var termID = termIDs.computeIfAbsent(term.utf8ToString(), t -> termIDs.size());
+                        var docs = fieldBuilders.computeIfAbsent(termID, i -> new IntsRefBuilder());
+
+                        postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                        int doc;
+                        while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                            if (liveDocs == null || liveDocs.get(doc)) {
+                                docs.append(leaf.docBase + doc);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var fields = new HashMap<String, Postings[]>();
+        builders.forEach((name, fieldBuilders) -> {
+            var fieldPostings = new Postings[termIDs.size()];
+            fieldBuilders.forEach((termID, docs) ->
+                    fieldPostings[termID] = Postings.create(Arrays.copyOf(docs.ints(), docs.length()), maxDoc));
+            fields.put(name, fieldPostings);
+        });
+
+        return new PatternPostings(ids, termIDs, fields);
+    }
+
+    /**
+     * Reads postings from a file. It is memory mapped while it is read.
+     *
+     * @param file The file.
+     * @return The postings or empty if the file is corrupt or was written by another version.
+     */
+    static Optional<PatternPostings> read(Path file) {
+        try (var directory = new MMapDirectory(file.getParent());
+             var input = directory.openChecksumInput(file.getFileName().toString(), IOContext.READONCE)) {
+            CodecUtil.checkHeader(input, CODEC_NAME, VERSION, VERSION);
+
+            int maxDoc = input.readVInt();
+            var ids = new String[maxDoc];
+            for (int i = 0; i < maxDoc; i++) {
+                ids[i] = input.readString();
+            }
+
+            int termCount = input.readVInt();
+            var termIDs = new HashMap<String, Integer>();
+            for (int i = 0; i < termCount; i++) {
+                termIDs.put(input.readString(), i);
+            }
+
+            int fieldCount = input.readVInt();
+            var fields = new HashMap<String, Postings[]>();
+            for (int i = 0; i < fieldCount; i++) {
+                var name = input.readString();
+                var fieldPostings = new Postings[termCount];
+                int postingsCount = input.readVInt();
+                for (int j = 0; j < postingsCount; j++) {
+                    int termID = input.readVInt();
+                    fieldPostings[termID] = Postings.read(input, maxDoc);
+                }
+                fields.put(name, fieldPostings);
+            }
+
+            CodecUtil.checkFooter(input);
+            return Optional.of(new PatternPostings(ids, termIDs, fields));
+        } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the postings atomically.
+     *
+     * @param file The file.
+     */
+    void write(Path file) {
+        try (var directory = FSDirectory.open(file.getParent())) {
+            String tempName;
+
+            try (var output = directory.createTempOutput(file.getFileName().toString(), "", IOContext.DEFAULT)) {
+                tempName = output.getName();
+                write(output);
+            }
+
+            directory.sync(Collections.singleton(tempName));
+            directory.rename(tempName, file.getFileName().toString());
+            directory.syncMetaData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(IndexOutput output) throws IOException {
+        CodecUtil.writeHeader(output, CODEC_NAME, VERSION);
+
+        output.writeVInt(ids.length);
+        for (String id : ids) {
+            // Deleted documents never match, so their ID is irrelevant
+            output.writeString(id == null ? "" : id);
+        }
+
+        var terms = new String[termIDs.size()];
+        termIDs.forEach((t, i) -> terms[i] = t);
+        output.writeVInt(terms.length);
+        for (String term : terms) {
+            output.writeString(term);
+        }
+
+        output.writeVInt(fields.size());
+        for (var field : fields.entrySet()) {
+            output.writeString(field.getKey());
+            var fieldPostings = field.getValue();
+            output.writeVInt((int) Arrays.stream(fieldPostings).filter(Objects::nonNull).count());
+            for (int termID = 0; termID < fieldPostings.length; termID++) {
+                if (fieldPostings[termID] != null) {
+                    output.writeVInt(termID);
+                    fieldPostings[termID].write(output);
+                }
+            }
+        }
+
+        CodecUtil.writeFooter(output);
+    }
+
+    int maxDoc() {
+        return ids.length;
+    }
+
+    /**
+     * @param doc Document ID.
+     * @return The ID of the pattern in the document.
+     */
+    String getPatternID(int doc) {
+        return ids[doc];
+    }
+
+    /**
+     * Equivalent to searching a disjunction of term queries on the field with
+     * {@link SimpleCountSimilarity} and no limit on the number of results.
+     *
+     * @param field Field name.
+     * @param terms Query terms. Repeated terms are counted once.
+     * @return All matching documents sorted by decreasing score and then by document ID.
+     */
+    TopDocs search(String field, Collection<String> terms) {
+        var fieldPostings = fields.get(field);
+        if (fieldPostings == null) {
+            return new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]);
+        }
+
+        var matching = new ArrayList<Postings>();
+        for (String term : new HashSet<>(terms)) {
+            var termID = termIDs.get(term);
+            if (termID != null && fieldPostings[termID] != null) {
+                matching.add(fieldPostings[termID]);
+            }
+        }
+
+        return count(matching);
+    }
+
+    private TopDocs count(List<Postings> matching) {
+        int words = wordCount(ids.length);
+        var matched = new long[words];
+        int[] sparseCounts = null;
+        // planes[k] holds bit k of the number of bitsets that contain each document
+        var planes = new ArrayList<long[]>();
+
+        for (Postings postings : matching) {
+            if (postings.bits != null) {
+                addBitset(planes, postings.bits);
+                for (int w = 0; w < words; w++) {
+                    matched[w] |= postings.bits[w];
+                }
+            } else {
+                if (sparseCounts == null) {
+                    sparseCounts = new int[ids.length];
+                }
+                for (int doc : postings.docs) {
+                    sparseCounts[doc]++;
+                    matched[doc >> 6] |= 1L << doc;
+                }
+            }
+        }
+
+        var scoreDocs = new ArrayList<ScoreDoc>();
+        for (int w = 0; w < words; w++) {
+            long word = matched[w];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+
+                int doc = (w << 6) + bit;
+                int count = sparseCounts == null ? 0 : sparseCounts[doc];
+                for (int k = 0; k < planes.size(); k++) {
+                    count += (int) ((planes.get(k)[w] >>> bit) & 1) << k;
+                }
+                scoreDocs.add(new ScoreDoc(doc, count));
+            }
+        }
+
+        // Documents are already in order, and the sort is stable
+        scoreDocs.sort(Comparator.comparing((ScoreDoc d) -> d.score).reversed());
+
+        return new TopDocs(new TotalHits(scoreDocs.size(), TotalHits.Relation.EQUAL_TO),
+                scoreDocs.toArray(new ScoreDoc[0]));
+    }
+
+    /**
+     * Adds 1 to the counter of every document in the bitset, with the carry propagated through
+     * the planes one word at a time.
+     */
+    private static void addBitset(List<long[]> planes, long[] bits) {
+        for (int w = 0; w < bits.length; w++) {
+            long carry = bits[w];
+            for (int k = 0; carry != 0; k++) {
+                if (k == planes.size()) {
+                    planes.add(new long[bits.length]);
+                }
+                var plane = planes.get(k);
+                long next = plane[w] & carry;
+                plane[w] ^= carry;
+                carry = next;
+            }
+        }
+    }
+
+    private static int wordCount(int maxDoc) {
+        return (maxDoc + 63) >> 6;
+    }
+
+    /**
+     * Documents that contain a term. Exactly one of the representations is set.
+     */
+    private static class Postings {
+        private final int[] docs;
+        private final long[] bits;
+
+        private Postings(int[] docs, long[] bits) {
+            this.docs = docs;
+            this.bits = bits;
+        }
+
+        /**
+         * Uses a bitset if it takes less space than the array.
+         */
+        private static Postings create(int[] docs, int maxDoc) {
+            int words = wordCount(maxDoc);
+            if ((long) docs.length * Integer.BYTES <= (long) words * Long.BYTES) {
+                return new Postings(docs, null);
+            }
+
+            var bits = new long[words];
+            for (int doc : docs) {
+                bits[doc >> 6] |= 1L << doc;
+            }
+            return new Postings(null, bits);
+        }
+
+        private static Postings read(DataInput input, int maxDoc) throws IOException {
+            int docFreq = input.readVInt();
+            if (input.readByte() == 1) {
+                var bits = new long[wordCount(maxDoc)];
+                for (int w = 0; w < bits.length; w++) {
+                    bits[w] = input.readLong();
+                }
+                return new Postings(null, bits);
+            }
+
+            var docs = new int[docFreq];
+            int doc = 0;
+            for (int i = 0; i < docFreq; i++) {
+                doc += input.readVInt();
+                docs[i] = doc;
+            }
+            return new Postings(docs, null);
+        }
+
+        private void write(DataOutput output) throws IOException {
+            if (bits != null) {
+                output.writeVInt(Arrays.stream(bits).mapToInt(Long::bitCount).sum());
+                output.writeByte((byte) 1);
+                for (long word : bits) {
+                    output.writeLong(word);
+                }
+            } else {
+                output.writeVInt(docs.length);
+                output.writeByte((byte) 0);
+                int previous = 0;
+                for (int doc : docs) {
+                    output.writeVInt(doc - previous);
+                    previous = doc;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import edu.utdallas.seers.lasso.data.entity.ASTPattern;
+import edu.utdallas.seers.retrieval.Index;
+import edu.utdallas.seers.retrieval.IndexDirectories;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Patterns of part of a project, e.g. one source root, with the index that is used to search
+ * them. A project that is not split has a single shard with all of its patterns.
+ */
+class PatternShard {
+    final String name;
+    /**
+     * Path of the Lucene index of the shard.
+     */
+    final Path path;
+    /**
+     * Modification times of the files of the shard when it was built, or {@code null} if the shard
+     * is only rebuilt when it does not exist.
+     */
+    final Map<String, Long> fileTimes;
+    /**
+     * Number of documents of each file of the shard, in document order, or {@code null} if the
+     * shard has all the patterns of the project.
+     */
+    final Map<String, Integer> fileDocCounts;
+    private final IndexReader reader;
+    private final IndexSearcher searcher;
+    private final PatternPostings postings;
+    private final Map<String, ASTPattern> patterns;
+    private final Map<String, LassoStats> stats;
+    /**
+     * Position of the file of each document among all the files of the project, see
+     * {@link #withFileRanks(Map)}.
+     */
+    private final int[] docFileRanks;
+
+    /**
+     * @param postings If not {@code null}, pattern queries are run on these postings instead of
+     *                 the reader. They must have been created from the same index.
+     */
+    PatternShard(String name, Path path, Map<String, Long> fileTimes, Map<String, Integer> fileDocCounts,
+                 IndexReader reader, PatternPostings postings,
+                 Map<String, ASTPattern> patterns, Map<String, LassoStats> stats) {
+        this(name, path, fileTimes, fileDocCounts, reader, postings, patterns, stats, null);
+    }
+
+    private PatternShard(String name, Path path, Map<String, Long> fileTimes, Map<String, Integer> fileDocCounts,
+                         IndexReader reader, PatternPostings postings,
+                         Map<String, ASTPattern> patterns, Map<String, LassoStats> stats, int[] docFileRanks) {
+        this.name = name;
+        this.path = path;
+        this.fileTimes = fileTimes;
+        this.fileDocCounts = fileDocCounts;
+        this.reader = reader;
+        this.postings = postings;
+        this.patterns = patterns;
+        this.stats = stats;
+        this.docFileRanks = docFileRanks;
+        searcher = Index.createSearcher(reader);
+        searcher.setSimilarity(new SimpleCountSimilarity());
+    }
+
+    /**
+     * @return All documents that contain any of the terms in the field, in score order.
+     */
+    TopDocs search(CompiledConstraint compiled, String field, List<String> terms) throws IOException {
+        if (postings != null) {
+            return postings.search(field, terms);
+        }
+
+        var query = compiled.createQuery(reader, field, terms, BooleanClause.Occur.SHOULD);
+        return searcher.search(query, Integer.MAX_VALUE);
+    }
+
+    String getPatternID(int doc) throws IOException {
+        if (postings != null) {
+            return postings.getPatternID(doc);
+        }
+
+        return reader.document(doc, Collections.singleton("id"))
+                .getField("id")
+                .stringValue();
+    }
+
+    /**
+     * Position of the document in an index with all the patterns of the project, which adds the
+     * patterns of each file in the order of the files in the detection artifact. Used to break
+     * score ties between shards in the same way as that index does.
+     *
+     * @param doc Document of this shard.
+     * @return The ordinal, which is the document itself if the shard has all the patterns.
+     */
+    long getOrdinal(int doc) {
+        if (docFileRanks == null) {
+            return doc;
+        }
+
+        // Within a file, documents are in the order they were added
+        return ((long) docFileRanks[doc] << Integer.SIZE) | doc;
+    }
+
+    ASTPattern getPattern(String id) {
+        return patterns.get(id);
+    }
+
+    LassoStats getStats(String id) {
+        return stats.get(id);
+    }
+
+    /**
+     * Keeps the reader of the shard open until {@link #decRef()} is called, even if the
+     * coordinator replaces it. See {@link IndexCoordinator#openReader}.
+     */
+    void incRef() {
+        reader.incRef();
+    }
+
+    void decRef() throws IOException {
+        reader.decRef();
+    }
+
+    /**
+     * @return This shard, searching postings created from its index.
+     */
+    PatternShard withPostings() {
+        if (postings != null) {
+            return this;
+        }
+
+        return new PatternShard(name, path, fileTimes, fileDocCounts, reader, PatternPostings.fromReader(reader),
+                patterns, stats, docFileRanks);
+    }
+
+    /**
+     * @return This shard, searching its index.
+     */
+    PatternShard withoutPostings() {
+        if (postings == null) {
+            return this;
+        }
+
+        return new PatternShard(name, path, fileTimes, fileDocCounts, reader, null, patterns, stats, docFileRanks);
+    }
+
+    /**
+     * @param fileRanks Position of each file of the project in the detection artifact.
+     * @return This shard, with ordinals that follow the order of the files in the artifact. A
+     * shard with all the patterns is returned as is, since its documents are already in that
+     * order.
+     */
+    PatternShard withFileRanks(Map<String, Integer> fileRanks) {
+        if (fileDocCounts == null) {
+            return this;
+        }
+
+        var ranks = new int[reader.maxDoc()];
+        int doc = 0;
+        for (var entry : fileDocCounts.entrySet()) {
+            int rank = fileRanks.getOrDefault(entry.getKey(), Integer.MAX_VALUE);
+            int end = Math.min(doc + entry.getValue(), ranks.length);
+            Arrays.fill(ranks, doc, end, rank);
+            doc = end;
+        }
+
+        return new PatternShard(name, path, fileTimes, fileDocCounts, reader, postings, patterns, stats, ranks);
+    }
+
+    /**
+     * Writes the index, stats and postings of the shard to disk if its index is in memory, in the
+     * same files that {@link LassoIndexBuilder} reads when the index is on disk.
+     */
+    void snapshot() {
+        if (!IndexDirectories.snapshot(path)) {
+            return;
+        }
+
+        LassoIndexBuilder.writeStats(path, patterns, stats, fileTimes, fileDocCounts);
+        if (postings != null) {
+            postings.write(LassoIndexBuilder.getPostingsPath(path));
+        }
+    }
+}
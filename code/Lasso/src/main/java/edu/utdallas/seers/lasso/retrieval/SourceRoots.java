@@ -0,0 +1,86 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the source root of Java files from their package declaration, without parsing them.
+ */
+class SourceRoots {
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;");
+    /**
+     * Lines that can only appear after the package declaration.
+     */
+    private static final Pattern DECLARATION_PATTERN = Pattern.compile(
+            "^\\s*(import\\s|((public|final|abstract)\\s+)*(class|interface|enum)\\s)");
+
+    private SourceRoots() {
+    }
+
+    /**
+     * @param file Java file.
+     * @return The directory that contains the root package of the file. If the directories of
+     * the file do not match its package, or it is in the default package, the directory of the
+     * file.
+     */
+    static Path find(Path file) {
+        var directory = file.toAbsolutePath().getParent();
+        var packageName = readPackage(file);
+        if (packageName.isEmpty()) {
+            return directory;
+        }
+
+        var root = directory;
+        var segments = packageName.split("\\.");
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (root == null || root.getFileName() == null || !root.getFileName().toString().equals(segments[i])) {
+                return directory;
+            }
+            root = root.getParent();
+        }
+
+        return root;
+    }
+
+    /**
+     * @param projectDir Root of the project.
+     * @param sourceRoot Source root in the project.
+     * @return A name for the source root that can be used as a file name.
+     */
+    static String toName(Path projectDir, Path sourceRoot) {
+        var relative = projectDir.toAbsolutePath().relativize(sourceRoot).toString();
+        if (relative.isEmpty()) {
+            return "_root";
+        }
+
+        return relative.replaceAll("[^\\w.-]", "_");
+    }
+
+    private static String readPackage(Path file) {
+        // Identifiers in package declarations are ASCII in practice, and this charset never fails
+        try (var reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file),
+                StandardCharsets.ISO_8859_1))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var matcher = PACKAGE_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    return matcher.group(1);
+                }
+
+                if (DECLARATION_PATTERN.matcher(line).find()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return "";
+    }
+}
@@ -0,0 +1,39 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Emits terms that are already preprocessed, one token per term, so that they are indexed
+ * without running an analyzer on them.
+ */
+final class TermsTokenStream extends TokenStream {
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private final List<String> terms;
+    private Iterator<String> iterator;
+
+    TermsTokenStream(List<String> terms) {
+        this.terms = terms;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        iterator = terms.iterator();
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (!iterator.hasNext()) {
+            return false;
+        }
+
+        clearAttributes();
+        termAttribute.setEmpty().append(iterator.next());
+        return true;
+    }
+}
@@ -148,8 +148,9 @@ public class LineContextExtractor {
         var fileName = pat1.getFileName();
         var patternLines = patterns.stream()
                 .flatMap(p -> p.getLines().stream());
-        // Add first line of method to show method name
-        var methodHead = Stream.of(pat1.location.methodRange.begin.line);
+        // Add first line of method to show method name, results at file level have no method
+        var methodHead = Stream.ofNullable(pat1.location.methodRange)
+                .map(r -> r.begin.line);
         var lines = Stream.concat(methodHead, patternLines)
                 .collect(Collectors.toSet());
         var ref = new ConstraintReference(project, constraintID, fileName, lines);
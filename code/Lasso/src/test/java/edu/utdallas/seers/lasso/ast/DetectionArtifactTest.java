@@ -0,0 +1,177 @@
+package edu.utdallas.seers.lasso.ast;
+
+import edu.utdallas.seers.lasso.data.entity.ASTPattern;
+import edu.utdallas.seers.parameter.Options;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DetectionArtifactTest {
+
+    private static final String SYSTEM = "joda_time-2.10.3";
+    private static final Path SYSTEM_DIR = Path.of("..", "..", "data", "target-system-data", SYSTEM);
+    private static final String CHANGED_FILE = "sources/src/main/java/org/joda/time/field/FieldUtils.java";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dataDir;
+    private Path cachePath;
+
+    @BeforeClass
+    public static void setUpOptions() throws ArgumentParserException {
+        setParseTimeBudget(60_000);
+    }
+
+    private static void setParseTimeBudget(int millis) throws ArgumentParserException {
+        new Options.ArgumentBuilder(DetectionArtifactTest.class.getName())
+                .addCachePathOption()
+                .addParseBudgetOptions()
+                .build()
+                .parseArgs(new String[]{"-c", ".", "--parse-time-budget", String.valueOf(millis)});
+    }
+
+    /**
+     * Only the files of one package are extracted, since detecting the patterns of the whole
+     * system takes minutes.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dataDir = folder.newFolder("data").toPath();
+        cachePath = folder.newFolder("cache").toPath();
+        var systemDir = dataDir.resolve(SYSTEM);
+        Files.createDirectories(systemDir);
+        Files.copy(SYSTEM_DIR.resolve("exclude.txt"), systemDir.resolve("exclude.txt"));
+
+        try (var zip = FileSystems.newFileSystem(SYSTEM_DIR.resolve("sources.zip"), null);
+             Stream<Path> walk = Files.walk(zip.getPath("/"))) {
+            var zipRoot = zip.getPath("/");
+            var entries = walk.filter(p -> p.toString().startsWith("/sources/src/main/java/org/joda/time/field/"))
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .collect(Collectors.toList());
+            for (Path entry : entries) {
+                var target = systemDir.resolve(zipRoot.relativize(entry).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(entry, target);
+            }
+        }
+    }
+
+    private Map<Path, List<ASTPattern>> readArtifact() {
+        try (var files = DetectionArtifact.open(dataDir, SYSTEM, cachePath).read(p -> true)) {
+            return files.toMapByPair(f -> f, ps -> ps.stream()
+                    .map(p -> p.match)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private Map<Path, List<ASTPattern>> detect() {
+        return ASTPatternDetector.detect(dataDir, SYSTEM, p -> true)
+                .toMapByPair(f -> f, ps -> ps.map(p -> p.match).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSamePatternsAsDetector() {
+        var patterns = readArtifact();
+
+        assertThat(patterns.values()).anySatisfy(ps -> assertThat(ps).isNotEmpty());
+        assertThat(patterns).isEqualTo(detect());
+        // Read from the artifact without detecting again
+        assertThat(readArtifact()).isEqualTo(patterns);
+    }
+
+    @Test
+    public void testUpdatesChangedFiles() throws IOException {
+        var before = readArtifact();
+
+        var changedFile = dataDir.resolve(SYSTEM).resolve(CHANGED_FILE);
+        Files.writeString(changedFile, "\nclass Added {\n    void check(Object o) {\n        if (o == null) {\n" +
+                "            return;\n        }\n    }\n}\n", StandardOpenOption.APPEND);
+        var after = readArtifact();
+
+        assertThat(after).isEqualTo(detect());
+        try (Stream<Path> cacheFiles = Files.list(cachePath)) {
+            assertThat(cacheFiles)
+                    .as("temporary files are moved")
+                    .containsExactly(cachePath.resolve(SYSTEM + DetectionArtifact.EXTENSION));
+        }
+        assertThat(after.keySet()).isEqualTo(before.keySet());
+        assertThat(after.get(changedFile).size()).isGreaterThan(before.get(changedFile).size());
+        for (Path file : before.keySet()) {
+            if (!file.equals(changedFile)) {
+                assertThat(after.get(file)).as(file.toString()).isEqualTo(before.get(file));
+            }
+        }
+    }
+
+    /**
+     * The generated file takes much longer than the deadline to parse, so it is abandoned. The
+     * other files may or may not be skipped as well.
+     */
+    @Test
+    public void testRecordsSkippedFiles() throws IOException, ArgumentParserException {
+        var bigFile = "src/main/java/big/Big.java";
+        var source = new StringBuilder("package big;\nclass Big {\n");
+        for (int i = 0; i < 50_000; i++) {
+            source.append("    int m").append(i).append("(Integer x) { if (x == null) { return ").append(i)
+                    .append("; } return x + ").append(i).append("; }\n");
+        }
+        source.append("}\n");
+        var bigPath = dataDir.resolve(SYSTEM).resolve("sources").resolve(bigFile);
+        Files.createDirectories(bigPath.getParent());
+        Files.writeString(bigPath, source);
+
+        ASTPatternDetector.clearSkippedFiles();
+        setParseTimeBudget(1);
+        Path artifactPath;
+        try {
+            artifactPath = DetectionArtifact.open(dataDir, SYSTEM, cachePath).getPath();
+        } finally {
+            setParseTimeBudget(60_000);
+        }
+        var skipped = findSkipped();
+
+        assertThat(skipped).containsKey(bigFile);
+        assertThat(skipped.get(bigFile)).contains("parsing took more than 1 ms");
+
+        // The skips are restored when the artifact is reused
+        ASTPatternDetector.clearSkippedFiles();
+        var artifactTime = Files.getLastModifiedTime(artifactPath);
+        DetectionArtifact.open(dataDir, SYSTEM, cachePath);
+
+        assertThat(Files.getLastModifiedTime(artifactPath)).isEqualTo(artifactTime);
+        assertThat(findSkipped()).isEqualTo(skipped);
+    }
+
+    private Map<String, String> findSkipped() {
+        return ASTPatternDetector.getSkippedFiles().stream()
+                .filter(f -> f.project.equals(SYSTEM))
+                .collect(Collectors.toMap(f -> f.file, f -> f.reason));
+    }
+
+    @Test
+    public void testRebuildsForOtherDetector() throws IOException {
+        var artifactPath = DetectionArtifact.open(dataDir, SYSTEM, cachePath, "other").getPath();
+        var otherBytes = Files.readAllBytes(artifactPath);
+
+        var patterns = readArtifact();
+
+        assertThat(Files.readAllBytes(artifactPath)).isNotEqualTo(otherBytes);
+        assertThat(patterns).isEqualTo(detect());
+    }
+}
@@ -0,0 +1,322 @@
+package edu.utdallas.seers.lasso.ast;
+
+import edu.utdallas.seers.file.JavaFileWalker;
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.retrieval.BaselineIndexBuilder;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static edu.utdallas.seers.testing.TestUtils.a;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares {@link LexicalTextExtractor} with {@link JavaTextExtractor} on snippets and on the sources
+ * of every bundled target system. The main method measures both extractors.
+ */
+@RunWith(JUnitParamsRunner.class)
+public class LexicalTextExtractorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LexicalTextExtractorTest.class);
+    private static final Path SYSTEMS_DIR = Path.of("..", "..", "data", "target-system-data");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final JavaTextExtractor astExtractor = new JavaTextExtractor();
+    private final LexicalTextExtractor tester = new LexicalTextExtractor();
+
+    /**
+     * Measures both extractors on every system of a sources directory laid out like the
+     * experiment inputs. The equivalence of their output is checked by {@link #testBundledSystem}.
+     */
+    public static void main(String[] args) throws IOException {
+        Path sourcesDir = Path.of(args[0]);
+
+        var projects = Files.find(sourcesDir, 1, (p, a) -> !p.equals(sourcesDir) && Files.isDirectory(p))
+                .map(p -> p.getFileName().toString())
+                .sorted()
+                .collect(Collectors.toList());
+
+        var test = new LexicalTextExtractorTest();
+        for (String project : projects) {
+            test.benchmark(sourcesDir.resolve(project).resolve("sources"));
+        }
+    }
+
+    private void benchmark(Path projectPath) throws IOException {
+        List<Path> files = JavaFileWalker.walk(projectPath, ConstraintLoader.loadExclusions(projectPath))
+                .collect(Collectors.toList());
+
+        // First pass warms up both extractors
+        long astTime = 0;
+        long lexicalTime = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (Path file : files) {
+                astExtractor.extractText(file).count();
+            }
+            astTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Path file : files) {
+                tester.extractText(file).count();
+            }
+            lexicalTime = System.nanoTime() - start;
+        }
+
+        logger.info("{}: {} files. AST: {} ms, lexical: {} ms, speedup: {}",
+                projectPath, files.size(), astTime / 1_000_000, lexicalTime / 1_000_000,
+                String.format("%.1fx", (double) astTime / lexicalTime));
+    }
+
+    /**
+     * Every file of a bundled system must produce the same blocks for every output, since the
+     * baseline corpora are built from them.
+     */
+    @Parameters
+    @Test
+    public void testBundledSystem(String system) throws IOException {
+        var sourcesDir = unzipSources(SYSTEMS_DIR.resolve(system));
+        var files = JavaFileWalker.walk(sourcesDir, ConstraintLoader.loadExclusions(sourcesDir))
+                .collect(Collectors.toList());
+
+        assertThat(files).isNotEmpty();
+
+        for (Path file : files) {
+            var astSpans = astExtractor.extractText(file).collect(Collectors.toList());
+            var lexicalSpans = tester.extractText(file).collect(Collectors.toList());
+
+            for (var output : BaselineIndexBuilder.Output.values()) {
+                assertThat(describeBlocks(lexicalSpans.stream(), output))
+                        .as(sourcesDir.relativize(file) + " " + output)
+                        .isEqualTo(describeBlocks(astSpans.stream(), output));
+            }
+        }
+    }
+
+    public Object[] parametersForTestBundledSystem() throws IOException {
+        try (var systems = Files.list(SYSTEMS_DIR)) {
+            return systems.filter(p -> Files.exists(p.resolve("sources.zip")))
+                    .map(p -> p.getFileName().toString())
+                    .sorted()
+                    .map(s -> a(s))
+                    .toArray();
+        }
+    }
+
+    @Parameters
+    @Test
+    public void testSameSpans(String source) throws IOException {
+        var file = write(source);
+
+        assertThat(describeSpans(tester.extractText(file)))
+                .containsExactlyInAnyOrderElementsOf(describeSpans(astExtractor.extractText(file)));
+    }
+
+    @Parameters(method = "parametersForTestSameSpans")
+    @Test
+    public void testSameBlocks(String source) throws IOException {
+        var file = write(source);
+
+        for (var output : BaselineIndexBuilder.Output.values()) {
+            assertThat(describeBlocks(tester.extractText(file), output))
+                    .as(output.toString())
+                    .isEqualTo(describeBlocks(astExtractor.extractText(file), output));
+        }
+    }
+
+    public Object[] parametersForTestSameSpans() {
+        return a(
+                a("package p;\n" +
+                        "/** Doc */\n" +
+                        "public class A<T> extends Object {\n" +
+                        "    // orphan\n" +
+                        "\n" +
+                        "    private int x = 5, y = 0x1F; // trailing\n" +
+                        "    static final java.util.List<String> S = null, R = null;\n" +
+                        "    /** method doc */\n" +
+                        "    @Override\n" +
+                        "    public String toString() {\n" +
+                        "        // before if\n" +
+                        "        if (x > 1L) {\n" +
+                        "            return \"big\" + 2.0f + 1.f;\n" +
+                        "        }\n" +
+                        "        return String.valueOf(x);\n" +
+                        "    }\n" +
+                        "    static { int z = 1; }\n" +
+                        "    { x = 7; }\n" +
+                        "}\n"),
+                a("package p;\n" +
+                        "class A {\n" +
+                        "    int m(int v) {\n" +
+                        "        for (int i = 0, j = 1; i < v; i++) { v += i; }\n" +
+                        "        for (;;) { break; }\n" +
+                        "        for (String s : names()) { use(s); }\n" +
+                        "        outer:\n" +
+                        "        while (v > 0) { v--; continue outer; }\n" +
+                        "        do { v++; } while (v < 10);\n" +
+                        "        synchronized (this) { v = 1; }\n" +
+                        "        switch (v) {\n" +
+                        "            case 1: case 2:\n" +
+                        "                return 1;\n" +
+                        "            default:\n" +
+                        "                // nothing\n" +
+                        "        }\n" +
+                        "        try (var in = open()) {\n" +
+                        "            in.close();\n" +
+                        "        } catch (Exception e) {\n" +
+                        "            throw e;\n" +
+                        "        } finally {\n" +
+                        "            v = 0;\n" +
+                        "        }\n" +
+                        "        try { v = 2; } catch (RuntimeException e) { }\n" +
+                        "        return v;\n" +
+                        "    }\n" +
+                        "}\n"),
+                a("package p;\n" +
+                        "class A {\n" +
+                        "    Runnable field = () -> foo(1);\n" +
+                        "    Object anonymous = new Object() {\n" +
+                        "        int inner = 3;\n" +
+                        "        public String toString() { return \"inner\"; }\n" +
+                        "    };\n" +
+                        "    void m() {\n" +
+                        "        java.util.function.Function<Integer, Integer> f = y -> y + 1;\n" +
+                        "        Runnable r = () -> {\n" +
+                        "            // in lambda\n" +
+                        "            foo(2);\n" +
+                        "        };\n" +
+                        "        Runnable s = new Runnable() {\n" +
+                        "            int q = 4;\n" +
+                        "            public void run() { foo(q); }\n" +
+                        "        };\n" +
+                        "        java.util.function.Supplier<Object> c = Object::new;\n" +
+                        "        java.util.function.Function<Object, String> t = Object::toString;\n" +
+                        "        class Local {\n" +
+                        "            int l = 5;\n" +
+                        "            void local() { foo(l); }\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "    void foo(int i) { }\n" +
+                        "}\n"),
+                a("package p;\n" +
+                        "enum E implements Runnable {\n" +
+                        "    ONE(1) {\n" +
+                        "        int f = 1;\n" +
+                        "        public void run() { use(f); }\n" +
+                        "    },\n" +
+                        "    @Deprecated TWO(2);\n" +
+                        "    private final int v;\n" +
+                        "    E(int v) { this.v = v; }\n" +
+                        "    public void run() { }\n" +
+                        "}\n" +
+                        "@interface Marker {\n" +
+                        "    String value() default \"x\";\n" +
+                        "}\n" +
+                        "interface I {\n" +
+                        "    int CONSTANT = 1;\n" +
+                        "    default <T> T id(T t) { return t; }\n" +
+                        "}\n"),
+                // The following are extracted from the AST
+                a("package p;\n" +
+                        "class A {\n" +
+                        "    Object anonymous = new Object() {\n" +
+                        "        class Nested {\n" +
+                        "            int n = 1;\n" +
+                        "            void nested() { foo(n); }\n" +
+                        "        }\n" +
+                        "    };\n" +
+                        "    void m() {\n" +
+                        "        Runnable r = new Runnable() {\n" +
+                        "            public void run() {\n" +
+                        "                class Local { int l = 2; }\n" +
+                        "            }\n" +
+                        "        };\n" +
+                        "    }\n" +
+                        "    void foo(int i) { }\n" +
+                        "}\n"),
+                a("package p;\n" +
+                        "enum E {\n" +
+                        "    ONE {\n" +
+                        "        class Nested { int n = 1; }\n" +
+                        "    };\n" +
+                        "}\n"),
+                a("package p;\n" +
+                        "class A {\n" +
+                        "    int m(int v) {\n" +
+                        "        int w = switch (v) {\n" +
+                        "            case 1, 2 -> 3;\n" +
+                        "            default -> {\n" +
+                        "                // block\n" +
+                        "                yield v + 1;\n" +
+                        "            }\n" +
+                        "        };\n" +
+                        "        return w;\n" +
+                        "    }\n" +
+                        "}\n")
+        );
+    }
+
+    private Path unzipSources(Path systemDir) throws IOException {
+        var root = folder.newFolder(systemDir.getFileName().toString()).toPath();
+        Files.copy(systemDir.resolve("exclude.txt"), root.resolve("exclude.txt"));
+
+        try (var zip = FileSystems.newFileSystem(systemDir.resolve("sources.zip"), null)) {
+            var zipRoot = zip.getPath("/");
+            var entries = Files.walk(zipRoot)
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .collect(Collectors.toList());
+
+            for (Path entry : entries) {
+                var target = root.resolve(zipRoot.relativize(entry).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(entry, target);
+            }
+        }
+
+        return root.resolve("sources");
+    }
+
+    private Path write(String source) throws IOException {
+        var file = folder.newFolder("p").toPath().resolve("A.java");
+        Files.writeString(file, source);
+        return file;
+    }
+
+    private List<String> describeSpans(Stream<TextSpan> spans) {
+        return spans.map(s -> Arrays.asList(s.getType(), s.getLine(), s.getText(), s.getLocation().getFile(),
+                s.getLocation().getClassName(), s.getLocation().getMethodName(), s.getLocation().methodRange,
+                s.getLocation().statementRange, s.docComment).toString())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The text of blocks is sorted because spans are not extracted in the same order.
+     */
+    private static List<String> describeBlocks(Stream<TextSpan> spans, BaselineIndexBuilder.Output output) {
+        return output.extractor.apply(spans)
+                .map(b -> {
+                    var text = new ArrayList<>(Arrays.asList(b.text.split(" ")));
+                    text.sort(null);
+                    return b.fileName + ":" + b.lineBegin + "-" + b.lineEnd + " " + text;
+                })
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
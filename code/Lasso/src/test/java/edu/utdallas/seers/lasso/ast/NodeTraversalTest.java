@@ -0,0 +1,87 @@
+package edu.utdallas.seers.lasso.ast;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static edu.utdallas.seers.testing.TestUtils.a;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnitParamsRunner.class)
+public class NodeTraversalTest {
+
+    private final JavaParser parser = new JavaParser(new ParserConfiguration()
+            .setSymbolResolver(new JavaSymbolSolver(new DummyTypeSolver())));
+
+    @Parameters
+    @Test
+    public void testSameOrder(String source) {
+        var unit = parse(source);
+
+        assertThat(NodeTraversal.preOrder(unit, ParseBudget.unlimited()))
+                .containsExactlyElementsOf(unit.stream().collect(Collectors.toList()));
+        assertThat(NodeTraversal.allComments(unit))
+                .containsExactlyElementsOf(unit.getAllComments());
+    }
+
+    public Object[] parametersForTestSameOrder() {
+        return a(
+                a("//C1\n//C2\nclass A{//C3\nvoid a()//C4\n{\n//C5\n}\n}\n//C6"),
+                a("/* header */\npackage p;\n/** doc */\nclass A {\n" +
+                        "    int x = 1; // trailing\n" +
+                        "    // orphan\n\n" +
+                        "    void m() { if (x > 0) { /* in */ x++; } Runnable r = () -> { /* lambda */ }; }\n" +
+                        "}\n")
+        );
+    }
+
+    @Test
+    public void testDeepExpression() throws InterruptedException {
+        // JavaParser itself recurses while parsing, so the tree must be parsed with the default stack
+        var unit = parse("class A { int x = " +
+                String.join(" + ", Collections.nCopies(3_000, "1")) +
+                "; }");
+
+        var location = new AtomicReference<TextSpan.Location>();
+        // A small stack that would overflow if the traversal recursed once per tree level
+        var thread = new Thread(null, () -> {
+            var deepest = NodeTraversal.preOrder(unit, ParseBudget.unlimited())
+                    .filter(n -> n instanceof IntegerLiteralExpr)
+                    .findFirst()
+                    .orElseThrow();
+
+            location.set(new LocationFinder().findLocation(deepest, "A.java"));
+        }, "deep", 128 * 1024);
+        thread.start();
+        thread.join();
+
+        assertThat(location.get().getClassName()).contains("A");
+        assertThat(location.get().statementRange.begin.line).isEqualTo(1);
+    }
+
+    @Test
+    public void testNodeBudget() {
+        var unit = parse("class A { void m() { int x = 1 + 2 + 3; } }");
+        var nodes = unit.stream().count();
+
+        assertThat(NodeTraversal.preOrder(unit, ParseBudget.start((int) nodes, 0)).count())
+                .isEqualTo(nodes);
+        assertThatThrownBy(() -> NodeTraversal.preOrder(unit, ParseBudget.start((int) nodes - 1, 0)).count())
+                .isInstanceOf(ParseBudget.ExceededException.class);
+    }
+
+    private CompilationUnit parse(String source) {
+        return parser.parse(source).getResult().orElseThrow();
+    }
+}
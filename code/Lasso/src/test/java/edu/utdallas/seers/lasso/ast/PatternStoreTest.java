@@ -1,24 +1,194 @@
 package edu.utdallas.seers.lasso.ast;
 
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import edu.utdallas.seers.lasso.data.entity.*;
+import edu.utdallas.seers.lasso.data.entity.constants.Constant;
+import edu.utdallas.seers.lasso.data.entity.constants.IntegerConstant;
+import edu.utdallas.seers.lasso.data.entity.constants.StringConstant;
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
+/**
+ * Compares the lookups of a {@link PatternStoreFile} with those of the in-memory store that was
+ * written to it.
+ */
 public class PatternStoreTest {
 
-    public static void main(String[] args) throws IOException {
-        Path sourcesDir = Paths.get(args[0]);
-        Path cacheDir = Paths.get(args[1]);
+    private static final List<String> FILES = List.of("a/First.java", "a/Second.java", "b/\u00dcber.java");
+
+    /**
+     * Lone surrogates cannot be encoded as UTF-8, so they must not collide with each other or
+     * with "?".
+     */
+    private static final List<Constant<?>> CONSTANTS = List.of(
+            new StringConstant(""),
+            new StringConstant("?"),
+            new StringConstant("\ud800"),
+            new StringConstant("\udc00"),
+            new StringConstant("a\ud800b"),
+            new StringConstant("\ud83d\ude00"),
+            new StringConstant("\uffff"),
+            new StringConstant("value"),
+            new IntegerConstant(42)
+    );
+
+    private static final List<Attribute> ATTRIBUTES = List.of(
+            Attribute.newField("a.First", "field"),
+            Attribute.newField("a.First", "\ud800"),
+            Attribute.newLocal("a.Second", "method", "?")
+    );
+
+    private static final List<PatternType> PATTERN_TYPES = List.of(
+            PatternType.ASSIGN_CONSTANT, PatternType.BINARY_COMPARISON, PatternType.CONSTANT_ARGUMENT);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private PatternStore store;
+    private Path storePath;
+
+    private static ASTPattern.Location createLocation(String file, int line) {
+        var range = new Range(new Position(line, 1), new Position(line + 1, 10));
+
+        return new ASTPattern.Location(Path.of("src", file), file, range, range, "Type", "method");
+    }
+
+    /**
+     * Each type only has patterns for some of the files, constants and attributes, so that there
+     * are also lookups that should not find anything.
+     */
+    @Before
+    public void setUp() throws IOException {
+        store = new PatternStore("system");
+        int line = 1;
+
+        for (int t = 0; t < PATTERN_TYPES.size(); t++) {
+            var type = PATTERN_TYPES.get(t);
+
+            for (int f = t; f < FILES.size(); f++) {
+                store.addPattern(new ASTPattern(createLocation(FILES.get(f), line++), type,
+                        Collections.emptyList()));
+            }
+
+            for (int c = t; c < CONSTANTS.size(); c++) {
+                var constant = CONSTANTS.get(c);
+                var file = FILES.get(c % FILES.size());
+                store.addPattern(new ValueASTPattern(createLocation(file, line++), type,
+                        Collections.emptyList(), constant));
+
+                for (int a = t; a < ATTRIBUTES.size(); a++) {
+                    // Some constants have more than one pattern with the same attribute
+                    for (int i = 0; i <= c % 2; i++) {
+                        store.addPattern(new NameValueASTPattern(createLocation(file, line++), type,
+                                Collections.emptyList(), constant, ATTRIBUTES.get(a)));
+                    }
+                }
+            }
+        }
+
+        storePath = folder.getRoot().toPath().resolve("store").resolve("system" + PatternStoreFile.EXTENSION);
+        PatternStoreFile.write(store, storePath);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        try (Stream<Path> files = Files.list(storePath.getParent())) {
+            assertThat(files)
+                    .as("temporary files are moved")
+                    .containsExactly(storePath);
+        }
+    }
+
+    @Test
+    public void testContains() {
+        var storeFile = PatternStoreFile.open(storePath).orElseThrow();
+        var lines = store.records.keySet().stream()
+                .mapToInt(r -> r.line)
+                .max()
+                .orElseThrow();
+        var checked = 0;
+
+        for (PatternType type : PatternType.values()) {
+            for (String file : concat(FILES, "a/Missing.java", "?")) {
+                for (int line = 0; line <= lines + 1; line++) {
+                    var expected = store.contains(new PatternSingleLineFormat(file, line, true, type));
+                    assertThat(storeFile.contains(type, file, line))
+                            .as("%s %s:%d", type, file, line)
+                            .isEqualTo(expected);
+                    checked += expected ? 1 : 0;
+                }
+            }
+        }
+
+        assertThat(checked).isEqualTo(store.records.size());
+    }
+
+    @Test
+    public void testLookUpValues() {
+        var storeFile = PatternStoreFile.open(storePath).orElseThrow();
 
-        new PatternStoreTest()
-                .test(sourcesDir, cacheDir);
+        for (PatternType type : PatternType.values()) {
+            for (Constant<?> constant : concat(CONSTANTS, new StringConstant("missing"))) {
+                assertThat(storeFile.lookUpInstances(type, constant))
+                        .as("%s %s", type, constant)
+                        .containsExactlyInAnyOrderElementsOf(store.lookUpInstances(type, constant));
+            }
+        }
     }
 
-    private void test(Path sourcesDir, Path cacheDir) throws IOException {
-        Files.find(sourcesDir, 1, (p, a) -> !p.equals(sourcesDir) && Files.isDirectory(p))
-                .map(p -> p.getFileName().toString())
-                .sorted()
-                .forEachOrdered(n -> PatternStore.create(sourcesDir, n, cacheDir));
+    @Test
+    public void testLookUpNameValues() {
+        var storeFile = PatternStoreFile.open(storePath).orElseThrow();
+
+        for (PatternType type : PatternType.values()) {
+            for (Constant<?> constant : concat(CONSTANTS, new StringConstant("missing"))) {
+                for (Attribute attribute : concat(ATTRIBUTES, Attribute.newField("a.First", "missing"))) {
+                    assertThat(storeFile.lookUpInstances(type, constant, attribute))
+                            .as("%s %s %s", type, constant, attribute)
+                            .containsExactlyInAnyOrderElementsOf(store.lookUpInstances(type, constant, attribute));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        long size = Files.size(storePath);
+
+        for (long truncatedSize : new long[]{size - 1, size - 8, 12, 0}) {
+            var truncatedPath = folder.getRoot().toPath().resolve("truncated" + truncatedSize);
+            Files.copy(storePath, truncatedPath);
+            try (var channel = FileChannel.open(truncatedPath, StandardOpenOption.WRITE)) {
+                channel.truncate(truncatedSize);
+            }
+
+            assertThat(PatternStoreFile.open(truncatedPath))
+                    .as("size %d", truncatedSize)
+                    .isEmpty();
+        }
+    }
+
+    @SafeVarargs
+    private static <T> List<T> concat(List<? extends T> list, T... others) {
+        var result = new ArrayList<T>(list);
+        Collections.addAll(result, others);
+
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package edu.utdallas.seers.lasso.ast.matcher;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.printer.PrettyPrinter;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static edu.utdallas.seers.testing.TestUtils.a;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Checks that {@link ExpressionComparer} agrees with comparing pretty printed expressions, on
+ * snippets and on every bundled target system. The main method measures both approaches.
+ */
+@RunWith(JUnitParamsRunner.class)
+public class ExpressionComparerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpressionComparerTest.class);
+    private static final Path SYSTEMS_DIR = Path.of("..", "..", "data", "target-system-data");
+
+    private final PrettyPrinter printer = new PrettyPrinter();
+    private final ExpressionComparer comparer = new ExpressionComparer();
+
+    /**
+     * Measures both approaches on every bundled target system. Their agreement is checked by
+     * {@link #testBundledSystem}.
+     */
+    public static void main(String[] args) throws IOException {
+        var test = new ExpressionComparerTest();
+
+        for (Path zip : findSourceZips()) {
+            List<Tuple2<Expression, Expression>> comparisons = null;
+
+            // First pass warms up both approaches
+            long printTime = 0;
+            long structuralTime = 0;
+            int printSame = 0;
+            int structuralSame = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                // Cached hashes would favor the structural comparison after the first pass
+                comparisons = test.findComparisons(zip);
+
+                long start = System.nanoTime();
+                printSame = 0;
+                for (var pair : comparisons) {
+                    printSame += test.printer.print(pair.v1).equals(test.printer.print(pair.v2)) ? 1 : 0;
+                }
+                printTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                structuralSame = 0;
+                for (var pair : comparisons) {
+                    structuralSame += test.comparer.areSame(pair.v1, pair.v2) ? 1 : 0;
+                }
+                structuralTime = System.nanoTime() - start;
+            }
+
+            logger.info("{}: {} comparisons, {}/{} same. Printing: {} ms, structural: {} ms, speedup: {}",
+                    zip.getParent().getFileName(), comparisons.size(), printSame, structuralSame,
+                    printTime / 1_000_000, structuralTime / 1_000_000,
+                    String.format("%.1fx", (double) printTime / structuralTime));
+        }
+    }
+
+    private static List<Path> findSourceZips() throws IOException {
+        try (var systems = Files.list(SYSTEMS_DIR)) {
+            return systems.map(p -> p.resolve("sources.zip"))
+                    .filter(Files::exists)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Parameters
+    @Test
+    public void testSameAsPrinting(String left, String right) {
+        var comparison = parse("class A { void m() { boolean b = " + left + " == " + right + "; } }")
+                .findFirst(BinaryExpr.class)
+                .orElseThrow();
+
+        assertThat(comparer.areSame(comparison.getLeft(), comparison.getRight()))
+                .isEqualTo(printer.print(comparison.getLeft()).equals(printer.print(comparison.getRight())));
+    }
+
+    public Object[] parametersForTestSameAsPrinting() {
+        return a(
+                a("a", "a"),
+                a("a", "b"),
+                a("a.b()", "a.b()"),
+                a("a.b()", "a.c()"),
+                a("a.<T>b(1)", "a.b(1)"),
+                a("this.a", "a"),
+                a("(a)", "a"),
+                a("0x1F", "31"),
+                a("1L", "1L"),
+                a("'a'", "\"a\""),
+                a("\"a\\n\"", "\"a\\n\""),
+                a("a /* c */", "a"),
+                a("a /* c */", "a /* c */"),
+                a("a /* c */", "a /* d */"),
+                a("f(x -> x)", "f((x) -> x)"),
+                a("f(x -> { /* orphan */ })", "f(x -> { })"),
+                a("f(x -> { /* orphan */ })", "f(x -> { /* orphan */ })"),
+                a("new int[] { 1, 2 }", "new int[] { 1, 2 }"),
+                a("new int[] { 1, 2 }", "new int[] { 2, 1 }"),
+                a("new java.util.ArrayList<>()", "new java.util.ArrayList<String>()"),
+                a("(String) o", "(Object) o"),
+                a("a[i + 1]", "a[i + 1]"),
+                a("a ? b : c", "a ? c : b"),
+                a("String.class", "String.class")
+        );
+    }
+
+    @Parameters
+    @Test
+    public void testBundledSystem(String system) throws IOException {
+        var comparisons = findComparisons(SYSTEMS_DIR.resolve(system).resolve("sources.zip"));
+
+        assertThat(comparisons).isNotEmpty();
+        assertThat(countDifferent(comparisons)).isZero();
+    }
+
+    public Object[] parametersForTestBundledSystem() throws IOException {
+        return findSourceZips().stream()
+                .map(z -> a(z.getParent().getFileName().toString()))
+                .toArray();
+    }
+
+    @Test
+    public void testDeepExpression() throws InterruptedException {
+        // JavaParser itself recurses while parsing, so the tree must be parsed with the default stack
+        var sum = String.join(" + ", Collections.nCopies(3_000, "1"));
+        var comparison = parse("class A { boolean b = " + sum + " == " + sum + "; }")
+                .findFirst(BinaryExpr.class, e -> e.getOperator().equals(BinaryExpr.Operator.EQUALS))
+                .orElseThrow();
+
+        var result = new boolean[1];
+        // A small stack that would overflow if the comparison recursed once per tree level
+        var thread = new Thread(null, () -> result[0] = comparer.areSame(comparison.getLeft(), comparison.getRight()),
+                "deep", 128 * 1024);
+        thread.start();
+        thread.join();
+
+        assertThat(result[0]).isTrue();
+    }
+
+    /**
+     * The operands of every binary expression, as compared by the matchers, and pairs of their
+     * operands so that there are also many expressions that are the same.
+     */
+    private List<Tuple2<Expression, Expression>> findComparisons(Path zip) throws IOException {
+        var comparisons = new ArrayList<Tuple2<Expression, Expression>>();
+
+        try (var zipSystem = FileSystems.newFileSystem(zip, null);
+             Stream<Path> files = Files.walk(zipSystem.getPath("/"))) {
+            for (Path file : files.filter(p -> p.toString().endsWith(".java")).collect(Collectors.toList())) {
+                var result = new JavaParser().parse(Files.readString(file)).getResult();
+                if (result.isEmpty()) {
+                    continue;
+                }
+
+                for (BinaryExpr binary : result.get().findAll(BinaryExpr.class)) {
+                    comparisons.add(tuple(binary.getLeft(), binary.getRight()));
+                    for (Expression left : childExpressions(binary.getLeft())) {
+                        for (Expression right : childExpressions(binary.getRight())) {
+                            comparisons.add(tuple(left, right));
+                        }
+                    }
+                }
+            }
+        }
+
+        return comparisons;
+    }
+
+    private List<Expression> childExpressions(Expression expression) {
+        return expression.getChildNodes().stream()
+                .filter(n -> n instanceof Expression)
+                .map(n -> (Expression) n)
+                .collect(Collectors.toList());
+    }
+
+    private long countDifferent(List<Tuple2<Expression, Expression>> comparisons) {
+        return comparisons.stream()
+                .filter(p -> comparer.areSame(p.v1, p.v2) != printer.print(p.v1).equals(printer.print(p.v2)))
+                .peek(p -> logger.warn("Different result for {} and {}", p.v1, p.v2))
+                .count();
+    }
+
+    private CompilationUnit parse(String source) {
+        return new JavaParser().parse(source).getResult().orElseThrow();
+    }
+}
@@ -0,0 +1,133 @@
+package edu.utdallas.seers.lasso.experiment;
+
+import edu.utdallas.seers.file.JavaFileWalker;
+import edu.utdallas.seers.lasso.ast.JavaTextExtractor;
+import edu.utdallas.seers.lasso.ast.TextSpan;
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.lasso.retrieval.LassoIndexBuilder;
+import edu.utdallas.seers.text.preprocessing.TextPreprocessor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static edu.utdallas.seers.collection.Collections.streamMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the statistics computed with {@link TermPositionIndex} with the ones computed by
+ * preprocessing the lines of the file for every term, on the constraints of a bundled system.
+ */
+public class TermPositionIndexTest {
+
+    private static final Path SYSTEM_DIR = Path.of("..", "..", "data", "target-system-data", "joda_time-2.10.3");
+    private static final Path CONSTRAINTS_FILE = Path.of("..", "..", "data", "constraints.csv");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final TextPreprocessor preprocessor = LassoIndexBuilder.createPreprocessor();
+    private final JavaTextExtractor extractor = new JavaTextExtractor();
+
+    @Test
+    public void testSameStatistics() throws IOException {
+        var sourcesDir = unzipSources();
+        var files = JavaFileWalker.walk(sourcesDir, ConstraintLoader.loadExclusions(sourcesDir))
+                .collect(Collectors.toList());
+        var constraints = new ConstraintLoader().loadConstraints(CONSTRAINTS_FILE)
+                .filter(c -> c.getSystem().equals("joda_time-2.10.3"))
+                .collect(Collectors.toList());
+
+        assertThat(constraints).isNotEmpty();
+
+        for (PatternEntry constraint : constraints) {
+            var gtFile = constraint.getpTrus()[0].getFile();
+            var path = files.stream()
+                    .filter(p -> p.toString().endsWith(gtFile))
+                    .findFirst()
+                    .orElseThrow();
+
+            var spans = extractor.extractText(path).collect(Collectors.toList());
+            var lines = spans.stream().collect(Collectors.groupingBy(TextSpan::getLine));
+            var lineWords = new HashMap<Integer, List<String>>();
+            lines.forEach((i, ss) -> lineWords.put(i, ss.stream()
+                    .flatMap(s -> preprocessor.preprocess(s.getText(), true))
+                    .collect(Collectors.toList())));
+            var index = new TermPositionIndex(spans, preprocessor);
+            var gtLines = Arrays.stream(constraint.getpTrus()[0].getLines())
+                    .boxed()
+                    .collect(Collectors.toList());
+
+            var operands = constraint.getOperands().stream()
+                    .map(s -> preprocessor.preprocess(s, true).collect(Collectors.joining(" ")))
+                    .collect(Collectors.toList());
+            assertThat(ConstraintStatsExtractor.calculateTermDistances(operands, gtLines, index))
+                    .as(constraint.getID())
+                    .isEqualTo(calculateTermDistances(operands, gtLines, lines, lineWords));
+
+            // Every term of the file, one at a time
+            var allTerms = lineWords.values().stream()
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toCollection(TreeSet::new));
+            for (String term : allTerms) {
+                var singleTerm = Collections.singletonList(term);
+                assertThat(ConstraintStatsExtractor.calculateTermDistances(singleTerm, gtLines, index))
+                        .as(constraint.getID() + ": " + term)
+                        .isEqualTo(calculateTermDistances(singleTerm, gtLines, lines, lineWords));
+            }
+
+            for (Integer line : gtLines) {
+                assertThat(index.getTerms(line))
+                        .isEqualTo(lineWords.getOrDefault(line, Collections.emptyList()));
+            }
+        }
+    }
+
+    private Path unzipSources() throws IOException {
+        var root = folder.getRoot().toPath();
+        Files.copy(SYSTEM_DIR.resolve("exclude.txt"), root.resolve("exclude.txt"));
+
+        try (var zip = FileSystems.newFileSystem(SYSTEM_DIR.resolve("sources.zip"), null)) {
+            var zipRoot = zip.getPath("/");
+            var entries = Files.walk(zipRoot)
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .collect(Collectors.toList());
+
+            for (Path entry : entries) {
+                var target = root.resolve(zipRoot.relativize(entry).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(entry, target);
+            }
+        }
+
+        return root.resolve("sources");
+    }
+
+    /**
+     * Implementation that scans every line for every term. The words of each line are only
+     * preprocessed once to keep the test fast, which does not change the result.
+     */
+    private static List<Integer> calculateTermDistances(List<String> terms, List<Integer> gtLines,
+                                                        Map<Integer, List<TextSpan>> lines,
+                                                        Map<Integer, List<String>> lineWords) {
+        // To compare preserving the sign
+        Comparator<Integer> absComparer = Comparator.comparing(Math::abs);
+        return terms.stream()
+                .map(t -> streamMap(lines)
+                        .filter((i, ws) -> !t.isEmpty() && lineWords.get(i).contains(t))
+                        .combine((i, ws) -> gtLines.stream()
+                                .map(j -> i - j)
+                                .min(absComparer).orElseThrow())
+                        .min(absComparer))
+                .flatMap(Optional::stream)
+                .sorted(absComparer)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,184 @@
+package edu.utdallas.seers.lasso.identifier;
+
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compiles a sample with debug information and compares the identifiers read from its class files
+ * with the identifiers read from its source.
+ */
+public class BytecodeIdentifierExtractorTest {
+
+    private static final String SOURCE = "package p;\n" +
+            "import java.util.List;\n" +
+            "import java.util.function.Function;\n" +
+            "public class Sample {\n" +
+            "    static final int LIMIT;\n" +
+            "    private final int size;\n" +
+            "    private int count;\n" +
+            "    static {\n" +
+            "        int staticLocal = 3;\n" +
+            "        LIMIT = staticLocal * 2;\n" +
+            "    }\n" +
+            "    {\n" +
+            "        int initLocal = 1;\n" +
+            "        count = initLocal;\n" +
+            "    }\n" +
+            "    public Sample(int size) {\n" +
+            "        int doubled = size * 2;\n" +
+            "        this.size = doubled;\n" +
+            "    }\n" +
+            "    public Sample() {\n" +
+            "        this(LIMIT);\n" +
+            "    }\n" +
+            "    public int sum(List<String> values, int start) {\n" +
+            "        int total = start;\n" +
+            "        for (int i = 0; i < count; i++) {\n" +
+            "            total += i;\n" +
+            "        }\n" +
+            "        for (String value : values) {\n" +
+            "            int length = value.length();\n" +
+            "            total += length;\n" +
+            "        }\n" +
+            "        Function<Integer, Integer> add = x -> {\n" +
+            "            int shifted = x + size;\n" +
+            "            return shifted;\n" +
+            "        };\n" +
+            "        return add.apply(total);\n" +
+            "    }\n" +
+            "    public int sum(int other) {\n" +
+            "        return other + size;\n" +
+            "    }\n" +
+            "    int parse(String text) {\n" +
+            "        try {\n" +
+            "            int parsed = Integer.parseInt(text);\n" +
+            "            return parsed;\n" +
+            "        } catch (NumberFormatException error) {\n" +
+            "            return -1;\n" +
+            "        }\n" +
+            "    }\n" +
+            "    static class Nested {\n" +
+            "        String name;\n" +
+            "        Nested(String name) {\n" +
+            "            this.name = name;\n" +
+            "        }\n" +
+            "        static String describe(Nested nested) {\n" +
+            "            String prefix = \"nested \";\n" +
+            "            return prefix + nested.name;\n" +
+            "        }\n" +
+            "    }\n" +
+            "    static class Defaults {\n" +
+            "        int value = 5;\n" +
+            "    }\n" +
+            "    enum Kind {\n" +
+            "        SMALL(1), LARGE(2);\n" +
+            "        private final int weight;\n" +
+            "        Kind(int weight) {\n" +
+            "            this.weight = weight;\n" +
+            "        }\n" +
+            "        int scaled(int factor) {\n" +
+            "            int result = weight * factor;\n" +
+            "            return result;\n" +
+            "        }\n" +
+            "    }\n" +
+            "    interface Shape {\n" +
+            "        int SIDES = 4;\n" +
+            "        double area(double scale);\n" +
+            "    }\n" +
+            "    @interface Marker {\n" +
+            "        String value() default \"x\";\n" +
+            "    }\n" +
+            "}\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameAsSource() throws IOException {
+        var sourceFile = folder.newFolder("src", "p").toPath().resolve("Sample.java");
+        Files.writeString(sourceFile, SOURCE);
+        var jar = compile(sourceFile);
+
+        var fromSource = toSet(new IdentifierExtractor(false).visit(sourceFile));
+        var fromBytecode = toSet(new BytecodeIdentifierExtractor(false).extract(List.of(jar)).stream());
+
+        var sample = new Identifier("p").addType("Sample");
+        // The sample covers constructors, initializers and locals of the local variable table
+        assertThat(fromSource).contains(
+                Attribute.newMethod(sample, "<init>"),
+                Attribute.newMethodParameter(sample, "<init>", "size"),
+                Attribute.newLocal(sample, "<init>", "doubled"),
+                Attribute.newLocal(sample, "<init>", "initLocal"),
+                Attribute.newLocal(sample, "<clinit>", "staticLocal"),
+                Attribute.newLocal(sample, "sum", "shifted"),
+                Attribute.newLocal(sample, "sum", "value"),
+                Attribute.newMethodParameter(sample.addType("Shape"), "area", "scale")
+        );
+
+        // Known differences, documented in BytecodeIdentifierExtractor
+        var expected = new HashSet<>(fromSource);
+        expected.add(Attribute.newMethod(sample.addType("Defaults"), "<init>"));
+        expected.add(Attribute.newLocal(sample, "parse", "error"));
+
+        assertThat(fromBytecode).isEqualTo(expected);
+    }
+
+    @Test
+    public void testFilter() throws IOException {
+        var sourceFile = folder.newFolder("src", "p").toPath().resolve("Sample.java");
+        Files.writeString(sourceFile, SOURCE);
+        var jar = compile(sourceFile);
+
+        var fromSource = toSet(new IdentifierExtractor(true).visit(sourceFile));
+        var fromBytecode = toSet(new BytecodeIdentifierExtractor(true).extract(List.of(jar)).stream());
+
+        var expected = new HashSet<>(fromSource);
+        expected.add(Attribute.newMethod(new Identifier("p").addType("Sample").addType("Defaults"), "<init>"));
+
+        assertThat(fromBytecode).isEqualTo(expected);
+    }
+
+    /**
+     * Compiles with the local variable table and the names of the parameters of abstract methods.
+     *
+     * @return A jar with the classes.
+     */
+    private Path compile(Path sourceFile) throws IOException {
+        var classesDir = folder.newFolder("classes").toPath();
+        int status = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-g", "-parameters", "-d", classesDir.toString(), sourceFile.toString());
+        assertThat(status).isZero();
+
+        var jar = folder.getRoot().toPath().resolve("sample.jar");
+        try (var output = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> classes = Files.walk(classesDir)) {
+            for (Path file : classes.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                output.putNextEntry(new JarEntry(classesDir.relativize(file).toString().replace('\\', '/')));
+                output.write(Files.readAllBytes(file));
+                output.closeEntry();
+            }
+        }
+
+        return jar;
+    }
+
+    private static Set<Attribute> toSet(Stream<Attribute> attributes) {
+        return attributes.collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,164 @@
+package edu.utdallas.seers.lasso.identifier;
+
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the lookups of {@link IdentifierDictionary} with maps of the same attributes, which is
+ * how identifiers were looked up before, on random names that include non-ASCII characters.
+ */
+public class IdentifierDictionaryTest {
+
+    private static final String[] ALPHABET = {"a", "b", "c", "#", ".", "é", "𝒳"};
+    private static final Comparator<String> CODE_POINT_ORDER =
+            (a, b) -> Arrays.compare(a.codePoints().toArray(), b.codePoints().toArray());
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    private Map<String, Set<Attribute>> attributesByName;
+    private Map<String, List<String>> texts;
+    private IdentifierDictionary dictionary;
+
+    @Before
+    public void setUp() throws IOException {
+        var types = Attribute.Type.values();
+        var attributes = new HashSet<Attribute>();
+        for (int i = 0; i < 2_000; i++) {
+            attributes.add(new Attribute(types[random.nextInt(types.length)], randomName(1, 8)));
+        }
+
+        attributesByName = attributes.stream()
+                .collect(Collectors.groupingBy(Attribute::getName, Collectors.toSet()));
+        texts = new HashMap<>();
+        for (String name : attributesByName.keySet()) {
+            // Some names have no text
+            texts.put(name, Arrays.stream(name.split("[#.]"))
+                    .filter(c -> !c.isEmpty())
+                    .limit(random.nextInt(3))
+                    .collect(Collectors.toList()));
+        }
+
+        var file = folder.getRoot().toPath().resolve("identifiers.dict");
+        IdentifierDictionary.write(file, attributes, texts);
+        dictionary = IdentifierDictionary.open(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dictionary.close();
+    }
+
+    @Test
+    public void testExactLookup() {
+        assertThat(dictionary.size()).isEqualTo(attributesByName.size());
+        assertThat(dictionary.getAttributeCount())
+                .isEqualTo(attributesByName.values().stream().mapToInt(Set::size).sum());
+
+        attributesByName.forEach((name, attributes) -> {
+            assertThat(dictionary.contains(name)).isTrue();
+            assertThat(dictionary.lookUp(name)).containsExactlyInAnyOrderElementsOf(attributes);
+            assertThat(dictionary.findPreprocessedText(name)).isEqualTo(texts.get(name));
+
+            for (Attribute attribute : attributes) {
+                assertThat(dictionary.getAttribute(dictionary.getOrdinal(attribute))).isEqualTo(attribute);
+            }
+        });
+
+        for (int i = 0; i < 1_000; i++) {
+            var name = randomName(0, 9);
+            if (!attributesByName.containsKey(name)) {
+                assertThat(dictionary.contains(name)).as(name).isFalse();
+                assertThat(dictionary.lookUp(name)).as(name).isEmpty();
+                assertThat(dictionary.findPreprocessedText(name)).as(name).isNull();
+            }
+        }
+    }
+
+    @Test
+    public void testPrefixLookup() {
+        for (int i = 0; i < 500; i++) {
+            var prefix = randomName(0, 3);
+
+            assertThat(dictionary.findByPrefix(prefix))
+                    .as(prefix)
+                    .isEqualTo(attributesByName.keySet().stream()
+                            .filter(n -> n.startsWith(prefix))
+                            .sorted(CODE_POINT_ORDER)
+                            .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testEditDistanceLookup() {
+        for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+            for (int i = 0; i < 200; i++) {
+                var name = randomName(0, 9);
+                int edits = maxEdits;
+
+                assertThat(dictionary.findWithinEditDistance(name, edits))
+                        .as(name + " " + edits)
+                        .isEqualTo(attributesByName.keySet().stream()
+                                .filter(n -> editDistance(n, name) <= edits)
+                                .sorted(CODE_POINT_ORDER)
+                                .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        var file = folder.getRoot().toPath().resolve("empty.dict");
+        IdentifierDictionary.write(file, Collections.emptySet(), Collections.emptyMap());
+
+        try (var empty = IdentifierDictionary.open(file)) {
+            assertThat(empty.size()).isZero();
+            assertThat(empty.lookUp("a")).isEmpty();
+            assertThat(empty.findByPrefix("")).isEmpty();
+            assertThat(empty.findWithinEditDistance("a", 1)).isEmpty();
+        }
+    }
+
+    private String randomName(int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        var builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Levenshtein distance over code points.
+     */
+    private static int editDistance(String a, String b) {
+        int[] x = a.codePoints().toArray();
+        int[] y = b.codePoints().toArray();
+        int[] row = new int[y.length + 1];
+        Arrays.setAll(row, j -> j);
+
+        for (int i = 1; i <= x.length; i++) {
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= y.length; j++) {
+                int above = row[j];
+                row[j] = Math.min(diagonal + (x[i - 1] == y[j - 1] ? 0 : 1), Math.min(above + 1, row[j - 1] + 1));
+                diagonal = above;
+            }
+        }
+
+        return row[y.length];
+    }
+}
@@ -0,0 +1,70 @@
+package edu.utdallas.seers.lasso.identifier;
+
+import edu.utdallas.seers.lasso.data.entity.variables.Attribute;
+import edu.utdallas.seers.parameter.Options;
+import edu.utdallas.seers.retrieval.SimpleRetrievalResult;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.apache.lucene.index.IndexableField;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdentifierIndexBuilderTest {
+
+    private static final String PROJECT = "joda_time-2.10.3";
+    private static final String EXPERIMENT = "test";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Attribute> attributes = List.of(
+            Attribute.newField(new Identifier("org.joda.time").addType("DateTime"), "iMillis"),
+            Attribute.newMethod(new Identifier("org.joda.time").addType("DateTime"), "getMillis"),
+            Attribute.newField(new Identifier("org.joda.time").addType("Interval"), "iStartMillis")
+    );
+
+    @Test
+    public void testFailedBuildIsNotReused() throws ArgumentParserException {
+        new Options.ArgumentBuilder(IdentifierIndexBuilderTest.class.getName())
+                .addCachePathOption()
+                .build()
+                .parseArgs(new String[]{"-c", folder.getRoot().toString()});
+
+        var failingBuilder = new IdentifierIndexBuilder(EXPERIMENT) {
+            @Override
+            protected Optional<Iterable<IndexableField>> generateFields(Attribute item, String indexName) {
+                throw new IllegalStateException("Indexing failed");
+            }
+        };
+        assertThatThrownBy(() -> failingBuilder.buildIndex(PROJECT, attributes.stream()))
+                .isInstanceOf(IllegalStateException.class);
+
+        var index = (IdentifierIndex) new IdentifierIndexBuilder(EXPERIMENT).buildIndex(PROJECT, attributes.stream());
+        assertSearchable(index);
+
+        // The complete index is reused without its items
+        var reused = (IdentifierIndex) new IdentifierIndexBuilder(EXPERIMENT).buildIndex(PROJECT, Stream.empty());
+        assertSearchable(reused);
+    }
+
+    private void assertSearchable(IdentifierIndex index) {
+        assertThat(index.getDictionary().getAttributeCount()).isEqualTo(attributes.size());
+
+        for (Attribute attribute : attributes) {
+            var text = String.join(" ", index.findPreprocessedText(attribute.getName()));
+
+            assertThat(index.search(text, IdentifierIndexBuilder.TEXT_FIELD_NAME).stream()
+                    .map(SimpleRetrievalResult::getResult)
+                    .collect(Collectors.toList()))
+                    .contains(attribute);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import org.jooq.lambda.tuple.Tuple4;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+public class BaselineCorpusTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    /**
+     * Few files and terms so that most of them are written as references.
+     */
+    private List<BaselineIndexBuilder.TextBlock> randomBlocks(int count) {
+        var blocks = new ArrayList<BaselineIndexBuilder.TextBlock>();
+
+        for (int i = 0; i < count; i++) {
+            var fileName = "org/example/File" + random.nextInt(5) + ".java";
+            int lineBegin = random.nextInt(1000) + 1;
+            int lineEnd = lineBegin + random.nextInt(50);
+            var text = IntStream.range(0, random.nextInt(20))
+                    .mapToObj(j -> "term" + random.nextInt(30))
+                    .collect(Collectors.joining(" "));
+
+            blocks.add(new BaselineIndexBuilder.TextBlock(fileName, lineBegin, lineEnd, text));
+        }
+
+        return blocks;
+    }
+
+    private static List<Tuple4<String, Integer, Integer, String>> toTuples(Stream<BaselineIndexBuilder.TextBlock> blocks) {
+        return blocks.map(b -> tuple(b.fileName, b.lineBegin, b.lineEnd, b.text))
+                .collect(Collectors.toList());
+    }
+
+    private static int countOccurrences(byte[] bytes, String value) {
+        var pattern = value.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        var file = folder.getRoot().toPath().resolve("corpus").resolve("project_METHOD.bin");
+        var blocks = randomBlocks(500);
+        // Blocks without text and with a repeated term
+        blocks.add(new BaselineIndexBuilder.TextBlock("org/example/Empty.java", 1, 1, ""));
+        blocks.add(new BaselineIndexBuilder.TextBlock("org/example/File0.java", 3, 9, "term1 term1 nuevo"));
+
+        BaselineCorpus.write(file, blocks.stream());
+
+        try (var read = BaselineCorpus.read(file)) {
+            assertThat(toTuples(read)).isEqualTo(toTuples(blocks.stream()));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        var file = folder.getRoot().toPath().resolve("empty.bin");
+
+        BaselineCorpus.write(file, Stream.empty());
+
+        try (var read = BaselineCorpus.read(file)) {
+            assertThat(read).isEmpty();
+        }
+    }
+
+    @Test
+    public void testNamesWrittenOnce() throws IOException {
+        var file = folder.getRoot().toPath().resolve("references.bin");
+        var blocks = List.of(
+                new BaselineIndexBuilder.TextBlock("org/example/Repeated.java", 1, 5, "alpha beta alpha"),
+                new BaselineIndexBuilder.TextBlock("org/example/Other.java", 2, 2, "beta"),
+                new BaselineIndexBuilder.TextBlock("org/example/Repeated.java", 7, 8, "gamma alpha")
+        );
+
+        BaselineCorpus.write(file, blocks.stream());
+        var bytes = Files.readAllBytes(file);
+
+        assertThat(countOccurrences(bytes, "org/example/Repeated.java")).isEqualTo(1);
+        assertThat(countOccurrences(bytes, "alpha")).isEqualTo(1);
+        assertThat(countOccurrences(bytes, "beta")).isEqualTo(1);
+
+        try (var read = BaselineCorpus.read(file)) {
+            assertThat(toTuples(read)).isEqualTo(toTuples(blocks.stream()));
+        }
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        var file = folder.getRoot().toPath().resolve("corrupt.bin");
+        BaselineCorpus.write(file, randomBlocks(50).stream());
+
+        var bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> BaselineCorpus.read(file))
+                .isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    public void testCloseBeforeEnd() {
+        var file = folder.getRoot().toPath().resolve("partial.bin");
+        var blocks = randomBlocks(50);
+        BaselineCorpus.write(file, blocks.stream());
+
+        try (var read = BaselineCorpus.read(file)) {
+            assertThat(toTuples(read.limit(10))).isEqualTo(toTuples(blocks.stream().limit(10)));
+        }
+
+        try (var read = BaselineCorpus.read(file)) {
+            assertThat(read.count()).isEqualTo(blocks.size());
+        }
+    }
+
+    @Test
+    public void testReplacesExisting() {
+        var file = folder.getRoot().toPath().resolve("replaced.bin");
+        BaselineCorpus.write(file, randomBlocks(20).stream());
+        var blocks = randomBlocks(30);
+
+        BaselineCorpus.write(file, blocks.stream());
+
+        try (var read = BaselineCorpus.read(file)) {
+            assertThat(toTuples(read)).isEqualTo(toTuples(blocks.stream()));
+        }
+        // No temporary files are left behind
+        assertThat(folder.getRoot().list()).containsExactly("replaced.bin");
+    }
+}
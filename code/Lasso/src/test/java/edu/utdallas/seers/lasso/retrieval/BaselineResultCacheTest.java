@@ -0,0 +1,155 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parameter.Options;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Checks that the baseline results shared by all indexes of a coordinator are the same as those of
+ * an uncached search, on the constraints of a bundled system.
+ */
+public class BaselineResultCacheTest {
+
+    private static final String SYSTEM = "joda_time-2.10.3";
+    private static final Path SYSTEM_DIR = Path.of("..", "..", "data", "target-system-data", SYSTEM);
+    private static final Path CONSTRAINTS_FILE = Path.of("..", "..", "data", "constraints.csv");
+    private static final LassoScenarioID<BaselineConfig> BASELINE_KEY = LassoScenarioID.baseline(SYSTEM,
+            BaselineIndexBuilder.Type.BM25, BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1);
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path dataDir;
+    private static List<PatternEntry> constraints;
+
+    /**
+     * Only the ground truth files of the constraints are extracted, since detecting the patterns
+     * of the whole system takes minutes.
+     */
+    @BeforeClass
+    public static void setUp() throws IOException, ArgumentParserException {
+        constraints = new ConstraintLoader().loadConstraints(CONSTRAINTS_FILE)
+                .filter(c -> c.getSystem().equals(SYSTEM))
+                .collect(Collectors.toList());
+        var gtFiles = constraints.stream()
+                .map(c -> c.getpTrus()[0].getFile())
+                .collect(Collectors.toSet());
+
+        dataDir = folder.newFolder("data").toPath();
+        var systemDir = dataDir.resolve(SYSTEM);
+        Files.createDirectories(systemDir);
+        Files.copy(SYSTEM_DIR.resolve("exclude.txt"), systemDir.resolve("exclude.txt"));
+
+        try (var zip = FileSystems.newFileSystem(SYSTEM_DIR.resolve("sources.zip"), null);
+             Stream<Path> walk = Files.walk(zip.getPath("/"))) {
+            var zipRoot = zip.getPath("/");
+            var entries = walk.filter(p -> gtFiles.stream().anyMatch(p.toString()::endsWith))
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .collect(Collectors.toList());
+            for (Path entry : entries) {
+                var target = systemDir.resolve(zipRoot.relativize(entry).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(entry, target);
+            }
+        }
+
+        new Options.ArgumentBuilder(BaselineResultCacheTest.class.getName())
+                .addCachePathOption()
+                .build()
+                .parseArgs(new String[]{"-c", folder.newFolder("cache").toString()});
+    }
+
+    /**
+     * Result collections have no equality, so they are compared by everything that consumers
+     * read from them.
+     */
+    private static List<Object> describe(LassoResultCollection results) {
+        return List.of(
+                results.getQuery().getID(),
+                results.getQueryTerms(),
+                results.getResultCount(),
+                results.getFalseNegativeCount(),
+                results.getTruePositiveRanks(),
+                results.getAverageResultSize(),
+                results.clusteredItems()
+                        .map(g -> tuple(g.rank, g.lines, g.results.stream()
+                                .map(r -> tuple(r.getResult().getID(), r.getScore(), r.getRank()))
+                                .collect(Collectors.toList())))
+                        .collect(Collectors.toList())
+        );
+    }
+
+    private static List<List<Object>> describe(List<LassoResultCollection> results) {
+        return results.stream()
+                .map(BaselineResultCacheTest::describe)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSameAsUncachedSearch() {
+        var coordinator = new IndexCoordinator();
+        var cached = coordinator.createBaselineIndex(dataDir, BASELINE_KEY).search(constraints);
+        var cachedBefore = describe(cached);
+
+        assertThat(constraints).isNotEmpty();
+        assertThat(cached).anySatisfy(c -> assertThat(c.getResultCount()).isPositive());
+
+        // Other indexes of the same coordinator share the results
+        var shared = coordinator.createBaselineIndex(dataDir, BASELINE_KEY).search(constraints);
+        for (int i = 0; i < cached.size(); i++) {
+            assertThat(shared.get(i)).isSameAs(cached.get(i));
+        }
+
+        // Lasso consumes the shared baseline results
+        var lassoIndex = coordinator.createIndex(dataDir,
+                LassoScenarioID.lassoMethod(SYSTEM, Collections.emptyMap(), BaselineIndexBuilder.Type.BM25));
+        constraints.forEach(lassoIndex::search);
+        assertThat(coordinator.getBaselineResultStats().hitCount()).isGreaterThanOrEqualTo(2L * constraints.size());
+
+        var uncachedIndex = new IndexCoordinator().createBaselineIndex(dataDir, BASELINE_KEY);
+        uncachedIndex.setResultCache(null);
+        var uncached = uncachedIndex.search(constraints);
+
+        assertThat(describe(cached))
+                .as("cached results are not modified")
+                .isEqualTo(cachedBefore)
+                .isEqualTo(describe(uncached));
+    }
+
+    @Test
+    public void testUnmodifiable() {
+        var results = new IndexCoordinator().createBaselineIndex(dataDir, BASELINE_KEY)
+                .search(constraints).stream()
+                .filter(c -> c.getResultCount() > 0)
+                .findFirst()
+                .orElseThrow();
+        var group = results.clusteredItems().findFirst().orElseThrow();
+
+        assertThatThrownBy(() -> results.getTruePositiveRanks().add(1))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> results.getQueryTerms().add("term"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> group.results.remove(0))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> group.lines.add("File.java:1"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,174 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parameter.Options;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Compares batch searches, with concurrent queries and parallel segment search, with searching
+ * the constraints of a bundled system one by one in a single thread.
+ */
+public class BatchSearchTest {
+
+    private static final String SYSTEM = "joda_time-2.10.3";
+    private static final Path SYSTEM_DIR = Path.of("..", "..", "data", "target-system-data", SYSTEM);
+    private static final Path CONSTRAINTS_FILE = Path.of("..", "..", "data", "constraints.csv");
+    private static final LassoScenarioID<BaselineConfig> BASELINE_KEY = LassoScenarioID.baseline(SYSTEM,
+            BaselineIndexBuilder.Type.BM25, BaselineIndexBuilder.Input.CONTEXT, BaselineIndexBuilder.Output.METHOD, -1);
+    private static final LassoScenarioID<LassoConfig> LASSO_KEY =
+            LassoScenarioID.lassoMethod(SYSTEM, Collections.emptyMap(), BaselineIndexBuilder.Type.BM25);
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path dataDir;
+    private static Path cachePath;
+    private static List<PatternEntry> constraints;
+
+    /**
+     * Only the ground truth files of the constraints are extracted, since detecting the patterns
+     * of the whole system takes minutes.
+     */
+    @BeforeClass
+    public static void setUp() throws IOException {
+        constraints = new ConstraintLoader().loadConstraints(CONSTRAINTS_FILE)
+                .filter(c -> c.getSystem().equals(SYSTEM))
+                .collect(Collectors.toList());
+        var gtFiles = constraints.stream()
+                .map(c -> c.getpTrus()[0].getFile())
+                .collect(Collectors.toSet());
+
+        dataDir = folder.newFolder("data").toPath();
+        var systemDir = dataDir.resolve(SYSTEM);
+        Files.createDirectories(systemDir);
+        Files.copy(SYSTEM_DIR.resolve("exclude.txt"), systemDir.resolve("exclude.txt"));
+
+        try (var zip = FileSystems.newFileSystem(SYSTEM_DIR.resolve("sources.zip"), null);
+             Stream<Path> walk = Files.walk(zip.getPath("/"))) {
+            var zipRoot = zip.getPath("/");
+            var entries = walk.filter(p -> gtFiles.stream().anyMatch(p.toString()::endsWith))
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .collect(Collectors.toList());
+            for (Path entry : entries) {
+                var target = systemDir.resolve(zipRoot.relativize(entry).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(entry, target);
+            }
+        }
+
+        cachePath = folder.newFolder("cache").toPath();
+    }
+
+    private static void setThreads(int searchThreads, int queryThreads) throws ArgumentParserException {
+        new Options.ArgumentBuilder(BatchSearchTest.class.getName())
+                .addCachePathOption()
+                .addSearchThreadsOption()
+                .addQueryThreadsOption()
+                .build()
+                .parseArgs(new String[]{"-c", cachePath.toString(),
+                        "-S", String.valueOf(searchThreads), "-Q", String.valueOf(queryThreads)});
+    }
+
+    /**
+     * Options are global, so the threads of other tests are not affected.
+     */
+    @After
+    public void resetThreads() throws ArgumentParserException {
+        setThreads(1, 1);
+    }
+
+    private static List<Object> describe(LassoResultCollection results) {
+        return List.of(
+                results.getQuery().getID(),
+                results.getTruePositiveRanks(),
+                results.items()
+                        .map(r -> tuple(r.getResult().getID(), r.getScore(), r.getRank()))
+                        .collect(Collectors.toList())
+        );
+    }
+
+    private static List<List<Object>> describe(List<LassoResultCollection> results) {
+        return results.stream()
+                .map(BatchSearchTest::describe)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The queries are shuffled and some are repeated, so that the results can only be in the same
+     * order by following the order of the queries.
+     */
+    private static List<PatternEntry> createQueries() {
+        var queries = new ArrayList<>(constraints);
+        queries.addAll(constraints.subList(0, constraints.size() / 2));
+        Collections.shuffle(queries, new Random(42));
+
+        return queries;
+    }
+
+    private static void assertSameAsSingleSearches(Function<IndexCoordinator, Function<PatternEntry, LassoResultCollection>> single,
+                                                   Function<IndexCoordinator, Function<List<PatternEntry>, List<LassoResultCollection>>> batch)
+            throws ArgumentParserException {
+        var queries = createQueries();
+
+        setThreads(1, 1);
+        var search = single.apply(new IndexCoordinator());
+        var expected = queries.stream()
+                .map(q -> describe(search.apply(q)))
+                .collect(Collectors.toList());
+
+        // The searchers of the indexes are created with the search executor
+        setThreads(4, 4);
+        var results = batch.apply(new IndexCoordinator()).apply(queries);
+
+        assertThat(queries).isNotEmpty();
+        assertThat(results.stream().map(r -> r.getQuery().getID()))
+                .containsExactlyElementsOf(queries.stream().map(PatternEntry::getID).collect(Collectors.toList()));
+        assertThat(describe(results)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testLassoIndex() throws ArgumentParserException {
+        assertSameAsSingleSearches(
+                c -> c.createIndex(dataDir, LASSO_KEY)::search,
+                c -> c.createIndex(dataDir, LASSO_KEY)::search
+        );
+    }
+
+    /**
+     * Without the result cache, so that every query is searched.
+     */
+    @Test
+    public void testBaselineIndex() throws ArgumentParserException {
+        Function<IndexCoordinator, BaselineIndex> createIndex = c -> {
+            var index = c.createBaselineIndex(dataDir, BASELINE_KEY);
+            index.setResultCache(null);
+            return index;
+        };
+
+        assertSameAsSingleSearches(
+                c -> createIndex.apply(c)::search,
+                c -> createIndex.apply(c)::search
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parameter.Options;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EvaluationCacheTest {
+
+    private static final Path CONSTRAINTS_FILE = Path.of("..", "..", "data", "constraints.csv");
+    private static final String FINGERPRINT = "index-1";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private List<PatternEntry> constraints;
+    private LassoScenarioID<LassoConfig> key;
+
+    @Before
+    public void setUp() throws ArgumentParserException {
+        new Options.ArgumentBuilder(EvaluationCacheTest.class.getName())
+                .addCachePathOption()
+                .build()
+                .parseArgs(new String[]{"-c", folder.getRoot().toString()});
+
+        constraints = new ConstraintLoader().loadConstraints(CONSTRAINTS_FILE)
+                .limit(3)
+                .collect(Collectors.toList());
+        assertThat(constraints).hasSize(3);
+
+        key = LassoScenarioID.lassoMethod(constraints.get(0).getSystem(), Collections.emptyMap(),
+                BaselineIndexBuilder.Type.BM25);
+    }
+
+    private LassoEvaluation createEvaluation(PatternEntry constraint, int resultCount, int falseNegativeCount,
+                                             List<Integer> truePositiveRanks, Integer gtMethodRank,
+                                             int gtGroupSize, List<Integer> gtMethodESCRanks) {
+        var collection = new LassoResultCollection(key, constraint, List.of("check", "value"), resultCount,
+                falseNegativeCount, truePositiveRanks, 2.5f);
+
+        return new LassoEvaluation(collection, 4, 2, 7, gtMethodRank, gtGroupSize, gtMethodESCRanks);
+    }
+
+    /**
+     * One evaluation with true positives and one without, whose ground truth method rank is
+     * missing.
+     */
+    private List<LassoEvaluation> createEvaluations() {
+        return List.of(
+                createEvaluation(constraints.get(0), 40, 1, List.of(3, 12), 2, 3, List.of(3, 5, 12)),
+                createEvaluation(constraints.get(1), 15, 1, Collections.emptyList(), null, -1,
+                        Collections.emptyList()),
+                createEvaluation(constraints.get(2), 300, 0, List.of(1), 1, 1, List.of(1))
+        );
+    }
+
+    private static List<Object> toMeasures(LassoEvaluation evaluation) {
+        var results = evaluation.getResults();
+
+        return List.of(
+                evaluation.getQuery().getID(),
+                evaluation.getTotalResults(),
+                evaluation.getRank(),
+                evaluation.getReciprocalRank(),
+                evaluation.getTruePositiveCount(),
+                evaluation.getPrecision(),
+                evaluation.getRecall(),
+                evaluation.getF1(),
+                evaluation.getAveragePrecision(),
+                evaluation.getAverageResultSize(),
+                results.getFalseNegativeCount(),
+                results.getTruePositiveRanks(),
+                results.getQueryTerms(),
+                evaluation.fullPatternMatches,
+                evaluation.fullQueryMatches,
+                evaluation.partialQueryMatches,
+                String.valueOf(evaluation.gtMethodRank),
+                evaluation.gtGroupSize,
+                evaluation.gtMethodESCRanks
+        );
+    }
+
+    private void store(List<LassoEvaluation> evaluations, String fingerprint) {
+        var cache = EvaluationCache.open(key, fingerprint);
+        evaluations.forEach(cache::put);
+        cache.save();
+    }
+
+    private static PatternEntry changeText(PatternEntry constraint) {
+        return new PatternEntry(constraint.getConstraintId(), constraint.getpTrus(), constraint.getInputs(),
+                constraint.getSystem(), constraint.getcType(), constraint.getpType(), constraint.getContext(),
+                constraint.getText() + " changed", constraint.getOperands(), constraint.consequence,
+                constraint.getExtra().orElse(null));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        var evaluations = createEvaluations();
+        store(evaluations, FINGERPRINT);
+
+        var cache = EvaluationCache.open(key, FINGERPRINT);
+
+        for (LassoEvaluation evaluation : evaluations) {
+            var restored = cache.get(evaluation.getQuery());
+
+            assertThat(restored).isPresent();
+            assertThat(toMeasures(restored.get())).isEqualTo(toMeasures(evaluation));
+        }
+    }
+
+    @Test
+    public void testChangedConstraint() {
+        store(createEvaluations(), FINGERPRINT);
+
+        var cache = EvaluationCache.open(key, FINGERPRINT);
+        var changed = changeText(constraints.get(0));
+
+        assertThat(EvaluationCache.hashContent(changed)).isNotEqualTo(EvaluationCache.hashContent(constraints.get(0)));
+        assertThat(cache.get(changed)).isEmpty();
+        assertThat(cache.get(constraints.get(1))).isPresent();
+    }
+
+    @Test
+    public void testChangedFingerprint() {
+        var evaluations = createEvaluations();
+        store(evaluations, FINGERPRINT);
+
+        var cache = EvaluationCache.open(key, "index-2");
+        for (PatternEntry constraint : constraints) {
+            assertThat(cache.get(constraint)).isEmpty();
+        }
+
+        // Saving with the new fingerprint replaces the old entries
+        cache.put(evaluations.get(0));
+        cache.save();
+
+        var reopened = EvaluationCache.open(key, "index-2");
+        assertThat(reopened.get(constraints.get(0))).isPresent();
+        assertThat(reopened.get(constraints.get(1))).isEmpty();
+        assertThat(EvaluationCache.open(key, FINGERPRINT).get(constraints.get(0))).isEmpty();
+    }
+
+    @Test
+    public void testNotSavedWithoutChanges() {
+        var cache = EvaluationCache.open(key, FINGERPRINT);
+        cache.save();
+
+        assertThat(folder.getRoot().toPath().resolve("evaluation-results")).doesNotExist();
+    }
+}
@@ -0,0 +1,161 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Searches random indexes with the default BM25 similarity through the readers shared by the
+ * coordinator.
+ */
+public class IndexCoordinatorTest {
+
+    private static final Path CONSTRAINTS_FILE = Path.of("..", "..", "data", "constraints.csv");
+    private static final Path INDEX_PATH = Path.of("index");
+    private static final List<String> FIELDS = Arrays.asList("OPERAND_1", "OPERAND_2", "window");
+
+    private final Random random = new Random(42);
+    private final Directory directory = new ByteBuffersDirectory();
+    private CompiledConstraint compiled;
+
+    @Before
+    public void setUp() {
+        compiled = CompiledConstraint.of(new ConstraintLoader().loadConstraints(CONSTRAINTS_FILE)
+                .findFirst()
+                .orElseThrow());
+    }
+
+    private String randomText(int length) {
+        return IntStream.range(0, length)
+                .mapToObj(i -> "t" + (int) Math.abs(random.nextGaussian() * 20))
+                .collect(Collectors.joining(" "));
+    }
+
+    private void addDocuments(int count) throws IOException {
+        try (var writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < count; i++) {
+                var document = new Document();
+                document.add(new StringField("id", "p" + i, Field.Store.YES));
+                for (String field : FIELDS) {
+                    if (random.nextInt(4) > 0) {
+                        document.add(new TextField(field, randomText(1 + random.nextInt(10)), Field.Store.NO));
+                    }
+                }
+                writer.addDocument(document);
+
+                // Several segments
+                if (i % 300 == 0) {
+                    writer.commit();
+                }
+            }
+        }
+    }
+
+    private List<String> describe(TopDocs topDocs) {
+        return Arrays.stream(topDocs.scoreDocs)
+                .map(d -> d.doc + ":" + d.score)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Compiled queries are run twice so that the second run uses the cached term states.
+     */
+    private void assertSameScores(IndexReader reader) throws IOException {
+        var searcher = new IndexSearcher(reader);
+
+        for (int i = 0; i < 200; i++) {
+            var field = FIELDS.get(random.nextInt(FIELDS.size()));
+            // Repeated terms and terms that are not in the index
+            var terms = Arrays.asList(randomText(random.nextInt(15)).split(" "));
+
+            var builder = new BooleanQuery.Builder();
+            for (String term : terms) {
+                builder.add(new TermQuery(new Term(field, term)), BooleanClause.Occur.SHOULD);
+            }
+            var expected = describe(searcher.search(builder.build(), Integer.MAX_VALUE));
+
+            for (int run = 0; run < 2; run++) {
+                var query = compiled.createQuery(reader, field, terms, BooleanClause.Occur.SHOULD);
+                assertThat(describe(searcher.search(query, Integer.MAX_VALUE))).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void testSameScores() throws IOException {
+        addDocuments(1_000);
+        var coordinator = new IndexCoordinator();
+
+        var reader = coordinator.openReader(INDEX_PATH, directory);
+        assertSameScores(reader);
+
+        // The term states of the previous reader must not be used for the new one
+        addDocuments(500);
+        var reopened = coordinator.openReader(INDEX_PATH, directory);
+        assertThat(reopened).isNotSameAs(reader);
+        assertSameScores(reopened);
+    }
+
+    @Test
+    public void testSharesReader() throws IOException {
+        addDocuments(100);
+        var coordinator = new IndexCoordinator();
+
+        var reader = coordinator.openReader(INDEX_PATH, directory);
+
+        assertThat(coordinator.openReader(INDEX_PATH, directory)).isSameAs(reader);
+        assertThat(reader.getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClosesReplacedReader() throws IOException {
+        addDocuments(100);
+        var coordinator = new IndexCoordinator();
+        var reader = coordinator.openReader(INDEX_PATH, directory);
+
+        addDocuments(100);
+        var reopened = coordinator.openReader(INDEX_PATH, directory);
+
+        assertThat(reader.getRefCount()).isZero();
+        assertThat(reopened.getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testKeepsReferencedReader() throws IOException {
+        addDocuments(100);
+        var coordinator = new IndexCoordinator();
+        var reader = coordinator.openReader(INDEX_PATH, directory);
+        reader.incRef();
+
+        addDocuments(100);
+        coordinator.openReader(INDEX_PATH, directory);
+
+        // Still usable by whoever holds it
+        assertThat(reader.getRefCount()).isEqualTo(1);
+        assertThat(new IndexSearcher(reader).count(new MatchAllDocsQuery())).isEqualTo(100);
+
+        reader.decRef();
+        assertThat(reader.getRefCount()).isZero();
+    }
+}
@@ -1,10 +1,8 @@
 package edu.utdallas.seers.lasso.retrieval;
 
-import com.github.javaparser.ast.stmt.Statement;
 import com.google.common.collect.Sets;
-import edu.utdallas.seers.lasso.ast.JavaTextExtractor;
+import edu.utdallas.seers.lasso.ast.DetectedPattern;
 import edu.utdallas.seers.lasso.ast.TextSpan;
-import edu.utdallas.seers.lasso.ast.matcher.PatternInstance;
 import edu.utdallas.seers.lasso.data.ConstraintLoader;
 import edu.utdallas.seers.lasso.data.entity.ASTPattern;
 import edu.utdallas.seers.lasso.data.entity.PatternEntry;
@@ -27,7 +25,6 @@ public class LassoIndexBuilderTest extends LassoIndexBuilder {
     private final List<PatternEntry> allConstraints;
     private final Set<String> gtFiles;
 
-    private Map<String, List<Statement>> blocks;
     private List<PatternEntry> foundConstraints;
     private List<Stats> stats;
 
@@ -120,42 +117,39 @@ public class LassoIndexBuilderTest extends LassoIndexBuilder {
 
     @Override
     public LassoIndex createIndex() {
-        this.blocks = new HashMap<>();
         foundConstraints = new ArrayList<>();
         stats = new ArrayList<>();
 
-        createDocuments()
-                .forEachOrdered(d -> {
-                });
+        try (var documents = createDocuments()) {
+            documents.forEachOrdered(d -> {
+            });
+        }
 
         return null;
     }
 
     @Override
-    protected Optional<List<Tuple2<Integer, Field>>> extractText(SpanIndex index, PatternInstance instance) {
-        var fileName = instance.match.getFileName();
+    protected Optional<List<Tuple2<Integer, Field>>> extractText(DetectedPattern detected) {
+        var fileName = detected.match.getFileName();
         if (!gtFiles.contains(fileName))
             return Optional.empty();
 
         var matches = allConstraints.stream()
-                .filter(c -> findGTFile(c).equals(fileName) && matchesPattern(c, instance.match))
+                .filter(c -> findGTFile(c).equals(fileName) && matchesPattern(c, detected.match))
                 .collect(Collectors.toList());
 
         foundConstraints.addAll(matches);
         allConstraints.removeAll(matches);
 
         if (!matches.isEmpty()) {
-            var blocksForConstraint = findBlockForPattern(instance.matchedNode, null);
-            if (!blocksForConstraint.isEmpty()) {
+            var blockTexts = detected.getBlockSpans();
+            if (!blockTexts.isEmpty()) {
                 stats.addAll(matches.stream()
-                        .map(c -> new Stats(c, blocksForConstraint, preprocessor, extractor))
+                        .map(c -> new Stats(c, blockTexts, preprocessor))
                         .collect(Collectors.toList())
                 );
 
-                blocksForConstraint.forEach(s -> {
-                    var texts = extractor.extractFromNode(s).collect(Collectors.toList());
-                    System.out.println(texts);
-                });
+                System.out.println(blockTexts);
             }
         }
 
@@ -171,12 +165,9 @@ public class LassoIndexBuilderTest extends LassoIndexBuilder {
         private final Map<String, Float> consequenceMatches;
         private final Map<String, Float> opMatches;
 
-        public Stats(PatternEntry constraint, List<Statement> blocks, TextPreprocessor preprocessor, JavaTextExtractor extractor) {
+        public Stats(PatternEntry constraint, List<TextSpan> blockTexts, TextPreprocessor preprocessor) {
             this.constraint = constraint;
             this.preprocessor = preprocessor;
-            var blockTexts = blocks.stream()
-                    .flatMap(extractor::extractFromNode)
-                    .collect(Collectors.toList());
             textMatches = calculateMatches(constraint.getText(), blockTexts);
             contextMatches = calculateMatches(constraint.getContext(), blockTexts);
             consequenceMatches = calculateMatches(constraint.consequence, blockTexts);
@@ -0,0 +1,225 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import com.google.common.collect.ImmutableMap;
+import edu.utdallas.seers.lasso.data.ConstraintLoader;
+import edu.utdallas.seers.lasso.data.entity.PatternEntry;
+import edu.utdallas.seers.parameter.Options;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+/**
+ * Compares the results of an index split by source root with the results of a single index, on
+ * the constraints of a bundled system.
+ */
+public class LassoIndexShardingTest {
+
+    private static final String SYSTEM = "joda_time-2.10.3";
+    private static final Path SYSTEM_DIR = Path.of("..", "..", "data", "target-system-data", SYSTEM);
+    private static final Path CONSTRAINTS_FILE = Path.of("..", "..", "data", "constraints.csv");
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path dataDir;
+    private static Path cachePath;
+    private static List<PatternEntry> constraints;
+
+    /**
+     * Only the ground truth files of the constraints and the examples are extracted, since
+     * detecting the patterns of the whole system takes minutes.
+     */
+    @BeforeClass
+    public static void setUp() throws IOException, ArgumentParserException {
+        constraints = new ConstraintLoader().loadConstraints(CONSTRAINTS_FILE)
+                .filter(c -> c.getSystem().equals(SYSTEM))
+                .collect(Collectors.toList());
+        var gtFiles = constraints.stream()
+                .map(c -> c.getpTrus()[0].getFile())
+                .collect(Collectors.toSet());
+
+        dataDir = folder.newFolder("data").toPath();
+        var systemDir = dataDir.resolve(SYSTEM);
+        Files.createDirectories(systemDir);
+        Files.copy(SYSTEM_DIR.resolve("exclude.txt"), systemDir.resolve("exclude.txt"));
+
+        try (var zip = FileSystems.newFileSystem(SYSTEM_DIR.resolve("sources.zip"), null);
+             Stream<Path> walk = Files.walk(zip.getPath("/"))) {
+            var zipRoot = zip.getPath("/");
+            var entries = walk.filter(p -> p.toString().startsWith("/sources/src/example/") ||
+                    gtFiles.stream().anyMatch(p.toString()::endsWith))
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .collect(Collectors.toList());
+            for (Path entry : entries) {
+                var target = systemDir.resolve(zipRoot.relativize(entry).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(entry, target);
+            }
+        }
+
+        cachePath = folder.newFolder("cache").toPath();
+    }
+
+    private static void setOptions(Path cachePath, boolean inMemoryIndexes) throws ArgumentParserException {
+        var args = new ArrayList<>(List.of("-c", cachePath.toString()));
+        if (inMemoryIndexes) {
+            args.add("--in-memory-indexes");
+        }
+
+        new Options.ArgumentBuilder(LassoIndexShardingTest.class.getName())
+                .addCachePathOption()
+                .addInMemoryIndexesOption()
+                .build()
+                .parseArgs(args.toArray(new String[0]));
+    }
+
+    private static LassoScenarioID<LassoConfig> createKey(LassoConfig.Sharding sharding) {
+        return createKey(sharding, LassoConfig.Engine.LUCENE);
+    }
+
+    private static LassoScenarioID<LassoConfig> createKey(LassoConfig.Sharding sharding, LassoConfig.Engine engine) {
+        var weights = ImmutableMap.<LassoScore.Component, Float>builder()
+                .put(LassoScore.Component.CONSTRAINT_OPERAND, 0.7f)
+                .put(LassoScore.Component.EXPECTED_CIP, 0.2f)
+                .put(LassoScore.Component.OP_BLOCK, 0.2f)
+                .put(LassoScore.Component.ESC_OPERAND, 0.2f)
+                .build();
+
+        // Without the baseline, which does not depend on the sharding
+        return new LassoScenarioID<>(SYSTEM, new LassoConfig(1, false, false, false, false, weights,
+                1.0f, 1.0f, BaselineIndexBuilder.Type.BM25, engine, sharding));
+    }
+
+    private static List<Tuple2<String, Float>> toScores(LassoResultCollection results) {
+        return results.items()
+                .map(r -> tuple(r.getResult().getID(), r.getScore()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<List<Tuple2<String, Float>>> searchAll(LassoIndex index) {
+        return constraints.stream()
+                .map(c -> toScores(index.search(c)))
+                .collect(Collectors.toList());
+    }
+
+    private static Path getShardsPath(Path cachePath, LassoScenarioID<LassoConfig> key) {
+        return cachePath.resolve("pattern-indexes")
+                .resolve(LassoIndexBuilder.createIndexName(key) + "-shards");
+    }
+
+    /**
+     * Indexes are kept in memory since only their results are compared.
+     */
+    @Test
+    public void testSameResults() throws ArgumentParserException {
+        setOptions(cachePath, true);
+        var coordinator = new IndexCoordinator();
+        var index = coordinator.createIndex(dataDir, createKey(LassoConfig.Sharding.NONE));
+        var shardedIndex = coordinator.createIndex(dataDir, createKey(LassoConfig.Sharding.SOURCE_ROOT));
+
+        assertThat(constraints).isNotEmpty();
+
+        var tiedResults = 0;
+        for (PatternEntry constraint : constraints) {
+            var expected = toScores(index.search(constraint));
+            assertThat(toScores(shardedIndex.search(constraint)))
+                    .as(constraint.getID())
+                    .isEqualTo(expected);
+
+            for (int i = 1; i < expected.size(); i++) {
+                if (expected.get(i).v2.equals(expected.get(i - 1).v2)) {
+                    tiedResults++;
+                }
+            }
+        }
+
+        // Ties are ordered by the document order of the unsharded index
+        assertThat(tiedResults).isPositive();
+    }
+
+    /**
+     * The postings are loaded from the cache path, so the indexes are written to disk.
+     */
+    @Test
+    public void testSameResultsWithPostings() throws IOException, ArgumentParserException {
+        setOptions(folder.newFolder().toPath(), false);
+        var coordinator = new IndexCoordinator();
+        var expected = searchAll(coordinator.createIndex(dataDir, createKey(LassoConfig.Sharding.NONE)));
+
+        for (LassoConfig.Sharding sharding : LassoConfig.Sharding.values()) {
+            var index = coordinator.createIndex(dataDir, createKey(sharding, LassoConfig.Engine.POSTINGS));
+            assertThat(searchAll(index)).as(sharding.toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testRebuildsChangedShard() throws IOException, ArgumentParserException {
+        setOptions(cachePath, false);
+        var key = createKey(LassoConfig.Sharding.SOURCE_ROOT);
+        var coordinator = new IndexCoordinator();
+        coordinator.createIndex(dataDir, key);
+
+        var shardsPath = getShardsPath(cachePath, key);
+        Map<String, String> before = fingerprintShards(shardsPath);
+
+        var file = dataDir.resolve(SYSTEM).resolve("sources/src/example/org/joda/example/time/DateTimeBrowser.java");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        coordinator.createIndex(dataDir, key);
+        Map<String, String> after = fingerprintShards(shardsPath);
+
+        // Tests are excluded
+        assertThat(before).containsOnlyKeys("src_example", "src_main_java");
+        assertThat(after.keySet()).isEqualTo(before.keySet());
+        assertThat(after.get("src_example")).isNotEqualTo(before.get("src_example"));
+        assertThat(after.get("src_main_java")).isEqualTo(before.get("src_main_java"));
+    }
+
+    @Test
+    public void testSnapshot() throws IOException, ArgumentParserException {
+        var key = createKey(LassoConfig.Sharding.SOURCE_ROOT);
+        var snapshotCachePath = folder.newFolder().toPath();
+        var shardsPath = getShardsPath(snapshotCachePath, key);
+
+        setOptions(snapshotCachePath, true);
+        var index = new IndexCoordinator().createIndex(dataDir, key);
+        var expected = searchAll(index);
+        assertThat(shardsPath).doesNotExist();
+
+        index.snapshot();
+        setOptions(snapshotCachePath, false);
+        var snapshot = fingerprintShards(shardsPath);
+        var diskIndex = new IndexCoordinator().createIndex(dataDir, key);
+
+        // The shards are loaded from the snapshot instead of being rebuilt
+        assertThat(snapshot).containsOnlyKeys("src_example", "src_main_java");
+        assertThat(fingerprintShards(shardsPath)).isEqualTo(snapshot);
+        assertThat(searchAll(diskIndex)).isEqualTo(expected);
+    }
+
+    private Map<String, String> fingerprintShards(Path shardsPath) throws IOException {
+        try (var shards = Files.list(shardsPath)) {
+            return shards.filter(Files::isDirectory)
+                    .collect(Collectors.toMap(
+                            p -> p.getFileName().toString(),
+                            p -> EvaluationCache.fingerprint(p)
+                    ));
+        }
+    }
+}
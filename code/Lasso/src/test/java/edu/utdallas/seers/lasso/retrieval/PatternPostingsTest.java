@@ -0,0 +1,98 @@
+package edu.utdallas.seers.lasso.retrieval;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternPostingsTest {
+
+    private static final List<String> FIELDS = Arrays.asList("OPERAND_1", "OPERAND_2", "window");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    /**
+     * Some terms are in most documents so that both representations of the postings are used.
+     */
+    private String randomText(int length) {
+        return IntStream.range(0, length)
+                .mapToObj(i -> "t" + (int) Math.abs(random.nextGaussian() * 20))
+                .collect(Collectors.joining(" "));
+    }
+
+    @Test
+    public void testSameResults() throws IOException {
+        var directory = new ByteBuffersDirectory();
+        var config = new IndexWriterConfig().setSimilarity(new SimpleCountSimilarity());
+        try (var writer = new IndexWriter(directory, config)) {
+            for (int i = 0; i < 1_000; i++) {
+                var document = new Document();
+                document.add(new StringField("id", "p" + i, Field.Store.YES));
+                for (String field : FIELDS) {
+                    if (random.nextInt(4) > 0) {
+                        document.add(new TextField(field, randomText(1 + random.nextInt(10)), Field.Store.NO));
+                    }
+                }
+                writer.addDocument(document);
+
+                // Several segments
+                if (i % 300 == 0) {
+                    writer.commit();
+                }
+            }
+        }
+
+        var reader = DirectoryReader.open(directory);
+        var searcher = new IndexSearcher(reader);
+        searcher.setSimilarity(new SimpleCountSimilarity());
+
+        var postings = PatternPostings.fromReader(reader);
+        var file = folder.getRoot().toPath().resolve("index.postings");
+        postings.write(file);
+        var readPostings = PatternPostings.read(file).orElseThrow();
+
+        for (int doc = 0; doc < reader.maxDoc(); doc++) {
+            assertThat(readPostings.getPatternID(doc)).isEqualTo(reader.document(doc).get("id"));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            var field = FIELDS.get(random.nextInt(FIELDS.size()));
+            // Repeated terms and terms that are not in the index
+            var terms = Arrays.asList(randomText(random.nextInt(15)).split(" "));
+
+            var builder = new BooleanQuery.Builder();
+            for (String term : terms) {
+                builder.add(new TermQuery(new Term(field, term)), BooleanClause.Occur.SHOULD);
+            }
+            var expected = describe(searcher.search(builder.build(), Integer.MAX_VALUE));
+
+            assertThat(describe(postings.search(field, terms))).isEqualTo(expected);
+            assertThat(describe(readPostings.search(field, terms))).isEqualTo(expected);
+        }
+    }
+
+    private List<String> describe(TopDocs topDocs) {
+        return Arrays.stream(topDocs.scoreDocs)
+                .map(d -> d.doc + ":" + d.score)
+                .collect(Collectors.toList());
+    }
+}
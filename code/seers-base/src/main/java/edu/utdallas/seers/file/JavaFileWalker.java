@@ -5,30 +5,48 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.FileVisitOption;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Custom implementation of {@link Files#walk(Path, FileVisitOption...)} because it doesn't allow
- * skipping subtrees.
+ * Finds all Java files in a project, skipping excluded subtrees. Uses
+ * {@link java.nio.file.Files#walkFileTree(Path, Set, int, FileVisitor)} so that file attributes come with the
+ * directory listing instead of requiring a separate stat per entry.
+ * <p>
+ * The returned streams split by subtree when used in parallel. The walk result of each project is
+ * kept for the rest of the run, together with the modification times of its directories, so that
+ * later walks of the same tree only need to stat the directories to know if the list is still
+ * valid.
  */
 public class JavaFileWalker {
 
+    private static final Map<CacheKey, Directory> cache = new ConcurrentHashMap<>();
+
     final Logger logger = LoggerFactory.getLogger(JavaFileWalker.class);
 
     private final Set<Path> excludedPaths;
     private final Path projectPath;
+    private final boolean useCache;
 
     public JavaFileWalker(Path projectPath, Set<Path> excludedPaths) {
+        this(projectPath, excludedPaths, true);
+    }
+
+    /**
+     * @param projectPath   Root of the project.
+     * @param excludedPaths Paths relative to the root whose subtrees will be skipped.
+     * @param useCache      Whether to reuse the result of a previous walk of the same tree.
+     */
+    public JavaFileWalker(Path projectPath, Set<Path> excludedPaths, boolean useCache) {
         this.projectPath = projectPath;
         this.excludedPaths = excludedPaths;
+        this.useCache = useCache;
     }
 
     public static Stream<Path> walk(Path projectPath, Set<Path> excludedPaths) {
@@ -36,30 +54,264 @@ public class JavaFileWalker {
                 .walk();
     }
 
+    /**
+     * Files are returned in the same order as before: the files of a directory followed by the
+     * files of each subdirectory.
+     *
+     * @return A stream of the Java files in the project.
+     */
     public Stream<Path> walk() {
-        return walkDirectory(projectPath);
-    }
+        Directory root;
 
-    private Stream<Path> walkDirectory(Path dir) {
-        if (excludedPaths.contains(projectPath.relativize(dir))) {
-            logger.info("Skipping directory: {}", dir);
-            return Stream.empty();
+        if (useCache) {
+            var key = new CacheKey(projectPath, excludedPaths);
+            root = cache.compute(key, (k, d) -> d != null && d.isUpToDate() ? d : walkTree());
+        } else {
+            root = walkTree();
         }
 
-        Map<Boolean, List<Path>> files;
+        return StreamSupport.stream(new SubtreeSpliterator(root), false);
+    }
+
+    private Directory walkTree() {
+        var visitor = new TreeBuilder();
+
         try {
-            // TODO don't know how this will react to links
-            files = Files.list(dir)
-                    .collect(Collectors.groupingBy(Files::isDirectory));
+            // Following links to behave like the previous Files.isDirectory-based walk
+            java.nio.file.Files.walkFileTree(projectPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, visitor);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
 
-        return Stream.concat(
-                files.getOrDefault(false, Collections.emptyList()).stream()
-                        .filter(p -> p.getFileName().toString().endsWith(".java")),
-                files.getOrDefault(true, Collections.emptyList()).stream()
-                        .flatMap(this::walkDirectory)
-        );
+        return visitor.root;
+    }
+
+    private class TreeBuilder extends SimpleFileVisitor<Path> {
+        private final Deque<Directory> stack = new ArrayDeque<>();
+        private Directory root = new Directory(projectPath, null);
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (excludedPaths.contains(projectPath.relativize(dir))) {
+                logger.info("Skipping directory: {}", dir);
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            var directory = new Directory(dir, attrs.lastModifiedTime());
+
+            if (stack.isEmpty()) {
+                root = directory;
+            } else {
+                stack.peek().subdirectories.add(directory);
+            }
+
+            stack.push(directory);
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                stack.element().files.add(file);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+            if (exc instanceof FileSystemLoopException) {
+                logger.warn("Skipping directory link cycle: {}", file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            throw exc;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            if (exc != null) {
+                throw exc;
+            }
+
+            stack.pop().computeSize();
+
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /**
+     * A node of the walked tree.
+     */
+    private static class Directory {
+        private final Path path;
+        private final FileTime lastModifiedTime;
+        private final List<Path> files = new ArrayList<>();
+        private final List<Directory> subdirectories = new ArrayList<>();
+        /**
+         * Number of files in the whole subtree.
+         */
+        private long size;
+
+        private Directory(Path path, FileTime lastModifiedTime) {
+            this.path = path;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        private void computeSize() {
+            size = files.size() + subdirectories.stream()
+                    .mapToLong(d -> d.size)
+                    .sum();
+        }
+
+        /**
+         * Adding or removing an entry changes the modification time of its directory, so checking
+         * the directories is enough to know if the file list changed.
+         *
+         * @return Whether the file list of this subtree is still valid.
+         */
+        private boolean isUpToDate() {
+            try {
+                if (lastModifiedTime == null ||
+                        !java.nio.file.Files.getLastModifiedTime(path).equals(lastModifiedTime)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+
+            return subdirectories.stream().allMatch(Directory::isUpToDate);
+        }
+    }
+
+    /**
+     * Traverses the tree in order. Splitting hands off whole subtrees, so the elements of each
+     * split come from the same part of the tree and their sizes are known exactly.
+     */
+    private static class SubtreeSpliterator implements Spliterator<Path> {
+        private static final int MIN_SPLIT_SIZE = 16;
+
+        /**
+         * Subtrees pending traversal, in order.
+         */
+        private final Deque<Directory> pending;
+        /**
+         * Files of the directory currently being traversed, which come before the pending subtrees.
+         */
+        private List<Path> files;
+        private int fileIndex;
+        private long size;
+
+        private SubtreeSpliterator(Directory root) {
+            this(Collections.emptyList(), new ArrayDeque<>(Collections.singletonList(root)));
+        }
+
+        private SubtreeSpliterator(List<Path> files, Deque<Directory> pending) {
+            this.files = files;
+            this.pending = pending;
+            size = files.size() + pending.stream()
+                    .mapToLong(d -> d.size)
+                    .sum();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Path> action) {
+            while (fileIndex >= files.size()) {
+                if (pending.isEmpty()) {
+                    return false;
+                }
+
+                expandNext();
+            }
+
+            size--;
+            action.accept(files.get(fileIndex++));
+
+            return true;
+        }
+
+        @Override
+        public Spliterator<Path> trySplit() {
+            if (size < MIN_SPLIT_SIZE) {
+                return null;
+            }
+
+            // A single subtree with no files left in the current directory is opened up
+            while (pending.size() == 1 && fileIndex >= files.size()) {
+                expandNext();
+            }
+
+            Spliterator<Path> prefix;
+
+            if (pending.isEmpty()) {
+                // Only the files of the current directory are left
+                int middle = fileIndex + (files.size() - fileIndex) / 2;
+                prefix = new SubtreeSpliterator(files.subList(fileIndex, middle), new ArrayDeque<>());
+                fileIndex = middle;
+            } else {
+                // The prefix takes the remaining files and the first half of the subtrees
+                var prefixSubtrees = new ArrayDeque<Directory>();
+                for (int i = pending.size() / 2; i > 0; i--) {
+                    prefixSubtrees.add(pending.removeFirst());
+                }
+
+                prefix = new SubtreeSpliterator(files.subList(fileIndex, files.size()), prefixSubtrees);
+                files = Collections.emptyList();
+                fileIndex = 0;
+            }
+
+            size -= prefix.estimateSize();
+
+            return prefix;
+        }
+
+        /**
+         * Makes the files of the next pending directory current and schedules its subdirectories
+         * before the rest of the pending subtrees.
+         */
+        private void expandNext() {
+            var directory = pending.removeFirst();
+            files = directory.files;
+            fileIndex = 0;
+
+            var subdirectories = directory.subdirectories;
+            for (int i = subdirectories.size() - 1; i >= 0; i--) {
+                pending.addFirst(subdirectories.get(i));
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+        }
+    }
+
+    private static class CacheKey {
+        private final Path projectPath;
+        private final Set<Path> excludedPaths;
+
+        private CacheKey(Path projectPath, Set<Path> excludedPaths) {
+            this.projectPath = projectPath;
+            this.excludedPaths = Set.copyOf(excludedPaths);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CacheKey cacheKey = (CacheKey) o;
+            return projectPath.equals(cacheKey.projectPath) && excludedPaths.equals(cacheKey.excludedPaths);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectPath, excludedPaths);
+        }
     }
 }
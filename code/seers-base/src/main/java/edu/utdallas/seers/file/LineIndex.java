@@ -0,0 +1,105 @@
+package edu.utdallas.seers.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Offsets of the lines of a file, found with a single scan of the memory-mapped file. Lines are
+ * decoded from the mapped buffer only when requested. Line terminators are the same as in
+ * {@link java.io.BufferedReader#readLine()}: {@code \n}, {@code \r} or {@code \r\n}.
+ */
+class LineIndex {
+    private final ByteBuffer buffer;
+    /**
+     * Start offset of each line, followed by the end of the file.
+     */
+    private final int[] lineStarts;
+    private final int lineCount;
+
+    private LineIndex(ByteBuffer buffer, int[] lineStarts, int lineCount) {
+        this.buffer = buffer;
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+    }
+
+    static LineIndex build(Path filePath) {
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int length = buffer.limit();
+        int[] starts = new int[64];
+        int count = 0;
+        int lineStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(i);
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+
+            if (b == '\r' && i + 1 < length && buffer.get(i + 1) == '\n') {
+                i++;
+            }
+
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[count++] = lineStart;
+            lineStart = i + 1;
+        }
+
+        // A last line without terminator
+        if (lineStart < length) {
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length + 1);
+            }
+            starts[count++] = lineStart;
+        }
+
+        starts[count] = length;
+
+        return new LineIndex(buffer, starts, count);
+    }
+
+    int lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @param lineNumber 1-based line number.
+     * @return The line without its terminator.
+     */
+    String getLine(int lineNumber) {
+        if (lineNumber < 1 || lineNumber > lineCount) {
+            throw new IndexOutOfBoundsException("Line " + lineNumber + " out of " + lineCount);
+        }
+
+        int start = lineStarts[lineNumber - 1];
+        int end = lineStarts[lineNumber];
+
+        // Strip the terminator, only the last line can lack one
+        if (end > start && buffer.get(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+
+        byte[] bytes = new byte[end - start];
+        // Absolute reads on a duplicate so that concurrent readers do not share a position
+        buffer.duplicate().position(start).get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -2,47 +2,74 @@ package edu.utdallas.seers.file;
 
 import edu.utdallas.seers.stream.PairSeq;
 import org.jooq.lambda.Seq;
+import org.jooq.lambda.tuple.Tuple2;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
+
+import static org.jooq.lambda.tuple.Tuple.tuple;
 
 public class LineReader {
+    public static final int DEFAULT_CACHED_FILES = 128;
+
     private final int contextSize;
+    /**
+     * Line indexes of the most recently read files, by path and modification time so that files
+     * that change are indexed again.
+     */
+    private final Map<Tuple2<Path, FileTime>, LineIndex> lineIndexes;
 
     public LineReader(int contextSize) {
+        this(contextSize, DEFAULT_CACHED_FILES);
+    }
+
+    /**
+     * @param contextSize    Lines to extract around each requested line.
+     * @param maxCachedFiles Maximum number of files whose line index is kept in memory.
+     */
+    public LineReader(int contextSize, int maxCachedFiles) {
         this.contextSize = contextSize;
+        lineIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Tuple2<Path, FileTime>, LineIndex> eldest) {
+                return size() > maxCachedFiles;
+            }
+        };
     }
 
     /**
      * Extracts lines from a file. Each line is extracted with the amount of lines around it
      * specified as {@link LineReader#contextSize}. Context lines that would overlap are not
      * repeated in the output.
+     * <p>
+     * The line offsets of the file are indexed on the first read, so that later reads only decode
+     * the lines that are returned. The file is indexed again if its modification time changes.
      *
      * @param filePath    The file.
      * @param lineNumbers 1-based line numbers.
      * @return Enumerated lines in order.
      */
     public PairSeq<Integer, String> readLines(Path filePath, Set<Integer> lineNumbers) {
-        List<String> fileLines;
-        try {
-            fileLines = Files.lines(filePath).collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-        return readLines(fileLines, lineNumbers);
+        var index = getLineIndex(filePath);
+        return readLines(index.lineCount(), index::getLine, lineNumbers);
     }
 
     /**
      * @see LineReader#readLines(Path, Set)
      */
     public PairSeq<Integer, String> readLines(List<String> fileLines, Set<Integer> lineNumbers) {
-        var totalLines = fileLines.size();
+        // i is 1-based, must convert to 0 based for list
+        return readLines(fileLines.size(), i -> fileLines.get(i - 1), lineNumbers);
+    }
 
+    private PairSeq<Integer, String> readLines(int totalLines, IntFunction<String> lineGetter, Set<Integer> lineNumbers) {
         var finalLineNumbers = Seq.seq(lineNumbers)
                 .flatMap(i -> Seq.rangeClosed(
                         Math.max(1, i - contextSize),
@@ -51,7 +78,20 @@ public class LineReader {
                 .sorted()
                 .distinct();
 
-        // i is 1-based, must convert to 0 based for list
-        return PairSeq.seq(finalLineNumbers, i -> i, i -> fileLines.get(i - 1));
+        return PairSeq.seq(finalLineNumbers, i -> i, lineGetter::apply);
+    }
+
+    private LineIndex getLineIndex(Path filePath) {
+        var path = filePath.toAbsolutePath().normalize();
+        FileTime modifiedTime;
+        try {
+            modifiedTime = java.nio.file.Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        synchronized (lineIndexes) {
+            return lineIndexes.computeIfAbsent(tuple(path, modifiedTime), k -> LineIndex.build(k.v1));
+        }
     }
-}
\ No newline at end of file
+}
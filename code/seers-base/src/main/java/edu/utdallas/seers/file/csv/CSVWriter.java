@@ -1,35 +1,50 @@
 package edu.utdallas.seers.file.csv;
 
-import com.opencsv.bean.StatefulBeanToCsv;
-import com.opencsv.bean.StatefulBeanToCsvBuilder;
-import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
-
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.stream.Stream;
 
 /**
  * Writes instances of a class to CSV, automatically inferring headers. To be used when records
  * need to be written one by one, for example, as part of a stream pipeline when each item needs
- * to be processed by multiple writers.
+ * to be processed by multiple writers. The output is the same as that of opencsv's bean writer.
  * <p>
- * This class is thread-safe to allow use in parallel pipelines.
+ * This class is thread-safe to allow use in parallel pipelines. Rows are encoded by the calling
+ * thread and passed in batches through a bounded queue to a single thread that writes and flushes
+ * them, so callers only wait when the queue is full. Rows written by one thread keep their order.
  *
  * @param <T> The type of the rows.
+ * @see RowEncoder
  */
 public class CSVWriter<T> implements Closeable {
 
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int BATCH_CHARS = 1 << 16;
+    /**
+     * Marks the end of the queue. Compared by identity.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String END = new String();
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
     private final BufferedWriter outputWriter;
-    private final StatefulBeanToCsv<T> csvFormatWriter;
+    private final Thread writerThread;
+    private volatile RowEncoder<T> encoder;
+    private volatile IOException writeError;
+    private boolean closed = false;
 
-    private CSVWriter(BufferedWriter outputWriter) {
+    private CSVWriter(BufferedWriter outputWriter, String name) {
         this.outputWriter = outputWriter;
-        csvFormatWriter = new StatefulBeanToCsvBuilder<T>(outputWriter).build();
+        writerThread = new Thread(this::writeBatches, "csv-writer-" + name);
+        writerThread.setDaemon(true);
+        writerThread.start();
     }
 
     public static <T> CSVWriter<T> tryCreate(Path destination) throws IOException {
@@ -37,7 +52,7 @@ public class CSVWriter<T> implements Closeable {
 
         BufferedWriter bufferedWriter = Files.newBufferedWriter(destination);
 
-        return new CSVWriter<>(bufferedWriter);
+        return new CSVWriter<>(bufferedWriter, destination.getFileName().toString());
     }
 
     public static <T> CSVWriter<T> create(Path destination) {
@@ -48,26 +63,134 @@ public class CSVWriter<T> implements Closeable {
         }
     }
 
-    public synchronized void writeRows(Stream<T> rows) {
+    public void writeRows(Stream<T> rows) {
+        var batch = new StringBuilder();
+
+        rows.forEachOrdered(row -> {
+            getEncoder(row).encode(row, batch);
+            if (batch.length() >= BATCH_CHARS) {
+                enqueue(batch.toString());
+                batch.setLength(0);
+            }
+        });
+
+        if (batch.length() > 0) {
+            enqueue(batch.toString());
+        }
+    }
+
+    public void writeRow(T row) {
+        writeRows(Stream.of(row));
+    }
+
+    /**
+     * The encoder is created with the first row, and the header is queued before any row.
+     */
+    private RowEncoder<T> getEncoder(T row) {
+        var current = encoder;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (encoder == null) {
+                var created = RowEncoder.create(row);
+                if (created.getHeader().length > 0) {
+                    var header = new StringBuilder();
+                    RowEncoder.appendLine(created.getHeader(), header);
+                    enqueue(header.toString());
+                }
+                encoder = created;
+            }
+
+            return encoder;
+        }
+    }
+
+    private void enqueue(String batch) {
+        if (writeError != null) {
+            throw new UncheckedIOException(writeError);
+        }
+
         try {
-            /* This method doesn't actually write, but rather schedules the write on a separate
-            thread, so it should return fast */
-            csvFormatWriter.write(rows);
-        } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
         }
     }
 
-    public synchronized void writeRow(T row) {
+    /**
+     * Runs in the writer thread. After an error, batches are still taken so that callers do not
+     * block, but they are discarded.
+     */
+    private void writeBatches() {
+        var batches = new ArrayList<String>();
+
+        while (true) {
+            try {
+                batches.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batches);
+
+            for (String batch : batches) {
+                if (batch == END) {
+                    flush();
+                    return;
+                }
+
+                if (writeError == null) {
+                    try {
+                        outputWriter.write(batch);
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+            }
+
+            flush();
+            batches.clear();
+        }
+    }
+
+    private void flush() {
+        if (writeError != null) {
+            return;
+        }
+
         try {
-            csvFormatWriter.write(row);
-        } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
-            throw new RuntimeException(e);
+            outputWriter.flush();
+        } catch (IOException e) {
+            writeError = e;
         }
     }
 
+    /**
+     * Waits until all rows are written and closes the file.
+     *
+     * @throws IOException If any row could not be written.
+     */
     @Override
-    public void close() throws IOException {
-        outputWriter.close();
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            outputWriter.close();
+        }
+
+        if (writeError != null) {
+            throw writeError;
+        }
     }
 }
@@ -0,0 +1,415 @@
+package edu.utdallas.seers.file.csv;
+
+import com.opencsv.bean.CsvBindAndJoinByName;
+import com.opencsv.bean.CsvBindByName;
+import com.opencsv.bean.HeaderColumnNameMappingStrategy;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Converts beans to CSV lines with the same headers and values as opencsv's bean writer with its
+ * default settings, i.e. columns mapped by name and sorted, and all values quoted.
+ * <p>
+ * The fields of each bean class are resolved once into method handles. Classes that use opencsv
+ * features other than {@link CsvBindByName} and {@link CsvBindAndJoinByName} with default
+ * settings, or fields that are not primitives or strings, are encoded by opencsv instead.
+ * Encoders are thread-safe.
+ *
+ * @param <T> Type of the beans.
+ */
+abstract class RowEncoder<T> {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final String OPENCSV_PACKAGE = CsvBindByName.class.getPackageName();
+
+    private static final ClassValue<Optional<List<BeanField>>> FIELDS = new ClassValue<>() {
+        @Override
+        protected Optional<List<BeanField>> computeValue(Class<?> type) {
+            return compileFields(type);
+        }
+    };
+
+    private final String[] header;
+
+    private RowEncoder(String[] header) {
+        this.header = header;
+    }
+
+    /**
+     * Creates the encoder for the class of the bean. Columns of fields that are joined by name
+     * are taken from the keys of this bean, as opencsv does with the first bean it writes.
+     *
+     * @param firstBean First bean that will be written.
+     * @param <T>       Type of the beans.
+     * @return The encoder.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RowEncoder<T> create(T firstBean) {
+        return FIELDS.get(firstBean.getClass())
+                .<RowEncoder<T>>map(fs -> new Compiled<>(fs, firstBean))
+                .orElseGet(() -> new Reflective<>((Class<T>) firstBean.getClass(), firstBean));
+    }
+
+    /**
+     * Appends a line with all values quoted and quotes escaped by doubling them.
+     *
+     * @param values Values, which are written as empty if {@code null}.
+     * @param out    Destination.
+     */
+    static void appendLine(String[] values, StringBuilder out) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendValue(values[i], out);
+        }
+        out.append('\n');
+    }
+
+    private static void appendValue(String value, StringBuilder out) {
+        out.append('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.append('"');
+                }
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * @return The fields of the class, or empty if it needs a feature that is not supported.
+     */
+    private static Optional<List<BeanField>> compileFields(Class<?> type) {
+        var fields = FieldUtils.getAllFieldsList(type).stream()
+                .filter(f -> !f.isSynthetic())
+                .collect(Collectors.toList());
+        var annotated = fields.stream()
+                .filter(f -> Arrays.stream(f.getAnnotations()).anyMatch(RowEncoder::isOpencsvAnnotation))
+                .collect(Collectors.toList());
+
+        var result = new ArrayList<BeanField>();
+
+        // Like opencsv, every field is a column if no field is annotated
+        if (annotated.isEmpty()) {
+            for (Field field : fields) {
+                if (!isSimpleType(field.getType())) {
+                    return Optional.empty();
+                }
+                result.add(new SimpleField(field.getName().toUpperCase(), compileGetter(field)));
+            }
+
+            return Optional.of(result);
+        }
+
+        for (Field field : annotated) {
+            var annotations = Arrays.stream(field.getAnnotations())
+                    .filter(RowEncoder::isOpencsvAnnotation)
+                    .collect(Collectors.toList());
+            if (annotations.size() != 1) {
+                return Optional.empty();
+            }
+
+            var annotation = annotations.get(0);
+            if (annotation instanceof CsvBindByName && hasDefaults(annotation, "column") &&
+                    isSimpleType(field.getType())) {
+                var column = ((CsvBindByName) annotation).column();
+                var name = (column.isEmpty() ? field.getName() : column).toUpperCase();
+                result.add(new SimpleField(name, compileGetter(field)));
+            } else if (annotation instanceof CsvBindAndJoinByName &&
+                    hasDefaults(annotation, "column", "elementType") &&
+                    MultiValuedMap.class.isAssignableFrom(field.getType()) &&
+                    isSimpleType(((CsvBindAndJoinByName) annotation).elementType())) {
+                var pattern = Pattern.compile(((CsvBindAndJoinByName) annotation).column());
+                result.add(new JoinedField(pattern, compileGetter(field)));
+            } else {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(result);
+    }
+
+    private static boolean isOpencsvAnnotation(Annotation annotation) {
+        return annotation.annotationType().getPackageName().equals(OPENCSV_PACKAGE);
+    }
+
+    private static boolean isSimpleType(Class<?> type) {
+        return type.isPrimitive() || ClassUtils.isPrimitiveWrapper(type) || type.equals(String.class);
+    }
+
+    /**
+     * @param annotation Annotation.
+     * @param except     Attributes that are not checked.
+     * @return Whether all other attributes of the annotation have their default values.
+     */
+    private static boolean hasDefaults(Annotation annotation, String... except) {
+        var skipped = Set.of(except);
+
+        for (Method attribute : annotation.annotationType().getDeclaredMethods()) {
+            if (skipped.contains(attribute.getName())) {
+                continue;
+            }
+
+            try {
+                if (!Objects.deepEquals(attribute.invoke(annotation), attribute.getDefaultValue())) {
+                    return false;
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Opencsv reads a field through its public getter if there is one.
+     *
+     * @return A handle of type {@code (Object)Object} that reads the field of a bean.
+     */
+    private static MethodHandle compileGetter(Field field) {
+        var lookup = MethodHandles.lookup();
+        var getterName = "get" + StringUtils.capitalize(field.getName());
+
+        try {
+            MethodHandle handle;
+            var getter = Arrays.stream(field.getDeclaringClass().getMethods())
+                    .filter(m -> m.getName().equals(getterName) && m.getParameterCount() == 0)
+                    .findFirst();
+
+            if (getter.isPresent()) {
+                getter.get().setAccessible(true);
+                handle = lookup.unreflect(getter.get());
+            } else {
+                field.setAccessible(true);
+                handle = lookup.unreflectGetter(field);
+            }
+
+            if (Modifier.isStatic(field.getModifiers()) && handle.type().parameterCount() == 0) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+
+            return handle.asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read field " + field, e);
+        }
+    }
+
+    private static Object get(MethodHandle getter, Object bean) {
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Appends the line of the bean, including the line end.
+     *
+     * @param bean Bean.
+     * @param out  Destination.
+     */
+    abstract void encode(T bean, StringBuilder out);
+
+    private interface BeanField {
+    }
+
+    private static class SimpleField implements BeanField {
+        private final String column;
+        private final MethodHandle getter;
+
+        private SimpleField(String column, MethodHandle getter) {
+            this.column = column;
+            this.getter = getter;
+        }
+    }
+
+    private static class JoinedField implements BeanField {
+        private final Pattern columnPattern;
+        private final MethodHandle getter;
+
+        private JoinedField(Pattern columnPattern, MethodHandle getter) {
+            this.columnPattern = columnPattern;
+            this.getter = getter;
+        }
+    }
+
+    /**
+     * Reads each column with a method handle. A key of a joined field that occurs more than once
+     * in the header is filled with the values of that key in order.
+     */
+    private static class Compiled<T> extends RowEncoder<T> {
+
+        private final MethodHandle[] getters;
+        private final String[] keys;
+        private final int[] occurrences;
+
+        private Compiled(List<BeanField> fields, T firstBean) {
+            this(createColumns(fields, firstBean));
+        }
+
+        private Compiled(List<Column> columns) {
+            super(columns.stream().map(c -> c.name).toArray(String[]::new));
+
+            getters = new MethodHandle[columns.size()];
+            keys = new String[columns.size()];
+            occurrences = new int[columns.size()];
+
+            for (int i = 0; i < columns.size(); i++) {
+                var column = columns.get(i);
+                getters[i] = column.getter;
+                if (column.joined) {
+                    keys[i] = column.name;
+                    occurrences[i] = i > 0 && column.name.equals(keys[i - 1]) ? occurrences[i - 1] + 1 : 0;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Column> createColumns(List<BeanField> fields, Object firstBean) {
+            var columns = new ArrayList<Column>();
+
+            for (BeanField field : fields) {
+                if (field instanceof SimpleField) {
+                    var simple = (SimpleField) field;
+                    columns.add(new Column(simple.column, simple.getter, false));
+                    continue;
+                }
+
+                var joined = (JoinedField) field;
+                var map = (MultiValuedMap<String, ?>) get(joined.getter, firstBean);
+                if (map == null) {
+                    continue;
+                }
+
+                for (Map.Entry<String, ?> entry : map.entries()) {
+                    if (!joined.columnPattern.matcher(entry.getKey()).matches()) {
+                        throw new IllegalArgumentException(String.format("Key %s does not match the column %s",
+                                entry.getKey(), joined.columnPattern));
+                    }
+                    columns.add(new Column(entry.getKey(), joined.getter, true));
+                }
+            }
+
+            // Stable, so duplicate keys stay together
+            columns.sort(Comparator.comparing(c -> c.name));
+
+            return columns;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void encode(T bean, StringBuilder out) {
+            for (int i = 0; i < getters.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+
+                var value = get(getters[i], bean);
+                if (keys[i] != null && value != null) {
+                    value = getOccurrence((MultiValuedMap<String, ?>) value, keys[i], occurrences[i]);
+                }
+
+                appendValue(value == null ? null : value.toString(), out);
+            }
+            out.append('\n');
+        }
+
+        private static Object getOccurrence(MultiValuedMap<String, ?> map, String key, int occurrence) {
+            var values = map.get(key);
+            if (values.size() <= occurrence) {
+                return null;
+            }
+
+            if (values instanceof List) {
+                return ((List<?>) values).get(occurrence);
+            }
+
+            var iterator = values.iterator();
+            for (int i = 0; i < occurrence; i++) {
+                iterator.next();
+            }
+
+            return iterator.next();
+        }
+
+        private static class Column {
+            private final String name;
+            private final MethodHandle getter;
+            private final boolean joined;
+
+            private Column(String name, MethodHandle getter, boolean joined) {
+                this.name = name;
+                this.getter = getter;
+                this.joined = joined;
+            }
+        }
+    }
+
+    /**
+     * Uses opencsv's own mapping strategy for each bean.
+     */
+    private static class Reflective<T> extends RowEncoder<T> {
+
+        private final HeaderColumnNameMappingStrategy<T> strategy;
+
+        private Reflective(Class<T> type, T firstBean) {
+            this(createStrategy(type), firstBean);
+        }
+
+        private Reflective(HeaderColumnNameMappingStrategy<T> strategy, T firstBean) {
+            super(generateHeader(strategy, firstBean));
+            this.strategy = strategy;
+        }
+
+        private static <T> HeaderColumnNameMappingStrategy<T> createStrategy(Class<T> type) {
+            var strategy = new HeaderColumnNameMappingStrategy<T>();
+            strategy.setType(type);
+
+            return strategy;
+        }
+
+        private static <T> String[] generateHeader(HeaderColumnNameMappingStrategy<T> strategy, T firstBean) {
+            try {
+                return strategy.generateHeader(firstBean);
+            } catch (CsvRequiredFieldEmptyException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void encode(T bean, StringBuilder out) {
+            try {
+                appendLine(strategy.transmuteBean(bean), out);
+            } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
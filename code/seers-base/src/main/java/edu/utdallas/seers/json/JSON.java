@@ -4,13 +4,25 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Reads and writes JSON files. Files whose name ends with {@value GZIP_EXTENSION} are
+ * transparently compressed. Writes go to a temporary file that is then renamed, so an interrupted
+ * write never leaves a truncated file in place of a valid one.
+ */
 public class JSON {
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private JSON() {
     }
 
@@ -25,13 +37,17 @@ public class JSON {
      */
     public static <T extends JSONSerializable<U>, U extends AdapterSupplier>
     void tryWriteJSON(T object, Path filePath, boolean pretty, U adapterSupplier) throws IOException {
-        Files.createDirectories(filePath.getParent());
-
         Gson gson = createGson(pretty, adapterSupplier);
+        Path tempPath = createTempPath(filePath);
 
-        try (FileWriter writer = new FileWriter(filePath.toFile())) {
+        try (Writer writer = newWriter(tempPath, filePath)) {
             gson.toJson(object, writer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
         }
+
+        moveAtomically(tempPath, filePath);
     }
 
     /**
@@ -82,8 +98,8 @@ public class JSON {
     T tryReadJSON(Path filePath, Class<T> type, U adapterSupplier) throws IOException {
         Gson gson = createGson(false, adapterSupplier);
 
-        try {
-            return gson.fromJson(Files.newBufferedReader(filePath), type);
+        try (Reader reader = newReader(filePath)) {
+            return gson.fromJson(reader, type);
         } catch (JsonSyntaxException e) {
             throw new IllegalStateException("Error when decoding JSON. Did you forget to register a type adapter?", e);
         }
@@ -112,6 +128,109 @@ public class JSON {
         return readJSON(filePath, type, new BasicSupplier());
     }
 
+    /**
+     * Creates a writer for a JSON object whose fields are maps that are written one entry at a
+     * time, so the whole object does not need to exist in memory.
+     *
+     * @param filePath        Path to write to.
+     * @param adapterSupplier Supplies type adapters for the map values.
+     * @return The writer. Nothing is written until {@link JSONObjectWriter#write()} is called.
+     */
+    public static JSONObjectWriter objectWriter(Path filePath, AdapterSupplier adapterSupplier) {
+        return new JSONObjectWriter(filePath, createGson(false, adapterSupplier));
+    }
+
+    public static JSONObjectWriter objectWriter(Path filePath) {
+        return objectWriter(filePath, new BasicSupplier());
+    }
+
+    /**
+     * Creates a reader for a JSON object whose fields are maps, which are passed one entry at a
+     * time to the registered consumers.
+     *
+     * @param filePath        Path to read from.
+     * @param adapterSupplier Supplies type adapters for the map values.
+     * @return The reader. Nothing is read until {@link JSONObjectReader#read()} is called.
+     * @see JSON#objectWriter(Path, AdapterSupplier)
+     */
+    public static JSONObjectReader objectReader(Path filePath, AdapterSupplier adapterSupplier) {
+        return new JSONObjectReader(filePath, createGson(false, adapterSupplier));
+    }
+
+    public static JSONObjectReader objectReader(Path filePath) {
+        return objectReader(filePath, new BasicSupplier());
+    }
+
+    /**
+     * Opens a buffered reader, decompressing if the file has the gzip extension.
+     *
+     * @param filePath File to read.
+     * @return Reader.
+     * @throws IOException If the file cannot be opened.
+     */
+    static Reader newReader(Path filePath) throws IOException {
+        InputStream stream = Files.newInputStream(filePath);
+
+        if (filePath.toString().endsWith(GZIP_EXTENSION)) {
+            stream = new GZIPInputStream(stream, BUFFER_SIZE);
+        }
+
+        return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a buffered writer, compressing if the final file has the gzip extension.
+     *
+     * @param tempPath File to write, see {@link #createTempPath(Path)}.
+     * @param filePath Final path of the file.
+     * @return Writer.
+     * @throws IOException If the file cannot be opened.
+     */
+    static Writer newWriter(Path tempPath, Path filePath) throws IOException {
+        OutputStream stream = Files.newOutputStream(tempPath);
+
+        if (filePath.toString().endsWith(GZIP_EXTENSION)) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Creates the parent directories of the file and a new temporary file in the same directory,
+     * so that it can be atomically moved to the final path. The name is unique, so concurrent
+     * writes of the same file do not share it.
+     *
+     * @param filePath Final path.
+     * @return Temporary path.
+     * @throws IOException If the directories or the file cannot be created.
+     */
+    static Path createTempPath(Path filePath) throws IOException {
+        Path parent = filePath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        return Files.createTempFile(parent, "." + filePath.getFileName(), ".tmp");
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates a Gson instance with the adapters of the supplier registered, for callers that
+     * need to encode values that are not stored in their own JSON files.
+     *
+     * @param adapterSupplier Supplies type adapters.
+     * @return Gson instance.
+     */
+    public static Gson createGson(AdapterSupplier adapterSupplier) {
+        return createGson(false, adapterSupplier);
+    }
+
     private static Gson createGson(boolean pretty, AdapterSupplier adapterSupplier) {
         GsonBuilder gsonBuilder = new GsonBuilder();
 
@@ -0,0 +1,99 @@
+package edu.utdallas.seers.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads a JSON object whose fields are maps, passing the entries of each map to a consumer as
+ * they are decoded. Fields without a registered consumer are skipped.
+ *
+ * @see JSON#objectReader(Path, AdapterSupplier)
+ */
+public class JSONObjectReader {
+    private final Path filePath;
+    private final Gson gson;
+    private final Map<String, MapField<?>> fields = new HashMap<>();
+
+    JSONObjectReader(Path filePath, Gson gson) {
+        this.filePath = filePath;
+        this.gson = gson;
+    }
+
+    /**
+     * Registers a consumer for the entries of a map field.
+     *
+     * @param name      Name of the field.
+     * @param valueType Type of the values.
+     * @param consumer  Receives each key and value.
+     * @param <V>       Type of the values.
+     * @return This reader.
+     */
+    public <V> JSONObjectReader onMap(String name, Type valueType, BiConsumer<String, V> consumer) {
+        fields.put(name, new MapField<>(valueType, consumer));
+        return this;
+    }
+
+    /**
+     * Reads the whole object.
+     *
+     * @throws IOException If the read fails.
+     */
+    public void tryRead() throws IOException {
+        try (var reader = new JsonReader(JSON.newReader(filePath))) {
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                var field = fields.get(reader.nextName());
+
+                if (field == null) {
+                    reader.skipValue();
+                } else {
+                    readMap(reader, field);
+                }
+            }
+
+            reader.endObject();
+        } catch (JsonSyntaxException e) {
+            throw new IllegalStateException("Error when decoding JSON. Did you forget to register a type adapter?", e);
+        }
+    }
+
+    public void read() {
+        try {
+            tryRead();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <V> void readMap(JsonReader reader, MapField<V> field) throws IOException {
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            var key = reader.nextName();
+            V value = gson.fromJson(reader, field.valueType);
+            field.consumer.accept(key, value);
+        }
+
+        reader.endObject();
+    }
+
+    private static class MapField<V> {
+        private final Type valueType;
+        private final BiConsumer<String, V> consumer;
+
+        private MapField(Type valueType, BiConsumer<String, V> consumer) {
+            this.valueType = valueType;
+            this.consumer = consumer;
+        }
+    }
+}
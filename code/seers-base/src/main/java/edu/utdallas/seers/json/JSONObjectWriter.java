@@ -0,0 +1,97 @@
+package edu.utdallas.seers.json;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.jooq.lambda.tuple.Tuple2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Writes a JSON object whose fields are maps. The entries of each map are serialized one at a time
+ * from a stream, so neither the maps nor a JSON tree need to be materialized.
+ *
+ * @see JSON#objectWriter(Path, AdapterSupplier)
+ */
+public class JSONObjectWriter {
+    private final Path filePath;
+    private final Gson gson;
+    private final Map<String, MapField> fields = new LinkedHashMap<>();
+
+    JSONObjectWriter(Path filePath, Gson gson) {
+        this.filePath = filePath;
+        this.gson = gson;
+    }
+
+    /**
+     * Adds a map field to the object. The stream is consumed when the object is written.
+     *
+     * @param name      Name of the field.
+     * @param entries   Entries of the map.
+     * @param valueType Type of the values, used for serialization.
+     * @return This writer.
+     */
+    public JSONObjectWriter withMap(String name, Stream<? extends Tuple2<String, ?>> entries, Type valueType) {
+        fields.put(name, new MapField(entries, valueType));
+        return this;
+    }
+
+    /**
+     * Writes all fields.
+     *
+     * @throws IOException If the write fails. The target file is left untouched.
+     */
+    public void tryWrite() throws IOException {
+        Path tempPath = JSON.createTempPath(filePath);
+
+        try (var writer = new JsonWriter(JSON.newWriter(tempPath, filePath))) {
+            writer.beginObject();
+
+            for (Map.Entry<String, MapField> field : fields.entrySet()) {
+                writer.name(field.getKey());
+                writer.beginObject();
+
+                var valueType = field.getValue().valueType;
+                var iterator = field.getValue().entries.iterator();
+                while (iterator.hasNext()) {
+                    var entry = iterator.next();
+                    writer.name(entry.v1);
+                    gson.toJson(entry.v2, valueType, writer);
+                }
+
+                writer.endObject();
+            }
+
+            writer.endObject();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+
+        JSON.moveAtomically(tempPath, filePath);
+    }
+
+    public void write() {
+        try {
+            tryWrite();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class MapField {
+        private final Stream<? extends Tuple2<String, ?>> entries;
+        private final Type valueType;
+
+        private MapField(Stream<? extends Tuple2<String, ?>> entries, Type valueType) {
+            this.entries = entries;
+            this.valueType = valueType;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package edu.utdallas.seers.parallel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Named pools that are created the first time they are requested and reused afterwards, so that
+ * repeated parallel operations do not create new threads. All pools are shut down when the JVM
+ * exits, at which point their statistics are logged.
+ */
+public class ExecutorRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorRegistry.class);
+    private static final ExecutorRegistry instance = new ExecutorRegistry();
+
+    private final ConcurrentMap<String, ManagedExecutor> executors = new ConcurrentHashMap<>();
+
+    private ExecutorRegistry() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "executor-registry-shutdown"));
+    }
+
+    public static ExecutorRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the pool with the name, creating it if it does not exist or has been shut down. If
+     * it exists with a different number of threads, it is resized.
+     *
+     * @param name    Name of the pool, also used as prefix of its thread names.
+     * @param threads Number of threads.
+     * @return The pool.
+     */
+    public ManagedExecutor get(String name, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be > 0: " + threads);
+        }
+
+        var executor = executors.compute(name, (n, e) -> e == null || e.isShutdown() ?
+                new ManagedExecutor(n, threads) :
+                e);
+        if (executor.getMaximumPoolSize() != threads) {
+            executor.resize(threads);
+        }
+
+        return executor;
+    }
+
+    /**
+     * @return Statistics of all pools, sorted by name.
+     */
+    public List<ManagedExecutor.Stats> getStats() {
+        return executors.values().stream()
+                .map(ManagedExecutor::getStats)
+                .sorted(Comparator.comparing(s -> s.name))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stops accepting tasks in all pools and waits briefly for running tasks to finish. Pools
+     * requested afterwards are created again.
+     */
+    public void shutdown() {
+        var shutDown = List.copyOf(executors.values());
+        executors.clear();
+        shutDown.forEach(ManagedExecutor::shutdown);
+
+        for (ManagedExecutor executor : shutDown) {
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warn("Pool {} did not terminate, interrupting its tasks", executor.getName());
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
+
+            var stats = executor.getStats();
+            if (stats.completedTasks > 0) {
+                logger.info("Pool {}", stats);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.utdallas.seers.parallel;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size pool of daemon threads that belongs to an {@link ExecutorRegistry}. Keeps track of
+ * the time spent running tasks and of how many tasks have been waiting in its queue.
+ */
+public class ManagedExecutor extends ThreadPoolExecutor {
+    private static final ThreadLocal<ManagedExecutor> currentExecutor = new ThreadLocal<>();
+    private static final ThreadLocal<Long> taskStart = new ThreadLocal<>();
+
+    private final String name;
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder taskNanos = new LongAdder();
+    private final LongAccumulator maxTaskNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxQueued = new LongAccumulator(Math::max, 0);
+
+    ManagedExecutor(String name, int threads) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.name = name;
+
+        var count = new AtomicInteger();
+        setThreadFactory(r -> {
+            var thread = new Thread(() -> {
+                currentExecutor.set(this);
+                r.run();
+            }, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The executor that owns the calling thread, or {@code null} if it is not a thread of
+     * a managed executor.
+     */
+    static ManagedExecutor current() {
+        return currentExecutor.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Changes the number of threads. Running tasks are not interrupted.
+     *
+     * @param threads Number of threads.
+     */
+    synchronized void resize(int threads) {
+        if (threads > getMaximumPoolSize()) {
+            setMaximumPoolSize(threads);
+            setCorePoolSize(threads);
+        } else if (threads < getMaximumPoolSize()) {
+            setCorePoolSize(threads);
+            setMaximumPoolSize(threads);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command);
+        maxQueued.accumulate(getQueue().size());
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        taskStart.set(System.nanoTime());
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        long elapsed = System.nanoTime() - taskStart.get();
+        completedTasks.increment();
+        taskNanos.add(elapsed);
+        maxTaskNanos.accumulate(elapsed);
+        super.afterExecute(r, t);
+    }
+
+    public Stats getStats() {
+        return new Stats(name, getMaximumPoolSize(), getQueue().size(), maxQueued.get(),
+                completedTasks.sum(), taskNanos.sum(), maxTaskNanos.get());
+    }
+
+    public static class Stats {
+        public final String name;
+        public final int threads;
+        public final int queued;
+        public final long maxQueued;
+        public final long completedTasks;
+        public final long taskNanos;
+        public final long maxTaskNanos;
+
+        private Stats(String name, int threads, int queued, long maxQueued, long completedTasks,
+                      long taskNanos, long maxTaskNanos) {
+            this.name = name;
+            this.threads = threads;
+            this.queued = queued;
+            this.maxQueued = maxQueued;
+            this.completedTasks = completedTasks;
+            this.taskNanos = taskNanos;
+            this.maxTaskNanos = maxTaskNanos;
+        }
+
+        public double getMeanTaskMillis() {
+            return completedTasks == 0 ? 0 : taskNanos / 1e6 / completedTasks;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d threads, %d tasks, %.2f ms mean task time, %.2f ms max task time, " +
+                            "%d queued, %d max queued",
+                    name, threads, completedTasks, getMeanTaskMillis(), maxTaskNanos / 1e6, queued, maxQueued);
+        }
+    }
+}
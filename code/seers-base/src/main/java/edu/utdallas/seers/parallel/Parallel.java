@@ -1,35 +1,90 @@
 package edu.utdallas.seers.parallel;
 
+import edu.utdallas.seers.parameter.Options;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class Parallel {
+    public static final String SEARCH_POOL = "index-search";
+    /**
+     * Pool for running the queries of a batch concurrently, with {@link Options#getQueryThreads()}.
+     */
+    public static final String QUERY_POOL = "query";
+
     private Parallel() {
     }
 
     /**
-     * Runs the task within a new {@link ForkJoinPool} with the specified number of threads. Used
-     * to control the amount of threads used when running parallel streams. Normally useful when
-     * an amount smaller than the default is needed. A parallel stream will use the number of
-     * cores by default.
+     * Executor for searching the segments of Lucene indexes in parallel, shared by all indexes.
+     * It is the {@link ExecutorRegistry} pool with the number of threads in
+     * {@link Options#getSearchThreads()}.
      *
-     * @param task    Task to execute.
-     * @param threads Number of threads.
+     * @return The executor, or empty if segments should be searched by the calling thread.
      */
-    public static void tryRunWithThreads(Runnable task, int threads)
-            throws ExecutionException, InterruptedException {
-        new ForkJoinPool(threads)
-                .submit(task)
-                .get();
+    public static Optional<ExecutorService> getSearchExecutor() {
+        int threads = Options.getInstance().getSearchThreads();
+        if (threads <= 1) {
+            return Optional.empty();
+        }
+
+        return Optional.of(ExecutorRegistry.getInstance().get(SEARCH_POOL, threads));
     }
 
-    public static void runWithThreads(Runnable task, int threads) {
+    /**
+     * Applies the function to each item using the named pool of the {@link ExecutorRegistry}.
+     * Unlike a parallel stream, the function runs in these threads even if it blocks, and tasks it
+     * submits to other pools do not compete with the items. If the calling thread already belongs
+     * to the pool, the items are processed by the calling thread, since waiting for tasks queued
+     * behind the caller could deadlock.
+     *
+     * @param pool     Name of the pool.
+     * @param items    Items.
+     * @param function Function, must be safe to call concurrently.
+     * @param threads  Number of threads of the pool.
+     * @param <T>      Type of the items.
+     * @param <R>      Type of the results.
+     * @return The results in the same order as the items.
+     */
+    public static <T, R> List<R> mapInOrder(String pool, List<T> items, Function<? super T, ? extends R> function,
+                                            int threads) {
+        if (threads <= 1 || items.size() <= 1 ||
+                (ManagedExecutor.current() != null && ManagedExecutor.current().getName().equals(pool))) {
+            return items.stream()
+                    .map(function)
+                    .collect(Collectors.toList());
+        }
+
+        var executor = ExecutorRegistry.getInstance().get(pool, threads);
+        List<Future<? extends R>> futures = new ArrayList<>(items.size());
         try {
-            new ForkJoinPool(threads)
-                    .submit(task)
-                    .get();
-        } catch (InterruptedException | ExecutionException e) {
+            for (T item : items) {
+                futures.add(executor.submit(() -> function.apply(item)));
+            }
+
+            List<R> results = new ArrayList<>(items.size());
+            for (Future<? extends R> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // The pool is shared, so only the remaining items of this call are cancelled
+            futures.forEach(f -> f.cancel(true));
         }
     }
 }
@@ -16,8 +16,13 @@ public class Options {
     private static final Options options = new Options();
 
     private boolean ignoreCache = false;
+    private boolean inMemoryIndexes = false;
     private Path cachePath = Files.getTempFilePath("edu.utdallas.seers.cache");
     private List<Integer> hitsAtKRanks = Arrays.asList(1, 5, 10, 15, 20);
+    private int searchThreads = 1;
+    private int queryThreads = 1;
+    private int parseTimeBudget = 60_000;
+    private int parseNodeBudget = 5_000_000;
 
     private Options() {
     }
@@ -34,6 +39,18 @@ public class Options {
         this.ignoreCache = ignoreCache;
     }
 
+    /**
+     * @return Whether Lucene indexes are built and searched in memory instead of in the cache
+     * path. See {@link edu.utdallas.seers.retrieval.IndexDirectories}.
+     */
+    public boolean isInMemoryIndexes() {
+        return inMemoryIndexes;
+    }
+
+    private void setInMemoryIndexes(boolean inMemoryIndexes) {
+        this.inMemoryIndexes = inMemoryIndexes;
+    }
+
     public List<Integer> getHitsAtKRanks() {
         return hitsAtKRanks;
     }
@@ -50,6 +67,54 @@ public class Options {
         this.cachePath = cachePath;
     }
 
+    /**
+     * @return Number of threads that search the segments of an index during a single query. If
+     * 1, segments are searched by the calling thread.
+     */
+    public int getSearchThreads() {
+        return searchThreads;
+    }
+
+    private void setSearchThreads(int searchThreads) {
+        this.searchThreads = searchThreads;
+    }
+
+    /**
+     * @return Number of queries that are run concurrently when searching an index in batch.
+     */
+    public int getQueryThreads() {
+        return queryThreads;
+    }
+
+    private void setQueryThreads(int queryThreads) {
+        this.queryThreads = queryThreads;
+    }
+
+    /**
+     * @return Maximum time in milliseconds spent on a single source file before it is skipped. It
+     * applies separately to parsing, in wall-clock time, and to matching, in CPU time. 0 means no
+     * limit.
+     */
+    public int getParseTimeBudget() {
+        return parseTimeBudget;
+    }
+
+    private void setParseTimeBudget(int parseTimeBudget) {
+        this.parseTimeBudget = parseTimeBudget;
+    }
+
+    /**
+     * @return Maximum number of AST nodes visited in a single source file before it is skipped. 0
+     * means no limit.
+     */
+    public int getParseNodeBudget() {
+        return parseNodeBudget;
+    }
+
+    private void setParseNodeBudget(int parseNodeBudget) {
+        this.parseNodeBudget = parseNodeBudget;
+    }
+
     /**
      * Provides an interface to modify the Options object through command line parameters parsed
      * by Argparse4j.
@@ -73,6 +138,14 @@ public class Options {
             );
         }
 
+        public ArgumentBuilder addInMemoryIndexesOption() {
+            return addAction(
+                    new StoreTrueSilent(options::setInMemoryIndexes),
+                    "Builds indexes in memory for this run only, without reading or writing them in the cache",
+                    "--in-memory-indexes"
+            );
+        }
+
         public ArgumentBuilder addCachePathOption() {
             return addAction(
                     new StorePath(options::setCachePath),
@@ -96,6 +169,53 @@ public class Options {
             );
         }
 
+        public ArgumentBuilder addSearchThreadsOption() {
+            return addAction(
+                    new StoreValidatingSingle<Integer>(
+                            new StoreInteger(options::setSearchThreads),
+                            i -> i > 0,
+                            "Search threads must be > 0"
+                    ),
+                    "Threads used to search index segments in parallel during each query",
+                    "-S", "--search-threads"
+            );
+        }
+
+        public ArgumentBuilder addQueryThreadsOption() {
+            return addAction(
+                    new StoreValidatingSingle<Integer>(
+                            new StoreInteger(options::setQueryThreads),
+                            i -> i > 0,
+                            "Query threads must be > 0"
+                    ),
+                    "Number of queries that are run concurrently on each index",
+                    "-Q", "--query-threads"
+            );
+        }
+
+        public ArgumentBuilder addParseBudgetOptions() {
+            addAction(
+                    new StoreValidatingSingle<Integer>(
+                            new StoreInteger(options::setParseTimeBudget),
+                            i -> i >= 0,
+                            "Parse time budget must be >= 0"
+                    ),
+                    "Time in milliseconds for parsing (wall-clock) and for matching (CPU) after which a source " +
+                            "file is skipped, 0 for no limit",
+                    "--parse-time-budget"
+            );
+
+            return addAction(
+                    new StoreValidatingSingle<Integer>(
+                            new StoreInteger(options::setParseNodeBudget),
+                            i -> i >= 0,
+                            "Parse node budget must be >= 0"
+                    ),
+                    "Number of AST nodes after which a source file is skipped, 0 for no limit",
+                    "--parse-node-budget"
+            );
+        }
+
         public ArgumentParser build() {
             return parser;
         }
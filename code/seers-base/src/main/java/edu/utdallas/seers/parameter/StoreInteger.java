@@ -0,0 +1,14 @@
+package edu.utdallas.seers.parameter;
+
+import java.util.function.Consumer;
+
+public class StoreInteger extends StoreSingleSilent<Integer, Integer> {
+    public StoreInteger(Consumer<Integer> setter) {
+        super(setter, Integer.class);
+    }
+
+    @Override
+    protected Integer transform(Integer value) {
+        return value;
+    }
+}
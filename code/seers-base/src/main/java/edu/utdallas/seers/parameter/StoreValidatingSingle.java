@@ -1,5 +1,8 @@
 package edu.utdallas.seers.parameter;
 
+import net.sourceforge.argparse4j.impl.action.StoreArgumentAction;
+import net.sourceforge.argparse4j.inf.ArgumentAction;
+
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
@@ -8,11 +11,15 @@ public class StoreValidatingSingle<T> extends StoreValidating<T, T> {
 
     private final Predicate<T> validator;
 
-    public StoreValidatingSingle(Predicate<T> validator, String errorMessage) {
-        super(errorMessage);
+    public StoreValidatingSingle(ArgumentAction delegate, Predicate<T> validator, String errorMessage) {
+        super(delegate, errorMessage);
         this.validator = validator;
     }
 
+    public StoreValidatingSingle(Predicate<T> validator, String errorMessage) {
+        this(new StoreArgumentAction(), validator, errorMessage);
+    }
+
     @Override
     protected List<T> findInvalidElements(T value) {
         return validator.test(value) ? Collections.emptyList() : Collections.singletonList(value);
@@ -2,28 +2,27 @@ package edu.utdallas.seers.retrieval;
 
 import edu.utdallas.seers.parameter.Options;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static edu.utdallas.seers.collection.Collections.transformMap;
 
+/**
+ * Mergeable accumulator of evaluation measures. Evaluations can be added one by one as they are
+ * computed, so their result lists do not need to be kept. Instead of the ranks of each query, it
+ * keeps a histogram with the number of queries whose first true positive is at each rank, from
+ * which the hits at any K and the average rank are derived.
+ */
 public class AggregatedRetrievalEvaluation {
 
-    private final Map<Integer, Integer> hitsAtKAccum = new HashMap<>(
-            Options.getInstance().getHitsAtKRanks().stream()
-                    .collect(Collectors.toMap(
-                            i -> i,
-                            i -> 0
-                    ))
-    );
+    private final TreeMap<Integer, Integer> rankHistogram = new TreeMap<>();
     private int counter = 0;
     private float recallAccum = 0;
     private float rrAccum = 0;
     private float apAccum = 0;
     private float resultsAccum = 0;
-    private float rankAccum = 0;
     private float resultSizeAccum = 0;
 
     public static <E extends RetrievalEvaluation<?, ?>>
@@ -39,36 +38,47 @@ public class AggregatedRetrievalEvaluation {
     public static AggregatedRetrievalEvaluation aggregate(List<AggregatedRetrievalEvaluation> es) {
         var accum = new AggregatedRetrievalEvaluation();
         for (AggregatedRetrievalEvaluation e : es) {
-            accum.accumulate(e);
+            accum.merge(e);
         }
 
         return accum;
     }
 
-    private void accumulate(AggregatedRetrievalEvaluation e) {
+    /**
+     * Adds the measures of another accumulator to this one.
+     *
+     * @param e Another accumulator, which is not modified.
+     * @return This accumulator.
+     */
+    public AggregatedRetrievalEvaluation merge(AggregatedRetrievalEvaluation e) {
         counter += e.counter;
         recallAccum += e.recallAccum;
         rrAccum += e.rrAccum;
         apAccum += e.apAccum;
         resultsAccum += e.resultsAccum;
-        rankAccum += e.rankAccum;
-        hitsAtKAccum.replaceAll((k, c) -> c + e.hitsAtKAccum.get(k));
+        e.rankHistogram.forEach((r, c) -> rankHistogram.merge(r, c, Integer::sum));
         resultSizeAccum += e.resultSizeAccum;
+
+        return this;
     }
 
-    private void accumulate(RetrievalEvaluation<?, ?> eval) {
+    /**
+     * Adds the measures of one evaluation. Only its true positive ranks and counts are read, so the
+     * evaluation can have its results removed.
+     *
+     * @param eval Evaluation of a query.
+     * @return This accumulator.
+     */
+    public AggregatedRetrievalEvaluation accumulate(RetrievalEvaluation<?, ?> eval) {
         counter++;
         recallAccum += eval.getRecall();
         rrAccum += eval.getReciprocalRank();
         apAccum += eval.getAveragePrecision();
         resultsAccum += eval.getTotalResults();
-        rankAccum += eval.getRank().orElse(0);
-        eval.getRank()
-                .ifPresent(r -> hitsAtKAccum.replaceAll((k, c) -> {
-                    if (r <= k) return c + 1;
-                    return c;
-                }));
+        eval.getRank().ifPresent(r -> rankHistogram.merge(r, 1, Integer::sum));
         resultSizeAccum += eval.getAverageResultSize();
+
+        return this;
     }
 
     private float calculateAverage(float accum) {
@@ -95,12 +105,23 @@ public class AggregatedRetrievalEvaluation {
         return calculateAverage(resultsAccum);
     }
 
+    /**
+     * @param k Rank.
+     * @return Number of queries with a true positive at rank {@code k} or higher.
+     */
+    public int getHitsAtK(int k) {
+        return rankHistogram.headMap(k, true).values().stream()
+                .mapToInt(c -> c)
+                .sum();
+    }
+
     public Map<Integer, Float> getPercentHitsAtK() {
-        return transformMap(hitsAtKAccum, i -> i, i -> (float) i / counter);
+        return transformMap(getHitsAtK(), i -> i, i -> (float) i / counter);
     }
 
     public Map<Integer, Integer> getHitsAtK() {
-        return transformMap(hitsAtKAccum, i -> i, i -> i);
+        return Options.getInstance().getHitsAtKRanks().stream()
+                .collect(Collectors.toMap(k -> k, this::getHitsAtK));
     }
 
     public int getQueryCount() {
@@ -108,7 +129,11 @@ public class AggregatedRetrievalEvaluation {
     }
 
     public float getAverageRank() {
-        return rankAccum / (counter * getAverageRecall());
+        long rankSum = rankHistogram.entrySet().stream()
+                .mapToLong(e -> (long) e.getKey() * e.getValue())
+                .sum();
+
+        return rankSum / (counter * getAverageRecall());
     }
 
     public float getMeanAverageResultSize() {
@@ -1,23 +1,21 @@
 package edu.utdallas.seers.retrieval;
 
+import edu.utdallas.seers.parallel.Parallel;
+import edu.utdallas.seers.parameter.Options;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public abstract class Index<T extends Retrievable> {
 
@@ -28,11 +26,11 @@ public abstract class Index<T extends Retrievable> {
     protected Index(Path path) {
         IndexReader reader;
         try {
-            reader = DirectoryReader.open(FSDirectory.open(path));
+            reader = DirectoryReader.open(IndexDirectories.open(path));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        searcher = new IndexSearcher(reader);
+        searcher = createSearcher(reader);
         getSimilarity().ifPresent(searcher::setSimilarity);
     }
 
@@ -40,7 +38,35 @@ public abstract class Index<T extends Retrievable> {
         searcher = null;
     }
 
+    /**
+     * @param reader Reader.
+     * @return A searcher that searches segments in parallel if there are search threads
+     * configured in {@link Options}.
+     */
+    public static IndexSearcher createSearcher(IndexReader reader) {
+        return Parallel.getSearchExecutor()
+                .map(e -> new IndexSearcher(reader, e))
+                .orElseGet(() -> new IndexSearcher(reader));
+    }
+
+    /**
+     * Searches the whole index. Entities are only loaded when results are accessed.
+     *
+     * @param text  Whitespace-separated terms.
+     * @param field Field to search.
+     * @return All matching results in rank order.
+     */
     public List<SimpleRetrievalResult<T>> search(String text, String field) {
+        return search(text, field, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param text  Whitespace-separated terms.
+     * @param field Field to search.
+     * @param topK  Maximum number of results.
+     * @return The top results, more can be retrieved with {@link ResultView#nextPage(int)}.
+     */
+    public ResultView<T> search(String text, String field, int topK) {
         BooleanQuery.Builder builder = new BooleanQuery.Builder();
 
         whitespacePattern.splitAsStream(text)
@@ -49,36 +75,60 @@ public abstract class Index<T extends Retrievable> {
                         getOccurClause()
                 ));
 
+        return search(builder.build(), topK);
+    }
+
+    /**
+     * @param query Query, which may be built with term states for the reader of this index.
+     * @param topK  Maximum number of results.
+     * @return The top results, more can be retrieved with {@link ResultView#nextPage(int)}.
+     */
+    public ResultView<T> search(org.apache.lucene.search.Query query, int topK) {
         TopDocs topDocs;
         try {
-            topDocs = searcher.search(builder.build(), Integer.MAX_VALUE);
+            topDocs = searcher.search(query, topK);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
 
-        AtomicInteger rank = new AtomicInteger(1);
+        return createView(query, topDocs, 1);
+    }
+
+    /**
+     * @param previous Previous page of results.
+     * @param topK     Maximum number of results.
+     * @return The results that follow the previous page.
+     */
+    public ResultView<T> searchAfter(ResultView<T> previous, int topK) {
+        var after = previous.getLastScoreDoc();
+        if (after == null) {
+            return createView(previous.getQuery(), new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]),
+                    previous.getNextRank());
+        }
 
-        var results = Arrays.stream(topDocs.scoreDocs)
-                .sequential()
-                .map(sd -> {
-                    Document doc;
-                    String idFieldName = getIDFieldName();
+        TopDocs topDocs;
+        try {
+            topDocs = searcher.searchAfter(after, previous.getQuery(), topK);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-                    try {
-                        doc = searcher.doc(sd.doc, Collections.singleton(idFieldName));
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
+        return createView(previous.getQuery(), topDocs, previous.getNextRank());
+    }
 
-                    // Will throw an exception if null, i.e. field does not exist
-                    String docId = Optional.of(doc.get(idFieldName)).get();
+    private ResultView<T> createView(org.apache.lucene.search.Query query, TopDocs topDocs, int firstRank) {
+        var scoreDocs = topDocs.scoreDocs;
+        int[] docIDs = new int[scoreDocs.length];
+        float[] scores = new float[scoreDocs.length];
 
-                    return new ScoredDocID(sd.doc, docId, rank.getAndIncrement(), sd.score);
-                });
+        for (int i = 0; i < scoreDocs.length; i++) {
+            docIDs[i] = scoreDocs[i].doc;
+            scores[i] = scoreDocs[i].score;
+        }
 
-        return results
-                .map(sd -> new SimpleRetrievalResult<>(loadEntity(sd), sd.getRank(), sd.getScore()))
-                .collect(Collectors.toList());
+        var totalHits = topDocs.totalHits;
+        return new ResultView<>(this, query, docIDs, scores, totalHits.value,
+                totalHits.relation == TotalHits.Relation.EQUAL_TO, firstRank);
     }
 
     protected BooleanClause.Occur getOccurClause() {
@@ -87,6 +137,20 @@ public abstract class Index<T extends Retrievable> {
 
     protected abstract T loadEntity(ScoredDocID sd);
 
+    private String readID(int doc) {
+        Document document;
+        String idFieldName = getIDFieldName();
+
+        try {
+            document = searcher.doc(doc, Collections.singleton(idFieldName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Will throw an exception if null, i.e. field does not exist
+        return Optional.of(document.get(idFieldName)).get();
+    }
+
     protected Optional<Similarity> getSimilarity() {
         return Optional.empty();
     }
@@ -100,19 +164,29 @@ public abstract class Index<T extends Retrievable> {
 
     protected static class ScoredDocID {
 
-        private final String id;
+        private final Index<?> index;
         private final float score;
         private final int rank;
         private final int indexID;
+        private String id;
 
-        ScoredDocID(int doc, String docId, int rank, float score) {
+        ScoredDocID(Index<?> index, int doc, int rank, float score) {
+            this.index = index;
             indexID = doc;
-            id = docId;
             this.rank = rank;
             this.score = score;
         }
 
+        /**
+         * Reads the ID field of the document the first time it is called.
+         *
+         * @return The ID.
+         */
         public String getId() {
+            if (id == null) {
+                id = index.readID(indexID);
+            }
+
             return id;
         }
 
@@ -7,7 +7,6 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
 import org.jooq.lambda.Unchecked;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +26,7 @@ public abstract class IndexBuilder<T extends Retrievable> {
         var indexPath = resolveIndexPathForName(indexName);
         try {
             if (!Options.getInstance().isIgnoreCache() &&
-                    DirectoryReader.indexExists(FSDirectory.open(indexPath))) {
+                    DirectoryReader.indexExists(IndexDirectories.open(indexPath))) {
                 logger.info("Using existing index at: {}", indexPath);
                 return createIndex(indexPath);
             }
@@ -42,7 +41,7 @@ public abstract class IndexBuilder<T extends Retrievable> {
 
         getSimilarity().ifPresent(writerConfig::setSimilarity);
 
-        try (IndexWriter indexWriter = new IndexWriter(FSDirectory.open(indexPath), writerConfig)) {
+        try (IndexWriter indexWriter = new IndexWriter(IndexDirectories.open(indexPath), writerConfig)) {
             items.forEach(t -> {
                 Optional<Iterable<IndexableField>> fields = generateFields(t, indexName);
 
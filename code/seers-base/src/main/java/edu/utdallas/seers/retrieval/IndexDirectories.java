@@ -0,0 +1,127 @@
+package edu.utdallas.seers.retrieval;
+
+import edu.utdallas.seers.parameter.Options;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static edu.utdallas.seers.file.Files.createDirectories;
+
+/**
+ * Opens the Lucene directory of each index path. If {@link Options#isInMemoryIndexes()} is set,
+ * indexes are kept in memory for the rest of the run instead of on disk, which avoids disk I/O
+ * in one-off runs and tests. An in-memory index is shared by everyone that opens its path, and
+ * can be copied to that path with {@link #snapshot(Path)} so that later runs use it.
+ */
+public class IndexDirectories {
+    /**
+     * Identifies the in-memory indexes of this run in their fingerprints.
+     */
+    private static final String RUN_ID = UUID.randomUUID().toString();
+
+    private static final ConcurrentMap<Path, ByteBuffersDirectory> memoryDirectories = new ConcurrentHashMap<>();
+
+    private IndexDirectories() {
+    }
+
+    /**
+     * @param path Path of the index.
+     * @return The directory of the index. An in-memory directory must not be closed since it is
+     * shared.
+     * @throws IOException If the directory cannot be opened.
+     */
+    public static Directory open(Path path) throws IOException {
+        if (Options.getInstance().isInMemoryIndexes()) {
+            return memoryDirectories.computeIfAbsent(toKey(path), p -> new ByteBuffersDirectory());
+        }
+
+        return FSDirectory.open(path);
+    }
+
+    /**
+     * @return Whether indexes are in memory and the index at the path was opened during this run.
+     */
+    public static boolean isInMemory(Path path) {
+        return Options.getInstance().isInMemoryIndexes() && memoryDirectories.containsKey(toKey(path));
+    }
+
+    /**
+     * Fingerprint of an in-memory index. Unlike the files of an index on disk, it is different in
+     * each run, since the index is rebuilt.
+     *
+     * @param path Path of the index.
+     * @return Hash of the run and of the names and sizes of the index files, which change when
+     * the index is rewritten, or empty if the index is not in memory.
+     */
+    public static Optional<String> getMemoryFingerprint(Path path) {
+        if (!isInMemory(path)) {
+            return Optional.empty();
+        }
+
+        var directory = memoryDirectories.get(toKey(path));
+
+        var fingerprint = new StringBuilder(RUN_ID).append(':').append(toKey(path));
+        try {
+            for (String file : directory.listAll()) {
+                fingerprint.append(':').append(file).append('=').append(directory.fileLength(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return Optional.of(UUID.nameUUIDFromBytes(fingerprint.toString().getBytes(StandardCharsets.UTF_8)).toString());
+    }
+
+    /**
+     * Copies an in-memory index to its path, replacing any index that is there. The index must be
+     * committed and not being written.
+     *
+     * @param path Path of the index.
+     * @return {@code false} if the index is not in memory, in which case nothing is done.
+     */
+    public static boolean snapshot(Path path) {
+        var source = memoryDirectories.get(toKey(path));
+        if (source == null) {
+            return false;
+        }
+
+        createDirectories(path);
+        try (var target = FSDirectory.open(path)) {
+            for (String file : target.listAll()) {
+                target.deleteFile(file);
+            }
+
+            // Segment files go last so that the commit only becomes visible when it is complete
+            var files = source.listAll();
+            Arrays.sort(files, Comparator.comparing((String f) -> f.startsWith(IndexFileNames.SEGMENTS))
+                    .thenComparing(Comparator.naturalOrder()));
+            for (String file : files) {
+                target.copyFrom(source, file, file, IOContext.DEFAULT);
+            }
+
+            target.sync(Arrays.asList(files));
+            target.syncMetaData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return true;
+    }
+
+    private static Path toKey(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
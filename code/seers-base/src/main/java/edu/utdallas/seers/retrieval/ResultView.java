@@ -0,0 +1,126 @@
+package edu.utdallas.seers.retrieval;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Results of an index search. Only the document IDs and scores are kept, entities are loaded
+ * from the index when a result is accessed for the first time. Can be a page of a larger result
+ * set, in which case ranks continue from the previous page.
+ *
+ * @param <T> Type of the results.
+ */
+public class ResultView<T extends Retrievable> extends AbstractList<SimpleRetrievalResult<T>>
+        implements RandomAccess {
+
+    private final Index<T> index;
+    private final Query query;
+    private final int[] docIDs;
+    private final float[] scores;
+    private final long totalHits;
+    private final boolean totalHitsExact;
+    private final int firstRank;
+    /**
+     * Loaded on demand.
+     */
+    private final Object[] entities;
+
+    ResultView(Index<T> index, Query query, int[] docIDs, float[] scores, long totalHits, boolean totalHitsExact,
+               int firstRank) {
+        this.index = index;
+        this.query = query;
+        this.docIDs = docIDs;
+        this.scores = scores;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+        this.firstRank = firstRank;
+        entities = new Object[docIDs.length];
+    }
+
+    /**
+     * @param i 0-based position in this view.
+     * @return The result, loading its entity if it has not been loaded.
+     */
+    @Override
+    public SimpleRetrievalResult<T> get(int i) {
+        return new SimpleRetrievalResult<>(getEntity(i), getRank(i), scores[i]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getEntity(int i) {
+        var entity = entities[i];
+        if (entity == null) {
+            // Loading twice from different threads is harmless
+            entity = index.loadEntity(new Index.ScoredDocID(index, docIDs[i], getRank(i), scores[i]));
+            entities[i] = entity;
+        }
+
+        return (T) entity;
+    }
+
+    public int getRank(int i) {
+        return firstRank + i;
+    }
+
+    public float getScore(int i) {
+        return scores[i];
+    }
+
+    public int getDocID(int i) {
+        return docIDs[i];
+    }
+
+    @Override
+    public int size() {
+        return docIDs.length;
+    }
+
+    /**
+     * @return Number of documents that matched the query, which can be more than the size of this
+     * view if it was limited. Lucene stops counting after a threshold when the number of results is
+     * limited, in which case this is a lower bound.
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    /**
+     * @return Whether there can be results after this view.
+     */
+    public boolean hasNextPage() {
+        return getNextRank() - 1 < totalHits || !totalHitsExact && !isEmpty();
+    }
+
+    /**
+     * @param topK Maximum results in the page.
+     * @return The results that follow the last one in this view.
+     */
+    public ResultView<T> nextPage(int topK) {
+        return index.searchAfter(this, topK);
+    }
+
+    Query getQuery() {
+        return query;
+    }
+
+    int getNextRank() {
+        return firstRank + docIDs.length;
+    }
+
+    /**
+     * @return The last result, or null if there are none.
+     */
+    ScoreDoc getLastScoreDoc() {
+        int last = docIDs.length - 1;
+        return last >= 0 ?
+                new ScoreDoc(docIDs[last], scores[last]) :
+                null;
+    }
+}
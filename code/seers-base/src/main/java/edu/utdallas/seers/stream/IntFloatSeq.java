@@ -0,0 +1,209 @@
+package edu.utdallas.seers.stream;
+
+import org.jooq.lambda.Seq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sequence of (int, float) pairs, such as document IDs and scores, that does not box them as
+ * {@link PairSeq} does. Operations are fused: filters and mappings are applied to each pair in a
+ * single pass when a terminal operation runs, and results are collected into primitive arrays.
+ * A sequence can be consumed more than once only if its source can, e.g. an array.
+ */
+public final class IntFloatSeq {
+
+    private final Consumer<IntFloatConsumer> source;
+
+    private IntFloatSeq(Consumer<IntFloatConsumer> source) {
+        this.source = source;
+    }
+
+    public static IntFloatSeq of(int[] keys, float[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values must have the same length");
+        }
+
+        return of(keys, values, keys.length);
+    }
+
+    private static IntFloatSeq of(int[] keys, float[] values, int size) {
+        return new IntFloatSeq(c -> {
+            for (int i = 0; i < size; i++) {
+                c.accept(keys[i], values[i]);
+            }
+        });
+    }
+
+    public static <T> IntFloatSeq seq(T[] items, ToIntFunction<? super T> keyMapper,
+                                      ObjFloatSeq.ToFloatFunction<? super T> valueMapper) {
+        return new IntFloatSeq(c -> {
+            for (T item : items) {
+                c.accept(keyMapper.applyAsInt(item), valueMapper.applyAsFloat(item));
+            }
+        });
+    }
+
+    public static <T> IntFloatSeq seq(Iterable<T> items, ToIntFunction<? super T> keyMapper,
+                                      ObjFloatSeq.ToFloatFunction<? super T> valueMapper) {
+        return new IntFloatSeq(c -> {
+            for (T item : items) {
+                c.accept(keyMapper.applyAsInt(item), valueMapper.applyAsFloat(item));
+            }
+        });
+    }
+
+    /**
+     * @return Pairs of the position of each value, starting at 0, and the value.
+     */
+    public static IntFloatSeq zipWithIndex(float[] values) {
+        return new IntFloatSeq(c -> {
+            for (int i = 0; i < values.length; i++) {
+                c.accept(i, values[i]);
+            }
+        });
+    }
+
+    public IntFloatSeq filter(IntFloatPredicate predicate) {
+        return new IntFloatSeq(c -> source.accept((k, v) -> {
+            if (predicate.test(k, v)) {
+                c.accept(k, v);
+            }
+        }));
+    }
+
+    public IntFloatSeq mapValues(IntFloatToFloatFunction mapper) {
+        return new IntFloatSeq(c -> source.accept((k, v) -> c.accept(k, mapper.applyAsFloat(k, v))));
+    }
+
+    public <T> ObjFloatSeq<T> mapKeys(IntFunction<? extends T> mapper) {
+        return ObjFloatSeq.fromSource(c -> source.accept((k, v) -> c.accept(mapper.apply(k), v)));
+    }
+
+    public void forEach(IntFloatConsumer consumer) {
+        source.accept(consumer);
+    }
+
+    public int count() {
+        var count = new int[1];
+        source.accept((k, v) -> count[0]++);
+
+        return count[0];
+    }
+
+    /**
+     * @return The sum of the values, added in order as floats.
+     */
+    public float sum() {
+        var sum = new float[1];
+        source.accept((k, v) -> sum[0] += v);
+
+        return sum[0];
+    }
+
+    /**
+     * Selects the pairs with the highest values without sorting the whole sequence.
+     *
+     * @param k Maximum number of pairs.
+     * @return The pairs sorted by value in descending order. Pairs with the same value keep their
+     * order.
+     */
+    public IntFloatSeq topK(int k) {
+        var top = new TopFloats(k);
+        var keys = new int[][]{new int[top.capacity()]};
+
+        source.accept((key, value) -> {
+            int slot = top.offer(value);
+            if (slot >= 0) {
+                if (slot >= keys[0].length) {
+                    keys[0] = Arrays.copyOf(keys[0], top.capacity());
+                }
+                keys[0][slot] = key;
+            }
+        });
+
+        var slots = top.drainSorted();
+        var sortedKeys = new int[slots.length];
+        var sortedValues = new float[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            sortedKeys[i] = keys[0][slots[i]];
+            sortedValues[i] = top.getValue(slots[i]);
+        }
+
+        return of(sortedKeys, sortedValues);
+    }
+
+    public IntFloatSeq sortedByValueDescending() {
+        return topK(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Collects the pairs so that the sequence can be consumed multiple times.
+     */
+    public IntFloatSeq collect() {
+        var collected = new Collected();
+        source.accept(collected);
+
+        return of(collected.keys, collected.values, collected.size);
+    }
+
+    public int[] keys() {
+        var collected = new Collected();
+        source.accept(collected);
+
+        return Arrays.copyOf(collected.keys, collected.size);
+    }
+
+    public float[] values() {
+        var collected = new Collected();
+        source.accept(collected);
+
+        return Arrays.copyOf(collected.values, collected.size);
+    }
+
+    public <R> Seq<R> mapToObj(IntFloatFunction<? extends R> mapper) {
+        var results = new ArrayList<R>();
+        source.accept((k, v) -> results.add(mapper.apply(k, v)));
+
+        return Seq.seq(results);
+    }
+
+    private static class Collected implements IntFloatConsumer {
+        private int[] keys = new int[16];
+        private float[] values = new float[16];
+        private int size = 0;
+
+        @Override
+        public void accept(int key, float value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            keys[size] = key;
+            values[size++] = value;
+        }
+    }
+
+    @FunctionalInterface
+    public interface IntFloatConsumer {
+        void accept(int key, float value);
+    }
+
+    @FunctionalInterface
+    public interface IntFloatPredicate {
+        boolean test(int key, float value);
+    }
+
+    @FunctionalInterface
+    public interface IntFloatToFloatFunction {
+        float applyAsFloat(int key, float value);
+    }
+
+    @FunctionalInterface
+    public interface IntFloatFunction<R> {
+        R apply(int key, float value);
+    }
+}
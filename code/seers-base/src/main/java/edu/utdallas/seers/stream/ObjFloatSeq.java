@@ -0,0 +1,211 @@
+package edu.utdallas.seers.stream;
+
+import org.jooq.lambda.Seq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Sequence of (object, float) pairs, such as names and scores, that does not box the floats as
+ * {@link PairSeq} does. Operations are fused as in {@link IntFloatSeq}.
+ *
+ * @param <T> Type of the keys.
+ */
+public final class ObjFloatSeq<T> {
+
+    private final Consumer<ObjFloatConsumer<? super T>> source;
+
+    private ObjFloatSeq(Consumer<ObjFloatConsumer<? super T>> source) {
+        this.source = source;
+    }
+
+    static <T> ObjFloatSeq<T> fromSource(Consumer<ObjFloatConsumer<? super T>> source) {
+        return new ObjFloatSeq<>(source);
+    }
+
+    public static <T> ObjFloatSeq<T> of(T[] keys, float[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values must have the same length");
+        }
+
+        return of(keys, values, 0, 0, keys.length);
+    }
+
+    /**
+     * Pairs the keys with a range of values, e.g. a row of a matrix stored in a single array.
+     *
+     * @param keys   Keys.
+     * @param values Values.
+     * @param from   Position of the value of the first key.
+     * @return A view of the values, which sees later changes to the array.
+     */
+    public static <T> ObjFloatSeq<T> of(T[] keys, float[] values, int from) {
+        if (from < 0 || from + keys.length > values.length) {
+            throw new IndexOutOfBoundsException("Values do not have " + keys.length + " elements at " + from);
+        }
+
+        return of(keys, values, from, 0, keys.length);
+    }
+
+    private static <T> ObjFloatSeq<T> of(T[] keys, float[] values, int valueOffset, int from, int to) {
+        return new ObjFloatSeq<>(c -> {
+            for (int i = from; i < to; i++) {
+                c.accept(keys[i], values[valueOffset + i]);
+            }
+        });
+    }
+
+    public static <T> ObjFloatSeq<T> seq(Iterable<T> items, ToFloatFunction<? super T> valueMapper) {
+        return new ObjFloatSeq<>(c -> {
+            for (T item : items) {
+                c.accept(item, valueMapper.applyAsFloat(item));
+            }
+        });
+    }
+
+    public ObjFloatSeq<T> filter(ObjFloatPredicate<? super T> predicate) {
+        return new ObjFloatSeq<>(c -> source.accept((k, v) -> {
+            if (predicate.test(k, v)) {
+                c.accept(k, v);
+            }
+        }));
+    }
+
+    public ObjFloatSeq<T> mapValues(ObjFloatToFloatFunction<? super T> mapper) {
+        return new ObjFloatSeq<>(c -> source.accept((k, v) -> c.accept(k, mapper.applyAsFloat(k, v))));
+    }
+
+    public void forEach(ObjFloatConsumer<? super T> consumer) {
+        source.accept(consumer);
+    }
+
+    /**
+     * @param key          Key.
+     * @param defaultValue Value if the key is not found.
+     * @return The value of the first pair with the key. The sequence is scanned, so it should be
+     * short.
+     */
+    public float getOrDefault(T key, float defaultValue) {
+        var result = new float[]{defaultValue};
+        var found = new boolean[1];
+
+        source.accept((k, v) -> {
+            if (!found[0] && Objects.equals(k, key)) {
+                result[0] = v;
+                found[0] = true;
+            }
+        });
+
+        return result[0];
+    }
+
+    public int count() {
+        var count = new int[1];
+        source.accept((k, v) -> count[0]++);
+
+        return count[0];
+    }
+
+    /**
+     * @return The sum of the values, added in order as floats.
+     */
+    public float sum() {
+        var sum = new float[1];
+        source.accept((k, v) -> sum[0] += v);
+
+        return sum[0];
+    }
+
+    /**
+     * Selects the pairs with the highest values without sorting the whole sequence.
+     *
+     * @param k Maximum number of pairs.
+     * @return The pairs sorted by value in descending order. Pairs with the same value keep their
+     * order.
+     */
+    @SuppressWarnings("unchecked")
+    public ObjFloatSeq<T> topK(int k) {
+        var top = new TopFloats(k);
+        var keys = new Object[][]{new Object[top.capacity()]};
+
+        source.accept((key, value) -> {
+            int slot = top.offer(value);
+            if (slot >= 0) {
+                if (slot >= keys[0].length) {
+                    keys[0] = Arrays.copyOf(keys[0], top.capacity());
+                }
+                keys[0][slot] = key;
+            }
+        });
+
+        var slots = top.drainSorted();
+        var sortedKeys = new Object[slots.length];
+        var sortedValues = new float[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            sortedKeys[i] = keys[0][slots[i]];
+            sortedValues[i] = top.getValue(slots[i]);
+        }
+
+        return of((T[]) sortedKeys, sortedValues);
+    }
+
+    public ObjFloatSeq<T> sortedByValueDescending() {
+        return topK(Integer.MAX_VALUE);
+    }
+
+    public List<T> keys() {
+        var keys = new ArrayList<T>();
+        source.accept((k, v) -> keys.add(k));
+
+        return keys;
+    }
+
+    public float[] values() {
+        var values = new float[][]{new float[16]};
+        var size = new int[1];
+
+        source.accept((k, v) -> {
+            if (size[0] == values[0].length) {
+                values[0] = Arrays.copyOf(values[0], 2 * size[0]);
+            }
+            values[0][size[0]++] = v;
+        });
+
+        return Arrays.copyOf(values[0], size[0]);
+    }
+
+    public <R> Seq<R> combine(ObjFloatFunction<? super T, ? extends R> mapper) {
+        var results = new ArrayList<R>();
+        source.accept((k, v) -> results.add(mapper.apply(k, v)));
+
+        return Seq.seq(results);
+    }
+
+    @FunctionalInterface
+    public interface ObjFloatConsumer<T> {
+        void accept(T key, float value);
+    }
+
+    @FunctionalInterface
+    public interface ObjFloatPredicate<T> {
+        boolean test(T key, float value);
+    }
+
+    @FunctionalInterface
+    public interface ObjFloatToFloatFunction<T> {
+        float applyAsFloat(T key, float value);
+    }
+
+    @FunctionalInterface
+    public interface ObjFloatFunction<T, R> {
+        R apply(T key, float value);
+    }
+
+    @FunctionalInterface
+    public interface ToFloatFunction<T> {
+        float applyAsFloat(T value);
+    }
+}
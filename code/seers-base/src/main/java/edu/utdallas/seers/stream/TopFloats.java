@@ -0,0 +1,140 @@
+package edu.utdallas.seers.stream;
+
+import java.util.Arrays;
+
+/**
+ * Bounded heap that selects the K highest values of a sequence, keeping the earliest among equal
+ * values. It only stores values; callers keep the element of each value in their own array at the
+ * slot returned by {@link #offer(float)}, growing it to {@link #capacity()}.
+ */
+final class TopFloats {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+    private float[] values;
+    private long[] orders;
+    /**
+     * Min-heap of slots, with the lowest value, or the latest among equal values, at the root.
+     */
+    private int[] heap;
+    private int size = 0;
+    private long count = 0;
+
+    TopFloats(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K must be >= 0");
+        }
+
+        this.k = k;
+        int capacity = Math.min(k, INITIAL_CAPACITY);
+        values = new float[capacity];
+        orders = new long[capacity];
+        heap = new int[capacity];
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param value A value of the sequence.
+     * @return The slot where the element of the value must be stored, or -1 if it is not among
+     * the highest values.
+     */
+    int offer(float value) {
+        long order = count++;
+
+        if (size < k) {
+            if (size == values.length) {
+                int capacity = (int) Math.min(k, 2L * values.length);
+                values = Arrays.copyOf(values, capacity);
+                orders = Arrays.copyOf(orders, capacity);
+                heap = Arrays.copyOf(heap, capacity);
+            }
+
+            int slot = size;
+            values[slot] = value;
+            orders[slot] = order;
+            heap[size++] = slot;
+            siftUp(size - 1);
+
+            return slot;
+        }
+
+        if (k == 0 || Float.compare(value, values[heap[0]]) <= 0) {
+            return -1;
+        }
+
+        int slot = heap[0];
+        values[slot] = value;
+        orders[slot] = order;
+        siftDown(0);
+
+        return slot;
+    }
+
+    /**
+     * Empties the heap.
+     *
+     * @return The slots from the highest value to the lowest.
+     */
+    int[] drainSorted() {
+        var sorted = new int[size];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+        }
+
+        return sorted;
+    }
+
+    float getValue(int slot) {
+        return values[slot];
+    }
+
+    private boolean isWorse(int slot, int other) {
+        int comparison = Float.compare(values[slot], values[other]);
+        return comparison < 0 || (comparison == 0 && orders[slot] > orders[other]);
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!isWorse(slot, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = slot;
+    }
+
+    private void siftDown(int position) {
+        if (size == 0) {
+            return;
+        }
+
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isWorse(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!isWorse(heap[child], slot)) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = slot;
+    }
+}
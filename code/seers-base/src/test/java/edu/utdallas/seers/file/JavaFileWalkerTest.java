@@ -0,0 +1,223 @@
+package edu.utdallas.seers.file;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JavaFileWalkerTest {
+
+    private static final Set<Path> EXCLUDED = Set.of(Path.of("module", "excluded"));
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private List<Path> javaFiles;
+
+    private static List<Path> collect(Spliterator<Path> spliterator) {
+        var paths = new ArrayList<Path>();
+        spliterator.forEachRemaining(paths::add);
+        return paths;
+    }
+
+    /**
+     * Splits until no split is possible and returns the leaves in order.
+     */
+    private static List<Spliterator<Path>> splitAll(Spliterator<Path> spliterator) {
+        var prefix = spliterator.trySplit();
+        if (prefix == null) {
+            return List.of(spliterator);
+        }
+
+        var leaves = new ArrayList<>(splitAll(prefix));
+        leaves.addAll(splitAll(spliterator));
+        return leaves;
+    }
+
+    private Path createFile(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.createFile(path);
+    }
+
+    /**
+     * Directories with only files, only subdirectories, both, and nothing, and enough files so
+     * that all of them are split.
+     */
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("project").toPath();
+        javaFiles = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            javaFiles.add(createFile(root.resolve("Root" + i + ".java")));
+        }
+        for (int i = 0; i < 40; i++) {
+            javaFiles.add(createFile(root.resolve("module/src/a/A" + i + ".java")));
+        }
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 7; j++) {
+                javaFiles.add(createFile(root.resolve("module/src/b/c" + i + "/C" + j + ".java")));
+            }
+        }
+        javaFiles.add(createFile(root.resolve("other/deep/deeper/deepest/D.java")));
+        Files.createDirectories(root.resolve("empty"));
+
+        // Not Java files or excluded
+        createFile(root.resolve("module/src/a/notes.txt"));
+        createFile(root.resolve("module/src/b/Java.java.bak"));
+        createFile(root.resolve("module/excluded/E.java"));
+        createFile(root.resolve("module/excluded/sub/F.java"));
+    }
+
+    @Test
+    public void testFindsAllFiles() {
+        try (var walk = JavaFileWalker.walk(root, EXCLUDED)) {
+            assertThat(walk.collect(Collectors.toList())).containsExactlyInAnyOrderElementsOf(javaFiles);
+        }
+    }
+
+    @Test
+    public void testExclusions() {
+        try (var walk = new JavaFileWalker(root, EXCLUDED, false).walk()) {
+            assertThat(walk.map(root::relativize))
+                    .noneMatch(p -> p.startsWith(Path.of("module", "excluded")));
+        }
+
+        try (var walk = new JavaFileWalker(root, Set.of(Path.of("module")), false).walk()) {
+            assertThat(walk.collect(Collectors.toList()))
+                    .containsExactlyInAnyOrderElementsOf(javaFiles.stream()
+                            .filter(p -> !root.relativize(p).startsWith("module"))
+                            .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        List<Path> directories;
+        try (var walk = new JavaFileWalker(root, EXCLUDED, false).walk()) {
+            directories = walk.map(Path::getParent).collect(Collectors.toList());
+        }
+
+        assertThat(directories.get(0)).isEqualTo(root);
+        for (int i = 1; i < directories.size(); i++) {
+            var current = directories.get(i);
+            if (current.equals(directories.get(i - 1))) {
+                continue;
+            }
+
+            // The files of each directory are contiguous and come before those of its subdirectories
+            assertThat(directories.subList(0, i))
+                    .as(current.toString())
+                    .noneMatch(d -> d.startsWith(current));
+        }
+    }
+
+    @Test
+    public void testSplitsCoverEveryFileOnce() {
+        var spliterator = new JavaFileWalker(root, EXCLUDED, false).walk().spliterator();
+        assertThat(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)).isTrue();
+        assertThat(spliterator.estimateSize()).isEqualTo(javaFiles.size());
+
+        var leaves = splitAll(spliterator);
+        assertThat(leaves).hasSizeGreaterThan(1);
+
+        var sizes = leaves.stream()
+                .map(Spliterator::estimateSize)
+                .collect(Collectors.toList());
+        var splitPaths = new ArrayList<Path>();
+        for (int i = 0; i < leaves.size(); i++) {
+            var leafPaths = collect(leaves.get(i));
+            assertThat((long) leafPaths.size()).isEqualTo(sizes.get(i));
+            splitPaths.addAll(leafPaths);
+        }
+
+        // Same order as without splitting
+        assertThat(splitPaths).isEqualTo(collect(new JavaFileWalker(root, EXCLUDED, false).walk().spliterator()));
+        assertThat(splitPaths).doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(javaFiles);
+    }
+
+    @Test
+    public void testSplitsAfterPartialTraversal() {
+        var spliterator = new JavaFileWalker(root, EXCLUDED, false).walk().spliterator();
+        var paths = new ArrayList<Path>();
+        for (int i = 0; i < 7; i++) {
+            assertThat(spliterator.tryAdvance(paths::add)).isTrue();
+        }
+
+        for (var leaf : splitAll(spliterator)) {
+            paths.addAll(collect(leaf));
+        }
+
+        assertThat(paths).doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(javaFiles);
+    }
+
+    @Test
+    public void testParallel() {
+        List<Path> sequential;
+        try (var walk = new JavaFileWalker(root, EXCLUDED, false).walk()) {
+            sequential = walk.collect(Collectors.toList());
+        }
+
+        try (Stream<Path> walk = new JavaFileWalker(root, EXCLUDED, false).walk().parallel()) {
+            assertThat(walk.collect(Collectors.toList())).isEqualTo(sequential);
+        }
+    }
+
+    @Test
+    public void testCacheInvalidatedByDirectoryChange() throws IOException {
+        var directory = root.resolve("module/src/b/c1");
+        var originalTime = Files.getLastModifiedTime(directory);
+
+        try (var walk = JavaFileWalker.walk(root, EXCLUDED)) {
+            assertThat(walk.collect(Collectors.toList())).containsExactlyInAnyOrderElementsOf(javaFiles);
+        }
+
+        // While the modification time of the directory is the same, the cached list is used
+        var added = createFile(directory.resolve("Added.java"));
+        Files.setLastModifiedTime(directory, originalTime);
+        try (var walk = JavaFileWalker.walk(root, EXCLUDED)) {
+            assertThat(walk.collect(Collectors.toList())).doesNotContain(added);
+        }
+
+        Files.setLastModifiedTime(directory, FileTime.fromMillis(originalTime.toMillis() + 10_000));
+        try (var walk = JavaFileWalker.walk(root, EXCLUDED)) {
+            assertThat(walk.collect(Collectors.toList())).contains(added)
+                    .hasSize(javaFiles.size() + 1);
+        }
+
+        // Uncached walks always see the files
+        Files.delete(added);
+        Files.setLastModifiedTime(directory, originalTime);
+        try (var walk = new JavaFileWalker(root, EXCLUDED, false).walk()) {
+            assertThat(walk.collect(Collectors.toList())).containsExactlyInAnyOrderElementsOf(javaFiles);
+        }
+    }
+
+    @Test
+    public void testCacheKeyedByExclusions() {
+        try (var walk = JavaFileWalker.walk(root, EXCLUDED)) {
+            assertThat(walk.count()).isEqualTo(javaFiles.size());
+        }
+
+        try (var walk = JavaFileWalker.walk(root, Collections.emptySet())) {
+            assertThat(walk.count()).isEqualTo(javaFiles.size() + 2);
+        }
+    }
+}
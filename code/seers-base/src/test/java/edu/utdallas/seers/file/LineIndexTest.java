@@ -0,0 +1,112 @@
+package edu.utdallas.seers.file;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static edu.utdallas.seers.testing.TestUtils.a;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnitParamsRunner.class)
+public class LineIndexTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private LineIndex buildIndex(String content) throws IOException {
+        var file = folder.newFile().toPath();
+        java.nio.file.Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        return LineIndex.build(file);
+    }
+
+    private static List<String> readLines(LineIndex index) {
+        return IntStream.rangeClosed(1, index.lineCount())
+                .mapToObj(index::getLine)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @Parameters
+    public void testLines(String content, String... expected) throws IOException {
+        assertThat(readLines(buildIndex(content)))
+                .as(content.replace("\r", "\\r").replace("\n", "\\n"))
+                .containsExactly(expected);
+    }
+
+    public Object[] parametersForTestLines() {
+        return a(
+                a("", new String[]{}),
+                a("\n", a("")),
+                a("\r", a("")),
+                a("\r\n", a("")),
+                a("one", a("one")),
+                a("one\ntwo\n", a("one", "two")),
+                a("one\ntwo", a("one", "two")),
+                a("one\rtwo\r", a("one", "two")),
+                a("one\rtwo", a("one", "two")),
+                a("one\r\ntwo\r\n", a("one", "two")),
+                a("one\r\ntwo", a("one", "two")),
+                a("one\r\n\r\ntwo\n\nthree\r\rfour", a("one", "", "two", "", "three", "", "four")),
+                // \n\r is two terminators
+                a("one\n\rtwo", a("one", "", "two")),
+                a("\u00fcn\u00efc\u00f6d\u00e9\nline \u2192 two", a("\u00fcn\u00efc\u00f6d\u00e9", "line \u2192 two"))
+        );
+    }
+
+    /**
+     * Line counts around the initial capacity of the offsets array, with and without a final
+     * terminator.
+     */
+    @Test
+    @Parameters
+    public void testSameAsBufferedReader(int lineCount, String terminator, boolean finalTerminator)
+            throws IOException {
+        var content = IntStream.range(0, lineCount)
+                .mapToObj(i -> i % 5 == 0 ? "" : "line " + i)
+                .collect(Collectors.joining(terminator)) + (finalTerminator ? terminator : "");
+
+        List<String> expected;
+        try (var reader = new BufferedReader(new StringReader(content))) {
+            expected = reader.lines().collect(Collectors.toList());
+        }
+
+        assertThat(readLines(buildIndex(content))).isEqualTo(expected);
+    }
+
+    public Object[] parametersForTestSameAsBufferedReader() {
+        return a(
+                a(62, "\n", true), a(63, "\n", true), a(64, "\n", true), a(65, "\n", true),
+                a(62, "\n", false), a(63, "\n", false), a(64, "\n", false), a(65, "\n", false),
+                a(63, "\r", true), a(64, "\r", false),
+                a(63, "\r\n", false), a(64, "\r\n", true),
+                a(1000, "\r\n", false)
+        );
+    }
+
+    @Test
+    public void testOutOfRange() throws IOException {
+        var index = buildIndex("one\ntwo\n");
+
+        assertThat(index.lineCount()).isEqualTo(2);
+        assertThatThrownBy(() -> index.getLine(0)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> index.getLine(3)).isInstanceOf(IndexOutOfBoundsException.class);
+
+        var empty = buildIndex("");
+        assertThat(empty.lineCount()).isZero();
+        assertThatThrownBy(() -> empty.getLine(1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+}
@@ -0,0 +1,113 @@
+package edu.utdallas.seers.file;
+
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+public class LineReaderTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> createLines(String prefix, int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> prefix + i)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Tuple2<Integer, String>> read(LineReader reader, Path file, Integer... lineNumbers) {
+        return reader.readLines(file, Set.of(lineNumbers))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Replaces the file with a new one that has the given modification time, so that the indexes
+     * already mapped keep the old contents.
+     */
+    private void replace(Path file, List<String> lines, FileTime modifiedTime) throws IOException {
+        var temp = folder.newFile().toPath();
+        java.nio.file.Files.write(temp, lines);
+        java.nio.file.Files.setLastModifiedTime(temp, modifiedTime);
+        java.nio.file.Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Test
+    public void testContext() throws IOException {
+        var lines = createLines("line ", 10);
+        var file = folder.newFile().toPath();
+        java.nio.file.Files.write(file, lines);
+        var reader = new LineReader(1);
+
+        var expected = List.of(
+                tuple(2, "line 2"), tuple(3, "line 3"), tuple(4, "line 4"), tuple(5, "line 5"),
+                tuple(6, "line 6"), tuple(9, "line 9"), tuple(10, "line 10")
+        );
+
+        // Overlapping context lines only once and none past the end of the file
+        assertThat(read(reader, file, 10, 3, 5)).isEqualTo(expected);
+        assertThat(reader.readLines(lines, Set.of(10, 3, 5)).collect(Collectors.toList()))
+                .isEqualTo(expected);
+        assertThat(read(new LineReader(0), file, 1)).containsExactly(tuple(1, "line 1"));
+    }
+
+    @Test
+    public void testModifiedFile() throws IOException {
+        var file = folder.newFile().toPath();
+        java.nio.file.Files.write(file, createLines("old ", 5));
+        var modifiedTime = java.nio.file.Files.getLastModifiedTime(file);
+        var reader = new LineReader(0);
+
+        assertThat(read(reader, file, 2)).containsExactly(tuple(2, "old 2"));
+
+        replace(file, createLines("new ", 8), FileTime.fromMillis(modifiedTime.toMillis() + 10_000));
+
+        assertThat(read(reader, file, 2, 8)).containsExactly(tuple(2, "new 2"), tuple(8, "new 8"));
+    }
+
+    @Test
+    public void testCachedWhileUnmodified() throws IOException {
+        var file = folder.newFile().toPath();
+        java.nio.file.Files.write(file, createLines("old ", 5));
+        var modifiedTime = java.nio.file.Files.getLastModifiedTime(file);
+        var reader = new LineReader(0);
+
+        assertThat(read(reader, file, 2)).containsExactly(tuple(2, "old 2"));
+
+        // Same modification time, so the cached index is used
+        replace(file, createLines("new ", 5), modifiedTime);
+
+        assertThat(read(reader, file, 2)).containsExactly(tuple(2, "old 2"));
+        assertThat(read(new LineReader(0), file, 2)).containsExactly(tuple(2, "new 2"));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        var first = folder.newFile().toPath();
+        var second = folder.newFile().toPath();
+        java.nio.file.Files.write(first, createLines("first ", 3));
+        java.nio.file.Files.write(second, createLines("second ", 3));
+        var modifiedTime = java.nio.file.Files.getLastModifiedTime(first);
+        var reader = new LineReader(0, 1);
+
+        assertThat(read(reader, first, 1)).containsExactly(tuple(1, "first 1"));
+        assertThat(read(reader, second, 1)).containsExactly(tuple(1, "second 1"));
+
+        // The index of the first file was evicted, so it is indexed again
+        replace(first, createLines("replaced ", 3), modifiedTime);
+
+        assertThat(read(reader, first, 1)).containsExactly(tuple(1, "replaced 1"));
+    }
+}
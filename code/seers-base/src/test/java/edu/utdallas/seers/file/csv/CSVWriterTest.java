@@ -0,0 +1,199 @@
+package edu.utdallas.seers.file.csv;
+
+import com.opencsv.CSVReader;
+import com.opencsv.bean.*;
+import com.opencsv.exceptions.CsvException;
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CSVWriterTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static <T> String writeWithOpencsv(List<T> beans) throws Exception {
+        var output = new StringWriter();
+        var writer = new StatefulBeanToCsvBuilder<T>(output).build();
+        for (T bean : beans) {
+            writer.write(bean);
+        }
+
+        return output.toString();
+    }
+
+    private <T> void assertSameOutput(List<T> beans) throws Exception {
+        var file = folder.newFile().toPath();
+        try (var writer = CSVWriter.<T>create(file)) {
+            writer.writeRow(beans.get(0));
+            writer.writeRows(beans.stream().skip(1));
+        }
+
+        assertThat(Files.readString(file)).isEqualTo(writeWithOpencsv(beans));
+    }
+
+    @Test
+    public void testAnnotatedFields() throws Exception {
+        var other = new Annotated();
+        other.text = null;
+        other.count = null;
+        other.values = new ArrayListValuedHashMap<>();
+        other.values.put("kB", 9f);
+        other.values.put("kC", 8f);
+
+        assertSameOutput(List.of(new Annotated(), other, new Annotated()));
+    }
+
+    @Test
+    public void testUnannotatedFields() throws Exception {
+        assertSameOutput(List.of(new Unannotated(), new Unannotated()));
+    }
+
+    @Test
+    public void testCustomConverter() throws Exception {
+        assertSameOutput(List.of(new Converted("a/b"), new Converted("c")));
+    }
+
+    @Test
+    public void testManyProducers() throws Exception {
+        int producers = 16;
+        int rowsPerProducer = 2000;
+        var file = folder.newFile().toPath();
+        var barrier = new CyclicBarrier(producers);
+
+        try (var writer = CSVWriter.<Row>create(file)) {
+            var threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                threads.add(new Thread(() -> {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    for (int i = 0; i < rowsPerProducer; i += 10) {
+                        if (i % 20 == 0) {
+                            writer.writeRow(new Row(producer, i));
+                            writer.writeRows(IntStream.range(i + 1, i + 10).mapToObj(j -> new Row(producer, j)));
+                        } else {
+                            IntStream.range(i, i + 10).forEach(j -> writer.writeRow(new Row(producer, j)));
+                        }
+                    }
+                }));
+            }
+
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        List<String[]> lines;
+        try (var reader = new CSVReader(Files.newBufferedReader(file))) {
+            lines = reader.readAll();
+        } catch (CsvException e) {
+            throw new RuntimeException(e);
+        }
+
+        assertThat(lines.get(0)).containsExactly("PRODUCER", "SEQUENCE", "TEXT");
+        assertThat(lines).hasSize(producers * rowsPerProducer + 1);
+
+        var byProducer = lines.stream()
+                .skip(1)
+                .collect(Collectors.groupingBy(l -> l[0], Collectors.mapping(l -> l[1], Collectors.toList())));
+        assertThat(byProducer).hasSize(producers);
+        var expected = IntStream.range(0, rowsPerProducer)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.toList());
+        byProducer.forEach((p, sequence) -> assertThat(sequence).as(p).isEqualTo(expected));
+    }
+
+    public static class Annotated {
+        @CsvBindByName(column = "Zeta Column")
+        private final float ratio = 0.1f;
+        @CsvBindByName(column = "00 Text")
+        private String text = "with \"quotes\", commas\nand lines";
+        @CsvBindByName
+        private Integer count = 3;
+        @CsvBindByName
+        private final boolean flag = true;
+        @CsvBindByName
+        private final double small = 1e-5;
+        @CsvBindByName
+        private final String withGetter = "field";
+        @CsvBindAndJoinByName(column = "k.*", elementType = Float.class)
+        private MultiValuedMap<String, Float> values = new ArrayListValuedHashMap<>();
+        @CsvBindAndJoinByName(column = "N.*", elementType = Integer.class)
+        private final MultiValuedMap<String, Integer> missing = null;
+        private final String notWritten = "not written";
+
+        public Annotated() {
+            values.put("kB", 1f);
+            values.put("kB", 2f);
+            values.put("kA", null);
+        }
+
+        public String getWithGetter() {
+            return "getter";
+        }
+    }
+
+    public static class Unannotated {
+        private static final String CONSTANT = "constant";
+        private final int number = 7;
+        private final String name = "name";
+
+        public String getName() {
+            return "getter";
+        }
+    }
+
+    public static class Converted {
+        @CsvBindByName
+        private final String id = "id";
+        @CsvCustomBindByName(converter = PathConverter.class)
+        private final Path path;
+
+        private Converted(String path) {
+            this.path = Paths.get(path);
+        }
+    }
+
+    public static class PathConverter extends AbstractBeanField<Path, Integer> {
+        @Override
+        protected Object convert(String value) {
+            return Paths.get(value);
+        }
+    }
+
+    public static class Row {
+        @CsvBindByName
+        private final int producer;
+        @CsvBindByName
+        private final int sequence;
+        @CsvBindByName
+        private final String text;
+
+        private Row(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+            text = "row \"" + sequence + "\"\n" + "x".repeat(sequence % 50);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package edu.utdallas.seers.json;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.jooq.lambda.Seq;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static edu.utdallas.seers.testing.TestUtils.a;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+@RunWith(JUnitParamsRunner.class)
+public class JSONTest {
+
+    private static final String OBJECT_JSON = "{\"name\":\"object\",\"path\":\"a/b.java\",\"values\":{\"one\":1,\"two\":2}}";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static boolean isCompressed(Path file) throws IOException {
+        var bytes = Files.readAllBytes(file);
+
+        return bytes.length >= 2 && (bytes[0] & 0xff) == 0x1f && (bytes[1] & 0xff) == 0x8b;
+    }
+
+    private static Map<String, Integer> createCounts(int size) {
+        var counts = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            counts.put("key " + (size - i), i);
+        }
+
+        return counts;
+    }
+
+    @Test
+    @Parameters
+    public void testReadWrite(String fileName, boolean compressed) throws IOException {
+        var file = folder.getRoot().toPath().resolve(fileName);
+        var object = new Stored("object", Paths.get("a", "b.java"), createCounts(100));
+
+        JSON.writeJSON(object, file, false);
+
+        assertThat(isCompressed(file)).isEqualTo(compressed);
+        assertThat(JSON.readJSON(file, Stored.class)).isEqualTo(object);
+    }
+
+    public Object[] parametersForTestReadWrite() {
+        return a(
+                a("object.json", false),
+                a("object.json.gz", true),
+                a("object.gz.json", false)
+        );
+    }
+
+    /**
+     * Files written by other tools are decompressed according to their extension.
+     */
+    @Test
+    @Parameters
+    public void testReadCompressed(String fileName, boolean compressed) throws IOException {
+        var file = folder.getRoot().toPath().resolve(fileName);
+        var stream = Files.newOutputStream(file);
+        try (Writer writer = new OutputStreamWriter(compressed ? new GZIPOutputStream(stream) : stream,
+                StandardCharsets.UTF_8)) {
+            writer.write(OBJECT_JSON);
+        }
+
+        assertThat(JSON.readJSON(file, Stored.class))
+                .isEqualTo(new Stored("object", Paths.get("a", "b.java"), Map.of("one", 1, "two", 2)));
+    }
+
+    public Object[] parametersForTestReadCompressed() {
+        return a(
+                a("object.json", false),
+                a("object.json.gz", true)
+        );
+    }
+
+    @Test
+    @Parameters({"objects.json", "objects.json.gz"})
+    public void testObjectReadWrite(String fileName) throws IOException {
+        var file = folder.getRoot().toPath().resolve(fileName);
+        var counts = createCounts(10_000);
+        var paths = Map.of("first", Paths.get("a", "b.java"), "second", Paths.get("c.java"));
+
+        JSON.objectWriter(file)
+                .withMap("counts", Seq.seq(counts), Integer.class)
+                .withMap("skipped", Stream.of(tuple("key", "value")), String.class)
+                .withMap("paths", Seq.seq(paths), Path.class)
+                .withMap("empty", Stream.empty(), Integer.class)
+                .write();
+
+        var readCounts = new LinkedHashMap<String, Integer>();
+        var readPaths = new LinkedHashMap<String, Path>();
+        var readEmpty = new LinkedHashMap<String, Integer>();
+        JSON.objectReader(file)
+                .onMap("counts", Integer.class, readCounts::put)
+                .onMap("paths", Path.class, readPaths::put)
+                .onMap("empty", Integer.class, readEmpty::put)
+                .onMap("missing", Integer.class, (k, v) -> {
+                    throw new AssertionError(k);
+                })
+                .read();
+
+        assertThat(isCompressed(file)).isEqualTo(fileName.endsWith(JSON.GZIP_EXTENSION));
+        assertThat(readCounts).containsExactlyEntriesOf(counts);
+        assertThat(readPaths).isEqualTo(paths);
+        assertThat(readEmpty).isEmpty();
+    }
+
+    @Test
+    @Parameters({"objects.json", "objects.json.gz"})
+    public void testFailedObjectWrite(String fileName) throws IOException {
+        var file = folder.getRoot().toPath().resolve(fileName);
+        JSON.objectWriter(file)
+                .withMap("counts", Stream.of(tuple("one", 1)), Integer.class)
+                .write();
+        var bytes = Files.readAllBytes(file);
+
+        var failing = Seq.range(0, 10_000)
+                .map(i -> {
+                    if (i == 5_000) {
+                        throw new IllegalStateException("Failed stream");
+                    }
+                    return tuple("key " + i, i);
+                });
+        var writer = JSON.objectWriter(file)
+                .withMap("counts", failing, Integer.class);
+
+        assertThatThrownBy(writer::tryWrite).hasMessage("Failed stream");
+        assertUntouched(file, bytes);
+    }
+
+    @Test
+    @Parameters({"object.json", "object.json.gz"})
+    public void testFailedWrite(String fileName) throws IOException {
+        var file = folder.getRoot().toPath().resolve(fileName);
+        var object = new Stored("object", Paths.get("a", "b.java"), createCounts(10));
+        JSON.writeJSON(object, file, true);
+        var bytes = Files.readAllBytes(file);
+
+        assertThatThrownBy(() -> JSON.tryWriteJSON(new Failing(), file, false, new FailingSupplier()))
+                .hasMessage("Failed value");
+        assertUntouched(file, bytes);
+        assertThat(JSON.readJSON(file, Stored.class)).isEqualTo(object);
+    }
+
+    private void assertUntouched(Path file, byte[] bytes) throws IOException {
+        assertThat(Files.readAllBytes(file)).isEqualTo(bytes);
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertThat(files)
+                    .as("temporary files are deleted")
+                    .containsExactly(file);
+        }
+    }
+
+    public static class Stored implements JSONSerializable<AdapterSupplier> {
+        private final String name;
+        private final Path path;
+        private final Map<String, Integer> values;
+
+        private Stored(String name, Path path, Map<String, Integer> values) {
+            this.name = name;
+            this.path = path;
+            this.values = values;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Stored stored = (Stored) o;
+            return name.equals(stored.name) && path.equals(stored.path) && values.equals(stored.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, path, values);
+        }
+    }
+
+    public static class Failing implements JSONSerializable<FailingSupplier> {
+        private final String name = "failing";
+        private final FailingValue value = new FailingValue();
+    }
+
+    public static class FailingValue {
+        @Override
+        public String toString() {
+            throw new IllegalStateException("Failed value");
+        }
+    }
+
+    public static class FailingSupplier extends AdapterSupplier {
+        @Override
+        protected Builder build(Builder builder) {
+            return builder.addTypeAdapter(FailingValue.class, s -> new FailingValue());
+        }
+    }
+}
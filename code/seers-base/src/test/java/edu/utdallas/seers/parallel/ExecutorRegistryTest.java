@@ -0,0 +1,55 @@
+package edu.utdallas.seers.parallel;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExecutorRegistryTest {
+
+    private final ExecutorRegistry registry = ExecutorRegistry.getInstance();
+
+    @Test
+    public void testReusesPool() {
+        var executor = registry.get("test-reuse", 2);
+
+        assertThat(registry.get("test-reuse", 2)).isSameAs(executor);
+        assertThat(registry.get("test-reuse", 3)).isSameAs(executor);
+        assertThat(executor.getMaximumPoolSize()).isEqualTo(3);
+        assertThat(executor.getCorePoolSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void testMapInOrder() throws InterruptedException {
+        var items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+        var results = Parallel.mapInOrder("test-map", items, i -> i * 2, 4);
+
+        assertThat(results).isEqualTo(items.stream().map(i -> i * 2).collect(Collectors.toList()));
+
+        // Tasks are counted after their results are available
+        var executor = registry.get("test-map", 4);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        var stats = executor.getStats();
+        assertThat(stats.threads).isEqualTo(4);
+        assertThat(stats.completedTasks).isEqualTo(100);
+        assertThat(registry.get("test-map", 4)).isNotSameAs(executor);
+    }
+
+    @Test
+    public void testNestedInSamePool() {
+        // With one thread per item, every thread would wait for nested tasks that cannot start
+        var items = List.of(0, 1);
+
+        var results = Parallel.mapInOrder("test-nested", items,
+                i -> Parallel.mapInOrder("test-nested", List.of(i, i + 10), j -> j + 1, 2), 2);
+
+        assertThat(results).containsExactly(List.of(1, 11), List.of(2, 12));
+    }
+}
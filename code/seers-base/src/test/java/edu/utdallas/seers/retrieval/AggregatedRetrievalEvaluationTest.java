@@ -0,0 +1,100 @@
+package edu.utdallas.seers.retrieval;
+
+import edu.utdallas.seers.parameter.Options;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AggregatedRetrievalEvaluationTest {
+
+    private static final ScenarioKey KEY = new ScenarioKey() {
+    };
+
+    @BeforeClass
+    public static void setUpOptions() throws ArgumentParserException {
+        new Options.ArgumentBuilder(AggregatedRetrievalEvaluationTest.class.getName())
+                .addHitsAtKRanksOption()
+                .build()
+                .parseArgs(new String[]{"-k", "1", "5", "10"});
+    }
+
+    /**
+     * @param gtRank Rank of the only ground truth, or 0 if it is not retrieved.
+     */
+    private static RetrievalEvaluation<TestQuery, RetrievalResult<Retrievable, Void>> evaluate(int gtRank) {
+        List<RetrievalResult<Retrievable, Void>> results = IntStream.rangeClosed(1, 10)
+                .mapToObj(r -> new RetrievalResult<Retrievable, Void>(() -> "r" + r, 1f / r, r, null))
+                .collect(Collectors.toList());
+
+        return new RetrievalEvaluation<>(new DefaultResultCollection<>(KEY, new TestQuery("r" + gtRank),
+                Collections.emptyList(), results)).removeResults();
+    }
+
+    @Test
+    public void testMeasuresFromHistogram() {
+        var evaluation = AggregatedRetrievalEvaluation.create(List.of(
+                evaluate(1), evaluate(3), evaluate(0), evaluate(7), evaluate(3)
+        ));
+
+        assertThat(evaluation.getQueryCount()).isEqualTo(5);
+        assertThat(evaluation.getHitsAtK()).isEqualTo(Map.of(1, 1, 5, 3, 10, 4));
+        assertThat(evaluation.getHitsAtK(3)).isEqualTo(3);
+        assertThat(evaluation.getAverageRecall()).isEqualTo(0.8f);
+        assertThat(evaluation.getAverageRank()).isEqualTo(14 / (5 * 0.8f));
+    }
+
+    @Test
+    public void testMergeEqualsAccumulate() {
+        var ranks = List.of(2, 0, 9, 1, 1, 4, 0);
+        var all = new AggregatedRetrievalEvaluation();
+        var first = new AggregatedRetrievalEvaluation();
+        var second = new AggregatedRetrievalEvaluation();
+        for (int i = 0; i < ranks.size(); i++) {
+            var evaluation = evaluate(ranks.get(i));
+            all.accumulate(evaluation);
+            (i < 3 ? first : second).accumulate(evaluation);
+        }
+
+        var merged = AggregatedRetrievalEvaluation.aggregate(List.of(first, second));
+
+        assertThat(merged.getQueryCount()).isEqualTo(all.getQueryCount());
+        assertThat(merged.getHitsAtK()).isEqualTo(all.getHitsAtK());
+        assertThat(merged.getPercentHitsAtK()).isEqualTo(all.getPercentHitsAtK());
+        assertThat(merged.getAverageRank()).isEqualTo(all.getAverageRank());
+        assertThat(merged.getMrr()).isEqualTo(all.getMrr(), within(1e-6f));
+        assertThat(merged.getMap()).isEqualTo(all.getMap(), within(1e-6f));
+        assertThat(merged.getAverageResults()).isEqualTo(all.getAverageResults());
+    }
+
+    private static class TestQuery implements Query {
+        private final String groundTruth;
+
+        private TestQuery(String groundTruth) {
+            this.groundTruth = groundTruth;
+        }
+
+        @Override
+        public List<String> getGroundTruthIDs() {
+            return Collections.singletonList(groundTruth);
+        }
+
+        @Override
+        public String getID() {
+            return "q";
+        }
+
+        @Override
+        public String getField(String name) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package edu.utdallas.seers.retrieval;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
+import org.jooq.lambda.tuple.Tuple3;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static edu.utdallas.seers.testing.TestUtils.a;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+@RunWith(JUnitParamsRunner.class)
+public class ResultViewTest {
+
+    private static final String ID_FIELD = "id";
+    private static final String TEXT_FIELD = "text";
+    /**
+     * More than the hits that Lucene counts exactly when the results are limited.
+     */
+    private static final int DOCUMENT_COUNT = 1_500;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private TestIndex index;
+
+    private static class TestIndex extends Index<Retrievable> {
+
+        TestIndex(Path path) {
+            super(path);
+        }
+
+        @Override
+        protected Retrievable loadEntity(ScoredDocID sd) {
+            var id = sd.getId();
+            return () -> id;
+        }
+
+        @Override
+        protected String getIDFieldName() {
+            return ID_FIELD;
+        }
+    }
+
+    /**
+     * Few distinct terms and short texts, so that many documents have the same score.
+     */
+    @Before
+    public void setUp() throws IOException {
+        var path = folder.newFolder("index").toPath();
+        var random = new Random(42);
+
+        try (var directory = FSDirectory.open(path);
+             var writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < DOCUMENT_COUNT; i++) {
+                var document = new Document();
+                document.add(new StringField(ID_FIELD, "d" + i, Field.Store.YES));
+                document.add(new TextField(TEXT_FIELD, IntStream.range(0, 1 + random.nextInt(4))
+                        .mapToObj(j -> "t" + random.nextInt(6))
+                        .collect(Collectors.joining(" ")), Field.Store.NO));
+                writer.addDocument(document);
+
+                // Several segments
+                if (i % 400 == 0) {
+                    writer.commit();
+                }
+            }
+        }
+
+        index = new TestIndex(path);
+    }
+
+    private static List<Tuple3<Integer, String, Float>> describe(List<SimpleRetrievalResult<Retrievable>> results) {
+        return results.stream()
+                .map(r -> tuple(r.getRank(), r.getResult().getID(), r.getScore()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @Parameters
+    public void testPages(String text, int topK) {
+        var expected = describe(index.search(text, TEXT_FIELD));
+        assertThat(expected).isNotEmpty();
+
+        var page = index.search(text, TEXT_FIELD, topK);
+        var pages = new ArrayList<>(List.of(page));
+        while (page.hasNextPage()) {
+            page = index.searchAfter(page, topK);
+            pages.add(page);
+        }
+
+        var paged = new ArrayList<SimpleRetrievalResult<Retrievable>>();
+        for (int i = 0; i < pages.size(); i++) {
+            var current = pages.get(i);
+            assertThat(current.size()).as("Page " + i).isLessThanOrEqualTo(topK);
+            // Only the page after the last result can be empty
+            if (i < pages.size() - 1) {
+                assertThat(current).as("Page " + i).isNotEmpty();
+            }
+            paged.addAll(current);
+        }
+
+        assertThat(describe(paged)).isEqualTo(expected);
+        assertThat(page.nextPage(topK)).isEmpty();
+    }
+
+    public Object[] parametersForTestPages() {
+        return a(
+                a("t0", 1), a("t0", 7), a("t0", 100),
+                a("t1 t2 t3", 1), a("t1 t2 t3", 10), a("t1 t2 t3", 999), a("t1 t2 t3", 1_000),
+                a("t4 t5 t5 absent", 250), a("t4 t5 t5 absent", Integer.MAX_VALUE)
+        );
+    }
+
+    @Test
+    public void testNoResults() {
+        var page = index.search("absent", TEXT_FIELD, 10);
+
+        assertThat(page).isEmpty();
+        assertThat(page.hasNextPage()).isFalse();
+        assertThat(page.nextPage(10)).isEmpty();
+    }
+}
@@ -0,0 +1,152 @@
+package edu.utdallas.seers.stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.jooq.lambda.tuple.Tuple.tuple;
+
+public class IntFloatSeqTest {
+
+    private static final int ALLOCATION_SIZE = 1_000_000;
+    private static final Set<String> BOXED_CLASSES =
+            Set.of(Integer.class.getName(), Long.class.getName(), Float.class.getName(), Tuple2.class.getName());
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static float[] randomScores(int size) {
+        var random = new Random(42);
+        var scores = new float[size];
+        for (int i = 0; i < size; i++) {
+            // Few distinct values to have ties
+            scores[i] = random.nextInt(100) / 10f;
+        }
+
+        return scores;
+    }
+
+    @Test
+    public void testFusedOperations() {
+        var seq = IntFloatSeq.of(new int[]{5, 3, 8, 1}, new float[]{0.5f, 2f, 0f, 1f})
+                .filter((d, s) -> s > 0)
+                .mapValues((d, s) -> s * d);
+
+        assertThat(seq.keys()).containsExactly(5, 3, 1);
+        assertThat(seq.values()).containsExactly(2.5f, 6f, 1f);
+        assertThat(seq.count()).isEqualTo(3);
+        assertThat(seq.sum()).isCloseTo(9.5f, within(1e-6f));
+        assertThat(seq.mapKeys(d -> "d" + d).keys()).containsExactly("d5", "d3", "d1");
+    }
+
+    @Test
+    public void testTopKMatchesSort() {
+        var scores = randomScores(1000);
+
+        for (int k : new int[]{0, 1, 10, 999, 1000, 5000}) {
+            var top = IntFloatSeq.zipWithIndex(scores).topK(k);
+
+            // Stable sort keeps the earliest index among equal scores
+            var expected = IntStream.range(0, scores.length).boxed()
+                    .sorted((i1, i2) -> Float.compare(scores[i2], scores[i1]))
+                    .limit(k)
+                    .mapToInt(i -> i)
+                    .toArray();
+            var expectedScores = new float[expected.length];
+            for (int i = 0; i < expected.length; i++) {
+                expectedScores[i] = scores[expected[i]];
+            }
+
+            assertThat(top.keys()).as("k = %d", k).containsExactly(expected);
+            assertThat(top.values()).as("k = %d", k).containsExactly(expectedScores);
+        }
+    }
+
+    @Test
+    public void testObjFloatSeq() {
+        var names = new String[]{"a", "b", "c"};
+        var scores = new float[]{9, 9, 9, 1f, 3f, 2f};
+        var row = ObjFloatSeq.of(names, scores, 3);
+
+        assertThat(row.getOrDefault("b", -1)).isEqualTo(3f);
+        assertThat(row.getOrDefault("x", -1)).isEqualTo(-1f);
+        assertThat(row.topK(2).keys()).containsExactly("b", "c");
+        assertThat(row.filter((n, s) -> s < 3).combine((n, s) -> n + s).toList())
+                .containsExactly("a1.0", "c2.0");
+
+        // The row is a view of the array
+        scores[3] = 5f;
+        assertThat(row.sortedByValueDescending().keys()).containsExactly("a", "b", "c");
+    }
+
+    /**
+     * Records allocations with JFR while running the same top-K pipeline with both sequence types.
+     * Allocation events are sampled, so pipelines run on enough pairs for boxes to show up.
+     */
+    @Test
+    public void testNoBoxing() throws Exception {
+        var scores = randomScores(ALLOCATION_SIZE);
+
+        var primitiveTop = recordAllocations(() ->
+                IntFloatSeq.zipWithIndex(scores)
+                        .filter((d, s) -> s > 1)
+                        .mapValues((d, s) -> s * 2)
+                        .topK(100)
+                        .keys()
+        );
+        var boxedTop = recordAllocations(() ->
+                PairSeq.seq(IntStream.range(0, scores.length).boxed(), i -> i, i -> scores[i])
+                        .filter((d, s) -> s > 1)
+                        .map(d -> d, s -> s * 2)
+                        .sortedComparingReversed((d, s) -> s)
+                        .limit(100)
+                        .map(Tuple2::v1)
+                        .mapToInt(i -> i)
+                        .toArray()
+        );
+
+        assertThat(primitiveTop.v1).isEqualTo(boxedTop.v1);
+        assertThat(primitiveTop.v2).doesNotContainAnyElementsOf(BOXED_CLASSES);
+        assertThat(boxedTop.v2).containsAnyElementsOf(BOXED_CLASSES);
+    }
+
+    /**
+     * @return The result of the action and the classes of the objects it allocated.
+     */
+    private Tuple2<int[], Set<String>> recordAllocations(Supplier<int[]> action)
+            throws Exception {
+        var file = folder.newFile().toPath();
+        long threadID = Thread.currentThread().getId();
+
+        int[] result;
+        try (var recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationInNewTLAB");
+            recording.enable("jdk.ObjectAllocationOutsideTLAB");
+            recording.start();
+            result = action.get();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        var classes = events.stream()
+                .filter(e -> e.getThread() != null && e.getThread().getJavaThreadId() == threadID)
+                .map(e -> e.getClass("objectClass").getName())
+                .collect(Collectors.toSet());
+
+        return tuple(result, classes);
+    }
+}